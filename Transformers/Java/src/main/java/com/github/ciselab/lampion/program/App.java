@@ -7,9 +7,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import com.github.ciselab.lampion.program.manifest.ManifestCsvExporter;
+import com.github.ciselab.lampion.program.output.OutputSinks;
+import com.github.ciselab.lampion.program.output.PatchApplier;
+import com.github.ciselab.lampion.program.tokens.IdentifierSplitter;
 import com.github.ciselab.lampion.transformations.TransformerRegistry;
 import com.github.ciselab.lampion.transformations.transformers.*;
 import org.apache.logging.log4j.LogManager;
@@ -57,6 +65,26 @@ public class App {
             setPropertiesFromFile(args[0]);
             undoAction();
             return;
+        } else if (args.length == 2 && args[1].equalsIgnoreCase("analyze")) {
+            logger.info("Received analyze action - reporting applicability of the transformers without applying them");
+            setPropertiesFromFile(args[0]);
+            analyzeAction();
+            return;
+        } else if (args.length == 2 && args[1].equalsIgnoreCase("exportManifest")) {
+            logger.info("Received exportManifest action - exporting the manifest to CSV and stopping after");
+            setPropertiesFromFile(args[0]);
+            exportManifestAction();
+            return;
+        } else if (args.length == 2 && args[1].equalsIgnoreCase("applyPatch")) {
+            logger.info("Received applyPatch action - reconstructing the transformed files from the diff output and stopping after");
+            setPropertiesFromFile(args[0]);
+            applyPatchAction();
+            return;
+        } else if (args.length == 2 && args[1].equalsIgnoreCase("merge")) {
+            logger.info("Received merge action - merging the outputs of all shards and stopping after");
+            setPropertiesFromFile(args[0]);
+            mergeAction();
+            return;
         }
         else {
             logger.warn("Received an unknown number of arguments! Not starting.");
@@ -72,7 +100,7 @@ public class App {
 
     /**
      * Cleans the output directories to ease re-running the program.
-     * Completely wipes all output folders. Does not touch input folders, configuration or schema.
+     * Completely wipes all output folders, or deletes the output archive, and the state of incremental runs. Does not touch input folders, configuration or schema.
      */
     private static void undoAction() throws IOException {
         // Read directories from properties
@@ -82,7 +110,17 @@ public class App {
         } else {
             throw new UnsupportedOperationException("There was no output-directory specified in the properties - not running undo");
         }
+        // Sharded runs only undo their own shard
+        outputDir = readShard(configuration).pathFor(outputDir);
+
+        // The state of incremental runs lives next to the output
+        Files.deleteIfExists(IncrementalState.stateFileFor(outputDir));
 
+        // An archive is a single file, just delete it
+        if(OutputSinks.isArchive(outputDir)) {
+            Files.deleteIfExists(Paths.get(outputDir));
+            return;
+        }
         // Run over the Output folders and delete all files
         if(Files.exists(Paths.get(outputDir))) {
             Files.walk(Paths.get(outputDir))
@@ -92,6 +130,162 @@ public class App {
         }
     }
 
+    /**
+     * Runs a dry-run of the configured transformers, reporting how many elements they could transform.
+     * Nothing is transformed or printed, the statistics are written as CSV files to the output-directory.
+     * See ApplicabilityAnalysis for more information.
+     */
+    private static void analyzeAction() throws IOException {
+        if(configuration.get("inputDirectory") == null) {
+            throw new UnsupportedOperationException("There was no input-directory specified in the properties - not running analysis");
+        }
+        if(configuration.get("outputDirectory") == null) {
+            throw new UnsupportedOperationException("There was no output-directory specified in the properties - not running analysis");
+        }
+        TransformerRegistry registry = createRegistryFromProperties(configuration);
+        Shard shard = readShard(configuration);
+        ApplicabilityAnalysis analysis = new ApplicabilityAnalysis(
+                (String) configuration.get("inputDirectory"),
+                shard.pathFor((String) configuration.get("outputDirectory")),
+                registry);
+        if(configuration.get("inputFilter") != null) {
+            analysis.setInputFilter((String) configuration.get("inputFilter"));
+        }
+        analysis.setShard(shard);
+        analysis.run();
+    }
+
+    /**
+     * Exports the configured manifest to a CSV file next to it, replacing its extension with ".csv".
+     * See ManifestCsvExporter for the columns.
+     */
+    private static void exportManifestAction() throws IOException {
+        if(configuration.get("manifest") == null) {
+            throw new UnsupportedOperationException("There was no manifest specified in the properties - not exporting");
+        }
+        Path manifest = Paths.get((String) configuration.get("manifest"));
+        String name = manifest.getFileName().toString();
+        String csvName = (name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name) + ".csv";
+        Path csv = manifest.resolveSibling(csvName);
+        long exported = ManifestCsvExporter.export(manifest, csv);
+        logger.info("Exported " + exported + " Transformations of " + manifest + " to " + csv);
+    }
+
+    /**
+     * Reconstructs the transformed files from the diffs written to the output-directory (see Engine.setDiffOutput)
+     * and the files of the input-directory. They are written to "appliedOutput", by default the output-directory
+     * with "_applied" instead of its extension. See PatchApplier for more information.
+     */
+    private static void applyPatchAction() throws IOException {
+        if(configuration.get("inputDirectory") == null) {
+            throw new UnsupportedOperationException("There was no input-directory specified in the properties - not applying");
+        }
+        if(configuration.get("outputDirectory") == null) {
+            throw new UnsupportedOperationException("There was no output-directory specified in the properties - not applying");
+        }
+        String output = (String) configuration.get("outputDirectory");
+        String target = (String) configuration.get("appliedOutput");
+        if(target == null) {
+            String withoutExtension = OutputSinks.isArchive(output) && output.contains(".") ?
+                    output.substring(0, output.lastIndexOf('.')) : output;
+            target = withoutExtension + "_applied";
+        }
+        PatchApplier.apply(Paths.get(output), (String) configuration.get("inputDirectory"), target);
+    }
+
+    /**
+     * Merges the outputs of all shards of a run (see Shard) into the configured outputs, as if run on a single machine.
+     * The outputs of the shards are expected at their shard paths (see Shard.pathFor), e.g. copied from every machine.
+     * Merged are the output-directory (transformed files or applicability CSVs), the manifest and the token output.
+     * Missing shards are skipped with a warning, as shards without files do not write any output.
+     * See ShardMerger for more information.
+     */
+    private static void mergeAction() throws IOException {
+        if(configuration.get("outputDirectory") == null) {
+            throw new UnsupportedOperationException("There was no output-directory specified in the properties - not merging");
+        }
+        if(configuration.get("shardCount") == null) {
+            throw new UnsupportedOperationException("There was no shardCount specified in the properties - not merging");
+        }
+        int shardCount = Integer.parseInt((String) configuration.get("shardCount"));
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard(i, shardCount));
+        }
+
+        String output = (String) configuration.get("outputDirectory");
+        List<String> shardOutputs = existingShardPaths(shards, output);
+        List<Path> applicability = shardOutputs.stream()
+                .map(Paths::get)
+                .filter(ShardMerger::hasApplicability)
+                .collect(Collectors.toList());
+        if (!applicability.isEmpty()) {
+            ShardMerger.mergeApplicability(applicability, Paths.get(output));
+        }
+        if (!shardOutputs.isEmpty()) {
+            ShardMerger.mergeOutputs(shardOutputs, output);
+        }
+        if(configuration.get("manifest") != null) {
+            String manifest = (String) configuration.get("manifest");
+            ShardMerger.mergeManifests(toPaths(existingShardPaths(shards, manifest)), Paths.get(manifest));
+        }
+        if(configuration.get("tokenOutput") != null) {
+            String tokens = (String) configuration.get("tokenOutput");
+            ShardMerger.mergeTokens(toPaths(existingShardPaths(shards, tokens)), Paths.get(tokens));
+        }
+    }
+
+    private static List<String> existingShardPaths(List<Shard> shards, String path) {
+        List<String> existing = new ArrayList<>();
+        for (Shard shard : shards) {
+            String shardPath = shard.pathFor(path);
+            if (Files.exists(Paths.get(shardPath))) {
+                existing.add(shardPath);
+            } else {
+                logger.warn("There is no output of " + shard + " at " + shardPath + " - it is skipped");
+            }
+        }
+        return existing;
+    }
+
+    private static List<Path> toPaths(List<String> paths) {
+        return paths.stream().map(Paths::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the shard this run is part of, see Shard.
+     * @param properties the properties to read "shardIndex" and "shardCount" from
+     * @return the configured shard, Shard.ALL if there is no shardCount
+     * @throws UnsupportedOperationException if there are several shards, but no valid shardIndex
+     */
+    static Shard readShard(Properties properties) {
+        if(properties.get("shardCount") == null) {
+            return Shard.ALL;
+        }
+        int shardCount = Integer.parseInt((String) properties.get("shardCount"));
+        if(shardCount > 1 && properties.get("shardIndex") == null) {
+            throw new UnsupportedOperationException("There was a shardCount but no shardIndex specified in the properties");
+        }
+        int shardIndex = Integer.parseInt((String) properties.getOrDefault("shardIndex", "0"));
+        return new Shard(shardIndex, shardCount);
+    }
+
+    /**
+     * Describes all properties that can change the output of a run.
+     * The seed is left out as the engine keeps it on its own, as are the properties that only write reports.
+     * @param properties the properties to describe
+     * @return the sorted properties as "key=value" lines
+     */
+    static String createConfigurationFingerprint(Properties properties) {
+        Set<String> ignored = Set.of("seed", "incremental", "manifest", "exportPlan", "appliedOutput",
+                "shardIndex", "shardCount");
+        return properties.stringPropertyNames().stream()
+                .filter(key -> !ignored.contains(key))
+                .sorted()
+                .map(key -> key + "=" + properties.getProperty(key))
+                .collect(Collectors.joining("\n"));
+    }
+
     /**
      * This methods tries to read the filepath and overwrites all default properties with the properties found there.
      * If there are any issues, or no properties found in the file, it fails gracefully with a warning.
@@ -150,8 +344,19 @@ public class App {
             throw new UnsupportedOperationException("There was no output-directory specified in the properties");
         }
 
+        // Every shard writes its own outputs, see Shard.pathFor
+        Shard shard = readShard(properties);
+        if (!shard.isAll()) {
+            logger.info("Running " + shard + " - only its files are transformed, the outputs get the suffix of the shard");
+            outputDir = shard.pathFor(outputDir);
+        }
+
         // Build Base-Engine
         Engine engine = new Engine(inputDir,outputDir,registry);
+        if(properties.get("inputFilter") != null) {
+            engine.setInputFilter((String) properties.get("inputFilter"));
+        }
+        engine.setShard(shard);
 
         // Set Transformation-Scopes
         Engine.TransformationScope transformationScope = Engine.TransformationScope.global;
@@ -175,6 +380,77 @@ public class App {
             logger.debug("Did not find property for whether to write Java Output - defaulting to true");
         }
 
+        // Set the plan to export and/or replay
+        if(properties.get("exportPlan") != null) {
+            String exportPlan = shard.pathFor((String) properties.get("exportPlan"));
+            logger.info("The TransformationPlan will be written to " + exportPlan);
+            engine.setPlanExportFile(exportPlan);
+        }
+        if(properties.get("replayPlan") != null) {
+            String replayPlan = (String) properties.get("replayPlan");
+            try {
+                engine.setPlanToReplay(TransformationPlan.readFrom(Paths.get(replayPlan)));
+                logger.info("Replaying the TransformationPlan of " + replayPlan + " - the seed is not used for planning");
+            } catch (IOException e) {
+                throw new UnsupportedOperationException("Could not read the TransformationPlan to replay at " + replayPlan, e);
+            }
+        }
+
+        // Set the manifest to append the results to
+        if(properties.get("manifest") != null) {
+            String manifest = shard.pathFor((String) properties.get("manifest"));
+            logger.info("The applied Transformations will be appended to the manifest " + manifest);
+            engine.setManifestFile(manifest);
+        }
+
+        // Set sniper printing, which only prints the altered parts of files anew
+        if(properties.get("sniperPrinting") != null) {
+            engine.setSniperPrinting(Boolean.parseBoolean((String) properties.get("sniperPrinting")));
+        }
+
+        // Set diff output, which only writes the diffs of the altered files
+        if(properties.get("diffOutput") != null) {
+            engine.setDiffOutput(Boolean.parseBoolean((String) properties.get("diffOutput")));
+        }
+
+        // Set the token output, which writes the tokens of the altered files to a single file
+        if(properties.get("tokenOutput") != null) {
+            engine.setTokenOutput(Paths.get(shard.pathFor((String) properties.get("tokenOutput"))));
+            IdentifierSplitter.Splitting splitting = properties.get("tokenSplitting") != null ?
+                    IdentifierSplitter.Splitting.valueOf((String) properties.get("tokenSplitting"))
+                    : IdentifierSplitter.Splitting.none;
+            boolean lowercase = Boolean.parseBoolean((String) properties.getOrDefault("tokenLowercase", "false"));
+            engine.setIdentifierSplitter(new IdentifierSplitter(splitting, lowercase));
+        }
+
+        // Set the number of variants, each written to variant-k within the output
+        if(properties.get("variants") != null) {
+            int variants = Integer.parseInt((String) properties.get("variants"));
+            logger.info("Producing " + variants + " variants of the input");
+            engine.setVariants(variants);
+        }
+        // Set whether files of variants equal to ones of earlier variants are only referenced instead of written
+        if(properties.get("deduplicateVariants") != null) {
+            engine.setDeduplicateVariants(Boolean.parseBoolean((String) properties.get("deduplicateVariants")));
+        }
+
+        // Set how the input is parsed, e.g. without comments that are removed anyway
+        if(properties.get("parseProfile") != null) {
+            engine.setParseProfile(ParseProfile.valueOf((String) properties.get("parseProfile")));
+        }
+
+        // Set pipelined runs, which overlap reading, transforming and writing the files
+        if(properties.get("pipelineDepth") != null) {
+            engine.setPipelineDepth(Integer.parseInt((String) properties.get("pipelineDepth")));
+        }
+
+        // Set incremental runs, which need to know the configuration to detect changes
+        if(properties.get("incremental") != null && Boolean.parseBoolean((String) properties.get("incremental"))) {
+            logger.info("Running incrementally - only files changed since the last run are transformed");
+            engine.setIncremental(true);
+            engine.setConfigurationFingerprint(createConfigurationFingerprint(properties));
+        }
+
         // Set Seed(s)
         long seed = globalRandomSeed;
         if(properties.get("seed") != null){
@@ -0,0 +1,220 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.support.CsvFormat;
+import com.github.ciselab.lampion.transformations.ApplicabilityReport;
+import com.github.ciselab.lampion.transformations.ApplicabilityScanner;
+import com.github.ciselab.lampion.transformations.Transformer;
+import com.github.ciselab.lampion.transformations.TransformerRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.code.CtComment;
+import spoon.reflect.declaration.CtType;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * This class is a dry-run of the Engine: it reads the code and reports for every registered transformer
+ * how many elements it could transform, without applying (or printing) anything.
+ * It is meant to be run before expensive jobs, to choose the transformers, the number of transformations and the scope.
+ *
+ * The code is read without classpath, and without comments if no transformer looks for comments,
+ * as both make reading faster and the transformers only need the structure of the code to find candidates.
+ *
+ * The results are written as two CSV files into the output directory:
+ * - applicability_per_file.csv with one line per file and transformer
+ * - applicability_per_transformer.csv with one line per transformer, summed up over all files
+ * Transformers without a CandidateQuery (see Transformer) only report whether they are applicable, not their candidates.
+ */
+public class ApplicabilityAnalysis {
+    private static Logger logger = LogManager.getLogger(ApplicabilityAnalysis.class);
+
+    public static final String PER_FILE_CSV = "applicability_per_file.csv";
+    public static final String PER_TRANSFORMER_CSV = "applicability_per_transformer.csv";
+
+    private final String codeDirectory;
+    private final String outputDirectory;
+    private final TransformerRegistry registry;
+
+    private String inputFilter = null;
+    private Shard shard = Shard.ALL;
+
+    // The reports per file, filled by "run", sorted by file
+    private Map<String, List<ApplicabilityReport>> reportsPerFile = new TreeMap<>();
+
+    public ApplicabilityAnalysis(String codeDirectory, String outputDirectory, TransformerRegistry registry) {
+        if (codeDirectory == null || codeDirectory.isBlank()) {
+            throw new UnsupportedOperationException("Code Directory cannot be null or empty");
+        }
+        if (outputDirectory == null || outputDirectory.isBlank()) {
+            throw new UnsupportedOperationException("Output Directory cannot be null or empty");
+        }
+        if (registry == null) {
+            throw new UnsupportedOperationException("Registry cannot be null");
+        }
+        this.codeDirectory = codeDirectory;
+        this.outputDirectory = outputDirectory;
+        this.registry = registry;
+    }
+
+    /**
+     * @param inputFilter a glob to filter the input files by their relative path, null to read all java files
+     */
+    public void setInputFilter(String inputFilter) {
+        this.inputFilter = inputFilter;
+    }
+
+    /**
+     * @param shard the shard of the input files to analyze, Shard.ALL to analyze all files
+     * @throws UnsupportedOperationException if the shard is null
+     */
+    public void setShard(Shard shard) {
+        if (shard == null) {
+            throw new UnsupportedOperationException("Shard cannot be null, use Shard.ALL to analyze all files");
+        }
+        this.shard = shard;
+    }
+
+    /**
+     * Reads the code, checks every registered transformer on every toplevel type and writes the CSV files.
+     * @throws IOException if the CSV files cannot be written
+     */
+    public void run() throws IOException {
+        logger.info("Starting Applicability-Analysis with Registry {} reading from {}", registry.name, codeDirectory);
+        Instant start = Instant.now();
+
+        Launcher launcher = new Launcher();
+        // All files are read, so the types of the shard can resolve the symbols they use from other files
+        InputSources.addTo(launcher, codeDirectory, inputFilter);
+        launcher.getEnvironment().setNoClasspath(true);
+        launcher.getEnvironment().setCommentEnabled(needsComments());
+        CtModel codeRoot = launcher.buildModel();
+
+        Instant endOfReading = Instant.now();
+        logger.info("Reading the code took {}", Duration.between(start, endOfReading));
+
+        ApplicabilityScanner scanner = new ApplicabilityScanner(registry);
+        reportsPerFile = new TreeMap<>();
+        for (CtType<?> type : codeRoot.getAllTypes()) {
+            String fileKey = getFileKey(type);
+            if (shard.contains(fileKey)) {
+                reportsPerFile.computeIfAbsent(fileKey, k -> new ArrayList<>()).add(scanner.analyze(type));
+            }
+        }
+
+        Path outputPath = Paths.get(outputDirectory);
+        Files.createDirectories(outputPath);
+        writePerFile(outputPath.resolve(PER_FILE_CSV));
+        writePerTransformer(outputPath.resolve(PER_TRANSFORMER_CSV));
+
+        logger.info("Analyzed {} files in {}, wrote results to {}",
+                reportsPerFile.size(), Duration.between(endOfReading, Instant.now()), outputPath);
+    }
+
+    /**
+     * Returns the number of candidates of the transformer summed up over all analyzed files.
+     * Requires "run" to be called first.
+     * @param transformer a registered transformer
+     * @return the number of candidates, empty if the transformer has no CandidateQuery
+     */
+    public OptionalLong getTotalCandidates(Transformer transformer) {
+        if (transformer.getCandidateQuery().isEmpty()) {
+            return OptionalLong.empty();
+        }
+        long total = 0;
+        for (List<ApplicabilityReport> reports : reportsPerFile.values()) {
+            total += countCandidates(reports, transformer);
+        }
+        return OptionalLong.of(total);
+    }
+
+    /**
+     * @return the keys of all analyzed files (their path relative to the code directory), sorted
+     */
+    public Set<String> getAnalyzedFiles() {
+        return Collections.unmodifiableSet(reportsPerFile.keySet());
+    }
+
+    /**
+     * Comments are only needed if any transformer looks for them (or it is unknown what it looks for).
+     */
+    private boolean needsComments() {
+        for (Transformer t : registry.getRegisteredTransformers()) {
+            boolean looksForComments = t.getCandidateQuery()
+                    .map(q -> q.getKinds().stream().anyMatch(
+                            k -> k.isAssignableFrom(CtComment.class) || CtComment.class.isAssignableFrom(k)))
+                    .orElse(true);
+            if (looksForComments) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getFileKey(CtType<?> type) {
+        if (type.getPosition().isValidPosition() && type.getPosition().getFile() != null) {
+            return InputSources.relativePathOf(type.getPosition().getFile(), codeDirectory);
+        }
+        return type.getQualifiedName();
+    }
+
+    private static long countCandidates(List<ApplicabilityReport> reports, Transformer transformer) {
+        long count = 0;
+        for (ApplicabilityReport report : reports) {
+            count += report.getCandidateCount(transformer).orElse(0);
+        }
+        return count;
+    }
+
+    private static boolean isApplicable(List<ApplicabilityReport> reports, Transformer transformer) {
+        return reports.stream().anyMatch(r -> r.isApplicable(transformer));
+    }
+
+    private String transformerColumns(int index, Transformer transformer) {
+        return index + "," + transformer.getClass().getSimpleName();
+    }
+
+    private void writePerFile(Path file) throws IOException {
+        List<Transformer> transformers = registry.getRegisteredTransformers();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("file,transformerIndex,transformer,applicable,candidates");
+            writer.newLine();
+            for (var entry : reportsPerFile.entrySet()) {
+                for (int i = 0; i < transformers.size(); i++) {
+                    Transformer t = transformers.get(i);
+                    String candidates = t.getCandidateQuery().isPresent() ?
+                            String.valueOf(countCandidates(entry.getValue(), t)) : "";
+                    writer.write(String.join(",", CsvFormat.quote(entry.getKey()), transformerColumns(i, t),
+                            String.valueOf(isApplicable(entry.getValue(), t)), candidates));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    private void writePerTransformer(Path file) throws IOException {
+        List<Transformer> transformers = registry.getRegisteredTransformers();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("transformerIndex,transformer,files,applicableFiles,candidates");
+            writer.newLine();
+            for (int i = 0; i < transformers.size(); i++) {
+                Transformer t = transformers.get(i);
+                long applicableFiles = reportsPerFile.values().stream().filter(r -> isApplicable(r, t)).count();
+                OptionalLong candidates = getTotalCandidates(t);
+                writer.write(String.join(",", transformerColumns(i, t), String.valueOf(reportsPerFile.size()),
+                        String.valueOf(applicableFiles),
+                        candidates.isPresent() ? String.valueOf(candidates.getAsLong()) : ""));
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -1,16 +1,32 @@
 package com.github.ciselab.lampion.program;
 
+import com.github.ciselab.lampion.program.manifest.ManifestRecord;
+import com.github.ciselab.lampion.program.manifest.ManifestWriter;
+import com.github.ciselab.lampion.program.output.OutputSinks;
+import com.github.ciselab.lampion.program.tokens.IdentifierSplitter;
+import com.github.ciselab.lampion.support.ParseEvent;
+import com.github.ciselab.lampion.support.SeedDerivation;
+import com.github.ciselab.lampion.support.TransformationEvent;
 import com.github.ciselab.lampion.transformations.*;
 import com.github.ciselab.lampion.transformations.transformers.RemoveAllCommentsTransformer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.StringMapMessage;
 import spoon.Launcher;
 import spoon.SpoonException;
+import spoon.compiler.Environment;
 import spoon.reflect.CtModel;
+import spoon.reflect.cu.SourcePosition;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
+import spoon.support.modelobs.ChangeCollector;
+import spoon.support.sniper.SniperJavaPrettyPrinter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
@@ -27,15 +43,22 @@ import java.util.stream.Collectors;
  * If others are wanted, a distribution transformation is required, see "setDistribution".
  *
  * The primary method is "run" and has similar comments laying out what's happening.
+ * In short, it first plans all transformations (see TransformationPlan) and then applies the plan file by file.
  */
 public class Engine {
+    // The name of the logger of the structured transformation events, see log4j2.xml for where they are written to
+    public static final String TRANSFORMATION_LOGGER = "com.github.ciselab.lampion.Transformations";
+
     private static Logger logger = LogManager.getLogger(Engine.class);
+    // A structured event per transformation attempt
+    private static Logger transformationLogger = LogManager.getLogger(TRANSFORMATION_LOGGER);
 
     String codeDirectory;
     String outputDirectory;
     TransformerRegistry registry;
 
-    Random random = new Random(App.globalRandomSeed);
+    // The seed of the run, every random decision derives its own seed from it, see "SeedDerivation"
+    long seed = App.globalRandomSeed;
 
     // The scope by which to quantify the number of transformations, "setNumberOfTransformationsPerScope" for more info
     public enum TransformationScope {
@@ -53,11 +76,8 @@ public class Engine {
     // if e.g. a transformer has 2 and another one has 1, then the 2-transformer is applied twice as much.
     Map<Transformer,Integer> distribution;
 
-    // These are helpers for "perClassEach" and "perMethodEach"
-    // To iterate over the classes and methods until there are no more transformations
-    private int classIndex = 0;
+    // The classes and methods found in the code, the "Each"-Scopes iterate over them and apply transformations in batches
     private List<CtClass> classes = new ArrayList<>();
-    private int methodIndex = 0;
     private List<CtMethod> methods = new ArrayList<>();
 
     private boolean removeAllComments = false; // Whether or not to remove all comments before printing
@@ -65,6 +85,33 @@ public class Engine {
     private boolean writeJavaOutput = true; // This switch enables/disables pretty printing of altered java files
 
     private List<TransformationResult> finishedResults = new ArrayList<>();
+    private long malformedResults = 0;              // The empty results of the current run, counted while applying
+
+    private String inputFilter = null;              // If set, only files whose path matches this glob are read
+    private Shard shard = Shard.ALL;                // If sharded, only the files of this shard are transformed
+
+    private TransformationPlan planToReplay = null; // If set, this plan is applied instead of planning freshly
+    private Path planExportFile = null;             // If set, the plan of every run is written to this file
+    private TransformationPlan lastPlan = null;
+
+    private Path manifestFile = null;               // If set, the results of every run are appended to this manifest
+
+    private boolean incremental = false;            // If set, only files changed since the last run are transformed
+    private String configurationFingerprint = "";   // Further configuration to consider for incremental runs
+
+    private int variants = 1;                       // If more than 1, this many variants are produced from one read
+    private boolean deduplicateVariants = false;    // If set, outputs equal to one of an earlier variant are not written
+
+    private boolean sniperPrinting = false;         // If set, only the altered parts of files are printed anew
+
+    private boolean diffOutput = false;             // If set, only the diffs of altered files are written
+
+    private int pipelineDepth = 0;                  // If set, the files are read, transformed and written in a pipeline
+
+    private ParseProfile parseProfile = ParseProfile.full;  // Which parts of the input are parsed into the model
+
+    private Path tokenOutput = null;                // If set, the tokens of the altered files are written to this file
+    private IdentifierSplitter identifierSplitter = new IdentifierSplitter(IdentifierSplitter.Splitting.none, false);
 
     public Engine(String codeDirectory, String outputDirectory, TransformerRegistry registry){
         // Sanity Checks
@@ -78,7 +125,7 @@ public class Engine {
             throw new UnsupportedOperationException("Registry cannot be null");
         }
         if (registry.getRegisteredTransformers().size() == 0) {
-            logger.warn("Received Registry " + registry.name + " without any registered transformers.");
+            logger.warn("Received Registry {} without any registered transformers.", registry.name);
         }
         // Setting fields
         this.codeDirectory = codeDirectory;
@@ -92,18 +139,129 @@ public class Engine {
     }
 
     public void run(){
-        logger.info("Starting Engine with Registry " + registry.name + "["+registry.getRegisteredTransformers().size()
-            + " transformers] reading from " + codeDirectory + " writing to " + outputDirectory);
+        logger.info("Starting Engine with Registry {}[{} transformers] reading from {} writing to {}",
+                registry.name, registry.getRegisteredTransformers().size(), codeDirectory, outputDirectory);
 
         Instant startOfEngine = Instant.now();
+        if (!shard.isAll() && !isEachScope(scope)) {
+            logger.warn("Running {} with scope {}, which distributes the transformations "
+                    + "over all files - the union of the shards differs from a single run", shard, scope);
+        }
+        if (pipelineDepth > 0) {
+            if (canRunPipelined()) {
+                new StagedPipeline(this, inputFilter, shard, writeJavaOutput, pipelineDepth).run();
+                return;
+            }
+            logger.warn("Pipelined runs need an \"Each\"-Scope and support no variants, incremental runs, plans, "
+                    + "manifests, tokens, diffs or sniper printing - running in phases instead");
+        }
         // Step 1:
         // Read the Code in
         Launcher launcher = new spoon.Launcher();
-        launcher.addInputResource(codeDirectory);
+        configureParsing(launcher.getEnvironment());
+        // For incremental runs, only the files that changed since the last run are transformed
+        IncrementalRun incrementalRun = null;
+        try {
+            if (isIncrementalRun()) {
+                incrementalRun = IncrementalRun.start(this, inputFilter, shard);
+                if (!incrementalRun.hasChanges()) {
+                    logger.info("No input file changed since the last run - nothing to transform.");
+                    finishedResults = new ArrayList<>();
+                    incrementalRun.finish(List.of(), writesDiffs());
+                    return;
+                }
+            }
+            // The files of other shards and the unchanged files are read as well, only to resolve the symbols
+            // the transformed files use from them (e.g. inherited fields) - they are neither transformed nor printed
+            InputSources.addTo(launcher, codeDirectory, inputFilter);
+        } catch (IOException e) {
+            logger.error("Could not read the input {} - exiting early.", codeDirectory, e);
+            return;
+        }
         // The CodeRoot is the highest level of available information regarding the AST
+        ParseEvent parseEvent = new ParseEvent();
+        parseEvent.begin();
         CtModel codeRoot = launcher.buildModel();
-        // With the imports set to true, on second application the import will disappear, making Lambdas uncompilable.
-        launcher.getFactory().getEnvironment().setAutoImports(false);
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.input = codeDirectory;
+            parseEvent.types = codeRoot.getAllTypes().size();
+            parseEvent.commit();
+        }
+
+        if (variants > 1) {
+            if (planToReplay != null || planExportFile != null) {
+                logger.warn("Plans are not replayed or exported for variants, every variant makes its own plan");
+            }
+            // The variants append their results to the manifest themselves, each with its number
+            finishedResults = new VariantRunner(this, variants, deduplicateVariants, writeJavaOutput,
+                    sniperPrinting, diffOutput, tokenOutput, createOutputWriter()).run(codeRoot);
+            return;
+        }
+        transformAndWrite(codeRoot, launcher, incrementalRun, startOfEngine);
+    }
+
+    /**
+     * Applies the transformations to a model that was read by someone else, without writing anything.
+     * The transformed model can be printed with "OutputWriter.print", see LampionTransformer.
+     * Neither the output, nor the manifest nor the tokens are written, but the engine keeps their settings.
+     *
+     * @param codeRoot the model to transform, it is altered
+     */
+    void transformInMemory(CtModel codeRoot) {
+        classes = codeRoot.getElements(c -> c instanceof CtClass);
+        methods = codeRoot.getElements(c -> c instanceof CtMethod);
+        logger.info("Found {} Classes and {} Methods", classes.size(), methods.size());
+        if (classes.size() == 0 || methods.size() == 0) {
+            logger.error("Either found no classes or no methods - nothing to transform.");
+            finishedResults = new ArrayList<>();
+            return;
+        }
+        finishedResults = withoutEmptyResults(transform(codeRoot.getRootPackage().getFactory().getEnvironment(),
+                Instant.now()));
+    }
+
+    /**
+     * Applies the transformations to some toplevel types, like "transformInMemory", e.g. to a file of a pipelined run.
+     * Only the classes and methods within the types are looked up and altered, the rest of their model
+     * is only read for its symbols.
+     * Unlike a whole model, the types may have no classes or no methods, then the "Each"-Scopes have nothing to do.
+     *
+     * @param types the toplevel types to transform, they are altered
+     */
+    void transformInMemory(List<CtType<?>> types) {
+        classes = new ArrayList<>();
+        methods = new ArrayList<>();
+        for (CtType<?> type : types) {
+            classes.addAll(type.getElements(c -> c instanceof CtClass));
+            methods.addAll(type.getElements(c -> c instanceof CtMethod));
+        }
+        // The other scopes pick random classes, so they need at least one
+        if (types.isEmpty() || (classes.isEmpty() && !isEachScope(scope))) {
+            finishedResults = new ArrayList<>();
+            return;
+        }
+        finishedResults = withoutEmptyResults(transform(types.get(0).getFactory().getEnvironment(), Instant.now()));
+    }
+
+    /**
+     * Applies the transformations to the read model and writes it, see "run" for the reading.
+     * The variants of a VariantRunner are transformed and written with it as well.
+     *
+     * @param codeRoot the read model, it is altered
+     * @param launcher the launcher that read the model, null if the model was not read by a launcher (e.g. a copy)
+     * @param incrementalRun the started incremental run, null for other runs
+     * @param startOfEngine the start of the run, for logging
+     */
+    void transformAndWrite(CtModel codeRoot, Launcher launcher, IncrementalRun incrementalRun, Instant startOfEngine) {
+        // Only the types of the transformed files are altered and printed, the others are only read for their symbols
+        List<CtType<?>> transformedTypes = getTransformedTypes(codeRoot, incrementalRun);
+        Environment environment = codeRoot.getRootPackage().getFactory().getEnvironment();
+        // The sniper printer needs to know every change, so it is attached before anything is transformed
+        if (sniperPrinting) {
+            new ChangeCollector().attachTo(environment);
+            environment.setPrettyPrinterCreator(() -> new SniperJavaPrettyPrinter(environment));
+        }
 
         // Note:
         // It is important that methods are instantiated here and not while transformations are running,
@@ -111,78 +269,136 @@ public class Engine {
         classes = codeRoot.getElements(c -> c instanceof CtClass);
         methods = codeRoot.getElements(c -> c instanceof CtMethod);
 
-        logger.info("Found " + classes.size() + " Classes and "
-                + codeRoot.getElements(f -> f instanceof CtMethod).size() + " Methods");
-        if(classes.size() == 0 || methods.size() == 0) {
+        logger.info("Found {} Classes and {} Methods", classes.size(), methods.size());
+        // Incremental runs still have to print the changed files, even if there is nothing to transform
+        if((classes.size() == 0 || methods.size() == 0) && incrementalRun == null) {
             logger.error("Either found no classes or no methods - exiting early. " +
                     "Check your configuration, whether it points to actual files.");
             return;
         }
+        boolean transformsAllTypes = transformedTypes.size() == codeRoot.getAllTypes().size();
+        if (!transformsAllTypes) {
+            Set<CtType<?>> transformed = Collections.newSetFromMap(new IdentityHashMap<>());
+            transformed.addAll(transformedTypes);
+            classes = classes.stream().filter(c -> transformed.contains(c.getTopLevelType())).collect(Collectors.toList());
+            methods = methods.stream().filter(m -> transformed.contains(m.getTopLevelType())).collect(Collectors.toList());
+            logger.info("Transforming {} Classes and {} Methods of {} Types", classes.size(), methods.size(),
+                    transformedTypes.size());
+        }
 
         // Step 2:
         // Apply the Transformations according to distribution
+        List<TransformationResult> results = transform(environment, startOfEngine);
+        Instant endOfTransformations = Instant.now();
+
+        // Step 3:
+        // Write Transformed Code
+        // Spoon's pretty-printing prints all types of the model, so the launcher is only used if all are transformed
+        createOutputWriter().write(transformedTypes, transformsAllTypes ? launcher : null, writeJavaOutput);
+
+        // Step 3.1:
+        // Remember the changed files and their outputs for the next incremental run
+        if (incrementalRun != null) {
+            try {
+                incrementalRun.finish(transformedTypes, writesDiffs());
+            } catch (IOException e) {
+                logger.error("Could not write the state of this incremental run, the next run will transform all files", e);
+            }
+        }
+
+        finishedResults = withoutEmptyResults(results);
+
+        // Step 4:
+        // Append the results to the manifest
+        appendToManifest(finishedResults, ManifestRecord.NO_VARIANT);
+
+        Instant endOfWriting = Instant.now();
+        logger.info("Writing files took {} seconds", Duration.between(endOfTransformations,endOfWriting).getSeconds());
+        logger.info("Engine ran successfully");
+    }
+
+    /**
+     * Applies the transformations to the current classes and methods, without writing anything.
+     * Only the classes and methods and the elements within them are altered.
+     *
+     * @param environment the environment of the model of the classes and methods
+     * @param startOfEngine the start of the run, for logging
+     * @return the results of all transformations, including empty ones
+     */
+    private List<TransformationResult> transform(Environment environment, Instant startOfEngine) {
+        // With the imports set to true, on second application the import will disappear, making Lambdas uncompilable.
+        environment.setAutoImports(false);
+        // Every run starts with a fresh context, so no state of earlier runs (e.g. altered parameters) is carried over
+        TransformationContext context = new TransformationContext();
+        registry.getRegisteredTransformers().forEach(t -> t.setContext(context));
         List<TransformationResult> results = new ArrayList<>();
+        malformedResults = 0;
         // Step 2.1:
         // set the total number of transformations regarding the scope
         long totalTransformationsToDo = switch (scope) {
             case global -> numberOfTransformationsPerScope;
-            case perMethod -> numberOfTransformationsPerScope * codeRoot.filterChildren(c -> c instanceof CtMethod).list().size();
-            case perClass -> numberOfTransformationsPerScope * codeRoot.filterChildren(c -> c instanceof CtClass).list().size();
-            case perMethodEach -> numberOfTransformationsPerScope * codeRoot.filterChildren(c -> c instanceof CtMethod).list().size();
-            case perClassEach -> numberOfTransformationsPerScope * codeRoot.filterChildren(c -> c instanceof CtClass).list().size();
+            case perMethod -> numberOfTransformationsPerScope * methods.size();
+            case perClass -> numberOfTransformationsPerScope * classes.size();
+            case perMethodEach -> numberOfTransformationsPerScope * methods.size();
+            case perClassEach -> numberOfTransformationsPerScope * classes.size();
             default ->  0;
         };
-        logger.info("Applying " + totalTransformationsToDo + " Transformations evenly distributed amongst all classes");
+        logger.info("Applying {} Transformations evenly distributed amongst all classes", totalTransformationsToDo);
         // Step 2.2:
         // For picking transformers, a simple approach was taken to quantify them according to distribution
         // make a new list of transformers, where every transformer is added a number of times their distribution
         // then, pick a random number between 0 and list.size() and this is your transformer!
+        // The list follows the order of the registry, as the order of the distribution-map differs between runs
         List<Transformer> quantifiedTransformers = new ArrayList<>();
-        for (var entry : distribution.entrySet()) {
-            for (int i = 0; i < entry.getValue(); i++) {
-                quantifiedTransformers.add(entry.getKey());
+        for (Transformer t : registry.getRegisteredTransformers()) {
+            for (int i = 0; i < distribution.getOrDefault(t,0); i++) {
+                quantifiedTransformers.add(t);
             }
         }
         // Step 2.3:
+        // Plan all transformations before applying any of them:
         // For every to-be-applied transformation
         // Pick the next (random) element
         // Pick a random transformer
-        // apply the transformer and add the result to the aggregation
-        long transformationFailures = 0;
-        for (long a = 0; a < totalTransformationsToDo; a++) {
+        // derive the seed the transformer is applied with
+        // Every decision gets its own random numbers, derived from the seed and keys identifying the decision.
+        // This way, a decision does not depend on how many random numbers were drawn before it.
+        TransformationPlan plan;
+        if (planToReplay != null) {
+            plan = planToReplay;
+            if (plan.getScope() != scope) {
+                logger.warn("Replaying a plan made for scope {} while the Engine is set to {}", plan.getScope(), scope);
+            }
+            logger.info("Replaying a plan of {} Transformations", plan.getTotalTransformations());
+        } else {
+            plan = createPlan(quantifiedTransformers, totalTransformationsToDo);
+        }
+        lastPlan = plan;
+        if (planExportFile != null) {
             try {
-                CtElement toAlter = getNextCtElement();
-
-                int index = random.nextInt(quantifiedTransformers.size());
-                Transformer transformer = quantifiedTransformers.get(index);
-
-                TransformationResult result = transformer.applyAtRandom(toAlter);
-                results.add(result);
-
-                if (result != null && ! result.equals(new EmptyTransformationResult())){
-                    // As we removed the Manifest (for now?) we just log a debug statement of what was done
-                    logger.debug("Successfully applied " + result.getTransformationName() +
-                            " to Element(Hash):" + result.getTransformedElement().toString().hashCode());
-                }
-            } catch (SpoonException spoonException){
-                //TODO: Redo-Logic
-                transformationFailures++;
+                plan.writeTo(planExportFile);
+                logger.info("Wrote the TransformationPlan to {}", planExportFile);
+            } catch (IOException e) {
+                logger.error("Could not write the TransformationPlan to {}", planExportFile, e);
             }
         }
+        // Then apply the plan grouped by file, so every file is altered in one go
+        // and the transformations do not hop between files
+        long transformationFailures = executePlan(plan, context, results);
+
         // Step 2.4:
         // Repair parent relationships which may have broken
         // classes.stream().forEach(c -> c.updateAllParentsBelow());
 
         Instant endOfTransformations = Instant.now();
-        logger.info("Applying the Transformations took "
-                + Duration.between(startOfEngine,endOfTransformations) + " seconds");
-        logger.info("Of the " + results.size() + " Transformations applied, "
-                + results.stream().filter(u -> u.equals(new EmptyTransformationResult())).count() + " where malformed");
-        logger.info(transformationFailures + " transformations produced (Spoon-)errors");
+        logger.info("Applying the Transformations took {} seconds", Duration.between(startOfEngine,endOfTransformations));
+        // The malformed results are counted while applying, so the results are not scanned again
+        logger.info("Of the {} Transformations applied, {} where malformed", results.size(), malformedResults);
+        logger.info("{} transformations produced (Spoon-)errors", transformationFailures);
 
         // Step 2.5:
-        // If enabled, remove all comments (by setting them invisible)
-        if (removeAllComments) {
+        // If enabled, remove all comments (by setting them invisible) - unless they were not parsed at all
+        if (removeAllComments && environment.isCommentsEnabled()) {
             RemoveAllCommentsTransformer commentRemover = new RemoveAllCommentsTransformer();
             // The Comment-Remover will inherit all compilation problems remaining - hence it does not try to compile
             // But it is not the comment-remover's fault, this would have to be fixed somewhere else
@@ -198,57 +414,539 @@ public class Engine {
             }
         }
         classes.forEach(c -> c.updateAllParentsBelow());
+        return results;
+    }
 
-        // Step 3:
-        // Write Transformed Code
-        if (writeJavaOutput) {
-            logger.debug("Starting to pretty-print  altered files to " + outputDirectory);
-            launcher.setSourceOutputDirectory(outputDirectory);
-            launcher.prettyprint();
-        } else {
-            logger.info("Writing the java files has been disabled for this run.");
+    private static List<TransformationResult> withoutEmptyResults(List<TransformationResult> results) {
+        return results.stream()
+                // Filter out Empty Results
+                .filter(l -> ! (l instanceof EmptyTransformationResult))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Appends the results to the manifest, if one is set.
+     * @param results the results to append
+     * @param variant the variant that produced the results, ManifestRecord.NO_VARIANT for runs without variants
+     */
+    void appendToManifest(List<TransformationResult> results, int variant) {
+        if (manifestFile == null) {
+            return;
+        }
+        try (ManifestWriter manifest = new ManifestWriter(manifestFile)) {
+            for (TransformationResult result : results) {
+                manifest.append(ManifestRecord.of(result, codeDirectory, variant));
+            }
+            logger.info("Appended {} Transformations to the manifest {}", manifest.getWrittenRecords(), manifestFile);
+        } catch (IOException e) {
+            logger.error("Could not write the manifest {}", manifestFile, e);
         }
+    }
 
-        finishedResults = results.stream()
-                // Filter out Empty Results
-                .filter(l -> ! l.equals(new EmptyTransformationResult()))
+    /**
+     * Configures the environment of a launcher with the parse profile of this engine, before it builds the model.
+     * Only the transformers with a share in the distribution are active.
+     * @param environment the environment of the launcher
+     * @return true if comments are parsed, false otherwise
+     */
+    boolean configureParsing(Environment environment) {
+        List<Transformer> activeTransformers = registry.getRegisteredTransformers().stream()
+                .filter(t -> distribution.getOrDefault(t, 0) > 0)
                 .collect(Collectors.toList());
+        // The sniper printer copies the untouched text with its comments, they are only removed if they are parsed
+        return parseProfile.configure(environment, activeTransformers, removeAllComments && !sniperPrinting);
+    }
 
-        Instant endOfWriting = Instant.now();
-        logger.info("Writing files took " + Duration.between(endOfTransformations,endOfWriting).getSeconds() + " seconds");
-        logger.info("Engine ran successfully");
+    /**
+     * Creates an engine with the transformation settings of this engine but its own transformers,
+     * e.g. for a variant or a worker of a pipelined run. Nothing but the transformations and the
+     * transformed files (input filter and shard) is configured.
+     * @param workerSeed the seed of the new engine, its transformers are created with it
+     * @param workerOutput the output directory of the new engine
+     */
+    Engine createWorkerEngine(long workerSeed, String workerOutput) {
+        TransformerRegistry workerRegistry = registry.createWorkerRegistry(workerSeed);
+        Engine worker = new Engine(codeDirectory, workerOutput, workerRegistry);
+        // The distribution is kept per position, as the worker has its own transformer instances
+        worker.distribution = new HashMap<>();
+        for (int i = 0; i < registry.getRegisteredTransformers().size(); i++) {
+            worker.distribution.put(workerRegistry.getRegisteredTransformers().get(i),
+                    distribution.getOrDefault(registry.getRegisteredTransformers().get(i), 0));
+        }
+        worker.scope = scope;
+        worker.numberOfTransformationsPerScope = numberOfTransformationsPerScope;
+        worker.removeAllComments = removeAllComments;
+        worker.parseProfile = parseProfile;
+        // The worker reads the same files and only transforms and prints the ones of the shard
+        worker.inputFilter = inputFilter;
+        worker.shard = shard;
+        worker.seed = workerSeed;
+        return worker;
+    }
+
+    /**
+     * The files of a pipelined run are parsed, transformed and printed one by one, see StagedPipeline.
+     * Every file sees the symbols of all input files, but this only gives the same as a run in phases
+     * if the transformations of a file only depend on the file, and if nothing needs all files at once.
+     * @return true if this run can be pipelined
+     */
+    private boolean canRunPipelined() {
+        return isEachScope(scope) && variants == 1 && !incremental && planToReplay == null && planExportFile == null
+                && manifestFile == null && tokenOutput == null && !writesDiffs() && !sniperPrinting;
+    }
+
+    /**
+     * Incremental runs are only possible if the transformations of a file only depend on the file,
+     * and the outputs of unchanged files can be left in place.
+     * @return true if this run is incremental, false if it has to transform all files
+     */
+    private boolean isIncrementalRun() {
+        if (!incremental) {
+            return false;
+        }
+        String reason = null;
+        if (!isEachScope(scope)) {
+            reason = "the scope " + scope + " distributes the transformations over all files";
+        } else if (planToReplay != null) {
+            reason = "a plan is replayed";
+        } else if (variants > 1) {
+            reason = "variants are produced";
+        } else if (!writeJavaOutput) {
+            reason = "writing the java files is disabled";
+        } else if (InputSources.isArchive(codeDirectory) || OutputSinks.isArchive(outputDirectory)) {
+            reason = "archives are read or written as a whole";
+        }
+        if (reason != null) {
+            logger.warn("Incremental runs are not possible as {} - transforming all files", reason);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Hashes everything that changes the transformations of a file, besides the file and the seed:
+     * the scope, the number of transformations, the transformers with their distribution,
+     * and the configuration fingerprint (e.g. the settings of the transformers).
+     * @return the hash of the configuration
+     */
+    String getConfigurationHash() {
+        StringBuilder description = new StringBuilder();
+        description.append(scope).append('\t').append(numberOfTransformationsPerScope).append('\t').append(removeAllComments)
+                .append('\t').append(sniperPrinting).append('\t').append(diffOutput);
+        for (Transformer t : registry.getRegisteredTransformers()) {
+            description.append('\t').append(t.getClass().getName()).append('=').append(distribution.getOrDefault(t, 0));
+        }
+        description.append('\t').append(configurationFingerprint);
+        return IncrementalState.hash(description.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param codeRoot the read model
+     * @param incrementalRun the started incremental run, null for other runs
+     * @return the toplevel types of the model that are transformed and printed in this run, see "isTransformed"
+     */
+    List<CtType<?>> getTransformedTypes(CtModel codeRoot, IncrementalRun incrementalRun) {
+        return codeRoot.getAllTypes().stream()
+                .filter(t -> isTransformed(t, incrementalRun))
+                .collect(Collectors.toList());
     }
 
     /**
-     * Looks in the initially found classes/methods for the next specified element according to specified scope.
-     * Classes and Methods are returned in a order dependent from structure of the program,
-     * but are always in the same order (for multiple iterations).
+     * The model holds all input files, so the symbols of other files resolve,
+     * but a run only transforms and prints the files of its shard, and incremental runs only the changed ones.
+     * Types without a file (e.g. created ones) are always transformed.
+     * @param type a toplevel type of the model
+     * @param incrementalRun the started incremental run, null for other runs
+     * @return true if the type is transformed and printed in this run
+     */
+    private boolean isTransformed(CtType<?> type, IncrementalRun incrementalRun) {
+        SourcePosition position = type.getPosition();
+        if ((shard.isAll() && incrementalRun == null) || !position.isValidPosition() || position.getFile() == null) {
+            return true;
+        }
+        String relativePath = InputSources.relativePathOf(position.getFile(), codeDirectory);
+        return shard.contains(relativePath) && (incrementalRun == null || incrementalRun.transforms(relativePath));
+    }
+
+    /**
+     * @return a writer with the output settings of this engine
+     */
+    private OutputWriter createOutputWriter() {
+        return new OutputWriter(codeDirectory, outputDirectory, sniperPrinting, writesDiffs(), tokenOutput,
+                identifierSplitter);
+    }
+
+    private static boolean isEachScope(TransformationScope scope) {
+        return scope == TransformationScope.perClassEach || scope == TransformationScope.perMethodEach;
+    }
+
+    /**
+     * Plans all transformations of a run, without applying (or altering) anything.
      *
-     * Heavily relies on object-level index counters and methods. If there are issues, look there first.
-     * The object-level indices are also handled in this method.
+     * For the "Each"-Scopes, the transformers are picked per element, and every picked transformer gets one entry
+     * holding how often it is applied to the element.
+     * For the other scopes, every transformation picks a random class and a random transformer and gets its own entry.
      *
-     * @return the next element to alter, according to scope.
-     */
-    private CtElement getNextCtElement() {
-        CtElement toAlter = null;
-        switch (scope) {
-            // For these, just pick random classes and methods
-            case global,perMethod,perClass : toAlter = classes.get(random.nextInt(classes.size())); break;
-            case perMethodEach: {
-                // Pick next method
-                toAlter = methods.get(methodIndex);
-                // Move or reset methodIndex
-                methodIndex = methodIndex < methods.size()-1 ? methodIndex + 1 : 0;
-            } break;
-            case perClassEach: {
-                // Pick (specific) next class
-                toAlter = classes.get(classIndex);
-                // Move or reset classIndex
-                classIndex = classIndex < classes.size()-1 ? classIndex + 1 : 0;
-            } break;
-            default: logger.error("Found unknown/unhandled Scope in Engine");
-        }
-        return toAlter;
+     * @param quantifiedTransformers the transformers to pick from, quantified according to distribution
+     * @param totalTransformations the number of transformations for the randomly distributed scopes
+     * @return the plan for the current scope, classes and methods
+     */
+    private TransformationPlan createPlan(List<Transformer> quantifiedTransformers, long totalTransformations) {
+        TransformationPlan plan = new TransformationPlan(scope);
+        if (quantifiedTransformers.isEmpty()) {
+            logger.warn("There are no transformers to pick from - the TransformationPlan is empty");
+            return plan;
+        }
+        if (isEachScope(scope)) {
+            TransformationPlan.TargetKind kind = scope == TransformationScope.perClassEach ?
+                    TransformationPlan.TargetKind.CLASS : TransformationPlan.TargetKind.METHOD;
+            List<? extends CtElement> elementsToAlter = kind == TransformationPlan.TargetKind.CLASS ? classes : methods;
+            // The elements are identified by their file (the toplevel type) and their index within it,
+            // so that the decisions for an element do not depend on any other file
+            Map<String,Integer> elementsSeenPerFile = new HashMap<>();
+            for (CtElement toAlter : elementsToAlter) {
+                String sourceKey = getSourceKey(toAlter);
+                int localIndex = elementsSeenPerFile.merge(sourceKey, 1, Integer::sum) - 1;
+                // Pick the transformers first, keeping the order of first appearance to be reproducible
+                Random pickRandom = SeedDerivation.random(seed, scope.name(), sourceKey, localIndex);
+                Map<Transformer,Integer> picked = new LinkedHashMap<>();
+                for (long a = 0; a < numberOfTransformationsPerScope; a++) {
+                    int index = pickRandom.nextInt(quantifiedTransformers.size());
+                    picked.merge(quantifiedTransformers.get(index), 1, Integer::sum);
+                }
+                for (var entry : picked.entrySet()) {
+                    int transformerIndex = registryIndexOf(entry.getKey());
+                    plan.addEntry(new TransformationPlan.Entry(sourceKey, kind, localIndex,
+                            transformerIndex, entry.getKey().getClass().getSimpleName(), entry.getValue(),
+                            SeedDerivation.derive(seed, scope.name(), sourceKey, localIndex, transformerIndex)));
+                }
+            }
+        } else {
+            Map<CtClass,Integer> localIndexOfClass = new IdentityHashMap<>();
+            for (List<CtClass> classesOfFile : groupPerFile(classes).values()) {
+                for (int i = 0; i < classesOfFile.size(); i++) {
+                    localIndexOfClass.put(classesOfFile.get(i), i);
+                }
+            }
+            for (long a = 0; a < totalTransformations; a++) {
+                Random decisionRandom = SeedDerivation.random(seed, scope.name(), a);
+                // For these, just pick random classes
+                CtClass toAlter = classes.get(decisionRandom.nextInt(classes.size()));
+                Transformer transformer = quantifiedTransformers.get(decisionRandom.nextInt(quantifiedTransformers.size()));
+                int transformerIndex = registryIndexOf(transformer);
+                plan.addEntry(new TransformationPlan.Entry(getSourceKey(toAlter), TransformationPlan.TargetKind.CLASS,
+                        localIndexOfClass.get(toAlter), transformerIndex, transformer.getClass().getSimpleName(), 1,
+                        SeedDerivation.derive(seed, scope.name(), a, transformerIndex)));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Applies the given plan, one file after another.
+     *
+     * For plans of the "Each"-Scopes, every entry is applied as a batch, which shares the look-up of candidates.
+     * Within a file, all entries of one transformer are applied in a row and the file is restored (compiled) only once
+     * per transformer, instead of once per entry.
+     * Which transformers are applicable is decided for every element in a single scan for all of them,
+     * and decided again for the elements altered by a transformer before the next transformer is applied.
+     * Transformers that are not applicable are not called, their transformations are empty results.
+     *
+     * For plans of the other scopes, every entry is a single transformation.
+     *
+     * Failing entries (due to Spoon-Exceptions) count every of their transformations as failure.
+     * Entries that do not match the code or the registry (e.g. of a replayed plan) produce empty results.
+     *
+     * @param plan the plan to apply
+     * @param context the context of the run, shared by all transformers
+     * @param results the aggregation to which the results are added
+     * @return the number of transformations that produced (Spoon-)errors
+     */
+    private long executePlan(TransformationPlan plan, TransformationContext context, List<TransformationResult> results) {
+        boolean asBatches = isEachScope(plan.getScope());
+        Map<String,List<CtClass>> classesPerFile = groupPerFile(classes);
+        Map<String,List<CtMethod>> methodsPerFile = groupPerFile(methods);
+        ApplicabilityScanner applicabilityScanner = new ApplicabilityScanner(registry);
+
+        long failures = 0;
+        for (var entriesOfFile : plan.getEntriesPerSource().values()) {
+            if (asBatches) {
+                failures += executeBatchesOfFile(new ArrayList<>(entriesOfFile), classesPerFile, methodsPerFile,
+                        applicabilityScanner, context, results);
+                continue;
+            }
+            for (TransformationPlan.Entry entry : entriesOfFile) {
+                Transformer transformer = resolveTransformer(entry);
+                CtElement toAlter = resolveTarget(entry, classesPerFile, methodsPerFile);
+                if (transformer == null || toAlter == null) {
+                    addEmptyResults(results, entry.getCount());
+                    continue;
+                }
+                TransformationEvent event = new TransformationEvent();
+                event.begin();
+                try {
+                    transformer.setSeed(entry.getSeed());
+                    TransformationResult result = transformer.applyAtRandom(toAlter);
+                    results.add(result);
+
+                    countAndLogResult(result);
+                    recordAttempt(event, entry, toAlter, List.of(result), OptionalLong.empty());
+                } catch (SpoonException spoonException){
+                    //TODO: Redo-Logic
+                    failures += entry.getCount();
+                    recordAttempt(event, entry, toAlter, null, OptionalLong.empty());
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Applies the batch-entries of a single file, see "executePlan".
+     * @return the number of transformations that produced (Spoon-)errors
+     */
+    private long executeBatchesOfFile(List<TransformationPlan.Entry> entries,
+                                      Map<String,List<CtClass>> classesPerFile,
+                                      Map<String,List<CtMethod>> methodsPerFile,
+                                      ApplicabilityScanner applicabilityScanner,
+                                      TransformationContext context, List<TransformationResult> results) {
+        // Decide applicability for every element before any element of the file is altered,
+        // the elements altered by a transformer are analyzed again before the next transformer is applied
+        Map<CtElement,ApplicabilityReport> applicability = new IdentityHashMap<>();
+        for (TransformationPlan.Entry entry : entries) {
+            CtElement toAlter = resolveTarget(entry, classesPerFile, methodsPerFile);
+            if (toAlter != null) {
+                applicability.computeIfAbsent(toAlter, applicabilityScanner::analyze);
+            }
+        }
+        // The sort is stable, so the entries of one transformer keep their planned order
+        entries.sort(Comparator.comparingInt(TransformationPlan.Entry::getTransformerIndex));
+
+        long failures = 0;
+        long pendingTransformations = 0;
+        Set<TransformationResult> pendingResults = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<CtElement> altered = Collections.newSetFromMap(new IdentityHashMap<>());
+        Transformer previous = null;
+        context.beginDeferringRestores();
+        try {
+            for (TransformationPlan.Entry entry : entries) {
+                Transformer transformer = resolveTransformer(entry);
+                CtElement toAlter = resolveTarget(entry, classesPerFile, methodsPerFile);
+                // The next transformer might rely on compiled snippets, so restore what the previous one altered.
+                // The altered elements can have become applicable for other transformers, so they are analyzed again
+                if (transformer != null && previous != null && previous != transformer) {
+                    failures += restoreDeferred(context, pendingTransformations, pendingResults, results);
+                    pendingTransformations = 0;
+                    pendingResults.clear();
+                    applicability.keySet().removeIf(element -> isAffectedByAny(element, altered));
+                    altered.clear();
+                    previous = null;
+                }
+                if (toAlter != null) {
+                    applicability.computeIfAbsent(toAlter, applicabilityScanner::analyze);
+                }
+                if (transformer == null || toAlter == null || !applicability.get(toAlter).isApplicable(transformer)) {
+                    addEmptyResults(results, entry.getCount());
+                    if (transformer != null && toAlter != null) {
+                        recordAttempt(new TransformationEvent(), entry, toAlter, List.of(),
+                                applicability.get(toAlter).getCandidateCount(transformer));
+                    }
+                    continue;
+                }
+                previous = transformer;
+                TransformationEvent event = new TransformationEvent();
+                event.begin();
+                OptionalLong candidates = applicability.get(toAlter).getCandidateCount(transformer);
+                try {
+                    transformer.setSeed(entry.getSeed());
+                    List<TransformationResult> batchResults =
+                            transformer.applyAtRandom(toAlter, entry.getCount(), applicability.get(toAlter));
+                    results.addAll(batchResults);
+                    batchResults.forEach(this::countAndLogResult);
+                    pendingTransformations += entry.getCount();
+                    pendingResults.addAll(batchResults);
+                    altered.add(toAlter);
+                    recordAttempt(event, entry, toAlter, batchResults, candidates);
+                } catch (SpoonException spoonException) {
+                    failures += entry.getCount();
+                    recordAttempt(event, entry, toAlter, null, candidates);
+                }
+            }
+            failures += restoreDeferred(context, pendingTransformations, pendingResults, results);
+        } finally {
+            context.endDeferringRestores();
+        }
+        return failures;
+    }
+
+    /**
+     * @return true if the element is one of the altered elements, or contains or is contained in one of them
+     */
+    private static boolean isAffectedByAny(CtElement element, Set<CtElement> altered) {
+        for (CtElement alteredElement : altered) {
+            if (element == alteredElement || element.hasParent(alteredElement) || alteredElement.hasParent(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the attempt of a plan entry for the flight recorder (see TransformationEvent)
+     * and as structured message to the transformation logger, if it is enabled for debug.
+     * The file is only looked up if the attempt is recorded at all.
+     *
+     * @param event the begun event of the attempt
+     * @param results the results of the attempt, empty if the transformer was not applicable, null if it failed
+     * @param candidates the number of candidates of the transformer in the element, empty if unknown
+     */
+    private void recordAttempt(TransformationEvent event, TransformationPlan.Entry entry, CtElement toAlter,
+                               List<TransformationResult> results, OptionalLong candidates) {
+        event.end();
+        boolean logs = transformationLogger.isDebugEnabled();
+        if (!event.shouldCommit() && !logs) {
+            return;
+        }
+        int applied = results == null ? 0 :
+                (int) results.stream().filter(r -> !(r instanceof EmptyTransformationResult)).count();
+        CtType<?> type = toAlter instanceof CtType ? (CtType<?>) toAlter : toAlter.getParent(CtType.class);
+        SourcePosition position = type == null ? SourcePosition.NOPOSITION : type.getTopLevelType().getPosition();
+        event.transformer = entry.getTransformerName();
+        event.file = position.isValidPosition() && position.getFile() != null ?
+                InputSources.relativePathOf(position.getFile(), codeDirectory) : entry.getSourceKey();
+        event.requested = entry.getCount();
+        event.applied = applied;
+        if (results == null) {
+            event.outcome = TransformationEvent.FAILED;
+        } else if (results.isEmpty()) {
+            event.outcome = TransformationEvent.NOT_APPLICABLE;
+        } else {
+            event.outcome = applied > 0 ? TransformationEvent.APPLIED : TransformationEvent.EMPTY;
+        }
+        event.candidates = candidates.orElse(-1);
+        if (event.shouldCommit()) {
+            event.commit();
+        }
+        if (logs) {
+            transformationLogger.debug(new StringMapMessage()
+                    .with("transformer", event.transformer)
+                    .with("file", event.file)
+                    .with("outcome", event.outcome)
+                    .with("requested", event.requested)
+                    .with("applied", event.applied)
+                    .with("candidates", event.candidates));
+        }
+    }
+
+    /**
+     * Runs the restores collected in the context.
+     * If restoring fails, the results of the restored transformations are removed again,
+     * as their code is broken and must not be reported (e.g. to the manifest) as a success.
+     *
+     * @param pendingTransformations the transformations that are restored, counted as failures if restoring fails
+     * @param pendingResults the results of the restored transformations, removed from the results if restoring fails
+     * @param results the aggregation the pending results were added to
+     * @return the number of transformations that failed to restore
+     */
+    private long restoreDeferred(TransformationContext context, long pendingTransformations,
+                                 Set<TransformationResult> pendingResults, List<TransformationResult> results) {
+        try {
+            context.restoreDeferred();
+            return 0;
+        } catch (SpoonException spoonException) {
+            logger.warn("Restoring the altered classes failed, {} transformations are counted as failures",
+                    pendingTransformations, spoonException);
+            // The failures replace the empty results, which were counted as malformed
+            malformedResults -= pendingResults.stream().filter(r -> r instanceof EmptyTransformationResult).count();
+            results.removeIf(pendingResults::contains);
+            return pendingTransformations;
+        }
+    }
+
+    private void addEmptyResults(List<TransformationResult> results, int count) {
+        malformedResults += count;
+        for (int i = 0; i < count; i++) {
+            results.add(new EmptyTransformationResult());
+        }
+    }
+
+    /**
+     * @param entry the entry naming the transformer
+     * @return the transformer of the registry for the entry, null if the registry does not match the entry
+     */
+    private Transformer resolveTransformer(TransformationPlan.Entry entry) {
+        List<Transformer> transformers = registry.getRegisteredTransformers();
+        if (entry.getTransformerIndex() >= transformers.size()
+                || !transformers.get(entry.getTransformerIndex()).getClass().getSimpleName().equals(entry.getTransformerName())) {
+            logger.warn("The registry has no {} at position {} - skipping the plan entry",
+                    entry.getTransformerName(), entry.getTransformerIndex());
+            return null;
+        }
+        return transformers.get(entry.getTransformerIndex());
+    }
+
+    /**
+     * @param entry the entry naming the element
+     * @return the class or method for the entry, null if the code does not have the element
+     */
+    private static CtElement resolveTarget(TransformationPlan.Entry entry,
+                                           Map<String,List<CtClass>> classesPerFile,
+                                           Map<String,List<CtMethod>> methodsPerFile) {
+        List<? extends CtElement> candidates = entry.getTargetKind() == TransformationPlan.TargetKind.CLASS ?
+                classesPerFile.get(entry.getSourceKey()) : methodsPerFile.get(entry.getSourceKey());
+        if (candidates == null || entry.getTargetIndex() >= candidates.size()) {
+            logger.warn("Found no {} number {} in {} - skipping the plan entry",
+                    entry.getTargetKind(), entry.getTargetIndex(), entry.getSourceKey());
+            return null;
+        }
+        return candidates.get(entry.getTargetIndex());
+    }
+
+    /**
+     * Groups the elements by their file, keeping their order within the file.
+     */
+    private static <T extends CtElement> Map<String,List<T>> groupPerFile(List<T> elements) {
+        Map<String,List<T>> perFile = new LinkedHashMap<>();
+        for (T element : elements) {
+            perFile.computeIfAbsent(getSourceKey(element), k -> new ArrayList<>()).add(element);
+        }
+        return perFile;
+    }
+
+    /**
+     * Counts the result if it is malformed, and logs it on debug otherwise.
+     * The message is only built if debug is enabled, as the hash needs the transformed element to be printed.
+     */
+    void countAndLogResult(TransformationResult result) {
+        if (result instanceof EmptyTransformationResult) {
+            malformedResults++;
+        } else if (result != null) {
+            // As we removed the Manifest (for now?) we just log a debug statement of what was done
+            logger.debug("Successfully applied {} to Element(Hash):{}", result::getTransformationName,
+                    () -> result.getTransformedElement().toString().hashCode());
+        }
+    }
+
+    /**
+     * Returns a key identifying the file of the element, that is the qualified name of its toplevel type.
+     * Unlike the path of the file, this does not change when the code is read from another directory.
+     * @param element a class or method
+     * @return the qualified name of the toplevel type containing the element
+     */
+    private static String getSourceKey(CtElement element) {
+        CtType<?> type = element instanceof CtType ? (CtType<?>) element : element.getParent(CtType.class);
+        if (type == null) {
+            return "";
+        }
+        return type.getTopLevelType().getQualifiedName();
+    }
+
+    /**
+     * @param transformer a transformer of the registry
+     * @return the position of the transformer in the registry, used to derive its seeds
+     */
+    private int registryIndexOf(Transformer transformer) {
+        return registry.getRegisteredTransformers().indexOf(transformer);
     }
 
     /**
@@ -256,6 +954,7 @@ public class Engine {
      * In case of multiple runs, the results of the last run are returned.
      * They are overwritten with every-run.
      * For a not-yet-run (or fully failing) Engine it returns an empty list.
+     * Pipelined runs do not keep their results, as every result holds on to the model of its file.
      *
      * This method is particularly useful for testing,
      * after I removed the Writer I did not have a Mockwriter to check on Results.
@@ -265,6 +964,203 @@ public class Engine {
         return this.finishedResults;
     }
 
+    /**
+     * Returns the plan of the last run, either made by the engine or replayed.
+     * For a not-yet-run Engine it returns null.
+     * @return The TransformationPlan of the last "run".
+     */
+    public TransformationPlan getLastPlan(){
+        return this.lastPlan;
+    }
+
+    /**
+     * Sets a glob to filter the input files by their path relative to the code directory (or archive),
+     * e.g. "src/main/**.java". The default (null) reads all java files. See InputSources.
+     * @param inputFilter the glob to match, null to read all java files
+     */
+    public void setInputFilter(String inputFilter){
+        this.inputFilter = inputFilter;
+    }
+
+    /**
+     * Sets the shard of the input files this engine transforms, to split a run over several machines.
+     * Every machine runs the same configuration with its own shard (and its own output),
+     * the outputs are combined with the ShardMerger. See Shard for how the files are assigned.
+     * All files are still read, as the files of the shard can use their symbols.
+     * The default (Shard.ALL) transforms all files.
+     * @param shard the shard to read
+     * @throws UnsupportedOperationException if the shard is null
+     */
+    public void setShard(Shard shard){
+        if (shard == null) {
+            throw new UnsupportedOperationException("Shard cannot be null, use Shard.ALL to read all files");
+        }
+        this.shard = shard;
+    }
+
+    /**
+     * Sets a plan to apply instead of planning the transformations, e.g. to replay an exported plan.
+     * The plan must be made for a registry with the same transformers in the same order,
+     * entries not matching the registry or the code are skipped.
+     * The default (null) makes a new plan in every run.
+     * @param plan the plan to apply in every run, null to plan freshly
+     */
+    public void setPlanToReplay(TransformationPlan plan){
+        this.planToReplay = plan;
+    }
+
+    /**
+     * Sets a file to which the plan of every run is written, see "TransformationPlan.writeTo".
+     * The default (null) does not write the plan.
+     * @param planExportFile the path of the file to write, null to not write the plan
+     */
+    public void setPlanExportFile(String planExportFile){
+        this.planExportFile = planExportFile == null ? null : Path.of(planExportFile);
+    }
+
+    /**
+     * Sets a manifest file to which the results of every run are appended, see ManifestWriter.
+     * The default (null) keeps the results only in memory, see "getFinishedResults".
+     * @param manifestFile the path of the manifest, null to not write a manifest
+     */
+    public void setManifestFile(String manifestFile){
+        this.manifestFile = manifestFile == null ? null : Path.of(manifestFile);
+    }
+
+    /**
+     * Sets whether runs are incremental: only the input files that changed since the last run
+     * (in content, configuration or seed) are transformed and printed, the outputs of the others are kept.
+     * A file also counts as changed if a file declaring a type it uses changed, as its transformations depend on
+     * the symbols it uses. The unchanged files are still read, as the changed files can use their symbols.
+     * The state of the last run is kept next to the output directory, see IncrementalState.
+     * Only possible for the "Each"-Scopes and directories, otherwise all files are transformed with a warning.
+     * The default is false.
+     * @param incremental whether to only transform changed files
+     */
+    public void setIncremental(boolean incremental){
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets a description of the configuration that is not known to the engine, e.g. the settings of the transformers.
+     * A change of it makes incremental runs transform all files again.
+     * @param configurationFingerprint the description of the configuration, null for none
+     */
+    public void setConfigurationFingerprint(String configurationFingerprint){
+        this.configurationFingerprint = configurationFingerprint == null ? "" : configurationFingerprint;
+    }
+
+    /**
+     * Sets how many independently transformed variants of the code are produced, see VariantRunner.
+     * The code is read once, and every variant k is transformed with its own seed and written to "variant-k".
+     * The default (1) produces a single output, directly in the output directory.
+     * @param variants the number of variants, at least 1
+     * @throws UnsupportedOperationException if the number is less than 1
+     */
+    public void setVariants(int variants){
+        if (variants < 1) {
+            throw new UnsupportedOperationException("There has to be at least one variant");
+        }
+        this.variants = variants;
+    }
+
+    /**
+     * Sets whether the files of a variant that are equal to a file of an earlier variant are written,
+     * e.g. when no transformation could be applied to them. Equal files are found by the hash of their content.
+     * If set, only the first of equal files is written, and every other one is listed with the path of the first
+     * in the index "duplicates.index" at the root of the output (see DeduplicatingOutputSink).
+     * This has no effect on runs without variants and on diff output, as diffs name their variant.
+     * The default is false, writing every file of every variant.
+     *
+     * @param deduplicateVariants whether files equal to one of an earlier variant are only referenced in the index
+     */
+    public void setDeduplicateVariants(boolean deduplicateVariants){
+        this.deduplicateVariants = deduplicateVariants;
+    }
+
+    /**
+     * Sets whether the output is sniper printed: only the altered parts of a file are printed anew,
+     * everything else (formatting, comments, untouched methods) is copied from the original source.
+     * This is faster for big files and keeps the differences between input and output to the transformations.
+     * Files where this fails are printed fully, with a warning.
+     * The default is false, printing every file fully.
+     * @param sniperPrinting whether to only print the altered parts of files anew
+     */
+    public void setSniperPrinting(boolean sniperPrinting){
+        this.sniperPrinting = sniperPrinting;
+    }
+
+    /**
+     * Sets how the input is parsed, e.g. leaving out comments that would not be in the output anyway.
+     * The profile is checked against the transformers of the registry and their distribution, see ParseProfile.
+     * @param parseProfile the profile to parse the input with, ParseProfile.full by default
+     * @throws UnsupportedOperationException if the profile is null
+     */
+    public void setParseProfile(ParseProfile parseProfile){
+        if (parseProfile == null) {
+            throw new UnsupportedOperationException("ParseProfile cannot be null");
+        }
+        this.parseProfile = parseProfile;
+    }
+
+    /**
+     * Sets whether the files are read, transformed and written in a pipeline instead of one phase after another.
+     * All files are read first, then the transformed files are written while the next ones are transformed.
+     * The transforming and writing are connected by a queue holding at most "depth" files, see StagedPipeline.
+     * This needs an "Each"-Scope, and the results of the files are not kept (see "getFinishedResults").
+     * Runs that cannot be pipelined run in phases, with a warning.
+     * @param depth the capacity of the queue between the stages, 0 to run in phases (the default)
+     * @throws UnsupportedOperationException if the depth is negative
+     */
+    public void setPipelineDepth(int depth){
+        if (depth < 0) {
+            throw new UnsupportedOperationException("The depth of the pipeline cannot be negative");
+        }
+        this.pipelineDepth = depth;
+    }
+
+    /**
+     * Sets whether only the diffs of the transformed files are written, instead of the files themselves.
+     * Every transformed file is written as the unified diff against its original file, as "[path].diff" into
+     * the output directory or archive - or all of them into a single patch file if the output ends with
+     * ".patch" or ".diff" (which always writes diffs). The files can be reconstructed with the PatchApplier.
+     * Files that did not change are not written at all. This works best with sniper printing,
+     * as the default printing reformats every file and the diffs get as large as the files.
+     * @param diffOutput whether to write diffs instead of the transformed files
+     */
+    public void setDiffOutput(boolean diffOutput){
+        this.diffOutput = diffOutput;
+    }
+
+    /**
+     * Sets a file to which the tokens of every transformed file are written, e.g. to feed them to a model directly.
+     * The format is chosen by the ending of the file, see TokenSinks. Variants are all written into this file,
+     * prefixed with "variant-k/". For incremental runs, it only holds the files transformed in the run.
+     * @param tokenOutput the file to write the tokens to, null to write no tokens (the default)
+     */
+    public void setTokenOutput(Path tokenOutput){
+        this.tokenOutput = tokenOutput;
+    }
+
+    /**
+     * Sets how the identifiers are split into tokens for the token output, by default they are kept whole.
+     * @param identifierSplitter the splitter to use for the identifiers
+     * @throws UnsupportedOperationException if the splitter is null
+     */
+    public void setIdentifierSplitter(IdentifierSplitter identifierSplitter){
+        if (identifierSplitter == null) {
+            throw new UnsupportedOperationException("IdentifierSplitter cannot be null");
+        }
+        this.identifierSplitter = identifierSplitter;
+    }
+
+    /**
+     * @return true if diffs are written, set explicitly or by a patch file as output
+     */
+    private boolean writesDiffs() {
+        return diffOutput || OutputSinks.isPatch(outputDirectory);
+    }
+
     /**
      * This method sets the distribution on how often to apply the Transformers
      * if every transformer has the same value, they are applied evenly often.
@@ -352,13 +1248,14 @@ public class Engine {
     }
 
     /**
-     * Sets the random number provider to using a certain seed.
+     * Sets the seed from which all random decisions of a run are derived.
+     * The seeds of the transformers are derived from it as well, and are overwritten while running.
      * Used for testing and repeatable experiments.
      * The default seed at initialization is the seed provided in App
      * @param seed
      */
     public void setRandomSeed(long seed){
-        this.random = new Random(seed);
+        this.seed = seed;
     }
 
 }
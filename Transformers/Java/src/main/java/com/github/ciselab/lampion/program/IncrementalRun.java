@@ -0,0 +1,153 @@
+package com.github.ciselab.lampion.program;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.reference.CtTypeReference;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A single incremental run of an Engine, see "Engine.setIncremental".
+ *
+ * It is started before the code is read: it compares the input files with the IncrementalState of the last run,
+ * and removes the outputs of the files that changed or were removed.
+ * A file counts as changed as well if one of the files it depended on in the last run changed,
+ * as the symbols it uses from them (e.g. the type of an inherited field) decide which transformations apply.
+ * The Engine then transforms and prints only the changed files, and finishes the run by writing the new state,
+ * with the dependencies the changed files resolved to in the model.
+ */
+class IncrementalRun {
+    private static Logger logger = LogManager.getLogger(IncrementalRun.class);
+
+    private final Engine engine;
+    private final IncrementalState state;
+    private final String configurationHash;
+    // The hashes of all input files (of all shards) per path relative to the code directory
+    private final Map<String,String> contentHashes;
+    // The hashes of the changed files per path relative to the code directory
+    private final Map<String,String> changedFiles;
+
+    private IncrementalRun(Engine engine, IncrementalState state, String configurationHash,
+                           Map<String,String> contentHashes, Map<String,String> changedFiles) {
+        this.engine = engine;
+        this.state = state;
+        this.configurationHash = configurationHash;
+        this.contentHashes = contentHashes;
+        this.changedFiles = changedFiles;
+    }
+
+    /**
+     * Reads the state of the last run next to the output and finds all input files whose content,
+     * configuration, seed or dependencies changed since then.
+     * The outputs of changed and removed files are deleted, and their entries removed from the state.
+     *
+     * @param engine the engine of the run, for its input, output, seed and configuration
+     * @param inputFilter the glob the input files are filtered with, null for all java files
+     * @param shard the shard of the files the engine transforms
+     * @return the started run
+     * @throws IOException if the state, the input or the outputs cannot be read or deleted
+     */
+    static IncrementalRun start(Engine engine, String inputFilter, Shard shard) throws IOException {
+        Path stateFile = IncrementalState.stateFileFor(engine.outputDirectory);
+        IncrementalState state = Files.exists(stateFile) ? IncrementalState.readFrom(stateFile) : new IncrementalState();
+        String configurationHash = engine.getConfigurationHash();
+        List<Path> files = InputSources.listFiles(engine.codeDirectory, inputFilter);
+        // The files of other shards are hashed as well, as they can be dependencies of the files of this shard
+        Map<String,String> contentHashes = new HashMap<>();
+        for (Path file : files) {
+            contentHashes.put(InputSources.relativePathOf(file.toFile(), engine.codeDirectory),
+                    IncrementalState.hash(Files.readAllBytes(file)));
+        }
+        Set<String> present = new HashSet<>();
+        Map<String,String> changedFiles = new TreeMap<>();
+        for (var file : contentHashes.entrySet()) {
+            String relativePath = file.getKey();
+            if (!shard.contains(relativePath)) {
+                continue;
+            }
+            present.add(relativePath);
+            IncrementalState.Entry entry = state.get(relativePath);
+            if (entry == null || !entry.isUnchanged(file.getValue(), configurationHash, engine.seed, contentHashes)) {
+                changedFiles.put(relativePath, file.getValue());
+            }
+        }
+        for (String file : List.copyOf(state.getFiles())) {
+            if (!present.contains(file) || changedFiles.containsKey(file)) {
+                for (String output : state.remove(file).getOutputs()) {
+                    Files.deleteIfExists(Path.of(engine.outputDirectory).resolve(output));
+                }
+            }
+        }
+        logger.info("{} of {} input files changed since the last run", changedFiles.size(), files.size());
+        return new IncrementalRun(engine, state, configurationHash, contentHashes, changedFiles);
+    }
+
+    /**
+     * @return true if any input file changed since the last run
+     */
+    boolean hasChanges() {
+        return !changedFiles.isEmpty();
+    }
+
+    /**
+     * @param relativePath the path of an input file relative to the code directory
+     * @return true if the file changed since the last run, and is transformed in this one
+     */
+    boolean transforms(String relativePath) {
+        return changedFiles.containsKey(relativePath);
+    }
+
+    /**
+     * Adds the changed files with the dependencies and outputs of their types to the state and writes it.
+     * The dependencies of a file are the other input files that declare a type its types refer to.
+     * @param types the written toplevel types of the changed files, empty if nothing changed
+     * @param diffs whether diffs were written instead of the files
+     * @throws IOException if the state cannot be written
+     */
+    void finish(Collection<CtType<?>> types, boolean diffs) throws IOException {
+        Map<String,List<String>> outputsPerFile = new HashMap<>();
+        Map<String,Map<String,String>> dependenciesPerFile = new HashMap<>();
+        for (CtType<?> type : types) {
+            String file = relativePathOf(type);
+            if (file == null) {
+                continue;
+            }
+            outputsPerFile.computeIfAbsent(file, k -> new ArrayList<>())
+                    .add(OutputWriter.getOutputPath(type) + (diffs ? OutputWriter.DIFF_SUFFIX : ""));
+            Map<String,String> dependencies = dependenciesPerFile.computeIfAbsent(file, k -> new HashMap<>());
+            for (CtTypeReference<?> reference : type.getReferencedTypes()) {
+                String dependency = reference.getDeclaration() == null ? null : relativePathOf(reference.getDeclaration());
+                if (dependency != null && !dependency.equals(file) && contentHashes.containsKey(dependency)) {
+                    dependencies.put(dependency, contentHashes.get(dependency));
+                }
+            }
+        }
+        for (var changed : changedFiles.entrySet()) {
+            state.put(new IncrementalState.Entry(changed.getKey(), changed.getValue(), configurationHash, engine.seed,
+                    dependenciesPerFile.getOrDefault(changed.getKey(), Map.of()),
+                    outputsPerFile.getOrDefault(changed.getKey(), List.of())));
+        }
+        state.writeTo(IncrementalState.stateFileFor(engine.outputDirectory));
+    }
+
+    /**
+     * @return the path of the input file declaring the type relative to the code directory, null if it has none
+     */
+    private String relativePathOf(CtType<?> type) {
+        if (!type.getPosition().isValidPosition() || type.getPosition().getFile() == null) {
+            return null;
+        }
+        return InputSources.relativePathOf(type.getPosition().getFile(), engine.codeDirectory);
+    }
+}
@@ -0,0 +1,256 @@
+package com.github.ciselab.lampion.program;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The IncrementalState remembers for every input file with which content, configuration and seed it was transformed,
+ * the content of the files it depends on, and which output files were written for it.
+ *
+ * With the "Each"-Scopes, the transformations of a file only depend on the file, the configuration and the seed
+ * (see Engine.createPlan), and on the symbols the file uses from other files (e.g. the type of an inherited field).
+ * So an incremental run only has to transform and print the files where one of them or one of their dependencies
+ * changed. The outputs of all other files are left in place.
+ *
+ * The state is written as tab-separated values next to the output directory (not into it, so it is not mistaken
+ * for output), e.g. "./obfuscator_output.lampion-state" for "./obfuscator_output".
+ */
+public class IncrementalState {
+
+    public static final String STATE_FILE_SUFFIX = ".lampion-state";
+
+    private static final String HEADER = "file\tcontentHash\tconfigHash\tseed\tdependencies\toutputs";
+    private static final String OUTPUT_SEPARATOR = ";";
+    private static final String HASH_SEPARATOR = "=";
+
+    /**
+     * The state of a single input file.
+     */
+    public static class Entry {
+        private final String file;
+        private final String contentHash;
+        private final String configHash;
+        private final long seed;
+        private final Map<String,String> dependencies;
+        private final List<String> outputs;
+
+        /**
+         * @param file the path of the input file relative to the input directory
+         * @param contentHash the hash of the content of the input file, see "hash"
+         * @param configHash the hash of the configuration the file was transformed with
+         * @param seed the seed the file was transformed with
+         * @param dependencies the hashes of the contents of the other input files whose types the file uses,
+         *                     per path relative to the input directory
+         * @param outputs the paths of the written output files relative to the output directory
+         * @throws UnsupportedOperationException if any value is null
+         */
+        public Entry(String file, String contentHash, String configHash, long seed,
+                     Map<String,String> dependencies, List<String> outputs) {
+            if (file == null || contentHash == null || configHash == null || dependencies == null || outputs == null) {
+                throw new UnsupportedOperationException("Entries of the IncrementalState cannot have null values");
+            }
+            this.file = file;
+            this.contentHash = contentHash;
+            this.configHash = configHash;
+            this.seed = seed;
+            this.dependencies = Collections.unmodifiableMap(new TreeMap<>(dependencies));
+            this.outputs = List.copyOf(outputs);
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public String getConfigHash() {
+            return configHash;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public Map<String,String> getDependencies() {
+            return dependencies;
+        }
+
+        public List<String> getOutputs() {
+            return outputs;
+        }
+
+        /**
+         * @param contentHashes the hashes of the current contents of all input files, per relative path
+         * @return true if a file with the given content, configuration and seed would be transformed the same,
+         *         that is if neither the file nor any of its dependencies changed
+         */
+        public boolean isUnchanged(String contentHash, String configHash, long seed, Map<String,String> contentHashes) {
+            return this.contentHash.equals(contentHash) && this.configHash.equals(configHash) && this.seed == seed
+                    && dependencies.entrySet().stream()
+                        .allMatch(dependency -> dependency.getValue().equals(contentHashes.get(dependency.getKey())));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return seed == other.seed && file.equals(other.file) && contentHash.equals(other.contentHash)
+                    && configHash.equals(other.configHash) && dependencies.equals(other.dependencies)
+                    && outputs.equals(other.outputs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, contentHash, configHash, seed, dependencies, outputs);
+        }
+
+        private String toLine() {
+            List<String> hashedDependencies = new ArrayList<>();
+            dependencies.forEach((dependency, hash) -> hashedDependencies.add(dependency + HASH_SEPARATOR + hash));
+            return String.join("\t", file, contentHash, configHash, String.valueOf(seed),
+                    String.join(OUTPUT_SEPARATOR, hashedDependencies), String.join(OUTPUT_SEPARATOR, outputs));
+        }
+
+        private static Entry fromLine(String line) {
+            String[] values = line.split("\t", -1);
+            if (values.length != 6) {
+                throw new UnsupportedOperationException("Malformed line in IncrementalState: " + line);
+            }
+            try {
+                Map<String,String> dependencies = new TreeMap<>();
+                for (String hashedDependency : values[4].isEmpty() ? new String[0] : values[4].split(OUTPUT_SEPARATOR)) {
+                    // The hash is hex, so the last separator ends the path
+                    int separator = hashedDependency.lastIndexOf(HASH_SEPARATOR);
+                    if (separator < 0) {
+                        throw new UnsupportedOperationException("Malformed line in IncrementalState: " + line);
+                    }
+                    dependencies.put(hashedDependency.substring(0, separator), hashedDependency.substring(separator + 1));
+                }
+                List<String> outputs = values[5].isEmpty() ?
+                        List.of() : Arrays.asList(values[5].split(OUTPUT_SEPARATOR));
+                return new Entry(values[0], values[1], values[2], Long.parseLong(values[3]), dependencies, outputs);
+            } catch (NumberFormatException e) {
+                throw new UnsupportedOperationException("Malformed line in IncrementalState: " + line, e);
+            }
+        }
+    }
+
+    // The entries per input file, sorted to keep the written state stable
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    public void put(Entry entry) {
+        if (entry == null) {
+            throw new UnsupportedOperationException("Cannot add null to the IncrementalState");
+        }
+        entries.put(entry.getFile(), entry);
+    }
+
+    /**
+     * @param file the path of the input file relative to the input directory
+     * @return the removed entry of the file, null if the file is not known
+     */
+    public Entry remove(String file) {
+        return entries.remove(file);
+    }
+
+    /**
+     * @param file the path of the input file relative to the input directory
+     * @return the entry of the file, null if the file is not known
+     */
+    public Entry get(String file) {
+        return entries.get(file);
+    }
+
+    /**
+     * @return the paths of all known input files, sorted
+     */
+    public Set<String> getFiles() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @param outputDirectory the configured output directory
+     * @return the path of the state file next to the output directory
+     */
+    public static Path stateFileFor(String outputDirectory) {
+        Path output = Path.of(outputDirectory).toAbsolutePath().normalize();
+        return output.resolveSibling(output.getFileName() + STATE_FILE_SUFFIX);
+    }
+
+    /**
+     * @param content the bytes to hash, e.g. the content of a file
+     * @return the SHA-256 hash of the content in hex
+     */
+    public static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has to provide SHA-256
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Writes the state as tab-separated values to the given file, replacing it if it exists.
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(Path file) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Entry entry : entries.values()) {
+                writer.write(entry.toLine());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads a state written by "writeTo".
+     * @param file the file to read from
+     * @return the read state
+     * @throws IOException if the file cannot be read
+     * @throws UnsupportedOperationException if the file is not a valid state
+     */
+    public static IncrementalState readFrom(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new UnsupportedOperationException("IncrementalState " + file + " has an unknown header");
+            }
+            IncrementalState state = new IncrementalState();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    state.put(Entry.fromLine(line));
+                }
+            }
+            return state;
+        }
+    }
+}
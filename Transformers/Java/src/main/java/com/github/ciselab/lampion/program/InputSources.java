@@ -0,0 +1,154 @@
+package com.github.ciselab.lampion.program;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import spoon.Launcher;
+import spoon.support.compiler.VirtualFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class adds the configured input to a Spoon launcher.
+ *
+ * The input can be a directory (as always) or a zip/jar archive.
+ * Archives are opened as a zip-filesystem and their java files are handed to Spoon as virtual files,
+ * so nothing is extracted to disk. Only the matching entries are read at all.
+ *
+ * Optionally, the files can be filtered by a glob on their path relative to the input, e.g. "src/main/**.java".
+ * Without a filter, all java files are used.
+ */
+public abstract class InputSources {
+    private static Logger logger = LogManager.getLogger(InputSources.class);
+
+    // Used if no filter is given, "**" crosses directories so this matches all java files at any depth
+    public static final String DEFAULT_FILTER = "**.java";
+
+    /**
+     * @param input the configured input, a directory or an archive file
+     * @return true if the input names a zip or jar archive, false otherwise
+     */
+    public static boolean isArchive(String input) {
+        String lower = input.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".zip") || lower.endsWith(".jar");
+    }
+
+    /**
+     * Adds all (matching) java files of the input to the launcher.
+     * For directories without a filter, the directory itself is added and Spoon looks for the files.
+     *
+     * @param launcher the launcher to add the files to
+     * @param input the directory or zip/jar archive to read
+     * @param filter a glob matched against the path of every file relative to the input, null for all java files
+     * @return the number of added files, -1 if the whole directory was added
+     * @throws IOException if the archive or directory cannot be read
+     */
+    public static int addTo(Launcher launcher, String input, String filter) throws IOException {
+        if (!isArchive(input) && filter == null) {
+            launcher.addInputResource(input);
+            return -1;
+        }
+        String glob = filter == null ? DEFAULT_FILTER : filter;
+        Path inputPath = Path.of(input);
+        if (!isArchive(input)) {
+            List<Path> files = findMatchingFiles(inputPath, inputPath.getFileSystem().getPathMatcher("glob:" + glob));
+            files.forEach(f -> launcher.addInputResource(f.toString()));
+            logger.info("Added " + files.size() + " files of " + input + " matching " + glob);
+            return files.size();
+        }
+        // The null classloader makes sure the zip-provider of the jdk is used
+        try (FileSystem archive = FileSystems.newFileSystem(inputPath, (ClassLoader) null)) {
+            Path root = archive.getPath("/");
+            List<Path> files = findMatchingFiles(root, archive.getPathMatcher("glob:" + glob));
+            for (Path file : files) {
+                // Decoding like Spoon does, so sources with unexpected encodings do not fail the run
+                String content = new String(Files.readAllBytes(file), launcher.getEnvironment().getEncoding());
+                launcher.addInputResource(new VirtualFile(content, root.relativize(file).toString()));
+            }
+            logger.info("Added " + files.size() + " files of archive " + input + " matching " + glob);
+            return files.size();
+        }
+    }
+
+    /**
+     * Lists the (matching) java files of an input directory, e.g. to check them before reading them.
+     *
+     * @param directory the input directory, archives are not supported
+     * @param filter a glob matched against the path of every file relative to the directory, null for all java files
+     * @return the matching files, sorted by path
+     * @throws IOException if the directory cannot be read
+     */
+    public static List<Path> listFiles(String directory, String filter) throws IOException {
+        if (isArchive(directory)) {
+            throw new UnsupportedOperationException("Listing files is only supported for directories, not " + directory);
+        }
+        Path root = Path.of(directory);
+        return findMatchingFiles(root, root.getFileSystem().getPathMatcher("glob:" + (filter == null ? DEFAULT_FILTER : filter)));
+    }
+
+    /**
+     * Finds the (matching) java files below the root that belong to the shard, e.g. the root of an opened archive.
+     *
+     * @param root the input directory, or the root of an opened archive
+     * @param filter a glob matched against the path of every file relative to the root, null for all java files
+     * @param shard the shard of the files to find, Shard.ALL for all files
+     * @return the matching files, sorted by path
+     * @throws IOException if the root cannot be read
+     */
+    static List<Path> findFiles(Path root, String filter, Shard shard) throws IOException {
+        PathMatcher matcher = root.getFileSystem().getPathMatcher("glob:" + (filter == null ? DEFAULT_FILTER : filter));
+        return filterShard(root, findMatchingFiles(root, matcher), shard);
+    }
+
+    /**
+     * Returns the path of a read file relative to the input, as used for reports and manifests.
+     * Files read from an archive are virtual and already only have their path within the archive.
+     *
+     * @param file the file of a source position
+     * @param input the directory or archive the file was read from
+     * @return the path of the file relative to the input, or the absolute path if it is not within the input
+     */
+    public static String relativePathOf(File file, String input) {
+        if (!file.isAbsolute()) {
+            return file.getPath();
+        }
+        Path path = file.toPath().toAbsolutePath().normalize();
+        Path root = Path.of(input).toAbsolutePath().normalize();
+        return path.startsWith(root) ? root.relativize(path).toString() : path.toString();
+    }
+
+    /**
+     * @return the files whose path relative to the root belongs to the shard, in the same order
+     */
+    private static List<Path> filterShard(Path root, List<Path> files, Shard shard) {
+        if (shard.isAll()) {
+            return files;
+        }
+        return files.stream()
+                .filter(f -> shard.contains(root.relativize(f).toString()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Walks the root and returns all java files whose relative path matches, sorted by path.
+     */
+    private static List<Path> findMatchingFiles(Path root, PathMatcher matcher) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(".java"))
+                    .filter(p -> matcher.matches(root.relativize(p)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.support.ParseEvent;
+import com.github.ciselab.lampion.transformations.AstFingerprint;
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtCompilationUnit;
+import spoon.reflect.declaration.CtType;
+import spoon.support.compiler.VirtualFile;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Transforms java sources in memory, to embed Lampion into other programs (e.g. the data loader of a model)
+ * without writing the sources to temporary files and reading the results back.
+ *
+ * The sources are handed to Spoon as virtual files and the transformed sources are printed into strings,
+ * so nothing is read from or written to disk. Every source is read into its own model and transformed by its own
+ * Engine with its own transformers (see TransformConfig), so the methods can be called by many threads at once.
+ * The transformations of a source only depend on the source, the configuration and the seed,
+ * so the batch variant gives the same results no matter the order or parallelism of its stream.
+ *
+ * As every source is read on its own (and without a classpath), references to other sources are not resolved.
+ */
+public abstract class LampionTransformer {
+
+    // Used as in- and output of the engines, which never read or write them
+    static final String IN_MEMORY = "in-memory";
+
+    /**
+     * Transforms a single source, named SourceUnit.DEFAULT_NAME.
+     * @param source the java code to transform
+     * @param config the transformers and how often to apply them
+     * @param seed the seed from which all random decisions are derived
+     * @return the transformed source and the applied transformations
+     * @throws UnsupportedOperationException if any argument is null
+     * @throws spoon.SpoonException if the source cannot be parsed
+     */
+    public static TransformedSource transform(String source, TransformConfig config, long seed) {
+        return transform(new SourceUnit(SourceUnit.DEFAULT_NAME, source), config, seed);
+    }
+
+    /**
+     * Transforms a single source.
+     * Sources without any type are returned as they are.
+     * @param unit the java code to transform
+     * @param config the transformers and how often to apply them
+     * @param seed the seed from which all random decisions are derived
+     * @return the transformed source and the applied transformations
+     * @throws UnsupportedOperationException if any argument is null
+     * @throws spoon.SpoonException if the source cannot be parsed
+     */
+    public static TransformedSource transform(SourceUnit unit, TransformConfig config, long seed) {
+        if (unit == null) {
+            throw new UnsupportedOperationException("Cannot transform null");
+        }
+        if (config == null) {
+            throw new UnsupportedOperationException("TransformConfig cannot be null");
+        }
+        Engine engine = config.createEngine(seed);
+        Launcher launcher = new Launcher();
+        engine.configureParsing(launcher.getEnvironment());
+        launcher.addInputResource(new VirtualFile(unit.getSource(), unit.getName()));
+        ParseEvent parseEvent = new ParseEvent();
+        parseEvent.begin();
+        CtModel codeRoot = launcher.buildModel();
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.input = unit.getName();
+            parseEvent.types = codeRoot.getAllTypes().size();
+            parseEvent.commit();
+        }
+        if (codeRoot.getAllTypes().isEmpty()) {
+            return new TransformedSource(unit.getName(), unit.getSource(), List.of(), AstFingerprint.EMPTY);
+        }
+
+        engine.transformInMemory(codeRoot);
+
+        // A single file was read, so all types share its compilation unit
+        CtType<?> anyType = codeRoot.getAllTypes().iterator().next();
+        CtCompilationUnit compilationUnit = anyType.getFactory().CompilationUnit().getOrCreate(anyType);
+        String printed = OutputWriter.print(compilationUnit, compilationUnit.getDeclaredTypes());
+        return new TransformedSource(unit.getName(), printed, engine.getFinishedResults(),
+                AstFingerprint.of(compilationUnit));
+    }
+
+    /**
+     * Transforms every source of the stream with the same configuration and seed, lazily as the stream is consumed.
+     * The stream can be parallel, every source is transformed on its own.
+     * @param units the java sources to transform
+     * @param config the transformers and how often to apply them
+     * @param seed the seed from which all random decisions are derived
+     * @return the transformed sources, in the order of the units
+     * @throws UnsupportedOperationException if any argument is null
+     */
+    public static Stream<TransformedSource> transformAll(Stream<SourceUnit> units, TransformConfig config, long seed) {
+        if (units == null) {
+            throw new UnsupportedOperationException("Cannot transform null");
+        }
+        if (config == null) {
+            throw new UnsupportedOperationException("TransformConfig cannot be null");
+        }
+        return units.map(unit -> transform(unit, config, seed));
+    }
+}
@@ -0,0 +1,283 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.program.output.OutputSink;
+import com.github.ciselab.lampion.program.output.OutputSinks;
+import com.github.ciselab.lampion.program.output.UnifiedDiff;
+import com.github.ciselab.lampion.program.tokens.IdentifierSplitter;
+import com.github.ciselab.lampion.program.tokens.TokenCollector;
+import com.github.ciselab.lampion.program.tokens.TokenSink;
+import com.github.ciselab.lampion.program.tokens.TokenSinks;
+import com.github.ciselab.lampion.support.PrintEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import spoon.Launcher;
+import spoon.SpoonException;
+import spoon.compiler.Environment;
+import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.declaration.CtCompilationUnit;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.visitor.DefaultJavaPrettyPrinter;
+import spoon.reflect.visitor.PrettyPrinter;
+import spoon.support.sniper.SniperJavaPrettyPrinter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the (transformed) types of an Engine: the java files, their diffs and their tokens.
+ *
+ * The types are printed once, either by Spoon's pretty-printing into the output directory,
+ * or one by one into an OutputSink (see "printTo"), which also collects the tokens of the printed files.
+ * The writer holds the output settings of one run, the Engine creates it when it writes.
+ */
+class OutputWriter {
+    private static Logger logger = LogManager.getLogger(OutputWriter.class);
+
+    // Appended to the path of every written diff in directories and archives
+    static final String DIFF_SUFFIX = ".diff";
+
+    private final String codeDirectory;
+    private final String outputDirectory;
+    private final boolean sniperPrinting;
+    private final boolean diffs;
+    private final Path tokenOutput;
+    private final IdentifierSplitter identifierSplitter;
+
+    /**
+     * @param codeDirectory the input the types were read from, to diff against the original files
+     * @param outputDirectory the directory or archive to write to
+     * @param sniperPrinting whether the environments of the types sniper print
+     * @param diffs whether the diffs are written instead of the files
+     * @param tokenOutput the file to write the tokens to, null to write no tokens
+     * @param identifierSplitter how the identifiers are split into tokens
+     */
+    OutputWriter(String codeDirectory, String outputDirectory, boolean sniperPrinting, boolean diffs,
+                 Path tokenOutput, IdentifierSplitter identifierSplitter) {
+        this.codeDirectory = codeDirectory;
+        this.outputDirectory = outputDirectory;
+        this.sniperPrinting = sniperPrinting;
+        this.diffs = diffs;
+        this.tokenOutput = tokenOutput;
+        this.identifierSplitter = identifierSplitter;
+    }
+
+    /**
+     * @return true if tokens are written
+     */
+    boolean writesTokens() {
+        return tokenOutput != null;
+    }
+
+    /**
+     * Writes the types of a run into the output, and their tokens into the token output.
+     *
+     * @param types the (altered) toplevel types to write
+     * @param launcher the launcher that read the model, if it holds exactly the types; null otherwise
+     * @param writeJavaOutput whether the java files are written, if not only the tokens are
+     */
+    void write(List<CtType<?>> types, Launcher launcher, boolean writeJavaOutput) {
+        if (sniperPrinting) {
+            types.forEach(OutputWriter::forgetMovedPositions);
+        }
+        // Spoon can only pretty-print files that were read from the filesystem by the launcher,
+        // so for archives (both in- and output) and copied models the types are printed one by one into a sink.
+        // Sniper printing uses the sink as well, so a file that cannot be sniper printed can fall back to the default.
+        // Diffs are made from the printed files, so they are printed into the sink as well.
+        // Spoon prints all types of the model, so runs that only transform some of them print into the sink too.
+        // The tokens are collected while printing into the sink, so they are the ones of the written files.
+        boolean printsIntoSink = launcher == null || sniperPrinting || diffs || writesTokens()
+                || OutputSinks.isArchive(outputDirectory) || InputSources.isArchive(codeDirectory);
+        if (!writeJavaOutput) {
+            logger.info("Writing the java files has been disabled for this run.");
+        }
+        if (writeJavaOutput && !printsIntoSink) {
+            logger.debug("Starting to pretty-print  altered files to {}", outputDirectory);
+            PrintEvent printEvent = new PrintEvent();
+            printEvent.begin();
+            launcher.setSourceOutputDirectory(outputDirectory);
+            launcher.prettyprint();
+            printEvent.output = outputDirectory;
+            printEvent.mode = "default";
+            printEvent.types = types.size();
+            printEvent.commit();
+        } else if (writeJavaOutput || writesTokens()) {
+            logger.debug("Starting to pretty-print altered files into {}", outputDirectory);
+            try (OutputSink sink = writeJavaOutput ? OutputSinks.forOutput(outputDirectory) : null;
+                 TokenSink tokens = writesTokens() ? TokenSinks.forOutput(tokenOutput) : null) {
+                printTo(types, sink, tokens, "");
+            } catch (IOException e) {
+                logger.error("Could not write the output {}", writeJavaOutput ? outputDirectory : tokenOutput, e);
+            }
+        }
+    }
+
+    /**
+     * Prints the toplevel types into the sink, sorted by their path.
+     * The files and their paths are the same as the ones of Spoon's pretty-printing into a directory,
+     * that is one file per toplevel type in the directories of its package.
+     *
+     * With diff output, the unified diff against the original file is written instead, as "[path].diff"
+     * (all into one file for patch outputs). Types that printed the same as their original file are left out.
+     *
+     * With a token sink, the tokens of every type are collected by the same printer with a TokenCollector,
+     * and written with the path of the type, see "print".
+     *
+     * @param types the (altered) toplevel types to print
+     * @param sink the sink to write the files to, is not closed, null to only write the tokens
+     * @param tokens the sink to write the tokens to, is not closed, null to write no tokens
+     * @param prefix the directory to prepend to every path, e.g. "variant-1/", empty for none
+     * @throws IOException if a sink fails to write
+     */
+    void printTo(Collection<CtType<?>> types, OutputSink sink, TokenSink tokens, String prefix) throws IOException {
+        PrintEvent printEvent = new PrintEvent();
+        printEvent.begin();
+        Map<String,CtType<?>> typesPerPath = new TreeMap<>();
+        for (CtType<?> type : types) {
+            typesPerPath.put(getOutputPath(type), type);
+        }
+        int unchanged = 0;
+        for (var entry : typesPerPath.entrySet()) {
+            CtType<?> type = entry.getValue();
+            CtCompilationUnit compilationUnit = type.getFactory().CompilationUnit().getOrCreate(type);
+            TokenCollector collector = tokens == null ? null
+                    : new TokenCollector(identifierSplitter, type.getFactory().getEnvironment());
+            String printed = print(compilationUnit, List.of(type), collector);
+            if (tokens != null) {
+                tokens.write(prefix + entry.getKey(), collector.getTokens());
+            }
+            if (sink == null) {
+                continue;
+            }
+            if (!diffs) {
+                sink.write(prefix + entry.getKey(), printed);
+                continue;
+            }
+            String diff = createDiff(type, compilationUnit, prefix + entry.getKey(), printed);
+            if (diff.isEmpty()) {
+                unchanged++;
+            } else {
+                sink.write(prefix + entry.getKey() + DIFF_SUFFIX, diff);
+            }
+        }
+        if (sink != null && diffs) {
+            logger.info("Wrote the diffs of {} files, {} files were unchanged", typesPerPath.size() - unchanged, unchanged);
+        }
+        if (tokens != null) {
+            logger.info("Wrote the tokens of {} files to {}", typesPerPath.size(), tokenOutput);
+        }
+        if (sink == null) {
+            printEvent.output = prefix.isEmpty() ? tokenOutput.toString() : tokenOutput + "#" + prefix;
+            printEvent.mode = "tokens";
+        } else {
+            printEvent.output = prefix.isEmpty() ? outputDirectory : outputDirectory + "/" + prefix;
+            printEvent.mode = diffs ? "diff" : sniperPrinting ? "sniper" : "default";
+        }
+        printEvent.types = typesPerPath.size();
+        printEvent.commit();
+    }
+
+    /**
+     * Prints the types of a compilation unit with the printer of their environment,
+     * that is the sniper printer if it is enabled and the default printer otherwise.
+     * @param compilationUnit the compilation unit to print, for its imports and package
+     * @param types the types of the compilation unit to print
+     * @return the printed source
+     */
+    static String print(CtCompilationUnit compilationUnit, List<CtType<?>> types) {
+        return print(compilationUnit, types, null);
+    }
+
+    /**
+     * Prints the types like "print", and collects the tokens of the printed file.
+     * The default printer writes its tokens into the collector while printing.
+     * The sniper printer copies the untouched text instead of writing its tokens,
+     * so sniper printed types are printed fully a second time for the tokens.
+     * @param collector the collector for the tokens, made for the environment of the types, null to collect none
+     * @return the printed source
+     */
+    static String print(CtCompilationUnit compilationUnit, List<CtType<?>> types, TokenCollector collector) {
+        Environment environment = compilationUnit.getFactory().getEnvironment();
+        PrettyPrinter printer = environment.createPrettyPrinter();
+        boolean collects = collector != null && printer instanceof DefaultJavaPrettyPrinter
+                && !(printer instanceof SniperJavaPrettyPrinter);
+        if (collects) {
+            ((DefaultJavaPrettyPrinter) printer).setPrinterTokenWriter(collector);
+        }
+        String printed;
+        try {
+            printer.calculate(compilationUnit, types);
+            printed = printer.getResult();
+        } catch (SpoonException e) {
+            if (!(printer instanceof SniperJavaPrettyPrinter)) {
+                throw e;
+            }
+            // The sniper printer fails on some (rare) combinations of changes, the default printer does not
+            logger.warn("Could not sniper print {} - printing it fully instead", compilationUnit.getFile(), e);
+            return printFully(compilationUnit, types, collector);
+        }
+        if (collector != null && !collects) {
+            printFully(compilationUnit, types, collector);
+        }
+        return printed;
+    }
+
+    private static String printFully(CtCompilationUnit compilationUnit, List<CtType<?>> types,
+                                     TokenCollector collector) {
+        DefaultJavaPrettyPrinter printer = new DefaultJavaPrettyPrinter(compilationUnit.getFactory().getEnvironment());
+        if (collector != null) {
+            printer.setPrinterTokenWriter(collector);
+        }
+        printer.calculate(compilationUnit, types);
+        return printer.getResult();
+    }
+
+    /**
+     * Creates the unified diff of a printed type against the file it was read from.
+     * Types without a file (e.g. created ones) are diffed against no file.
+     */
+    private String createDiff(CtType<?> type, CtCompilationUnit compilationUnit, String outputPath, String printed) {
+        SourcePosition position = type.getPosition();
+        if (!position.isValidPosition() || position.getFile() == null) {
+            return UnifiedDiff.diff(UnifiedDiff.NO_FILE, "", outputPath, printed);
+        }
+        String originalPath = InputSources.relativePathOf(position.getFile(), codeDirectory)
+                .replace(File.separatorChar, '/');
+        return UnifiedDiff.diff(originalPath, compilationUnit.getOriginalSourceCode(), outputPath, printed);
+    }
+
+    /**
+     * The sniper printer copies every element with a position from the original file,
+     * and it expects the element to be still at the same place in the tree.
+     * Elements that were moved into a created element (e.g. the body wrapped into an if by IfTrue) or that come from
+     * compiled snippets break that, so they (and all elements below them) lose their position and are printed anew.
+     * @param type a toplevel type
+     */
+    private static void forgetMovedPositions(CtType<?> type) {
+        CtCompilationUnit compilationUnit = type.getPosition().getCompilationUnit();
+        type.filterChildren(e -> e != type).forEach((CtElement element) -> {
+            SourcePosition position = element.getPosition();
+            if (position.isValidPosition() && (position.getCompilationUnit() != compilationUnit
+                    || !element.getParent().getPosition().isValidPosition())) {
+                element.setPosition(SourcePosition.NOPOSITION);
+            }
+        });
+    }
+
+    /**
+     * @param type a toplevel type
+     * @return the path Spoon prints the type to, relative to the output, e.g. "lampion/test/Example.java"
+     */
+    static String getOutputPath(CtType<?> type) {
+        String fileName = type.getSimpleName() + ".java";
+        if (type.getPackage() == null || type.getPackage().isUnnamedPackage()) {
+            return fileName;
+        }
+        return type.getPackage().getQualifiedName().replace('.', '/') + "/" + fileName;
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.TransformationCategory;
+import com.github.ciselab.lampion.transformations.Transformer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import spoon.compiler.Environment;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * How the input is parsed into the Spoon model, see Engine.setParseProfile.
+ *
+ * Comments (including Javadoc) are a large part of the model, but they only matter if they end up in the output.
+ * If all comments are removed before printing anyway, and no active transformer works on comments, the fast profile
+ * does not parse them at all - the output is the same, but parsing is cheaper and the model smaller.
+ * A model without comments does not print comments either, even added ones, so comment transformers need them.
+ */
+public enum ParseProfile {
+    full,           // Everything is parsed as Spoon does by default, including all comments (the default)
+    fast;           // No classpath, and no comments if they are not in the output anyway
+
+    private static Logger logger = LogManager.getLogger(ParseProfile.class);
+
+    /**
+     * Configures the environment of a launcher before it builds the model, validated against the transformers.
+     * @param environment the environment of the launcher
+     * @param activeTransformers the transformers that may be applied to the model
+     * @param removeAllComments whether all comments are removed before printing
+     * @return true if comments are parsed, false otherwise
+     */
+    public boolean configure(Environment environment, Collection<Transformer> activeTransformers,
+                             boolean removeAllComments) {
+        if (this == full) {
+            return environment.isCommentsEnabled();
+        }
+        // Our inputs never come with a classpath, Spoon should not look for one
+        environment.setNoClasspath(true);
+        String commentTransformers = activeTransformers.stream()
+                .filter(t -> t.getCategories().contains(TransformationCategory.COMMENT))
+                .map(t -> t.getClass().getSimpleName())
+                .distinct()
+                .collect(Collectors.joining(", "));
+        if (!commentTransformers.isEmpty()) {
+            logger.info("Parsing the comments despite the fast profile, as {} work on comments", commentTransformers);
+            return environment.isCommentsEnabled();
+        }
+        if (!removeAllComments) {
+            logger.debug("Parsing the comments despite the fast profile, as they are kept in the output");
+            return environment.isCommentsEnabled();
+        }
+        environment.setCommentEnabled(false);
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.support.SeedDerivation;
+
+import java.util.Locale;
+
+/**
+ * A Shard is one of N disjoint parts of the input files, to split a run over several machines.
+ *
+ * Every file is assigned to a shard by a hash of its path relative to the input, so every machine can decide
+ * on its own (and without listing the files of the others) which files it transforms.
+ * The assignment only depends on the path, not on the seed, the configuration or the other files.
+ *
+ * With the "Each"-Scopes, the transformations of a file are derived from the seed and the file only
+ * (see Engine.createPlan), so the union of all shards is the same as a single run over all files.
+ * The outputs of the shards are combined with the ShardMerger.
+ */
+public class Shard {
+
+    // A single shard holding all files, used if nothing is sharded
+    public static final Shard ALL = new Shard(0, 1);
+
+    private final int index;
+    private final int count;
+
+    /**
+     * @param index the number of this shard, starting at 0
+     * @param count the number of shards
+     * @throws UnsupportedOperationException if count is less than 1 or the index is not within [0,count)
+     */
+    public Shard(int index, int count) {
+        if (count < 1) {
+            throw new UnsupportedOperationException("The number of shards must be at least 1, was " + count);
+        }
+        if (index < 0 || index >= count) {
+            throw new UnsupportedOperationException("The shard index must be within [0," + count + "), was " + index);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return true if this shard holds all files, i.e. nothing is sharded
+     */
+    public boolean isAll() {
+        return count == 1;
+    }
+
+    /**
+     * @param relativePath the path of a file relative to the input, with any separator
+     * @return true if the file belongs to this shard
+     */
+    public boolean contains(String relativePath) {
+        if (isAll()) {
+            return true;
+        }
+        // The separator is unified, so the shards are the same on every OS
+        long hash = SeedDerivation.derive(0, "shard", relativePath.replace('\\', '/'));
+        return Math.floorMod(hash, count) == index;
+    }
+
+    /**
+     * Adds the shard to a configured path, so the shards of a run do not overwrite each others outputs.
+     * The suffix is put before the extension of files, e.g. "manifest.lmf" becomes "manifest_shard-0-of-4.lmf"
+     * and "./output" becomes "./output_shard-0-of-4". Archives with two extensions (".tar.gz") keep both.
+     *
+     * @param path a configured output path, e.g. the output directory or the manifest
+     * @return the path for this shard, the path itself if nothing is sharded
+     */
+    public String pathFor(String path) {
+        if (isAll()) {
+            return path;
+        }
+        String suffix = "_shard-" + index + "-of-" + count;
+        int nameStart = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+        String name = path.substring(nameStart);
+        int extension = name.toLowerCase(Locale.ROOT).endsWith(".tar.gz") ? name.length() - ".tar.gz".length() : name.lastIndexOf('.');
+        if (extension <= 0) {
+            return path + suffix;
+        }
+        return path.substring(0, nameStart) + name.substring(0, extension) + suffix + name.substring(extension);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Shard)) return false;
+        Shard other = (Shard) o;
+        return index == other.index && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * index + count;
+    }
+
+    @Override
+    public String toString() {
+        return "shard " + index + " of " + count;
+    }
+}
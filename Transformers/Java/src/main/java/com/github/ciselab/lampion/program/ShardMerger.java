@@ -0,0 +1,327 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.program.manifest.ManifestReader;
+import com.github.ciselab.lampion.program.manifest.ManifestWriter;
+import com.github.ciselab.lampion.program.output.OutputSink;
+import com.github.ciselab.lampion.program.output.OutputSinks;
+import com.github.ciselab.lampion.program.tokens.BinaryTokenReader;
+import com.github.ciselab.lampion.program.tokens.TokenSink;
+import com.github.ciselab.lampion.program.tokens.TokenSinks;
+import com.github.ciselab.lampion.program.tokens.TokenizedFile;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Combines the outputs of the shards of a run (see Shard) into the output of a single run.
+ *
+ * The shards hold disjoint files, so their outputs are simply put together:
+ * - the transformed files of directories and zip/jar archives are written into one OutputSink, sorted by path.
+ *   Patch files are appended one after another. Tar archives cannot be read, and are not supported.
+ * - the records of the manifests are appended to one manifest, shard after shard.
+ * - the token files are appended to one token file, shard after shard.
+ * - the applicability CSVs (see ApplicabilityAnalysis) are combined, the per-file lines are sorted by file again
+ *   and the per-transformer lines are summed up.
+ * A file in the output of two shards means the shards overlap (e.g. they were run with different shard counts),
+ * which is reported as an error instead of silently picking one of them.
+ */
+public abstract class ShardMerger {
+    private static Logger logger = LogManager.getLogger(ShardMerger.class);
+
+    // These are merged as metrics, not copied as files
+    private static final Set<String> APPLICABILITY_FILES =
+            Set.of(ApplicabilityAnalysis.PER_FILE_CSV, ApplicabilityAnalysis.PER_TRANSFORMER_CSV);
+
+    /**
+     * Writes the files of all shard outputs into the target.
+     *
+     * @param shardOutputs the outputs of the shards, directories or zip/jar archives, or patch files
+     * @param target the output to write to, see OutputSinks
+     * @return the number of written files
+     * @throws IOException if an output cannot be read or the target cannot be written
+     * @throws UnsupportedOperationException if an output cannot be read, or a file is in the output of two shards
+     */
+    public static int mergeOutputs(List<String> shardOutputs, String target) throws IOException {
+        if (shardOutputs.stream().anyMatch(OutputSinks::isPatch)) {
+            return mergePatches(shardOutputs, target);
+        }
+        // Collect the files of all shards first, so they are written sorted like by a single run
+        Map<String, String> shardOfFile = new TreeMap<>();
+        for (String shardOutput : shardOutputs) {
+            for (String file : listFiles(shardOutput)) {
+                String other = shardOfFile.put(file, shardOutput);
+                if (other != null) {
+                    throw new UnsupportedOperationException("The file " + file + " is in the outputs of "
+                            + other + " and " + shardOutput + " - the shards overlap");
+                }
+            }
+        }
+        Map<String, FileSystem> archives = new LinkedHashMap<>();
+        try (OutputSink sink = OutputSinks.forOutput(target)) {
+            for (String shardOutput : shardOutputs) {
+                archives.put(shardOutput, openArchive(shardOutput));
+            }
+            for (var entry : shardOfFile.entrySet()) {
+                Path root = rootOf(entry.getValue(), archives.get(entry.getValue()));
+                sink.write(entry.getKey(), Files.readString(root.resolve(entry.getKey()), StandardCharsets.UTF_8));
+            }
+        } finally {
+            for (FileSystem archive : archives.values()) {
+                if (archive != null) {
+                    archive.close();
+                }
+            }
+        }
+        logger.info("Merged " + shardOfFile.size() + " files of " + shardOutputs.size() + " shards into " + target);
+        return shardOfFile.size();
+    }
+
+    /**
+     * Appends the records of all shard manifests to the target manifest, which is replaced if it exists.
+     *
+     * @param shardManifests the manifests of the shards
+     * @param target the manifest to write
+     * @return the number of merged records
+     * @throws IOException if a manifest cannot be read or the target cannot be written
+     */
+    public static long mergeManifests(List<Path> shardManifests, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        long merged = 0;
+        try (ManifestWriter writer = new ManifestWriter(target)) {
+            for (Path shardManifest : shardManifests) {
+                try (ManifestReader reader = new ManifestReader(shardManifest)) {
+                    while (reader.hasNext()) {
+                        writer.append(reader.next());
+                        merged++;
+                    }
+                    if (reader.isTruncated()) {
+                        logger.warn("The manifest " + shardManifest + " ended with an incomplete block, which is dropped");
+                    }
+                }
+            }
+        }
+        logger.info("Merged " + merged + " Transformations of " + shardManifests.size() + " manifests into " + target);
+        return merged;
+    }
+
+    /**
+     * Appends the tokenized files of all shards to the target, which is replaced if it exists.
+     * The shards have to be written in the same format as the target (see TokenSinks).
+     *
+     * @param shardTokens the token files of the shards
+     * @param target the token file to write
+     * @return the number of merged files
+     * @throws IOException if a token file cannot be read or the target cannot be written
+     * @throws UnsupportedOperationException if a token file has another format than the target
+     */
+    public static long mergeTokens(List<Path> shardTokens, Path target) throws IOException {
+        String format = extensionOf(target);
+        for (Path shard : shardTokens) {
+            if (!extensionOf(shard).equals(format)) {
+                throw new UnsupportedOperationException("Cannot merge the tokens of " + shard + " into " + target
+                        + " as they have different formats");
+            }
+        }
+        long merged = 0;
+        if (format.equals(".jsonl")) {
+            // Every line is a file on its own, so the lines are copied without parsing them
+            if (target.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                for (Path shard : shardTokens) {
+                    try (BufferedReader reader = Files.newBufferedReader(shard, StandardCharsets.UTF_8)) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (!line.isBlank()) {
+                                writer.write(line);
+                                writer.newLine();
+                                merged++;
+                            }
+                        }
+                    }
+                }
+            }
+        } else {
+            // The binary files have their own dictionaries, so the tokens are read and written anew
+            try (TokenSink sink = TokenSinks.forOutput(target)) {
+                for (Path shard : shardTokens) {
+                    try (BinaryTokenReader reader = new BinaryTokenReader(shard)) {
+                        while (reader.hasNext()) {
+                            TokenizedFile file = reader.next();
+                            sink.write(file.getFile(), file.getTokens());
+                            merged++;
+                        }
+                    }
+                }
+            }
+        }
+        logger.info("Merged the tokens of " + merged + " files of " + shardTokens.size() + " shards into " + target);
+        return merged;
+    }
+
+    /**
+     * Combines the applicability CSVs of all shards into the target directory.
+     * The lines per file are sorted by file, the lines per transformer are summed up.
+     *
+     * @param shardDirectories the output directories of the analysis of every shard
+     * @param targetDirectory the directory to write the combined CSVs to
+     * @throws IOException if a CSV cannot be read or written
+     * @throws UnsupportedOperationException if the shards were analyzed with different transformers
+     */
+    public static void mergeApplicability(List<Path> shardDirectories, Path targetDirectory) throws IOException {
+        String perFileHeader = null;
+        List<String> perFileLines = new ArrayList<>();
+        String perTransformerHeader = null;
+        List<String> transformerKeys = null;
+        Map<String, long[]> perTransformer = new LinkedHashMap<>();
+        Map<String, Boolean> hasCandidates = new LinkedHashMap<>();
+        for (Path directory : shardDirectories) {
+            List<String> perFile = Files.readAllLines(directory.resolve(ApplicabilityAnalysis.PER_FILE_CSV), StandardCharsets.UTF_8);
+            perFileHeader = checkHeader(perFileHeader, perFile.get(0), directory);
+            perFileLines.addAll(perFile.subList(1, perFile.size()));
+
+            List<String> transformers = Files.readAllLines(directory.resolve(ApplicabilityAnalysis.PER_TRANSFORMER_CSV), StandardCharsets.UTF_8);
+            perTransformerHeader = checkHeader(perTransformerHeader, transformers.get(0), directory);
+            // transformerIndex,transformer,files,applicableFiles,candidates - the names have no commas
+            List<String[]> rows = transformers.subList(1, transformers.size()).stream()
+                    .map(line -> line.split(",", -1))
+                    .collect(Collectors.toList());
+            List<String> keys = rows.stream().map(values -> values[0] + "," + values[1]).collect(Collectors.toList());
+            if (transformerKeys != null && !transformerKeys.equals(keys)) {
+                throw new UnsupportedOperationException("The shard " + directory + " was analyzed with other transformers");
+            }
+            transformerKeys = keys;
+            for (String[] values : rows) {
+                String transformer = values[0] + "," + values[1];
+                long[] sums = perTransformer.computeIfAbsent(transformer, k -> new long[3]);
+                sums[0] += Long.parseLong(values[2]);
+                sums[1] += Long.parseLong(values[3]);
+                hasCandidates.put(transformer, !values[4].isEmpty());
+                if (!values[4].isEmpty()) {
+                    sums[2] += Long.parseLong(values[4]);
+                }
+            }
+        }
+        if (perFileHeader == null) {
+            throw new UnsupportedOperationException("There are no shards to merge");
+        }
+        // The sort is stable, so the lines of a file keep the order of the transformers
+        perFileLines.sort(Comparator.comparing(ShardMerger::fileOfPerFileLine));
+
+        Files.createDirectories(targetDirectory);
+        List<String> perFile = new ArrayList<>(List.of(perFileHeader));
+        perFile.addAll(perFileLines);
+        Files.write(targetDirectory.resolve(ApplicabilityAnalysis.PER_FILE_CSV), perFile, StandardCharsets.UTF_8);
+        List<String> transformers = new ArrayList<>(List.of(perTransformerHeader));
+        for (var entry : perTransformer.entrySet()) {
+            long[] sums = entry.getValue();
+            transformers.add(String.join(",", entry.getKey(), String.valueOf(sums[0]), String.valueOf(sums[1]),
+                    hasCandidates.get(entry.getKey()) ? String.valueOf(sums[2]) : ""));
+        }
+        Files.write(targetDirectory.resolve(ApplicabilityAnalysis.PER_TRANSFORMER_CSV), transformers, StandardCharsets.UTF_8);
+        logger.info("Merged the applicability of " + shardDirectories.size() + " shards into " + targetDirectory);
+    }
+
+    /**
+     * @param directory an output directory
+     * @return true if the directory holds the CSVs of an ApplicabilityAnalysis
+     */
+    public static boolean hasApplicability(Path directory) {
+        return Files.isRegularFile(directory.resolve(ApplicabilityAnalysis.PER_FILE_CSV))
+                && Files.isRegularFile(directory.resolve(ApplicabilityAnalysis.PER_TRANSFORMER_CSV));
+    }
+
+    private static int mergePatches(List<String> shardOutputs, String target) throws IOException {
+        if (!OutputSinks.isPatch(target) || !shardOutputs.stream().allMatch(OutputSinks::isPatch)) {
+            throw new UnsupportedOperationException("Patch files can only be merged with other patch files into a patch file");
+        }
+        try (OutputSink sink = OutputSinks.forOutput(target)) {
+            for (String shardOutput : shardOutputs) {
+                sink.write(Path.of(shardOutput).getFileName().toString(),
+                        Files.readString(Path.of(shardOutput), StandardCharsets.UTF_8));
+            }
+        }
+        logger.info("Merged the patches of " + shardOutputs.size() + " shards into " + target);
+        return shardOutputs.size();
+    }
+
+    /**
+     * @return the paths of all files in the output relative to it, with "/" as separator
+     */
+    private static List<String> listFiles(String output) throws IOException {
+        try (FileSystem archive = openArchive(output)) {
+            Path root = rootOf(output, archive);
+            if (!Files.isDirectory(root)) {
+                throw new UnsupportedOperationException("The shard output " + output + " is not a directory");
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                return paths.filter(Files::isRegularFile)
+                        .map(p -> root.relativize(p).toString().replace(root.getFileSystem().getSeparator(), "/"))
+                        .filter(p -> !APPLICABILITY_FILES.contains(p))
+                        .collect(Collectors.toList());
+            }
+        }
+    }
+
+    private static Path rootOf(String output, FileSystem archive) {
+        return archive == null ? Path.of(output) : archive.getPath("/");
+    }
+
+    /**
+     * @return the opened zip-filesystem if the output is a zip or jar archive, null for directories
+     * @throws UnsupportedOperationException for other archives, which cannot be read
+     */
+    private static FileSystem openArchive(String output) throws IOException {
+        String lower = output.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".zip") || lower.endsWith(".jar")) {
+            // The null classloader makes sure the zip-provider of the jdk is used
+            return FileSystems.newFileSystem(Path.of(output), (ClassLoader) null);
+        }
+        if (OutputSinks.isArchive(output)) {
+            throw new UnsupportedOperationException("Only directories and zip/jar archives can be merged, not " + output);
+        }
+        return null;
+    }
+
+    private static String checkHeader(String expected, String header, Path directory) {
+        if (expected != null && !expected.equals(header)) {
+            throw new UnsupportedOperationException("The shard " + directory + " has another format: " + header);
+        }
+        return header;
+    }
+
+    /**
+     * The file is everything before the last four columns, it can be quoted and contain commas itself.
+     */
+    private static String fileOfPerFileLine(String line) {
+        int end = line.length();
+        for (int i = 0; i < 4; i++) {
+            end = line.lastIndexOf(',', end - 1);
+        }
+        return line.substring(0, end);
+    }
+
+    private static String extensionOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.contains(".") ? name.substring(name.lastIndexOf('.')) : "";
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.ciselab.lampion.program;
+
+import java.util.Objects;
+
+/**
+ * A java source to transform in memory, see LampionTransformer.
+ * The name is only used to tell the sources apart (e.g. in the results and logs), it does not have to exist as a file.
+ */
+public class SourceUnit {
+
+    // Used for sources that are transformed without a name
+    public static final String DEFAULT_NAME = "Source.java";
+
+    private final String name;
+    private final String source;
+
+    /**
+     * @param name the name of the source, e.g. its path "lampion/test/Example.java"
+     * @param source the java code
+     * @throws UnsupportedOperationException if the name is null or blank, or the source is null
+     */
+    public SourceUnit(String name, String source) {
+        if (name == null || name.isBlank()) {
+            throw new UnsupportedOperationException("SourceUnits need a name");
+        }
+        if (source == null) {
+            throw new UnsupportedOperationException("The source of a SourceUnit cannot be null");
+        }
+        this.name = name;
+        this.source = source;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SourceUnit)) return false;
+        SourceUnit other = (SourceUnit) o;
+        return name.equals(other.name) && source.equals(other.source);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, source);
+    }
+
+    @Override
+    public String toString() {
+        return "SourceUnit " + name;
+    }
+}
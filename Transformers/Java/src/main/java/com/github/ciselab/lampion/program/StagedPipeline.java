@@ -0,0 +1,524 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.program.output.OutputSink;
+import com.github.ciselab.lampion.program.output.OutputSinks;
+import com.github.ciselab.lampion.support.ParseEvent;
+import com.github.ciselab.lampion.support.PrintEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.declaration.CtType;
+import spoon.support.StandardEnvironment;
+import spoon.support.compiler.VirtualFile;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs an Engine as a pipeline of stages, instead of transforming all files and then writing all files:
+ *
+ * - index: all files of the input are read once and added to a SymbolIndex, which keeps only their declarations.
+ *   The symbols of every file are needed before any file can be resolved, so this is the only stage
+ *   that has to finish before the others start.
+ * - read: the files (of the shard) are read again, one by one, on I/O threads (virtual threads, if the JVM has them)
+ * - transform: every file is parsed on its own against the index, so the symbols of other files resolve
+ *   like in a run in phases (e.g. inherited fields), transformed and printed. The workers run on a pool sized
+ *   to the CPUs, and every worker transforms all of its files with one engine.
+ * - write: the printed files are written on I/O threads again
+ *
+ * The stages are connected by queues that hold at most "depth" files, so the transformations wait for slow writes
+ * instead of piling up printed files, the reads wait for slow transformations instead of piling up read files,
+ * and reading, transforming and writing overlap. Only the declarations of all files are kept in memory at once.
+ * With the "Each"-Scopes the transformations of a file only depend on the file, so the written files are the ones
+ * of a run in phases. The files are handed to the output in the order of the input, no matter in which order they
+ * finish, so written archives are the same for the same seed.
+ *
+ * After the run, every stage reports how many files it handled, how long its workers were busy and how long
+ * they waited for the other stages, and how full its queue got. Of the stages that run at the same time,
+ * the one that was busy the most is the bottleneck.
+ */
+class StagedPipeline {
+    private static Logger logger = LogManager.getLogger(StagedPipeline.class);
+
+    // Put into the queue once per worker of the transform stage, when the read stage is done
+    private static final ReadFile NO_MORE_SOURCES = new ReadFile(-1, null);
+    // Put into the queue once per worker of the write stage, when the transform stage is done
+    private static final PrintedFile NO_MORE_FILES = new PrintedFile(-1, Map.of());
+    // How often workers waiting for a queue check whether the pipeline was aborted
+    private static final long ABORT_CHECK_MILLIS = 100;
+
+    /**
+     * The statistics of a single stage of the pipeline, filled while it runs.
+     */
+    static class Stage {
+        private final String name;
+        private final int workers;
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong waitingNanos = new AtomicLong();
+        // The most files that waited in the queue in front of this stage, -1 for stages without a queue in front
+        private final AtomicInteger maxQueued = new AtomicInteger(-1);
+
+        Stage(String name, int workers) {
+            this.name = name;
+            this.workers = workers;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public long getFiles() {
+            return files.get();
+        }
+
+        public Duration getBusy() {
+            return Duration.ofNanos(busyNanos.get());
+        }
+
+        public Duration getWaiting() {
+            return Duration.ofNanos(waitingNanos.get());
+        }
+
+        public int getMaxQueued() {
+            return maxQueued.get();
+        }
+
+        /**
+         * @return the share of the time all workers of this stage were busy, between 0 and 1
+         */
+        public double getUtilization() {
+            long total = busyNanos.get() + waitingNanos.get();
+            return total == 0 ? 0 : (double) busyNanos.get() / total;
+        }
+
+        private void recordQueued(BlockingQueue<?> queue) {
+            maxQueued.accumulateAndGet(queue.size(), Math::max);
+        }
+    }
+
+    private final Engine engine;
+    private final String inputFilter;
+    private final Shard shard;
+    private final boolean writeJavaOutput;
+    private final int depth;
+
+    /**
+     * A read input file.
+     */
+    private static class ReadFile {
+        private final int index;
+        private final SourceUnit unit;
+
+        /**
+         * @param index the position of the file among the transformed files, the files are written in its order
+         * @param unit the file, named by its path relative to the input
+         */
+        ReadFile(int index, SourceUnit unit) {
+            this.index = index;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * The printed files of one input file, by their output path.
+     */
+    private static class PrintedFile {
+        private final int index;
+        private final Map<String,String> files;
+
+        /**
+         * @param index the position of the input file among the transformed files, the files are written in its order
+         * @param files the printed files by their output path, sorted by path
+         */
+        PrintedFile(int index, Map<String,String> files) {
+            this.index = index;
+            this.files = files;
+        }
+    }
+
+    private final Stage index;
+    private final Stage read;
+    private final Stage transform;
+    private final Stage write;
+    private final AtomicLong transformations = new AtomicLong();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    // The printed files that finished before an earlier file, they wait here until they are next in order
+    private final Map<Integer,PrintedFile> finishedEarly = new HashMap<>();
+    private int nextToWrite = 0;
+
+    /**
+     * @param engine the engine whose input, output and transformations are used
+     * @param inputFilter a glob for the files to read, null for all java files
+     * @param shard the shard of the files to transform, the files of other shards are only indexed for their symbols
+     * @param writeJavaOutput whether to write the transformed files at all
+     * @param depth the capacity of the queues between the stages, and the number of workers of the I/O stages
+     */
+    StagedPipeline(Engine engine, String inputFilter, Shard shard, boolean writeJavaOutput, int depth) {
+        if (depth < 1) {
+            throw new UnsupportedOperationException("The depth of the pipeline has to be positive, got " + depth);
+        }
+        this.engine = engine;
+        this.inputFilter = inputFilter;
+        this.shard = shard;
+        this.writeJavaOutput = writeJavaOutput;
+        this.depth = depth;
+        index = new Stage("index", depth);
+        read = new Stage("read", depth);
+        transform = new Stage("transform", Runtime.getRuntime().availableProcessors());
+        write = new Stage("write", depth);
+    }
+
+    /**
+     * Indexes, reads, transforms and writes all files of the engine, and logs the statistics of the stages.
+     * If any stage fails, the others are stopped and the run is aborted - files written so far are kept.
+     */
+    void run() {
+        Instant start = Instant.now();
+        BlockingQueue<ReadFile> toTransform = new ArrayBlockingQueue<>(depth);
+        BlockingQueue<PrintedFile> toWrite = new ArrayBlockingQueue<>(depth);
+        finishedEarly.clear();
+        nextToWrite = 0;
+        ExecutorService io = createIoExecutor();
+        ExecutorService cpu = Executors.newFixedThreadPool(transform.getWorkers());
+        try (FileSystem archive = InputSources.isArchive(engine.codeDirectory) ?
+                     FileSystems.newFileSystem(Path.of(engine.codeDirectory), (ClassLoader) null) : null;
+             OutputSink sink = writeJavaOutput ? OutputSinks.forOutput(engine.outputDirectory) : null) {
+            Path root = archive == null ? Path.of(engine.codeDirectory) : archive.getPath("/");
+            // The files of other shards are indexed as well, only to resolve the symbols the files of the shard use
+            List<Path> files = InputSources.findFiles(root, inputFilter, Shard.ALL);
+            List<Path> filesToTransform = files.stream()
+                    .filter(f -> shard.contains(root.relativize(f).toString()))
+                    .collect(Collectors.toList());
+            logger.info("Running a pipeline of depth {} over {} of {} files of {}",
+                    depth, filesToTransform.size(), files.size(), engine.codeDirectory);
+
+            // If any worker fails, all others are interrupted and stop waiting for the queues
+            Runnable abort = () -> {
+                io.shutdownNow();
+                cpu.shutdownNow();
+            };
+            StandardEnvironment environment = new StandardEnvironment();
+            engine.configureParsing(environment);
+            SymbolIndex symbols = new SymbolIndex(environment.getComplianceLevel());
+            AtomicInteger nextIndexed = new AtomicInteger();
+            List<Future<Void>> indexers = startWorkers(io, index, abort, () -> {
+                int i;
+                while ((i = nextIndexed.getAndIncrement()) < files.size()) {
+                    long begin = System.nanoTime();
+                    symbols.add(readFile(root, files.get(i), environment.getEncoding()));
+                    index.busyNanos.addAndGet(System.nanoTime() - begin);
+                    index.files.incrementAndGet();
+                }
+            }, () -> { });
+            // Every file can use the symbols of any other, so nothing is parsed before all files are indexed
+            awaitWorkers(indexers);
+            logger.info("Indexed {} types of {} files", symbols.size(), files.size());
+
+            AtomicInteger nextRead = new AtomicInteger();
+            // The transform stage is told to stop by the last reader
+            List<Future<Void>> readers = startWorkers(io, read, abort, () -> {
+                int i;
+                while ((i = nextRead.getAndIncrement()) < filesToTransform.size()) {
+                    long begin = System.nanoTime();
+                    ReadFile file = new ReadFile(i, readFile(root, filesToTransform.get(i), environment.getEncoding()));
+                    long done = System.nanoTime();
+                    put(toTransform, file);
+                    read.busyNanos.addAndGet(done - begin);
+                    read.waitingNanos.addAndGet(System.nanoTime() - done);
+                    read.files.incrementAndGet();
+                    transform.recordQueued(toTransform);
+                }
+            }, () -> {
+                for (int i = 0; i < transform.getWorkers(); i++) {
+                    put(toTransform, NO_MORE_SOURCES);
+                }
+            });
+            // The write stage is told to stop by the last transform worker
+            List<Future<Void>> transformers = startWorkers(cpu, transform, abort, () -> {
+                // The transformations of a file only depend on the file and the seed, so one engine does all files
+                Engine worker = engine.createWorkerEngine(engine.seed, engine.outputDirectory);
+                while (true) {
+                    long begin = System.nanoTime();
+                    ReadFile file = take(toTransform);
+                    if (file == NO_MORE_SOURCES) {
+                        return;
+                    }
+                    long taken = System.nanoTime();
+                    List<CtType<?>> types = parse(symbols, file.unit);
+                    worker.transformInMemory(types);
+                    transformations.addAndGet(worker.getFinishedResults().size());
+                    PrintedFile printed = sink != null ?
+                            printFile(file.index, types) : new PrintedFile(file.index, Map.of());
+                    long transformed = System.nanoTime();
+                    put(toWrite, printed);
+                    transform.busyNanos.addAndGet(transformed - taken);
+                    transform.waitingNanos.addAndGet((taken - begin) + (System.nanoTime() - transformed));
+                    transform.files.incrementAndGet();
+                    write.recordQueued(toWrite);
+                }
+            }, () -> {
+                for (int i = 0; i < write.getWorkers(); i++) {
+                    put(toWrite, NO_MORE_FILES);
+                }
+            });
+            List<Future<Void>> writers = startWorkers(io, write, abort, () -> {
+                while (true) {
+                    long begin = System.nanoTime();
+                    PrintedFile printed = take(toWrite);
+                    if (printed == NO_MORE_FILES) {
+                        return;
+                    }
+                    long taken = System.nanoTime();
+                    if (sink != null) {
+                        writeInOrder(printed, sink);
+                    }
+                    write.busyNanos.addAndGet(System.nanoTime() - taken);
+                    write.waitingNanos.addAndGet(taken - begin);
+                    write.files.incrementAndGet();
+                }
+            }, () -> { });
+
+            awaitWorkers(readers);
+            awaitWorkers(transformers);
+            awaitWorkers(writers);
+        } catch (IOException e) {
+            logger.error("Could not read the input {} or write the output {} - exiting early.",
+                    engine.codeDirectory, engine.outputDirectory, e);
+            return;
+        } catch (ExecutionException e) {
+            logger.error("A stage of the pipeline failed - exiting early.", failure.get());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while running the pipeline - exiting early.", e);
+            return;
+        } finally {
+            io.shutdownNow();
+            cpu.shutdownNow();
+        }
+        logStatistics(Duration.between(start, Instant.now()));
+    }
+
+    /**
+     * @return the stages in the order of the pipeline, with the statistics of the last run
+     */
+    List<Stage> getStages() {
+        return List.of(index, read, transform, write);
+    }
+
+    /**
+     * The index stage runs before all others, so it never holds them up and is not considered.
+     * @return the stage whose workers were busy the most of their time in the last run
+     */
+    Stage getBottleneck() {
+        return Stream.of(read, transform, write).max(Comparator.comparingDouble(Stage::getUtilization)).orElseThrow();
+    }
+
+    /**
+     * @return the number of transformations applied in the last run
+     */
+    long getTransformations() {
+        return transformations.get();
+    }
+
+    /**
+     * Reads a file, decoding it like Spoon does, see InputSources.
+     * @return the file, named by its path relative to the root
+     */
+    private static SourceUnit readFile(Path root, Path file, Charset encoding) throws IOException {
+        return new SourceUnit(root.relativize(file).toString(), new String(Files.readAllBytes(file), encoding));
+    }
+
+    /**
+     * Parses a single file, resolving the symbols of the other files from the index.
+     * @return the toplevel types declared in the file, without the ones of the other files the index added
+     */
+    private List<CtType<?>> parse(SymbolIndex symbols, SourceUnit unit) {
+        Launcher launcher = symbols.createLauncher();
+        engine.configureParsing(launcher.getEnvironment());
+        launcher.addInputResource(new VirtualFile(unit.getSource(), unit.getName()));
+        ParseEvent parseEvent = new ParseEvent();
+        parseEvent.begin();
+        CtModel model = launcher.buildModel();
+        parseEvent.end();
+        List<CtType<?>> types = new ArrayList<>();
+        for (CtType<?> type : model.getAllTypes()) {
+            SourcePosition position = type.getPosition();
+            if (position.isValidPosition() && position.getFile() != null
+                    && InputSources.relativePathOf(position.getFile(), engine.codeDirectory).equals(unit.getName())) {
+                types.add(type);
+            }
+        }
+        if (parseEvent.shouldCommit()) {
+            parseEvent.input = unit.getName();
+            parseEvent.types = types.size();
+            parseEvent.commit();
+        }
+        return types;
+    }
+
+    /**
+     * Prints every toplevel type of a file for the path Spoon would print it to.
+     * @param index the position of the file among the transformed files
+     */
+    private PrintedFile printFile(int index, List<CtType<?>> types) {
+        PrintEvent printEvent = new PrintEvent();
+        printEvent.begin();
+        Map<String,String> printed = new TreeMap<>();
+        for (CtType<?> type : types) {
+            printed.put(OutputWriter.getOutputPath(type),
+                    OutputWriter.print(type.getFactory().CompilationUnit().getOrCreate(type), List.of(type)));
+        }
+        printEvent.output = engine.outputDirectory;
+        printEvent.mode = "default";
+        printEvent.types = types.size();
+        printEvent.commit();
+        return new PrintedFile(index, printed);
+    }
+
+    /**
+     * Writes the printed file once all files before it are written, and then the files after it that are done already.
+     * The sinks are not made for concurrent writes, and like this they get the files in the order of the input.
+     */
+    private void writeInOrder(PrintedFile printed, OutputSink sink) throws IOException {
+        synchronized (finishedEarly) {
+            finishedEarly.put(printed.index, printed);
+            PrintedFile next;
+            while ((next = finishedEarly.remove(nextToWrite)) != null) {
+                for (var file : next.files.entrySet()) {
+                    sink.write(file.getKey(), file.getValue());
+                }
+                nextToWrite++;
+            }
+        }
+    }
+
+    private void logStatistics(Duration duration) {
+        logger.info("The pipeline ran {} transformations on {} files in {}",
+                transformations.get(), transform.getFiles(), duration);
+        for (Stage stage : getStages()) {
+            logger.info("Stage {}: {} files on {} workers, busy {} ms ({}% of the time), waiting {} ms, "
+                            + "at most {} files queued in front",
+                    stage.getName(), stage.getFiles(), stage.getWorkers(), stage.getBusy().toMillis(),
+                    Math.round(stage.getUtilization() * 100), stage.getWaiting().toMillis(),
+                    stage.getMaxQueued() < 0 ? "-" : stage.getMaxQueued());
+        }
+        logger.info("The bottleneck of the pipeline was the {} stage", getBottleneck().getName());
+    }
+
+    /**
+     * Virtual threads only exist from Java 21 on, while Lampion is built for Java 17,
+     * so they are looked up at runtime and a cached thread pool is used without them.
+     */
+    static ExecutorService createIoExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Puts the item into the queue, waiting for space as long as the pipeline is not aborted.
+     * Spoon does not always keep the interrupt of an abort, so the waiting workers check for it themselves.
+     * @throws InterruptedException if the pipeline was aborted while waiting
+     */
+    private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, ABORT_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkAborted();
+        }
+    }
+
+    /**
+     * Takes the next item of the queue, waiting for one as long as the pipeline is not aborted.
+     * @throws InterruptedException if the pipeline was aborted while waiting
+     */
+    private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+        T item;
+        while ((item = queue.poll(ABORT_CHECK_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            checkAborted();
+        }
+        return item;
+    }
+
+    private void checkAborted() throws InterruptedException {
+        if (failure.get() != null) {
+            throw new InterruptedException("The pipeline was aborted");
+        }
+    }
+
+    /**
+     * A worker of a stage, which may fail with any exception to abort the pipeline.
+     */
+    private interface Worker {
+        void work() throws Exception;
+    }
+
+    /**
+     * Starts the workers of a stage, the last one to finish runs "whenDone".
+     * The first worker (of any stage) to fail is remembered and aborts the pipeline.
+     */
+    private List<Future<Void>> startWorkers(ExecutorService executor, Stage stage, Runnable abort,
+                                            Worker worker, Worker whenDone) {
+        List<Future<Void>> workers = new ArrayList<>(stage.getWorkers());
+        AtomicInteger running = new AtomicInteger(stage.getWorkers());
+        Callable<Void> task = () -> {
+            try {
+                worker.work();
+                if (running.decrementAndGet() == 0) {
+                    whenDone.work();
+                }
+                return null;
+            } catch (Exception e) {
+                // The interruptions of the abort are not the cause
+                if (!(e instanceof InterruptedException)) {
+                    failure.compareAndSet(null, e);
+                }
+                abort.run();
+                throw e;
+            }
+        };
+        for (int i = 0; i < stage.getWorkers(); i++) {
+            workers.add(executor.submit(task));
+        }
+        return workers;
+    }
+
+    private static void awaitWorkers(List<Future<Void>> workers) throws ExecutionException, InterruptedException {
+        for (Future<Void> worker : workers) {
+            worker.get();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.github.ciselab.lampion.program;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ast.AbstractMethodDeclaration;
+import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
+import org.eclipse.jdt.internal.compiler.ast.FieldDeclaration;
+import org.eclipse.jdt.internal.compiler.ast.Initializer;
+import org.eclipse.jdt.internal.compiler.ast.TypeDeclaration;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.lookup.ExtraCompilerModifiers;
+import org.eclipse.jdt.internal.compiler.lookup.ModuleBinding;
+import org.eclipse.jdt.internal.compiler.parser.Parser;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+import org.eclipse.jdt.internal.compiler.problem.ProblemReporter;
+import spoon.Launcher;
+import spoon.SpoonModelBuilder;
+import spoon.reflect.factory.Factory;
+import spoon.support.compiler.jdt.JDTBasedSpoonCompiler;
+import spoon.support.compiler.jdt.JDTBatchCompiler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SymbolIndex holds the declarations of all input files, so that a single file can be parsed on its own
+ * and still resolves the symbols it uses from other files (e.g. the type of an inherited field), see StagedPipeline.
+ *
+ * Every file is added as a stub: it is parsed without its method bodies (the "diet" parse of the compiler Spoon uses),
+ * and the bodies of its methods, constructors and initializers are cut out of its source.
+ * The launchers of the index parse only their own input, and the compiler asks the index for every type it does not
+ * find there. So a parsed file only pulls in the stubs of the types it uses, instead of the code of all files.
+ * The stubs end up in the model of the file as well, named after their file with a prefix, so they are not mistaken
+ * for the parsed file.
+ *
+ * Files can be added by several threads at once. Once all files are added, the index is only read,
+ * and its launchers can be used by several threads at once (each with its own launcher).
+ */
+class SymbolIndex {
+
+    // The stubs are named after their file with this prefix, so they are never mistaken for an input file
+    private static final String STUB_PREFIX = "lampion-stub:";
+
+    /**
+     * The stub of a single file: its source without the bodies and its name.
+     */
+    private static class Stub {
+        private final char[] source;
+        private final String name;
+
+        Stub(char[] source, String name) {
+            this.source = source;
+            this.name = name;
+        }
+    }
+
+    private final String sourceLevel;
+    // The stubs by the qualified names of the toplevel types declared in them
+    private final Map<String,Stub> stubsPerType = new ConcurrentHashMap<>();
+    // All packages of the stubs, including the packages that only hold other packages
+    private final Set<String> packages = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param complianceLevel the java version the files are parsed with, see Environment.getComplianceLevel
+     */
+    SymbolIndex(int complianceLevel) {
+        this.sourceLevel = complianceLevel < 9 ? "1." + complianceLevel : String.valueOf(complianceLevel);
+    }
+
+    /**
+     * Adds the types declared in a file. Files that cannot be parsed add what could be parsed of them.
+     * @param unit the file, named by its path relative to the input
+     */
+    void add(SourceUnit unit) {
+        CompilerOptions options = new CompilerOptions(Map.of(
+                CompilerOptions.OPTION_Source, sourceLevel, CompilerOptions.OPTION_Compliance, sourceLevel));
+        // The problems of the input are reported when the file itself is parsed, not here
+        Parser parser = new Parser(new ProblemReporter(DefaultErrorHandlingPolicies.proceedWithAllProblems(),
+                options, new DefaultProblemFactory()), false);
+        char[] source = unit.getSource().toCharArray();
+        CompilationUnit compilationUnit = new CompilationUnit(source, unit.getName(), "UTF-8");
+        CompilationUnitDeclaration declaration = parser.dietParse(compilationUnit,
+                new CompilationResult(compilationUnit, 0, 0, options.maxProblemsPerUnit));
+        // Package and module declarations are no types, even though the compiler gives them one
+        if (declaration.types == null || declaration.isPackageInfo() || declaration.isModuleInfo()) {
+            return;
+        }
+        String packageName = declaration.currentPackage == null ?
+                "" : CharOperation.toString(declaration.currentPackage.tokens);
+        List<int[]> bodies = new ArrayList<>();
+        for (TypeDeclaration type : declaration.types) {
+            collectBodies(type, bodies);
+        }
+        Stub stub = new Stub(cutOut(source, bodies), STUB_PREFIX + unit.getName());
+        for (TypeDeclaration type : declaration.types) {
+            String name = new String(type.name);
+            stubsPerType.put(packageName.isEmpty() ? name : packageName + "." + name, stub);
+        }
+        for (int dot = packageName.indexOf('.'); dot >= 0; dot = packageName.indexOf('.', dot + 1)) {
+            packages.add(packageName.substring(0, dot));
+        }
+        if (!packageName.isEmpty()) {
+            packages.add(packageName);
+        }
+    }
+
+    /**
+     * @return the number of toplevel types in the index
+     */
+    int size() {
+        return stubsPerType.size();
+    }
+
+    /**
+     * Creates a launcher that resolves the types it does not find in its input or classpath from the index.
+     * The types of the index come first, like the input of a launcher comes before its classpath.
+     * @return a new launcher, without any input
+     */
+    Launcher createLauncher() {
+        return new Launcher() {
+            @Override
+            public SpoonModelBuilder createCompiler(Factory factory) {
+                return new JDTBasedSpoonCompiler(factory) {
+                    @Override
+                    protected JDTBatchCompiler createBatchCompiler() {
+                        return new JDTBatchCompiler(this) {
+                            @Override
+                            public FileSystem getLibraryAccess() {
+                                return new IndexedFileSystem(checkedClasspaths, filenames, annotationsFromClasspath,
+                                        limitedModules);
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * The name environment of the compiler, which answers the indexed types with their stubs
+     * and everything else from the classpath.
+     */
+    private class IndexedFileSystem extends FileSystem {
+
+        IndexedFileSystem(Classpath[] paths, String[] initialFileNames, boolean annotationsFromClasspath,
+                          Set<String> limitedModules) {
+            super(paths, initialFileNames, annotationsFromClasspath, limitedModules);
+        }
+
+        @Override
+        public NameEnvironmentAnswer findType(char[][] compoundName, char[] moduleName) {
+            NameEnvironmentAnswer answer = answer(CharOperation.toString(compoundName));
+            return answer != null ? answer : super.findType(compoundName, moduleName);
+        }
+
+        @Override
+        public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName, char[] moduleName) {
+            NameEnvironmentAnswer answer = answer(CharOperation.toString(CharOperation.arrayConcat(packageName, typeName)));
+            return answer != null ? answer : super.findType(typeName, packageName, moduleName);
+        }
+
+        @Override
+        public char[][] getModulesDeclaringPackage(char[][] packageName, char[] moduleName) {
+            // The input is never part of a module
+            if (packages.contains(CharOperation.toString(packageName))) {
+                return new char[][]{ModuleBinding.UNNAMED};
+            }
+            return super.getModulesDeclaringPackage(packageName, moduleName);
+        }
+
+        @Override
+        public boolean hasCompilationUnit(char[][] packageName, char[] moduleName, boolean checkCUs) {
+            return packages.contains(CharOperation.toString(packageName))
+                    || super.hasCompilationUnit(packageName, moduleName, checkCUs);
+        }
+
+        private NameEnvironmentAnswer answer(String qualifiedName) {
+            Stub stub = stubsPerType.get(qualifiedName);
+            if (stub == null) {
+                return null;
+            }
+            // Every answer gets its own unit, as the compiler keeps state in them
+            return new NameEnvironmentAnswer(new CompilationUnit(stub.source, stub.name, "UTF-8"), null);
+        }
+    }
+
+    /**
+     * Collects the (inclusive) ranges between the braces of all bodies of a type and its member types.
+     * Bodies of anonymous classes (e.g. of enum constants) are kept, as they are not declared by the type itself.
+     */
+    private static void collectBodies(TypeDeclaration type, List<int[]> bodies) {
+        if (type.methods != null) {
+            for (AbstractMethodDeclaration method : type.methods) {
+                // Generated methods (default constructors, static initializers) have no source
+                boolean hasBody = method.bodyStart > 0 && method.bodyEnd >= method.bodyStart
+                        && (method.modifiers & ExtraCompilerModifiers.AccSemicolonBody) == 0;
+                if (hasBody) {
+                    bodies.add(new int[]{method.bodyStart, method.bodyEnd});
+                }
+            }
+        }
+        if (type.fields != null) {
+            for (FieldDeclaration field : type.fields) {
+                if (field instanceof Initializer) {
+                    Initializer initializer = (Initializer) field;
+                    if (initializer.bodyStart > 0 && initializer.bodyEnd >= initializer.bodyStart) {
+                        bodies.add(new int[]{initializer.bodyStart, initializer.bodyEnd});
+                    }
+                }
+            }
+        }
+        if (type.memberTypes != null) {
+            for (TypeDeclaration memberType : type.memberTypes) {
+                collectBodies(memberType, bodies);
+            }
+        }
+    }
+
+    /**
+     * @return the source without the given (inclusive) ranges, which do not overlap
+     */
+    private static char[] cutOut(char[] source, List<int[]> ranges) {
+        ranges.sort(Comparator.comparingInt(range -> range[0]));
+        StringBuilder stub = new StringBuilder(source.length);
+        int copied = 0;
+        for (int[] range : ranges) {
+            stub.append(source, copied, range[0] - copied);
+            copied = range[1] + 1;
+        }
+        stub.append(source, copied, source.length - copied);
+        char[] result = new char[stub.length()];
+        stub.getChars(0, stub.length(), result, 0);
+        return result;
+    }
+}
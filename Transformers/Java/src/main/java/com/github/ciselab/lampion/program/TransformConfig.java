@@ -0,0 +1,116 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.Transformer;
+import com.github.ciselab.lampion.transformations.TransformerRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The configuration of in-memory transformations, see LampionTransformer.
+ * It holds the settings of the Engine that matter without files: the transformers, how often they are applied
+ * (distribution, number and scope), whether to remove the comments and how to parse the sources.
+ * Sniper printing is not offered, as the sniper printer reads the original source from its file.
+ *
+ * The registered transformers are only used as prototypes, every transformation gets its own copies of them
+ * (see TransformerRegistry.createWorkerRegistry). So one configuration can be shared by many threads,
+ * as long as neither it nor its registry are changed while transformations are running.
+ */
+public class TransformConfig {
+
+    private final TransformerRegistry registry;
+    // By default, all transformers are applied equally often, see Engine.setDistribution
+    private Map<Transformer,Integer> distribution = new HashMap<>();
+    private long numberOfTransformationsPerScope = 100;
+    private Engine.TransformationScope scope = Engine.TransformationScope.global;
+    private boolean removeAllComments = false;
+    private ParseProfile parseProfile = ParseProfile.full;
+
+    /**
+     * @param registry the transformers to apply, they are not altered by transforming
+     * @throws UnsupportedOperationException if the registry is null
+     */
+    public TransformConfig(TransformerRegistry registry) {
+        if (registry == null) {
+            throw new UnsupportedOperationException("Registry cannot be null");
+        }
+        this.registry = registry;
+        for (Transformer t : registry.getRegisteredTransformers()) {
+            distribution.put(t, 1);
+        }
+    }
+
+    public TransformerRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * See Engine.setDistribution.
+     * @param distribution how often to apply the transformers of the registry, relative to each other
+     * @throws UnsupportedOperationException if the distribution contains other transformers or negative amounts
+     */
+    public void setDistribution(Map<Transformer,Integer> distribution) {
+        if (!registry.getRegisteredTransformers().containsAll(distribution.keySet())) {
+            throw new UnsupportedOperationException("The given distribution contains transformation outside of registry");
+        }
+        if (distribution.values().stream().anyMatch(v -> v < 0)) {
+            throw new UnsupportedOperationException("The given distribution negative amounts for transformations");
+        }
+        this.distribution = new HashMap<>(distribution);
+    }
+
+    /**
+     * See Engine.setNumberOfTransformationsPerScope, the scopes refer to the classes and methods of a single source.
+     * @param transformations the number of transformations per item of the scope
+     * @param scope the scope to quantify the transformations by
+     * @throws UnsupportedOperationException for negative number of transformations
+     */
+    public void setNumberOfTransformationsPerScope(long transformations, Engine.TransformationScope scope) {
+        if (transformations < 0) {
+            throw new UnsupportedOperationException("Number of transformations cannot be negative");
+        }
+        this.numberOfTransformationsPerScope = transformations;
+        this.scope = scope;
+    }
+
+    /**
+     * @param removeAllComments whether to remove all comments from the transformed sources
+     */
+    public void setRemoveAllComments(boolean removeAllComments) {
+        this.removeAllComments = removeAllComments;
+    }
+
+    /**
+     * See Engine.setParseProfile.
+     * @param parseProfile the profile to parse the sources with
+     * @throws UnsupportedOperationException if the profile is null
+     */
+    public void setParseProfile(ParseProfile parseProfile) {
+        if (parseProfile == null) {
+            throw new UnsupportedOperationException("ParseProfile cannot be null");
+        }
+        this.parseProfile = parseProfile;
+    }
+
+    /**
+     * Creates an engine with this configuration and its own transformers, which only works in memory.
+     * Like for variants, the distribution is kept per position, as the engine has its own transformer instances.
+     * @param seed the seed of the engine, the seeds of the transformers are derived from it
+     * @return a new engine to transform a single model with
+     */
+    Engine createEngine(long seed) {
+        TransformerRegistry workerRegistry = registry.createWorkerRegistry(seed);
+        Engine engine = new Engine(LampionTransformer.IN_MEMORY, LampionTransformer.IN_MEMORY, workerRegistry);
+        Map<Transformer,Integer> workerDistribution = new HashMap<>();
+        for (int i = 0; i < registry.getRegisteredTransformers().size(); i++) {
+            workerDistribution.put(workerRegistry.getRegisteredTransformers().get(i),
+                    distribution.getOrDefault(registry.getRegisteredTransformers().get(i), 0));
+        }
+        engine.setDistribution(workerDistribution);
+        engine.setNumberOfTransformationsPerScope(numberOfTransformationsPerScope, scope);
+        engine.setRemoveAllComments(removeAllComments);
+        engine.setParseProfile(parseProfile);
+        engine.setRandomSeed(seed);
+        return engine;
+    }
+}
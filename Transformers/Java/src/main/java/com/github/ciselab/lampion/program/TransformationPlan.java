@@ -0,0 +1,245 @@
+package com.github.ciselab.lampion.program;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * The TransformationPlan holds every transformation the Engine will apply in a run, before any of them is applied.
+ * Each entry says which transformer is applied how often to which element, and with which seed.
+ *
+ * The elements are identified by their file (the qualified name of the toplevel type) and their index within it,
+ * so a plan does not depend on the directory the code was read from or on the order the files were read in.
+ * This makes the plan usable for auditing and for replaying a run, see "writeTo" and "readFrom".
+ *
+ * The plan is written as tab-separated values, with one line for the scope, one header line and one line per entry.
+ */
+public class TransformationPlan {
+
+    private static final String SCOPE_PREFIX = "#scope";
+    private static final String HEADER = "sourceKey\ttarget\ttargetIndex\ttransformerIndex\ttransformer\tcount\tseed";
+
+    // The kind of elements a plan entry targets
+    public enum TargetKind {
+        CLASS,
+        METHOD
+    }
+
+    /**
+     * A single step of the plan, applying one transformer "count" times to one element.
+     */
+    public static class Entry {
+        private final String sourceKey;
+        private final TargetKind targetKind;
+        private final int targetIndex;
+        private final int transformerIndex;
+        private final String transformerName;
+        private final int count;
+        private final long seed;
+
+        /**
+         * @param sourceKey the qualified name of the toplevel type containing the element
+         * @param targetKind whether the element is a class or a method
+         * @param targetIndex the index of the element among the elements of its kind in the file
+         * @param transformerIndex the position of the transformer in the registry
+         * @param transformerName the simple class name of the transformer, used to check a replayed plan
+         * @param count how often the transformer is applied to the element
+         * @param seed the seed the transformer is set to before applying it
+         * @throws UnsupportedOperationException if any value is null or negative
+         */
+        public Entry(String sourceKey, TargetKind targetKind, int targetIndex,
+                     int transformerIndex, String transformerName, int count, long seed) {
+            if (sourceKey == null || targetKind == null || transformerName == null) {
+                throw new UnsupportedOperationException("Entries of a TransformationPlan cannot have null values");
+            }
+            if (targetIndex < 0 || transformerIndex < 0 || count < 0) {
+                throw new UnsupportedOperationException("Entries of a TransformationPlan cannot have negative indices or counts");
+            }
+            this.sourceKey = sourceKey;
+            this.targetKind = targetKind;
+            this.targetIndex = targetIndex;
+            this.transformerIndex = transformerIndex;
+            this.transformerName = transformerName;
+            this.count = count;
+            this.seed = seed;
+        }
+
+        public String getSourceKey() {
+            return sourceKey;
+        }
+
+        public TargetKind getTargetKind() {
+            return targetKind;
+        }
+
+        public int getTargetIndex() {
+            return targetIndex;
+        }
+
+        public int getTransformerIndex() {
+            return transformerIndex;
+        }
+
+        public String getTransformerName() {
+            return transformerName;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return targetIndex == other.targetIndex && transformerIndex == other.transformerIndex
+                    && count == other.count && seed == other.seed
+                    && sourceKey.equals(other.sourceKey) && targetKind == other.targetKind
+                    && transformerName.equals(other.transformerName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sourceKey, targetKind, targetIndex, transformerIndex, transformerName, count, seed);
+        }
+
+        private String toLine() {
+            return String.join("\t", sourceKey, targetKind.name(), String.valueOf(targetIndex),
+                    String.valueOf(transformerIndex), transformerName, String.valueOf(count), String.valueOf(seed));
+        }
+
+        private static Entry fromLine(String line) {
+            String[] values = line.split("\t", -1);
+            if (values.length != 7) {
+                throw new UnsupportedOperationException("Malformed line in TransformationPlan: " + line);
+            }
+            try {
+                return new Entry(values[0], TargetKind.valueOf(values[1]), Integer.parseInt(values[2]),
+                        Integer.parseInt(values[3]), values[4], Integer.parseInt(values[5]), Long.parseLong(values[6]));
+            } catch (IllegalArgumentException e) {
+                throw new UnsupportedOperationException("Malformed line in TransformationPlan: " + line, e);
+            }
+        }
+    }
+
+    private final Engine.TransformationScope scope;
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * @param scope the scope the plan was made for, the Each-scopes are executed as batches
+     * @throws UnsupportedOperationException if the scope is null
+     */
+    public TransformationPlan(Engine.TransformationScope scope) {
+        if (scope == null) {
+            throw new UnsupportedOperationException("Scope of a TransformationPlan cannot be null");
+        }
+        this.scope = scope;
+    }
+
+    public void addEntry(Entry entry) {
+        if (entry == null) {
+            throw new UnsupportedOperationException("Cannot add null to a TransformationPlan");
+        }
+        entries.add(entry);
+    }
+
+    public Engine.TransformationScope getScope() {
+        return scope;
+    }
+
+    /**
+     * @return all entries in order of planning, unmodifiable
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Groups the entries by their file, sorted by the source key, keeping the order of planning within a file.
+     * This is the order in which the Engine executes the plan.
+     * @return the entries per source key
+     */
+    public Map<String, List<Entry>> getEntriesPerSource() {
+        Map<String, List<Entry>> perSource = new TreeMap<>();
+        for (Entry entry : entries) {
+            perSource.computeIfAbsent(entry.getSourceKey(), k -> new ArrayList<>()).add(entry);
+        }
+        return perSource;
+    }
+
+    /**
+     * @return the number of transformations of all entries summed up
+     */
+    public long getTotalTransformations() {
+        return entries.stream().mapToLong(Entry::getCount).sum();
+    }
+
+    /**
+     * Writes the plan as tab-separated values to the given file, replacing it if it exists.
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(Path file) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(SCOPE_PREFIX + "\t" + scope.name());
+            writer.newLine();
+            writer.write(HEADER);
+            writer.newLine();
+            for (Entry entry : entries) {
+                writer.write(entry.toLine());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads a plan written by "writeTo".
+     * @param file the file to read from
+     * @return the read plan
+     * @throws IOException if the file cannot be read
+     * @throws UnsupportedOperationException if the file is not a valid plan
+     */
+    public static TransformationPlan readFrom(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String scopeLine = reader.readLine();
+            if (scopeLine == null || !scopeLine.startsWith(SCOPE_PREFIX + "\t")) {
+                throw new UnsupportedOperationException("TransformationPlan " + file + " does not start with its scope");
+            }
+            TransformationPlan plan;
+            try {
+                plan = new TransformationPlan(
+                        Engine.TransformationScope.valueOf(scopeLine.substring(SCOPE_PREFIX.length() + 1)));
+            } catch (IllegalArgumentException e) {
+                throw new UnsupportedOperationException("TransformationPlan " + file + " has an unknown scope", e);
+            }
+            String header = reader.readLine();
+            if (!HEADER.equals(header)) {
+                throw new UnsupportedOperationException("TransformationPlan " + file + " has an unknown header");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    plan.addEntry(Entry.fromLine(line));
+                }
+            }
+            return plan;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.ciselab.lampion.program;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * A Flow.Processor that transforms the SourceUnits it receives in memory (see LampionTransformer) and publishes
+ * the TransformedSources, holding the transformed code and its TransformationResults, to its subscribers.
+ *
+ * It is meant to sit between a reader of a dataset and a consumer that works at its own pace (e.g. a model trainer):
+ * - At most "maxInFlight" units are requested from upstream and transformed at once, on the given executor
+ * - The transformed sources are published in the order of the units, even if they finish in another order
+ * - Every subscriber has a buffer of "maxInFlight" transformed sources, if it is full publishing waits for it,
+ *   and no more units are requested until it is published
+ * So the memory used stays the same, no matter how large the dataset is.
+ *
+ * The transformations of a unit only depend on the unit, the configuration and the seed,
+ * so the published sources are the same no matter how many transformations ran in parallel.
+ * If a transformation fails (or the executor rejects it), the processor cancels its upstream and closes with the exception.
+ */
+public class TransformationProcessor extends SubmissionPublisher<TransformedSource>
+        implements Flow.Processor<SourceUnit, TransformedSource> {
+    private static Logger logger = LogManager.getLogger(TransformationProcessor.class);
+
+    private final TransformConfig config;
+    private final long seed;
+    private final Executor executor;
+    private final int maxInFlight;
+
+    private Flow.Subscription subscription;
+    // The transformations of the received units, in the order of the units
+    private final Queue<CompletableFuture<TransformedSource>> pending = new ConcurrentLinkedQueue<>();
+    // Counts the calls to "publishFinished", only the first of concurrent calls publishes
+    private final AtomicInteger publishRequests = new AtomicInteger();
+    private volatile boolean upstreamCompleted = false;
+    private volatile boolean failed = false;
+
+    /**
+     * @param config the transformers and how often to apply them, see TransformConfig
+     * @param seed the seed from which all random decisions are derived
+     * @param executor the executor to run the transformations on, e.g. a fixed thread pool
+     * @param maxInFlight the number of units transformed at once, and the size of the buffer of every subscriber
+     * @throws UnsupportedOperationException if config or executor are null, or maxInFlight is not positive
+     */
+    public TransformationProcessor(TransformConfig config, long seed, Executor executor, int maxInFlight) {
+        // The sources are delivered on the common pool, so a waiting subscriber never blocks the transformations
+        super(ForkJoinPool.commonPool(), Math.max(maxInFlight, 1));
+        if (config == null) {
+            throw new UnsupportedOperationException("TransformConfig cannot be null");
+        }
+        if (executor == null) {
+            throw new UnsupportedOperationException("Executor cannot be null");
+        }
+        if (maxInFlight < 1) {
+            throw new UnsupportedOperationException("At least one unit has to be in flight, got " + maxInFlight);
+        }
+        this.config = config;
+        this.seed = seed;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            // A processor can only have one upstream
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(SourceUnit unit) {
+        if (failed) {
+            return;
+        }
+        CompletableFuture<TransformedSource> transformation;
+        try {
+            transformation = CompletableFuture.supplyAsync(() -> LampionTransformer.transform(unit, config, seed), executor);
+        } catch (RejectedExecutionException e) {
+            // E.g. the executor was shut down, this fails like the transformation itself
+            transformation = CompletableFuture.failedFuture(e);
+        }
+        pending.add(transformation);
+        transformation.whenComplete((result, exception) -> publishFinished());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        logger.error("The upstream of the TransformationProcessor failed", throwable);
+        failed = true;
+        closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamCompleted = true;
+        publishFinished();
+    }
+
+    /**
+     * Subscribes to all units of the stream and transforms them, blocking while the processor is saturated.
+     * The processor is completed afterwards, so it can only be used once like this.
+     * @param units the sources to transform, e.g. read lazily from a dataset
+     */
+    public void submitAll(Stream<SourceUnit> units) {
+        try (SubmissionPublisher<SourceUnit> source = new SubmissionPublisher<>(ForkJoinPool.commonPool(), maxInFlight)) {
+            source.subscribe(this);
+            units.forEach(source::submit);
+        }
+    }
+
+    /**
+     * @return the number of received units whose transformed source is not yet published
+     */
+    int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Publishes the finished transformations at the head of the queue, so the sources keep the order of the units,
+     * and requests a new unit for every published one. Called whenever a transformation finishes.
+     * Only one thread publishes at a time, the others leave the work to it.
+     */
+    private void publishFinished() {
+        if (publishRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            CompletableFuture<TransformedSource> head;
+            while (!failed && (head = pending.peek()) != null && head.isDone()) {
+                pending.poll();
+                TransformedSource result;
+                try {
+                    result = head.join();
+                } catch (RuntimeException e) {
+                    logger.error("Could not transform a unit - cancelling the TransformationProcessor", e);
+                    failed = true;
+                    subscription.cancel();
+                    closeExceptionally(e.getCause() != null ? e.getCause() : e);
+                    break;
+                }
+                // Waits if a subscriber's buffer is full, which holds back new units until the subscriber caught up
+                submit(result);
+                subscription.request(1);
+            }
+            if (!failed && upstreamCompleted && pending.isEmpty()) {
+                close();
+            }
+        } while (publishRequests.decrementAndGet() != 0);
+    }
+}
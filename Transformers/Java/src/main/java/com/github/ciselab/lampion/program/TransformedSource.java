@@ -0,0 +1,68 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.AstFingerprint;
+import com.github.ciselab.lampion.transformations.TransformationResult;
+
+import java.util.List;
+
+/**
+ * The result of transforming a SourceUnit in memory, see LampionTransformer.
+ * It holds the printed, transformed source and the (non-empty) results of the applied transformations.
+ * The fingerprint of the transformed model allows to find identical outputs (e.g. of different seeds)
+ * without comparing the sources.
+ */
+public class TransformedSource {
+
+    private final String name;
+    private final String source;
+    private final List<TransformationResult> results;
+    private final AstFingerprint fingerprint;
+
+    /**
+     * @param name the name of the transformed SourceUnit
+     * @param source the printed source after the transformations
+     * @param results the non-empty results of the applied transformations
+     * @param fingerprint the fingerprint of the transformed compilation unit, AstFingerprint.EMPTY if there is none
+     */
+    public TransformedSource(String name, String source, List<TransformationResult> results,
+                             AstFingerprint fingerprint) {
+        this.name = name;
+        this.source = source;
+        this.results = List.copyOf(results);
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return the name of the SourceUnit this was transformed from
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the transformed source, as printed by Spoon
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * The results refer to the elements of the transformed model of this source only.
+     * @return the non-empty results of the applied transformations, empty if nothing was applied
+     */
+    public List<TransformationResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the fingerprint of the transformed compilation unit, AstFingerprint.EMPTY if the source had no types
+     */
+    public AstFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        return "TransformedSource " + name + " with " + results.size() + " transformations";
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.program.output.DeduplicatingOutputSink;
+import com.github.ciselab.lampion.program.output.OutputSink;
+import com.github.ciselab.lampion.program.output.OutputSinks;
+import com.github.ciselab.lampion.program.tokens.TokenSink;
+import com.github.ciselab.lampion.program.tokens.TokenSinks;
+import com.github.ciselab.lampion.support.SeedDerivation;
+import com.github.ciselab.lampion.transformations.TransformationResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtCompilationUnit;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.visitor.CtScanner;
+import spoon.support.SerializationModelStreamer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Produces several independently transformed variants of the model an Engine read, e.g. for data augmentation.
+ *
+ * The model is read only once and then serialized as a snapshot, from which every variant restores its own copy.
+ * Every variant is transformed by its own engine with its own transformers and a seed derived from the seed
+ * and the number of the variant, so the variants can run in parallel and are the same no matter in which order
+ * they finish. Variant k is written to "variant-k" within the output.
+ *
+ * The results of all variants are gathered in the order of the variants, and appended to the manifest of the engine
+ * with the number of their variant.
+ *
+ * Directories are written by every variant itself. Archives, deduplicated outputs and tokens are written by
+ * one sink, into which the variants are printed in their order on the calling thread - every variant as soon as
+ * it and all earlier variants are done, while the later ones are still transformed.
+ * With deduplication, that sink is a DeduplicatingOutputSink, so a file equal to one of an earlier variant
+ * is only referenced in its index.
+ */
+class VariantRunner {
+    private static Logger logger = LogManager.getLogger(VariantRunner.class);
+
+    private final Engine engine;
+    private final int variants;
+    private final boolean deduplicate;
+    private final boolean writeJavaOutput;
+    private final boolean sniperPrinting;
+    private final boolean diffOutput;
+    private final Path tokenOutput;
+    private final OutputWriter writer;
+
+    /**
+     * @param engine the engine whose settings every variant gets, see "Engine.createWorkerEngine"
+     * @param variants the number of variants to produce
+     * @param deduplicate whether files equal to one of an earlier variant are only referenced in the index
+     * @param writeJavaOutput whether the java files of the variants are written
+     * @param sniperPrinting whether the variants are sniper printed
+     * @param diffOutput whether the diffs of the variants are written instead of their files
+     * @param tokenOutput the file to write the tokens of all variants to, null to write no tokens
+     * @param writer the writer of the engine, it prints the variants that do not write themselves
+     */
+    VariantRunner(Engine engine, int variants, boolean deduplicate, boolean writeJavaOutput,
+                  boolean sniperPrinting, boolean diffOutput, Path tokenOutput, OutputWriter writer) {
+        this.engine = engine;
+        this.variants = variants;
+        this.deduplicate = deduplicate;
+        this.writeJavaOutput = writeJavaOutput;
+        this.sniperPrinting = sniperPrinting;
+        this.diffOutput = diffOutput;
+        this.tokenOutput = tokenOutput;
+        this.writer = writer;
+    }
+
+    /**
+     * Transforms and writes all variants of the model.
+     * @param codeRoot the read model, it is not altered
+     * @return the results of all variants, in the order of the variants
+     */
+    List<TransformationResult> run(CtModel codeRoot) {
+        logger.info("Producing {} variants of the read code", variants);
+        String outputDirectory = engine.outputDirectory;
+        boolean writesDiffs = diffOutput || OutputSinks.isPatch(outputDirectory);
+        // Diffs name the file of their variant, so two diffs are never equal
+        boolean deduplicating = deduplicate && writeJavaOutput && !writesDiffs;
+        if (deduplicate && writesDiffs) {
+            logger.warn("The diffs of the variants are never equal, they are written without deduplication");
+        }
+        boolean toArchive = OutputSinks.isArchive(outputDirectory);
+        // The tokens are collected while printing the files, so with tokens the variants are all printed here
+        boolean printsHere = toArchive || deduplicating || tokenOutput != null;
+        byte[] snapshot;
+        try {
+            snapshot = snapshot(codeRoot.getRootPackage().getFactory());
+        } catch (IOException e) {
+            logger.error("Could not take a snapshot of the read code - exiting early.", e);
+            return new ArrayList<>();
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(
+                Math.min(variants, Runtime.getRuntime().availableProcessors()));
+        List<Engine> variantEngines = new ArrayList<>();
+        List<Future<CtModel>> futures = new ArrayList<>();
+        for (int k = 1; k <= variants; k++) {
+            Engine variant = createVariantEngine(k, !printsHere);
+            futures.add(workers.submit(() -> {
+                CtModel copy = restoreSnapshot(snapshot).getModel();
+                variant.transformAndWrite(copy, null, null, Instant.now());
+                return copy;
+            }));
+            variantEngines.add(variant);
+        }
+        List<TransformationResult> results = new ArrayList<>();
+        // An archive is written by one sink, the variants are printed into it one after another - as are the tokens
+        try (OutputSink sink = deduplicating ? new DeduplicatingOutputSink(OutputSinks.forOutput(outputDirectory))
+                    : toArchive || (tokenOutput != null && writeJavaOutput) ? OutputSinks.forOutput(outputDirectory) : null;
+             TokenSink tokens = tokenOutput != null ? TokenSinks.forOutput(tokenOutput) : null) {
+            for (int k = 1; k <= variants; k++) {
+                CtModel variantModel = futures.get(k - 1).get();
+                futures.set(k - 1, null);
+                results.addAll(variantEngines.get(k - 1).getFinishedResults());
+                engine.appendToManifest(variantEngines.get(k - 1).getFinishedResults(), k);
+                if ((sink != null && writeJavaOutput) || tokens != null) {
+                    // Like the variants that write themselves, only the files of the shard are printed
+                    writer.printTo(variantEngines.get(k - 1).getTransformedTypes(variantModel, null),
+                            writeJavaOutput ? sink : null, tokens, "variant-" + k + "/");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while producing the variants", e);
+        } catch (ExecutionException e) {
+            logger.error("Could not produce all variants", e.getCause());
+        } catch (IOException e) {
+            logger.error("Could not write the output {}", outputDirectory, e);
+        } finally {
+            workers.shutdownNow();
+        }
+        logger.info("Produced {} variants with {} Transformations", variants, results.size());
+        if (deduplicating) {
+            logger.info("Files equal to one of an earlier variant are listed in {} instead of written",
+                    DeduplicatingOutputSink.INDEX_FILE);
+        }
+        return results;
+    }
+
+    /**
+     * Creates the engine of a single variant, with the settings of the engine but its own transformers and seed.
+     * @param k the number of the variant, starting at 1
+     * @param writesOutput whether the variant writes its output itself into "variant-k"
+     */
+    private Engine createVariantEngine(int k, boolean writesOutput) {
+        Engine variant = engine.createWorkerEngine(SeedDerivation.derive(engine.seed, "variant", k),
+                Path.of(engine.outputDirectory, "variant-" + k).toString());
+        variant.setWriteJavaOutput(writeJavaOutput && writesOutput);
+        variant.setSniperPrinting(sniperPrinting);
+        variant.setDiffOutput(diffOutput);
+        return variant;
+    }
+
+    /**
+     * Serializes the whole model of the factory, to restore independent copies of it.
+     */
+    private static byte[] snapshot(Factory factory) throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        new SerializationModelStreamer().save(factory, snapshot);
+        return snapshot.toByteArray();
+    }
+
+    /**
+     * Restores a copy of a model from a snapshot, the copy shares nothing with the original or other copies.
+     */
+    private static Factory restoreSnapshot(byte[] snapshot) throws IOException {
+        Factory factory = new SerializationModelStreamer().load(new ByteArrayInputStream(snapshot));
+        // The streamer only re-attaches the elements of the model to the factory, not the compilation units.
+        // Their references would look up the types in Spoon's default factory, and printing would leave out the types.
+        CtScanner attach = new CtScanner() {
+            @Override
+            protected void enter(CtElement element) {
+                element.setFactory(factory);
+            }
+        };
+        for (CtType<?> type : factory.getModel().getAllTypes()) {
+            CtCompilationUnit compilationUnit = type.getPosition().getCompilationUnit();
+            if (compilationUnit != null) {
+                attach.scan(compilationUnit);
+                compilationUnit.getDeclaredTypeReferences().forEach(attach::scan);
+            }
+        }
+        return factory;
+    }
+}
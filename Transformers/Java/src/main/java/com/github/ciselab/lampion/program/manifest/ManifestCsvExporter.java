@@ -0,0 +1,69 @@
+package com.github.ciselab.lampion.program.manifest;
+
+import com.github.ciselab.lampion.support.CsvFormat;
+import com.github.ciselab.lampion.transformations.TransformationCategory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class exports a manifest to a CSV file, to be read by the (python) evaluation e.g. with pandas.
+ *
+ * The CSV is flat and typed per column, so it can be loaded as a table without further parsing:
+ * every record is one line, every category is a column of its own with true/false,
+ * and the dictionary ids of the transformer and the file are kept as columns to be used as categorical codes.
+ * The variant column links a record to the output of its variant ("variant-k"), it is 0 for runs without variants.
+ * The fingerprint column holds the AstFingerprint of the transformed element as 32 hex digits,
+ * equal fingerprints mark identical transformed elements (e.g. of different variants or seeds).
+ * Unknown positions are -1.
+ */
+public abstract class ManifestCsvExporter {
+
+    /**
+     * Streams all records of the manifest into the CSV file, replacing it if it exists.
+     * @param manifest the manifest to read
+     * @param csv the CSV file to write
+     * @return the number of exported records
+     * @throws IOException if the manifest cannot be read or the CSV cannot be written
+     */
+    public static long export(Path manifest, Path csv) throws IOException {
+        if (csv.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(csv.toAbsolutePath().getParent());
+        }
+        long exported = 0;
+        try (ManifestReader reader = new ManifestReader(manifest);
+             BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            List<String> header = new ArrayList<>(List.of("fileId", "file", "transformerId", "transformer"));
+            for (TransformationCategory category : TransformationCategory.values()) {
+                header.add(category.name());
+            }
+            header.addAll(List.of("beginLine", "beginColumn", "endLine", "endColumn", "sourceStart", "sourceEnd",
+                    "variant", "fingerprint"));
+            writer.write(String.join(",", header));
+            writer.newLine();
+
+            while (reader.hasNext()) {
+                ManifestRecord record = reader.next();
+                List<String> values = new ArrayList<>(List.of(
+                        String.valueOf(reader.getLastFileId()), CsvFormat.quote(record.getFile()),
+                        String.valueOf(reader.getLastTransformerId()), CsvFormat.quote(record.getTransformerName())));
+                for (TransformationCategory category : TransformationCategory.values()) {
+                    values.add(String.valueOf(record.getCategories().contains(category)));
+                }
+                values.addAll(List.of(String.valueOf(record.getBeginLine()), String.valueOf(record.getBeginColumn()),
+                        String.valueOf(record.getEndLine()), String.valueOf(record.getEndColumn()),
+                        String.valueOf(record.getSourceStart()), String.valueOf(record.getSourceEnd()),
+                        String.valueOf(record.getVariant()), record.getFingerprint().toString()));
+                writer.write(String.join(",", values));
+                writer.newLine();
+                exported++;
+            }
+        }
+        return exported;
+    }
+}
@@ -0,0 +1,362 @@
+package com.github.ciselab.lampion.program.manifest;
+
+import com.github.ciselab.lampion.transformations.AstFingerprint;
+import com.github.ciselab.lampion.transformations.TransformationCategory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Reads the records of a manifest written by the ManifestWriter, one after another.
+ * Only a buffer of the file is kept in memory, so also manifests with millions of records can be streamed.
+ *
+ * The dictionaries (transformer names and files) are filled while reading,
+ * so they are complete only after all records have been read.
+ *
+ * A manifest that ends in the middle of a block (e.g. from a killed run) is read up to the last complete block,
+ * which is reported by "isTruncated".
+ * Categories that are not known (anymore) to this version are left out of the records.
+ * Manifests of older versions are read as well, the records of version 1 are all of no variant,
+ * and the records of versions 1 and 2 have the fingerprint AstFingerprint.EMPTY.
+ */
+public class ManifestReader implements Iterator<ManifestRecord>, Closeable {
+    private static Logger logger = LogManager.getLogger(ManifestReader.class);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(ManifestWriter.BUFFER_SIZE);
+    private final int version;
+    // The position in the file of the first byte in the buffer
+    private long bufferStart = 0;
+
+    private final List<String> transformerNames = new ArrayList<>();
+    private final List<String> files = new ArrayList<>();
+    private final TransformationCategory[] categoriesPerBit = new TransformationCategory[Long.SIZE];
+    private int usedCategoryBits = 0;
+
+    // The dictionary ids of the last returned and of the next record
+    private int lastTransformerId = -1;
+    private int lastFileId = -1;
+    private int nextTransformerId = -1;
+    private int nextFileId = -1;
+
+    private ManifestRecord next = null;
+    private boolean finished = false;
+    private boolean truncated = false;
+    private long validLength = 0;
+
+    /**
+     * Opens the manifest and checks its header.
+     * @param file the manifest file
+     * @throws IOException if the file cannot be read
+     * @throws UnsupportedOperationException if the file is not a manifest or of an unknown version
+     */
+    public ManifestReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.flip();
+        try {
+            byte[] magic = readBytes(ManifestWriter.MAGIC.length);
+            if (!Arrays.equals(magic, ManifestWriter.MAGIC)) {
+                throw new UnsupportedOperationException(file + " is not a Lampion manifest");
+            }
+            version = readByte();
+            if (version < 1 || version > ManifestWriter.VERSION) {
+                throw new UnsupportedOperationException(file + " has the unknown manifest version " + version);
+            }
+        } catch (EOFException e) {
+            channel.close();
+            throw new UnsupportedOperationException(file + " is too short to be a Lampion manifest", e);
+        } catch (UnsupportedOperationException e) {
+            channel.close();
+            throw e;
+        }
+        validLength = position();
+    }
+
+    /**
+     * Reads all records of the manifest at once, only use this for manifests that fit into memory.
+     * @param file the manifest file
+     * @return all complete records in order of writing
+     * @throws IOException if the file cannot be read
+     */
+    public static List<ManifestRecord> readAll(Path file) throws IOException {
+        List<ManifestRecord> records = new ArrayList<>();
+        try (ManifestReader reader = new ManifestReader(file)) {
+            reader.forEachRemaining(records::add);
+        }
+        return records;
+    }
+
+    /**
+     * @return true if there is another complete record
+     * @throws UncheckedIOException if the file cannot be read
+     * @throws UnsupportedOperationException if the file contains an invalid block
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readNextRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the manifest " + file, e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public ManifestRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ManifestRecord result = next;
+        next = null;
+        lastTransformerId = nextTransformerId;
+        lastFileId = nextFileId;
+        return result;
+    }
+
+    /**
+     * @return the names of all transformers read so far, the index is their id
+     */
+    public List<String> getTransformerNames() {
+        return Collections.unmodifiableList(transformerNames);
+    }
+
+    /**
+     * @return the paths of all files read so far, the index is their id
+     */
+    public List<String> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * @return true if the manifest ended in the middle of a block, only known after reading all records
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the number of bytes of the header and all complete blocks read so far
+     */
+    public long getValidLength() {
+        return validLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return the transformer id of the last record returned by "next", -1 before the first record
+     */
+    public int getLastTransformerId() {
+        return lastTransformerId;
+    }
+
+    /**
+     * @return the file id of the last record returned by "next", -1 before the first record
+     */
+    public int getLastFileId() {
+        return lastFileId;
+    }
+
+    /**
+     * @return the version of the format the manifest was written in
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the bits of all known categories, used to continue a manifest
+     */
+    Map<TransformationCategory, Integer> getCategoryBits() {
+        Map<TransformationCategory, Integer> bits = new EnumMap<>(TransformationCategory.class);
+        for (int bit = 0; bit < usedCategoryBits; bit++) {
+            if (categoriesPerBit[bit] != null) {
+                bits.put(categoriesPerBit[bit], bit);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * @return the number of category bits in use, including the ones of unknown categories
+     */
+    int getUsedCategoryBits() {
+        return usedCategoryBits;
+    }
+
+    /**
+     * Reads blocks until a record is complete, filling the dictionaries on the way.
+     * @return the next record, null at the end of the file
+     */
+    private ManifestRecord readNextRecord() throws IOException {
+        while (true) {
+            int tag;
+            try {
+                tag = readByte();
+            } catch (EOFException e) {
+                finished = true;
+                return null;
+            }
+            try {
+                ManifestRecord record = readBlock(tag);
+                validLength = position();
+                if (record != null) {
+                    return record;
+                }
+            } catch (EOFException e) {
+                truncated = true;
+                finished = true;
+                return null;
+            }
+        }
+    }
+
+    private ManifestRecord readBlock(int tag) throws IOException {
+        switch (tag) {
+            case ManifestWriter.TAG_CATEGORY:
+                int bit = readInt();
+                String name = readString();
+                if (bit >= Long.SIZE) {
+                    throw new UnsupportedOperationException("The manifest " + file + " has an invalid category bit " + bit);
+                }
+                try {
+                    categoriesPerBit[bit] = TransformationCategory.valueOf(name);
+                } catch (IllegalArgumentException e) {
+                    logger.warn("The manifest " + file + " has the unknown category " + name + ", it is ignored");
+                }
+                usedCategoryBits = Math.max(usedCategoryBits, bit + 1);
+                return null;
+            case ManifestWriter.TAG_TRANSFORMER:
+                transformerNames.add(readString());
+                return null;
+            case ManifestWriter.TAG_FILE:
+                files.add(readString());
+                return null;
+            case ManifestWriter.TAG_RECORD:
+                int transformerId = readInt();
+                int fileId = readInt();
+                String transformer = lookup(transformerNames, transformerId, "transformer");
+                String path = lookup(files, fileId, "file");
+                long bits = readVarLong();
+                Set<TransformationCategory> categories = EnumSet.noneOf(TransformationCategory.class);
+                for (int i = 0; i < Long.SIZE; i++) {
+                    if ((bits & (1L << i)) != 0 && categoriesPerBit[i] != null) {
+                        categories.add(categoriesPerBit[i]);
+                    }
+                }
+                // The arguments are read from left to right, in the order they were written
+                ManifestRecord record = new ManifestRecord(transformer, path, categories,
+                        readInt() - 1, readInt() - 1, readInt() - 1, readInt() - 1, readInt() - 1, readInt() - 1,
+                        version >= 2 ? readInt() : ManifestRecord.NO_VARIANT,
+                        version >= 3 ? readFingerprint() : AstFingerprint.EMPTY);
+                nextTransformerId = transformerId;
+                nextFileId = fileId;
+                return record;
+            default:
+                throw new UnsupportedOperationException("The manifest " + file + " has an unknown block "
+                        + tag + " at " + (position() - 1));
+        }
+    }
+
+    private String lookup(List<String> dictionary, int id, String kind) {
+        if (id >= dictionary.size()) {
+            throw new UnsupportedOperationException("The manifest " + file + " uses an undefined " + kind + " " + id);
+        }
+        return dictionary.get(id);
+    }
+
+    private long position() {
+        return bufferStart + buffer.position();
+    }
+
+    private int readByte() throws IOException {
+        if (!buffer.hasRemaining()) {
+            bufferStart += buffer.limit();
+            buffer.clear();
+            int read = 0;
+            while (read == 0) {
+                read = channel.read(buffer);
+            }
+            buffer.flip();
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        // A length beyond the file can only come from a torn block
+        if (length > channel.size() - position()) {
+            throw new EOFException();
+        }
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length) {
+            if (!buffer.hasRemaining()) {
+                readByte();
+                buffer.position(buffer.position() - 1);
+            }
+            int chunk = Math.min(buffer.remaining(), length - done);
+            buffer.get(bytes, done, chunk);
+            done += chunk;
+        }
+        return bytes;
+    }
+
+    private AstFingerprint readFingerprint() throws IOException {
+        ByteBuffer bits = ByteBuffer.wrap(readBytes(2 * Long.BYTES));
+        return AstFingerprint.valueOf(bits.getLong(), bits.getLong());
+    }
+
+    private String readString() throws IOException {
+        return new String(readBytes(readInt()), StandardCharsets.UTF_8);
+    }
+
+    private int readInt() throws IOException {
+        long value = readVarLong();
+        // A varint of ten bytes can set the sign bit, which no written number does
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("The manifest " + file + " has an invalid number " + value);
+        }
+        return (int) value;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new UnsupportedOperationException("The manifest " + file + " has a malformed number at " + position());
+    }
+}
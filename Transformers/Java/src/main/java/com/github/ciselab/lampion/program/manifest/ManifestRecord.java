@@ -0,0 +1,202 @@
+package com.github.ciselab.lampion.program.manifest;
+
+import com.github.ciselab.lampion.program.InputSources;
+import com.github.ciselab.lampion.transformations.AstFingerprint;
+import com.github.ciselab.lampion.transformations.TransformationCategory;
+import com.github.ciselab.lampion.transformations.TransformationResult;
+import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.declaration.CtElement;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A single applied transformation as it is stored in the manifest:
+ * the transformer, its categories, the file and the span of the transformed element in the original file,
+ * the variant whose output holds the transformation (see Engine.setVariants)
+ * and the AstFingerprint of the transformed element, to find identical transformed elements without the code.
+ *
+ * Unlike a TransformationResult, a record holds no AST-Nodes, so millions of them can be read without Spoon.
+ * Parts of the span that are unknown (e.g. for elements created by a transformation) are -1,
+ * an unknown file is the empty String and an unknown fingerprint is AstFingerprint.EMPTY.
+ */
+public class ManifestRecord {
+
+    public static final int UNKNOWN = -1;
+    // The variant of the records of runs without variants, the variants of a run are counted from 1
+    public static final int NO_VARIANT = 0;
+
+    private final String transformerName;
+    private final String file;
+    private final Set<TransformationCategory> categories;
+    private final int beginLine;
+    private final int beginColumn;
+    private final int endLine;
+    private final int endColumn;
+    private final int sourceStart;
+    private final int sourceEnd;
+    private final int variant;
+    private final AstFingerprint fingerprint;
+
+    /**
+     * Creates the record of a run without variants, with an unknown fingerprint.
+     * @see #ManifestRecord(String, String, Set, int, int, int, int, int, int, int, AstFingerprint)
+     */
+    public ManifestRecord(String transformerName, String file, Set<TransformationCategory> categories,
+                          int beginLine, int beginColumn, int endLine, int endColumn, int sourceStart, int sourceEnd) {
+        this(transformerName, file, categories, beginLine, beginColumn, endLine, endColumn, sourceStart, sourceEnd,
+                NO_VARIANT, AstFingerprint.EMPTY);
+    }
+
+    /**
+     * @param transformerName the name of the transformation, usually the class name of the transformer
+     * @param file the path of the file relative to the input, empty if unknown
+     * @param categories the categories of the transformation
+     * @param beginLine the first line of the element, -1 if unknown
+     * @param beginColumn the first column of the element, -1 if unknown
+     * @param endLine the last line of the element, -1 if unknown
+     * @param endColumn the last column of the element, -1 if unknown
+     * @param sourceStart the index of the first character of the element in the file, -1 if unknown
+     * @param sourceEnd the index of the last character of the element in the file, -1 if unknown
+     * @param variant the variant k written to "variant-k" within the output, 0 for runs without variants
+     * @param fingerprint the fingerprint of the transformed element, AstFingerprint.EMPTY if unknown
+     * @throws UnsupportedOperationException if any value is null, a position is less than -1 or the variant negative
+     */
+    public ManifestRecord(String transformerName, String file, Set<TransformationCategory> categories,
+                          int beginLine, int beginColumn, int endLine, int endColumn, int sourceStart, int sourceEnd,
+                          int variant, AstFingerprint fingerprint) {
+        if (transformerName == null || file == null || categories == null || fingerprint == null) {
+            throw new UnsupportedOperationException("Records of a Manifest cannot have null values");
+        }
+        if (beginLine < UNKNOWN || beginColumn < UNKNOWN || endLine < UNKNOWN || endColumn < UNKNOWN
+                || sourceStart < UNKNOWN || sourceEnd < UNKNOWN) {
+            throw new UnsupportedOperationException("Records of a Manifest cannot have negative positions");
+        }
+        if (variant < NO_VARIANT) {
+            throw new UnsupportedOperationException("Records of a Manifest cannot have a negative variant");
+        }
+        this.transformerName = transformerName;
+        this.file = file;
+        this.categories = categories.isEmpty() ?
+                Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(categories));
+        this.beginLine = beginLine;
+        this.beginColumn = beginColumn;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
+        this.sourceStart = sourceStart;
+        this.sourceEnd = sourceEnd;
+        this.variant = variant;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Creates the record of a finished transformation.
+     * The span is the one of the transformed element. If the element has no position (e.g. because it was created),
+     * the file is taken from the closest parent with a position, and the span is unknown.
+     * The fingerprint is the one of the transformed element after all transformations of the run.
+     *
+     * @param result the result of a transformation, must not be empty
+     * @param codeDirectory the directory or archive the code was read from, to make the file relative
+     * @return the record of the transformation
+     */
+    public static ManifestRecord of(TransformationResult result, String codeDirectory) {
+        return of(result, codeDirectory, NO_VARIANT);
+    }
+
+    /**
+     * Creates the record of a finished transformation of a variant, see "of".
+     * @param variant the variant the transformation was applied to, 0 for runs without variants
+     */
+    public static ManifestRecord of(TransformationResult result, String codeDirectory, int variant) {
+        CtElement element = result.getTransformedElement();
+        CtElement positioned = element;
+        while (!hasFile(positioned.getPosition()) && positioned.isParentInitialized()) {
+            positioned = positioned.getParent();
+        }
+        String file = hasFile(positioned.getPosition()) ?
+                InputSources.relativePathOf(positioned.getPosition().getFile(), codeDirectory) : "";
+
+        SourcePosition span = element.getPosition();
+        if (!span.isValidPosition()) {
+            return new ManifestRecord(result.getTransformationName(), file, result.getCategories(),
+                    UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, variant, result.getFingerprint());
+        }
+        return new ManifestRecord(result.getTransformationName(), file, result.getCategories(),
+                span.getLine(), span.getColumn(), span.getEndLine(), span.getEndColumn(),
+                span.getSourceStart(), span.getSourceEnd(), variant, result.getFingerprint());
+    }
+
+    private static boolean hasFile(SourcePosition position) {
+        return position.isValidPosition() && position.getFile() != null;
+    }
+
+    public String getTransformerName() {
+        return transformerName;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public Set<TransformationCategory> getCategories() {
+        return categories;
+    }
+
+    public int getBeginLine() {
+        return beginLine;
+    }
+
+    public int getBeginColumn() {
+        return beginColumn;
+    }
+
+    public int getEndLine() {
+        return endLine;
+    }
+
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    public int getSourceStart() {
+        return sourceStart;
+    }
+
+    public int getSourceEnd() {
+        return sourceEnd;
+    }
+
+    public int getVariant() {
+        return variant;
+    }
+
+    public AstFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ManifestRecord)) return false;
+        ManifestRecord other = (ManifestRecord) o;
+        return beginLine == other.beginLine && beginColumn == other.beginColumn
+                && endLine == other.endLine && endColumn == other.endColumn
+                && sourceStart == other.sourceStart && sourceEnd == other.sourceEnd && variant == other.variant
+                && transformerName.equals(other.transformerName) && file.equals(other.file)
+                && categories.equals(other.categories) && fingerprint.equals(other.fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transformerName, file, categories, beginLine, beginColumn, endLine, endColumn,
+                sourceStart, sourceEnd, variant, fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return transformerName + "@" + (variant == NO_VARIANT ? "" : "variant-" + variant + "/") + file
+                + ":" + beginLine + ":" + beginColumn + "-" + endLine + ":" + endColumn;
+    }
+}
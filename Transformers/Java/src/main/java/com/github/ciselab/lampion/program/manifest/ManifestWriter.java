@@ -0,0 +1,230 @@
+package com.github.ciselab.lampion.program.manifest;
+
+import com.github.ciselab.lampion.transformations.TransformationCategory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends the records of applied transformations to a binary manifest file.
+ * The manifest replaces the old SQLite alternation manifest (see DesignNotes), but is only written, never altered.
+ *
+ * The file starts with a magic number and a version, followed by blocks of a tag and their values:
+ * - CATEGORY: the bit of a TransformationCategory in the bitsets, and its name
+ * - TRANSFORMER: the name of a transformer, its id is the number of transformers defined before
+ * - FILE: the path of a file, its id is the number of files defined before
+ * - RECORD: transformer id, file id, category bitset, the span (lines, columns and characters) of the element
+ *   the variant (0 for runs without variants) and the 128 bit AstFingerprint of the element as two fixed 8 byte longs
+ * All numbers are unsigned varints, positions are stored +1 so that unknown (-1) is 0.
+ * Strings are their UTF-8 length followed by their bytes.
+ *
+ * Names and files are written only once, right before the first record that uses them,
+ * so a record takes usually less than 40 bytes and the file can be read as a stream.
+ * Opening an existing manifest continues it, a torn block at its end (e.g. from a killed run) is cut off.
+ * Manifests of an older version (version 1 has no variants, version 2 no fingerprints) can still be read,
+ * but not continued.
+ *
+ * The writer is buffered, records are only guaranteed to be in the file after "flush" or "close".
+ */
+public class ManifestWriter implements Closeable {
+    private static Logger logger = LogManager.getLogger(ManifestWriter.class);
+
+    static final byte[] MAGIC = {'L', 'M', 'A', 'N'};
+    static final byte VERSION = 3;
+
+    static final byte TAG_CATEGORY = 1;
+    static final byte TAG_TRANSFORMER = 2;
+    static final byte TAG_FILE = 3;
+    static final byte TAG_RECORD = 4;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    // A tag, up to 10 varints of at most 10 bytes each and the fingerprint
+    private static final int MAX_RECORD_SIZE = 1 + 10 * 10 + 2 * Long.BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final Map<String, Integer> transformerIds = new HashMap<>();
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final Map<TransformationCategory, Integer> categoryBits = new EnumMap<>(TransformationCategory.class);
+
+    private long writtenRecords = 0;
+
+    /**
+     * Opens the manifest to append to, creating it (and its directories) if it does not exist.
+     * @param file the manifest file
+     * @throws IOException if the file cannot be read or written
+     * @throws UnsupportedOperationException if the file exists but is not a manifest of the current version
+     */
+    public ManifestWriter(Path file) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        long validLength = 0;
+        int usedBits = 0;
+        if (Files.exists(file) && Files.size(file) > 0) {
+            try (ManifestReader reader = new ManifestReader(file)) {
+                if (reader.getVersion() != VERSION) {
+                    throw new UnsupportedOperationException("The manifest " + file + " has the older version "
+                            + reader.getVersion() + " and cannot be continued - start a new manifest");
+                }
+                while (reader.hasNext()) {
+                    reader.next();
+                }
+                for (String name : reader.getTransformerNames()) {
+                    transformerIds.put(name, transformerIds.size());
+                }
+                for (String path : reader.getFiles()) {
+                    fileIds.put(path, fileIds.size());
+                }
+                categoryBits.putAll(reader.getCategoryBits());
+                usedBits = reader.getUsedCategoryBits();
+                validLength = reader.getValidLength();
+                if (reader.isTruncated()) {
+                    logger.warn("The manifest " + file + " ended with an incomplete block, which is dropped");
+                }
+            }
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        if (validLength == 0) {
+            buffer.put(MAGIC);
+            buffer.put(VERSION);
+        }
+        // Categories added to the enum since the manifest was started get the next free bits
+        for (TransformationCategory category : TransformationCategory.values()) {
+            if (!categoryBits.containsKey(category)) {
+                if (usedBits >= Long.SIZE) {
+                    throw new UnsupportedOperationException("The manifest " + file + " has no free category bits left");
+                }
+                categoryBits.put(category, usedBits);
+                putString(TAG_CATEGORY, usedBits, category.name());
+                usedBits++;
+            }
+        }
+    }
+
+    /**
+     * Appends the record, and the dictionary entries for its transformer and file if they are new.
+     * @param record the record to append
+     * @throws IOException if the buffer cannot be written to the file
+     */
+    public void append(ManifestRecord record) throws IOException {
+        int transformerId = idOf(transformerIds, TAG_TRANSFORMER, record.getTransformerName());
+        int fileId = idOf(fileIds, TAG_FILE, record.getFile());
+        long categories = 0;
+        for (TransformationCategory category : record.getCategories()) {
+            categories |= 1L << categoryBits.get(category);
+        }
+        ensureSpace(MAX_RECORD_SIZE);
+        buffer.put(TAG_RECORD);
+        putVarLong(buffer, transformerId);
+        putVarLong(buffer, fileId);
+        putVarLong(buffer, categories);
+        putVarLong(buffer, record.getBeginLine() + 1L);
+        putVarLong(buffer, record.getBeginColumn() + 1L);
+        putVarLong(buffer, record.getEndLine() + 1L);
+        putVarLong(buffer, record.getEndColumn() + 1L);
+        putVarLong(buffer, record.getSourceStart() + 1L);
+        putVarLong(buffer, record.getSourceEnd() + 1L);
+        putVarLong(buffer, record.getVariant());
+        buffer.putLong(record.getFingerprint().getHigh());
+        buffer.putLong(record.getFingerprint().getLow());
+        writtenRecords++;
+    }
+
+    /**
+     * @return the number of records appended by this writer, not counting the ones already in the file
+     */
+    public long getWrittenRecords() {
+        return writtenRecords;
+    }
+
+    /**
+     * Writes all buffered blocks to the file.
+     * @throws IOException if the file cannot be written
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int idOf(Map<String, Integer> ids, byte tag, String value) throws IOException {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = ids.size();
+            ids.put(value, id);
+            putString(tag, -1, value);
+        }
+        return id;
+    }
+
+    /**
+     * Writes a block of the tag, the number (if it is not negative) and the string.
+     * Strings larger than the buffer are written directly.
+     */
+    private void putString(byte tag, int number, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int size = 1 + 10 + 5 + bytes.length;
+        ByteBuffer target = buffer;
+        if (size > buffer.capacity()) {
+            flush();
+            target = ByteBuffer.allocate(size);
+        } else {
+            ensureSpace(size);
+        }
+        target.put(tag);
+        if (number >= 0) {
+            putVarLong(target, number);
+        }
+        putVarLong(target, bytes.length);
+        target.put(bytes);
+        if (target != buffer) {
+            target.flip();
+            while (target.hasRemaining()) {
+                channel.write(target);
+            }
+        }
+    }
+
+    private void ensureSpace(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the value as unsigned LEB128, 7 bits per byte starting with the lowest, the highest bit marks more bytes.
+     */
+    static void putVarLong(ByteBuffer target, long value) {
+        while ((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.ciselab.lampion.program.output;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wraps another sink and writes every distinct content only once.
+ *
+ * Files are identified by the SHA-256 hash of their content. The first file with a content is written as usual,
+ * every later file with the same content is not written but recorded as a reference to the first one.
+ * When the sink is closed, the references are written as tab-separated values ("duplicate", "original")
+ * into the index file at the root of the output, which is left out if there were no duplicates.
+ *
+ * This is meant for outputs with many identical files, e.g. variants where no transformation could apply.
+ * The files are written in the order they are given, so the original is always the first one written.
+ */
+public class DeduplicatingOutputSink implements OutputSink {
+
+    public static final String INDEX_FILE = "duplicates.index";
+
+    private static final String HEADER = "duplicate\toriginal";
+
+    private final OutputSink delegate;
+    // The path of the first written file per content hash
+    private final Map<String, String> originals = new HashMap<>();
+    // The original of every skipped file, in the order they were given
+    private final Map<String, String> duplicates = new LinkedHashMap<>();
+
+    /**
+     * @param delegate the sink the distinct files and the index are written to, it is closed with this sink
+     * @throws UnsupportedOperationException if the delegate is null
+     */
+    public DeduplicatingOutputSink(OutputSink delegate) {
+        if (delegate == null) {
+            throw new UnsupportedOperationException("Delegate of a DeduplicatingOutputSink cannot be null");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void write(String relativePath, String content) throws IOException {
+        String original = originals.putIfAbsent(hash(content), relativePath);
+        if (original == null) {
+            delegate.write(relativePath, content);
+        } else {
+            duplicates.put(relativePath, original);
+        }
+    }
+
+    /**
+     * @return the original of every file that was not written, by the path of the file
+     */
+    public Map<String, String> getDuplicates() {
+        return duplicates;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!duplicates.isEmpty()) {
+                StringBuilder index = new StringBuilder(HEADER).append('\n');
+                duplicates.forEach((duplicate, original) ->
+                        index.append(duplicate).append('\t').append(original).append('\n'));
+                delegate.write(INDEX_FILE, index.toString());
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+
+    private static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has to provide SHA-256
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
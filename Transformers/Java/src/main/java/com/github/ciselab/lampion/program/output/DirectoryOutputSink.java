@@ -0,0 +1,39 @@
+package com.github.ciselab.lampion.program.output;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes every file to its own file below a root directory, creating the sub-directories as needed.
+ * This matches the directory tree Spoon's pretty-printer produces.
+ */
+public class DirectoryOutputSink implements OutputSink {
+
+    private final Path root;
+
+    /**
+     * @param root the directory to write into, created if it does not exist
+     * @throws IOException if the directory cannot be created
+     */
+    public DirectoryOutputSink(Path root) throws IOException {
+        if (root == null) {
+            throw new UnsupportedOperationException("Root of a DirectoryOutputSink cannot be null");
+        }
+        this.root = root;
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public void write(String relativePath, String content) throws IOException {
+        Path file = root.resolve(OutputSinks.checkRelativePath(relativePath));
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        // Every file is closed right after writing it, nothing to finish
+    }
+}
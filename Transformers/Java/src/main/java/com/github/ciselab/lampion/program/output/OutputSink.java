@@ -0,0 +1,25 @@
+package com.github.ciselab.lampion.program.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An OutputSink receives the printed (transformed) files of a run, one after another.
+ * Where they end up depends on the implementation, e.g. a directory tree or a single archive.
+ *
+ * The Engine writes the files in a deterministic order (sorted by path), so that two runs with the same seed
+ * produce the same output - also byte-wise for the archives.
+ * The sink must be closed after the last file, which finishes (and flushes) the output.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * Writes a single file to the sink.
+     *
+     * @param relativePath the path of the file relative to the output root, with "/" as separator, e.g. "lampion/A.java"
+     * @param content the content of the file, written as UTF-8
+     * @throws IOException if the file cannot be written
+     * @throws UnsupportedOperationException if the path is empty or absolute
+     */
+    void write(String relativePath, String content) throws IOException;
+}
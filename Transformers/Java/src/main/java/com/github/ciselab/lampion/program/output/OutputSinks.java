@@ -0,0 +1,87 @@
+package com.github.ciselab.lampion.program.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Factory and shared utilities of the OutputSinks.
+ *
+ * Which sink is used is decided by the name of the output:
+ * - *.zip or *.jar gives a ZipOutputSink
+ * - *.tar gives a TarOutputSink, *.tar.gz or *.tgz a gzipped one
+ * - *.patch or *.diff gives a PatchOutputSink, for diff output only
+ * - everything else is treated as a directory, see DirectoryOutputSink
+ */
+public abstract class OutputSinks {
+
+    // The buffer of the archive streams, large enough to not write every small file on its own
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Patch files count as archives, as all files are written into them as well.
+     * @param output the configured output, a directory or an archive file
+     * @return true if the output names an archive or a patch file, false if it is a directory
+     */
+    public static boolean isArchive(String output) {
+        String lower = output.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".zip") || lower.endsWith(".jar")
+                || lower.endsWith(".tar") || lower.endsWith(".tar.gz") || lower.endsWith(".tgz")
+                || isPatch(output);
+    }
+
+    /**
+     * @param output the configured output, a directory or an archive file
+     * @return true if the output names a single patch file, which can only hold diffs
+     */
+    public static boolean isPatch(String output) {
+        String lower = output.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".patch") || lower.endsWith(".diff");
+    }
+
+    /**
+     * Creates the sink matching the name of the output.
+     * @param output the configured output, a directory or an archive file
+     * @return a new sink writing to the output, has to be closed after the last file
+     * @throws IOException if the output cannot be created
+     */
+    public static OutputSink forOutput(String output) throws IOException {
+        if (output == null || output.isBlank()) {
+            throw new UnsupportedOperationException("Output cannot be null or empty");
+        }
+        Path path = Path.of(output);
+        String lower = output.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".zip") || lower.endsWith(".jar")) {
+            return new ZipOutputSink(path);
+        }
+        if (lower.endsWith(".tar")) {
+            return new TarOutputSink(path, false);
+        }
+        if (lower.endsWith(".tar.gz") || lower.endsWith(".tgz")) {
+            return new TarOutputSink(path, true);
+        }
+        if (isPatch(output)) {
+            return new PatchOutputSink(path);
+        }
+        return new DirectoryOutputSink(path);
+    }
+
+    static String checkRelativePath(String relativePath) {
+        if (relativePath == null || relativePath.isBlank()) {
+            throw new UnsupportedOperationException("Path of an output file cannot be null or empty");
+        }
+        if (relativePath.startsWith("/") || relativePath.contains("\\") || Path.of(relativePath).isAbsolute()) {
+            throw new UnsupportedOperationException("Path of an output file must be relative and use '/': " + relativePath);
+        }
+        return relativePath;
+    }
+
+    static OutputStream createFile(Path file) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        return Files.newOutputStream(file);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.ciselab.lampion.program.output;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reconstructs the transformed files from the diff output of a run and the original input.
+ *
+ * The diffs can be a single patch file, or a directory or zip archive of ".diff" files (one per transformed file),
+ * as the Engine writes them with diff output enabled. The originals are read from the input of the run,
+ * a directory or a zip/jar archive, and the reconstructed files are written to any OutputSink.
+ */
+public abstract class PatchApplier {
+    private static Logger logger = LogManager.getLogger(PatchApplier.class);
+
+    /**
+     * Applies all diffs to their original files and writes the results.
+     *
+     * @param patches the patch file, or a directory or zip archive with ".diff" files
+     * @param input the directory or zip/jar archive the original files are read from
+     * @param target the directory or archive to write the reconstructed files to, see OutputSinks
+     * @return the number of written files
+     * @throws IOException if a file cannot be read or written
+     * @throws UnsupportedOperationException if a diff does not fit its original, or the target is a patch file
+     */
+    public static int apply(Path patches, String input, String target) throws IOException {
+        if (OutputSinks.isPatch(target)) {
+            throw new UnsupportedOperationException("Cannot apply patches into the patch file " + target);
+        }
+        int written = 0;
+        try (FileSystem inputArchive = openArchive(Path.of(input));
+             OutputSink sink = OutputSinks.forOutput(target)) {
+            Path inputRoot = inputArchive == null ? Path.of(input) : inputArchive.getPath("/");
+            for (String patch : readPatches(patches)) {
+                for (UnifiedDiff.FilePatch file : UnifiedDiff.parse(patch)) {
+                    if (file.getRevisedPath().equals(UnifiedDiff.NO_FILE)) {
+                        // Deleted files are simply not written
+                        continue;
+                    }
+                    String original = file.getOriginalPath().equals(UnifiedDiff.NO_FILE) ?
+                            "" : Files.readString(inputRoot.resolve(file.getOriginalPath()), StandardCharsets.UTF_8);
+                    sink.write(file.getRevisedPath(), file.applyTo(original));
+                    written++;
+                }
+            }
+        }
+        logger.info("Applied the diffs of " + written + " files from " + patches + " to " + target);
+        return written;
+    }
+
+    /**
+     * Reads the content of every patch, for directories and archives sorted by their path.
+     */
+    private static List<String> readPatches(Path patches) throws IOException {
+        if (!Files.exists(patches)) {
+            throw new UnsupportedOperationException("There are no patches at " + patches);
+        }
+        if (Files.isDirectory(patches)) {
+            return readDiffFiles(patches);
+        }
+        try (FileSystem archive = openArchive(patches)) {
+            if (archive != null) {
+                return readDiffFiles(archive.getPath("/"));
+            }
+        }
+        if (!OutputSinks.isPatch(patches.toString())) {
+            throw new UnsupportedOperationException("Patches can only be read from a patch file, "
+                    + "a directory or a zip archive, not from " + patches);
+        }
+        return List.of(Files.readString(patches, StandardCharsets.UTF_8));
+    }
+
+    private static List<String> readDiffFiles(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(".diff"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<String> contents = new ArrayList<>(files.size());
+        for (Path file : files) {
+            contents.add(Files.readString(file, StandardCharsets.UTF_8));
+        }
+        return contents;
+    }
+
+    /**
+     * @return the opened zip-filesystem if the path names a zip or jar archive, null otherwise
+     */
+    private static FileSystem openArchive(Path path) throws IOException {
+        String lower = path.toString().toLowerCase(Locale.ROOT);
+        if (!lower.endsWith(".zip") && !lower.endsWith(".jar")) {
+            return null;
+        }
+        // The null classloader makes sure the zip-provider of the jdk is used
+        return FileSystems.newFileSystem(path, (ClassLoader) null);
+    }
+}
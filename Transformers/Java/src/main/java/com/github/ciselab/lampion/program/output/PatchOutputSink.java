@@ -0,0 +1,40 @@
+package com.github.ciselab.lampion.program.output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Streams every file into a single patch file, one after another.
+ *
+ * This is meant for the diff output of the Engine (see Engine.setDiffOutput), where every written file is the
+ * unified diff of a transformed file and carries its paths in its own headers - the path it is written with is
+ * only checked, not written. The resulting file can be applied with the PatchApplier, or with "patch -p1" in the input directory.
+ */
+public class PatchOutputSink implements OutputSink {
+
+    private final Writer writer;
+
+    /**
+     * @param patch the patch file to write, replaced if it exists. Parent directories are created.
+     * @throws IOException if the file cannot be created
+     */
+    public PatchOutputSink(Path patch) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(OutputSinks.createFile(patch), StandardCharsets.UTF_8),
+                OutputSinks.BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(String relativePath, String content) throws IOException {
+        OutputSinks.checkRelativePath(relativePath);
+        writer.write(content);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.ciselab.lampion.program.output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams every file as an entry into a single tar archive (ustar format), optionally gzipped.
+ *
+ * The JDK has no tar support, so the (simple) format is written here:
+ * Every entry is a 512 byte header followed by the content, padded to a multiple of 512 bytes.
+ * The archive ends with two empty blocks.
+ * All entries get the same fixed modification time, owner and mode, so the archive is reproducible.
+ */
+public class TarOutputSink implements OutputSink {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final OutputStream out;
+
+    /**
+     * @param archive the tar file to write, replaced if it exists. Parent directories are created.
+     * @param gzip whether to compress the archive with gzip (.tar.gz)
+     * @throws IOException if the archive cannot be created
+     */
+    public TarOutputSink(Path archive, boolean gzip) throws IOException {
+        OutputStream file = new BufferedOutputStream(OutputSinks.createFile(archive), OutputSinks.BUFFER_SIZE);
+        this.out = gzip ? new GZIPOutputStream(file, OutputSinks.BUFFER_SIZE) : file;
+    }
+
+    @Override
+    public void write(String relativePath, String content) throws IOException {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        out.write(createHeader(OutputSinks.checkRelativePath(relativePath), data.length));
+        out.write(data);
+        int padding = (BLOCK_SIZE - data.length % BLOCK_SIZE) % BLOCK_SIZE;
+        out.write(new byte[padding]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write(new byte[2 * BLOCK_SIZE]);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Creates the ustar header of a regular file.
+     * Paths longer than 100 bytes are split into prefix and name at a "/".
+     */
+    static byte[] createHeader(String path, long size) {
+        byte[] header = new byte[BLOCK_SIZE];
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] name = pathBytes;
+        byte[] prefix = new byte[0];
+        if (pathBytes.length > 100) {
+            int split = findSplit(pathBytes);
+            prefix = Arrays.copyOfRange(pathBytes, 0, split);
+            name = Arrays.copyOfRange(pathBytes, split + 1, pathBytes.length);
+        }
+        System.arraycopy(name, 0, header, 0, name.length);
+        writeOctal(header, 100, 8, 0644);          // mode
+        writeOctal(header, 108, 8, 0);             // uid
+        writeOctal(header, 116, 8, 0);             // gid
+        writeOctal(header, 124, 12, size);         // size
+        writeOctal(header, 136, 12, 0);            // mtime, fixed for reproducible archives
+        Arrays.fill(header, 148, 156, (byte) ' '); // checksum is calculated with spaces in its field
+        header[156] = '0';                         // regular file
+        byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+        System.arraycopy(prefix, 0, header, 345, prefix.length);
+
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        // The checksum is 6 octal digits, followed by a null and a space
+        writeOctal(header, 148, 7, checksum);
+        header[155] = ' ';
+        return header;
+    }
+
+    private static int findSplit(byte[] path) {
+        // The prefix holds up to 155 bytes, the name up to 100 bytes, they are joined with a "/"
+        for (int i = Math.min(155, path.length - 1); i > 0; i--) {
+            if (path[i] == '/' && path.length - i - 1 <= 100) {
+                return i;
+            }
+        }
+        throw new UnsupportedOperationException("Path is too long for a tar archive: " + new String(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the value as zero-padded octal number into the field, terminated by a null byte.
+     */
+    private static void writeOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        if (octal.length() > length - 1) {
+            throw new UnsupportedOperationException("Value " + value + " is too large for a tar header field");
+        }
+        String padded = "0".repeat(length - 1 - octal.length()) + octal;
+        byte[] bytes = padded.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+        header[offset + length - 1] = 0;
+    }
+}
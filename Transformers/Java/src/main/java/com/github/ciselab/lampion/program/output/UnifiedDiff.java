@@ -0,0 +1,480 @@
+package com.github.ciselab.lampion.program.output;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates, parses and applies unified diffs (as "diff -u" and "git diff" write them) of single files.
+ *
+ * The diffs are line based, lines keep their line break so that a changed line break (or a missing one at the end
+ * of the file, marked with "\ No newline at end of file") is a change as well.
+ * The differences are found with the algorithm of Myers, which finds the shortest diff.
+ * As this needs memory in the square of the number of changes, files that changed nearly completely
+ * (more than MAX_EDITS changed lines) get a diff that replaces the changed middle of the file as a whole.
+ * Such a diff is still correct, just not the shortest one.
+ */
+public abstract class UnifiedDiff {
+
+    // The path used in the headers for files that do not exist on one side, e.g. created files
+    public static final String NO_FILE = "/dev/null";
+
+    // The number of unchanged lines kept around every change, the default of diff and git
+    public static final int CONTEXT = 3;
+
+    // The maximum number of changed lines searched for the shortest diff
+    static final int MAX_EDITS = 4096;
+
+    private static final String NO_NEWLINE = "\\ No newline at end of file";
+
+    /**
+     * Creates the unified diff of a single file.
+     * The paths are written with the usual "a/" and "b/" prefixes, unless they are NO_FILE.
+     *
+     * @param originalPath the path of the original file, NO_FILE if it did not exist
+     * @param original the content of the original file, empty if it did not exist
+     * @param revisedPath the path of the revised file, NO_FILE if it was deleted
+     * @param revised the content of the revised file, empty if it was deleted
+     * @return the diff, an empty String if the contents are equal
+     */
+    public static String diff(String originalPath, String original, String revisedPath, String revised) {
+        if (originalPath == null || original == null || revisedPath == null || revised == null) {
+            throw new UnsupportedOperationException("Cannot diff null paths or contents");
+        }
+        if (original.equals(revised)) {
+            return "";
+        }
+        List<String> a = lines(original);
+        List<String> b = lines(revised);
+        boolean[] removed = new boolean[a.size()];
+        boolean[] added = new boolean[b.size()];
+        // Unchanged lines at the start and end are common (e.g. package and imports), and cost nothing to skip
+        int prefix = 0;
+        while (prefix < a.size() && prefix < b.size() && a.get(prefix).equals(b.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.size() - prefix && suffix < b.size() - prefix
+                && a.get(a.size() - 1 - suffix).equals(b.get(b.size() - 1 - suffix))) {
+            suffix++;
+        }
+        markChanges(a, prefix, a.size() - suffix, b, prefix, b.size() - suffix, removed, added);
+
+        StringBuilder diff = new StringBuilder();
+        diff.append("--- ").append(withPrefix("a/", originalPath)).append('\n');
+        diff.append("+++ ").append(withPrefix("b/", revisedPath)).append('\n');
+        appendHunks(diff, a, b, removed, added);
+        return diff.toString();
+    }
+
+    /**
+     * Parses all file diffs of a patch, e.g. of a patch file with many files or of a single diff.
+     * Lines outside of the file diffs (like "diff --git" or "index" lines) are ignored.
+     *
+     * @param patch the content of the patch
+     * @return the diffs of the files in the order of the patch, can be empty
+     * @throws UnsupportedOperationException if a hunk is malformed or incomplete
+     */
+    public static List<FilePatch> parse(String patch) {
+        List<String> lines = lines(patch);
+        List<FilePatch> files = new ArrayList<>();
+        FilePatch current = null;
+        int i = 0;
+        while (i < lines.size()) {
+            String line = lines.get(i);
+            if (line.startsWith("--- ") && i + 1 < lines.size() && lines.get(i + 1).startsWith("+++ ")) {
+                current = new FilePatch(parsePath(line, "a/"), parsePath(lines.get(i + 1), "b/"));
+                files.add(current);
+                i += 2;
+            } else if (line.startsWith("@@ ")) {
+                if (current == null) {
+                    throw new UnsupportedOperationException("Found a hunk without file headers: " + stripLineBreak(line));
+                }
+                i = parseHunk(lines, i, current);
+            } else {
+                i++;
+            }
+        }
+        return files;
+    }
+
+    /**
+     * The diff of a single file, as read by "parse".
+     */
+    public static class FilePatch {
+        private final String originalPath;
+        private final String revisedPath;
+        private final List<Hunk> hunks = new ArrayList<>();
+
+        FilePatch(String originalPath, String revisedPath) {
+            this.originalPath = originalPath;
+            this.revisedPath = revisedPath;
+        }
+
+        /**
+         * @return the path of the original file without the "a/" prefix, NO_FILE if it did not exist
+         */
+        public String getOriginalPath() {
+            return originalPath;
+        }
+
+        /**
+         * @return the path of the revised file without the "b/" prefix, NO_FILE if it was deleted
+         */
+        public String getRevisedPath() {
+            return revisedPath;
+        }
+
+        /**
+         * Applies the hunks to the original content.
+         * Every unchanged and removed line of the hunks must match the original, there is no fuzzy matching.
+         *
+         * @param original the content of the original file, empty if it did not exist
+         * @return the content of the revised file
+         * @throws UnsupportedOperationException if the diff does not fit the original
+         */
+        public String applyTo(String original) {
+            List<String> source = lines(original);
+            StringBuilder revised = new StringBuilder(original.length());
+            int position = 0;
+            for (Hunk hunk : hunks) {
+                // An empty range starts after the given line, a non-empty one at it
+                int start = hunk.originalLength == 0 ? hunk.originalStart : hunk.originalStart - 1;
+                if (start < position || start > source.size()) {
+                    throw new UnsupportedOperationException("The diff of " + originalPath
+                            + " has a hunk outside of the file at line " + hunk.originalStart);
+                }
+                for (; position < start; position++) {
+                    revised.append(source.get(position));
+                }
+                for (int i = 0; i < hunk.lines.size(); i++) {
+                    char operation = hunk.operations[i];
+                    String line = hunk.lines.get(i);
+                    if (operation != '+') {
+                        if (position >= source.size() || !source.get(position).equals(line)) {
+                            throw new UnsupportedOperationException("The diff of " + originalPath
+                                    + " does not apply at line " + (position + 1));
+                        }
+                        position++;
+                    }
+                    if (operation != '-') {
+                        revised.append(line);
+                    }
+                }
+            }
+            for (; position < source.size(); position++) {
+                revised.append(source.get(position));
+            }
+            return revised.toString();
+        }
+    }
+
+    /**
+     * A block of changes with its context, the lines are kept with their line breaks.
+     */
+    private static class Hunk {
+        private final int originalStart;
+        private final int originalLength;
+        private final List<String> lines = new ArrayList<>();
+        private char[] operations = new char[16];
+
+        private Hunk(int originalStart, int originalLength) {
+            this.originalStart = originalStart;
+            this.originalLength = originalLength;
+        }
+
+        private void add(char operation, String line) {
+            if (lines.size() == operations.length) {
+                operations = Arrays.copyOf(operations, operations.length * 2);
+            }
+            operations[lines.size()] = operation;
+            lines.add(line);
+        }
+    }
+
+    /**
+     * Splits the text into lines that keep their "\n", only the last line can be without one.
+     */
+    static List<String> lines(String text) {
+        if (text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            lines.add(text.substring(start, end + 1));
+            start = end + 1;
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    /**
+     * Marks the lines of a that are removed and the lines of b that are added, using the algorithm of Myers.
+     * Only the ranges [aStart,aEnd) and [bStart,bEnd) are compared.
+     */
+    private static void markChanges(List<String> a, int aStart, int aEnd, List<String> b, int bStart, int bEnd,
+                                    boolean[] removed, boolean[] added) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int max = n + m;
+        int offset = max + 1;
+        // v[offset + k] is the furthest x reached on diagonal k = x - y
+        int[] v = new int[2 * max + 3];
+        // Before every round d, the diagonals -(d+1)..(d+1) are kept to walk back the path later
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= max; d++) {
+            if (d > MAX_EDITS) {
+                Arrays.fill(removed, aStart, aEnd, true);
+                Arrays.fill(added, bStart, bEnd, true);
+                return;
+            }
+            trace.add(Arrays.copyOfRange(v, offset - d - 1, offset + d + 2));
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a.get(aStart + x).equals(b.get(bStart + y))) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    walkBack(trace, n, m, aStart, bStart, removed, added);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void walkBack(List<int[]> trace, int n, int m, int aStart, int bStart,
+                                 boolean[] removed, boolean[] added) {
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; d--) {
+            int[] v = trace.get(d);
+            // The snapshot of round d starts at diagonal -(d+1)
+            int shift = d + 1;
+            int k = x - y;
+            int previousK = (k == -d || (k != d && v[shift + k - 1] < v[shift + k + 1])) ? k + 1 : k - 1;
+            int previousX = v[shift + previousK];
+            int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                x--;
+                y--;
+            }
+            if (d > 0) {
+                if (x == previousX) {
+                    added[bStart + previousY] = true;
+                } else {
+                    removed[aStart + previousX] = true;
+                }
+            }
+            x = previousX;
+            y = previousY;
+        }
+    }
+
+    /**
+     * Groups the changes into hunks with CONTEXT unchanged lines around them, merging hunks that touch.
+     */
+    private static void appendHunks(StringBuilder diff, List<String> a, List<String> b,
+                                    boolean[] removed, boolean[] added) {
+        // The whole file as a sequence of operations, with the lines they refer to
+        List<Character> operations = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            if (i < a.size() && removed[i]) {
+                operations.add('-');
+                lines.add(a.get(i++));
+            } else if (j < b.size() && added[j]) {
+                operations.add('+');
+                lines.add(b.get(j++));
+            } else {
+                operations.add(' ');
+                lines.add(a.get(i++));
+                j++;
+            }
+        }
+
+        int position = 0;
+        // The lines of a and b before the current position
+        int aLine = 0;
+        int bLine = 0;
+        while (position < operations.size()) {
+            int firstChange = position;
+            while (firstChange < operations.size() && operations.get(firstChange) == ' ') {
+                firstChange++;
+            }
+            if (firstChange == operations.size()) {
+                return;
+            }
+            int start = Math.max(position, firstChange - CONTEXT);
+            for (; position < start; position++) {
+                aLine++;
+                bLine++;
+            }
+            // Extend the hunk while the next change is close enough for the contexts to touch
+            int end = firstChange;
+            int unchanged = 0;
+            for (int p = firstChange; p < operations.size(); p++) {
+                if (operations.get(p) == ' ') {
+                    unchanged++;
+                    if (unchanged > 2 * CONTEXT) {
+                        break;
+                    }
+                } else {
+                    unchanged = 0;
+                    end = p + 1;
+                }
+            }
+            end = Math.min(operations.size(), end + CONTEXT);
+
+            int aLength = 0;
+            int bLength = 0;
+            for (int p = start; p < end; p++) {
+                if (operations.get(p) != '+') {
+                    aLength++;
+                }
+                if (operations.get(p) != '-') {
+                    bLength++;
+                }
+            }
+            diff.append("@@ -").append(range(aLine, aLength)).append(" +").append(range(bLine, bLength)).append(" @@\n");
+            for (int p = start; p < end; p++) {
+                String line = lines.get(p);
+                diff.append(operations.get(p)).append(line);
+                if (!line.endsWith("\n")) {
+                    diff.append('\n').append(NO_NEWLINE).append('\n');
+                }
+            }
+            aLine += aLength;
+            bLine += bLength;
+            position = end;
+        }
+    }
+
+    /**
+     * The range of a hunk header: an empty range names the line before it, a non-empty one its first line.
+     */
+    private static String range(int linesBefore, int length) {
+        int start = length == 0 ? linesBefore : linesBefore + 1;
+        return length == 1 ? String.valueOf(start) : start + "," + length;
+    }
+
+    /**
+     * Reads the hunk starting at the given line into the file patch.
+     * @return the index of the first line after the hunk
+     */
+    private static int parseHunk(List<String> lines, int index, FilePatch file) {
+        String header = stripLineBreak(lines.get(index));
+        int[] originalRange;
+        int[] revisedRange;
+        try {
+            String[] parts = header.split(" ");
+            originalRange = parseRange(parts[1], '-');
+            revisedRange = parseRange(parts[2], '+');
+        } catch (RuntimeException e) {
+            throw new UnsupportedOperationException("Malformed hunk header in the diff of "
+                    + file.originalPath + ": " + header, e);
+        }
+        Hunk hunk = new Hunk(originalRange[0], originalRange[1]);
+        int originalLeft = originalRange[1];
+        int revisedLeft = revisedRange[1];
+        int i = index + 1;
+        while (originalLeft > 0 || revisedLeft > 0) {
+            if (i >= lines.size()) {
+                throw new UnsupportedOperationException("The diff of " + file.originalPath + " ends within a hunk");
+            }
+            String line = lines.get(i++);
+            if (line.startsWith("\\")) {
+                continue;
+            }
+            // Some tools drop the space of empty unchanged lines
+            char operation = line.equals("\n") ? ' ' : line.charAt(0);
+            String content = line.equals("\n") ? line : line.substring(1);
+            if ((operation == ' ' && (originalLeft == 0 || revisedLeft == 0))
+                    || (operation == '-' && originalLeft == 0) || (operation == '+' && revisedLeft == 0)
+                    || (operation != ' ' && operation != '-' && operation != '+')) {
+                throw new UnsupportedOperationException("The diff of " + file.originalPath
+                        + " has a malformed hunk at " + header);
+            }
+            if (operation != '+') {
+                originalLeft--;
+            }
+            if (operation != '-') {
+                revisedLeft--;
+            }
+            hunk.add(operation, content);
+        }
+        // A marker after the last line of the hunk means that line has no line break
+        if (i < lines.size() && lines.get(i).startsWith("\\")) {
+            removeLineBreakOfLast(hunk);
+            i++;
+        }
+        // Markers within the hunk refer to the line before them
+        fixMarkersWithin(lines, index + 1, i, hunk);
+        file.hunks.add(hunk);
+        return i;
+    }
+
+    /**
+     * Removes the line break of every hunk line that is followed by a "\ No newline" marker within the hunk.
+     */
+    private static void fixMarkersWithin(List<String> lines, int from, int to, Hunk hunk) {
+        int hunkLine = -1;
+        for (int i = from; i < to; i++) {
+            if (lines.get(i).startsWith("\\")) {
+                if (hunkLine >= 0 && hunkLine < hunk.lines.size() - 1) {
+                    hunk.lines.set(hunkLine, stripLineBreak(hunk.lines.get(hunkLine)));
+                }
+            } else {
+                hunkLine++;
+            }
+        }
+    }
+
+    private static void removeLineBreakOfLast(Hunk hunk) {
+        int last = hunk.lines.size() - 1;
+        if (last >= 0) {
+            hunk.lines.set(last, stripLineBreak(hunk.lines.get(last)));
+        }
+    }
+
+    private static int[] parseRange(String range, char sign) {
+        if (range.charAt(0) != sign) {
+            throw new IllegalArgumentException("Range " + range + " does not start with " + sign);
+        }
+        String[] values = range.substring(1).split(",");
+        int start = Integer.parseInt(values[0]);
+        int length = values.length > 1 ? Integer.parseInt(values[1]) : 1;
+        return new int[]{start, length};
+    }
+
+    private static String parsePath(String header, String prefix) {
+        String path = stripLineBreak(header.substring(4));
+        // Some tools add the time of the file after a tab
+        if (path.contains("\t")) {
+            path = path.substring(0, path.indexOf('\t'));
+        }
+        return path.startsWith(prefix) ? path.substring(prefix.length()) : path;
+    }
+
+    private static String withPrefix(String prefix, String path) {
+        return path.equals(NO_FILE) ? path : prefix + path;
+    }
+
+    private static String stripLineBreak(String line) {
+        return line.endsWith("\n") ? line.substring(0, line.length() - 1) : line;
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.ciselab.lampion.program.output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams every file as an entry into a single zip archive, without any intermediate files.
+ * All entries get the same fixed timestamp, so the archive only depends on the written files and their order.
+ */
+public class ZipOutputSink implements OutputSink {
+
+    // The earliest time a zip-entry can hold, used for every entry to keep archives reproducible
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(1980, 1, 1, 0, 0);
+
+    private final ZipOutputStream zip;
+
+    /**
+     * @param archive the zip file to write, replaced if it exists. Parent directories are created.
+     * @throws IOException if the archive cannot be created
+     */
+    public ZipOutputSink(Path archive) throws IOException {
+        this.zip = new ZipOutputStream(new BufferedOutputStream(OutputSinks.createFile(archive), OutputSinks.BUFFER_SIZE));
+    }
+
+    @Override
+    public void write(String relativePath, String content) throws IOException {
+        ZipEntry entry = new ZipEntry(OutputSinks.checkRelativePath(relativePath));
+        entry.setTimeLocal(ENTRY_TIME);
+        zip.putNextEntry(entry);
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
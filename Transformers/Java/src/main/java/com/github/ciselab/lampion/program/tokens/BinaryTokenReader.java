@@ -0,0 +1,153 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the files of a token output written by the BinaryTokenSink, one after another.
+ * Only the dictionary and the current file are kept in memory.
+ */
+public class BinaryTokenReader implements Iterator<TokenizedFile>, Closeable {
+
+    private final Path file;
+    private final InputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+    private TokenizedFile next = null;
+    private boolean finished = false;
+
+    /**
+     * Opens the token file and checks its header.
+     * @param file the token file
+     * @throws IOException if the file cannot be read
+     * @throws UnsupportedOperationException if the file is no token file or of an unknown version
+     */
+    public BinaryTokenReader(Path file) throws IOException {
+        this.file = file;
+        this.in = new BufferedInputStream(Files.newInputStream(file), TokenSinks.BUFFER_SIZE);
+        byte[] magic = in.readNBytes(BinaryTokenSink.MAGIC.length);
+        int version = in.read();
+        if (!Arrays.equals(magic, BinaryTokenSink.MAGIC) || version != BinaryTokenSink.VERSION) {
+            in.close();
+            throw new UnsupportedOperationException(file + " is not a Lampion token file of version "
+                    + BinaryTokenSink.VERSION);
+        }
+    }
+
+    /**
+     * Reads all files at once, only use this for token files that fit into memory.
+     * @param file the token file
+     * @return all files in order of writing
+     * @throws IOException if the file cannot be read
+     */
+    public static List<TokenizedFile> readAll(Path file) throws IOException {
+        List<TokenizedFile> files = new ArrayList<>();
+        try (BinaryTokenReader reader = new BinaryTokenReader(file)) {
+            reader.forEachRemaining(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * @return true if there is another file
+     * @throws UncheckedIOException if the file cannot be read
+     * @throws UnsupportedOperationException if the file contains an invalid or incomplete block
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readNextFile();
+            } catch (EOFException e) {
+                throw new UnsupportedOperationException("The token file " + file + " ends within a block", e);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the token file " + file, e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public TokenizedFile next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        TokenizedFile result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * @return all tokens read so far, the index is their id
+     */
+    public List<String> getDictionary() {
+        return List.copyOf(dictionary);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private TokenizedFile readNextFile() throws IOException {
+        while (true) {
+            int tag = in.read();
+            if (tag < 0) {
+                finished = true;
+                return null;
+            }
+            if (tag == BinaryTokenSink.TAG_TOKEN) {
+                dictionary.add(readString());
+            } else if (tag == BinaryTokenSink.TAG_FILE) {
+                String path = readString();
+                int count = readVarInt();
+                List<String> tokens = new ArrayList<>(Math.min(count, 1 << 16));
+                for (int i = 0; i < count; i++) {
+                    int id = readVarInt();
+                    if (id >= dictionary.size()) {
+                        throw new UnsupportedOperationException("The token file " + file + " uses the undefined token " + id);
+                    }
+                    tokens.add(dictionary.get(id));
+                }
+                return new TokenizedFile(path, tokens);
+            } else {
+                throw new UnsupportedOperationException("The token file " + file + " has an unknown block " + tag);
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        int length = readVarInt();
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new UnsupportedOperationException("The token file " + file + " has a malformed number");
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the tokens of every file as ids into a dictionary, in a compact binary file.
+ *
+ * The file starts with a magic number and a version, followed by blocks of a tag and their values:
+ * - TOKEN: a token of the dictionary, its id is the number of tokens defined before
+ * - FILE: the path of a file, the number of its tokens and their ids
+ * Numbers are unsigned varints (as in the manifest), strings are their UTF-8 length followed by their bytes.
+ * Tokens are defined right before the first file that uses them, so the file can be read as a stream,
+ * see BinaryTokenReader.
+ */
+public class BinaryTokenSink implements TokenSink {
+
+    static final byte[] MAGIC = {'L', 'T', 'O', 'K'};
+    static final byte VERSION = 1;
+
+    static final byte TAG_TOKEN = 1;
+    static final byte TAG_FILE = 2;
+
+    private final OutputStream out;
+    private final Map<String, Integer> tokenIds = new HashMap<>();
+
+    /**
+     * @param file the file to write, replaced if it exists. Parent directories are created.
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryTokenSink(Path file) throws IOException {
+        this.out = new BufferedOutputStream(TokenSinks.createFile(file), TokenSinks.BUFFER_SIZE);
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    @Override
+    public void write(String relativePath, List<String> tokens) throws IOException {
+        int[] ids = new int[tokens.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Integer id = tokenIds.get(tokens.get(i));
+            if (id == null) {
+                id = tokenIds.size();
+                tokenIds.put(tokens.get(i), id);
+                out.write(TAG_TOKEN);
+                writeString(tokens.get(i));
+            }
+            ids[i] = id;
+        }
+        out.write(TAG_FILE);
+        writeString(relativePath);
+        writeVarInt(ids.length);
+        for (int id : ids) {
+            writeVarInt(id);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes the value as unsigned LEB128, 7 bits per byte starting with the lowest, the highest bit marks more bytes.
+     */
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits identifiers into their words, e.g. for open-vocabulary models that learn on subwords.
+ *
+ * The names created by the transformers (see RandomNameFactory) are camel cased, like "honorableKrakenZookeeper",
+ * while constants and some code bases use snake case, like "MAX_VALUE" - which of them are split is configurable.
+ * Camel case splits before an upper case letter that follows a lower case letter or digit ("myVar" to "my","Var"),
+ * before the last upper case letter of an acronym ("XMLParser" to "XML","Parser") and between letters and digits.
+ */
+public class IdentifierSplitter {
+
+    public enum Splitting {
+        none,       // Identifiers are kept whole
+        camelCase,  // Identifiers are split at their camel case
+        snakeCase,  // Identifiers are split at their underscores, which are dropped
+        both        // Identifiers are split at their underscores, and the parts at their camel case
+    }
+
+    private final Splitting splitting;
+    private final boolean lowercase;
+
+    /**
+     * @param splitting how to split the identifiers
+     * @param lowercase whether the parts are lower cased (as their boundaries are known after splitting)
+     * @throws UnsupportedOperationException if splitting is null
+     */
+    public IdentifierSplitter(Splitting splitting, boolean lowercase) {
+        if (splitting == null) {
+            throw new UnsupportedOperationException("Splitting of an IdentifierSplitter cannot be null");
+        }
+        this.splitting = splitting;
+        this.lowercase = lowercase;
+    }
+
+    /**
+     * Splits the identifier into its parts.
+     * An identifier without any part (e.g. "_" when splitting snake case) is kept as it is.
+     * @param identifier the identifier to split
+     * @return the parts of the identifier in order, at least one
+     */
+    public List<String> split(String identifier) {
+        List<String> parts = new ArrayList<>();
+        if (splitting == Splitting.snakeCase || splitting == Splitting.both) {
+            for (String part : identifier.split("_")) {
+                if (!part.isEmpty()) {
+                    parts.add(part);
+                }
+            }
+        } else {
+            parts.add(identifier);
+        }
+        if (splitting == Splitting.camelCase || splitting == Splitting.both) {
+            List<String> camelParts = new ArrayList<>();
+            parts.forEach(p -> splitCamelCase(p, camelParts));
+            parts = camelParts;
+        }
+        if (parts.isEmpty()) {
+            parts.add(identifier);
+        }
+        if (lowercase) {
+            parts.replaceAll(p -> p.toLowerCase(Locale.ROOT));
+        }
+        return parts;
+    }
+
+    public Splitting getSplitting() {
+        return splitting;
+    }
+
+    public boolean isLowercase() {
+        return lowercase;
+    }
+
+    private static void splitCamelCase(String word, List<String> parts) {
+        int start = 0;
+        for (int i = 1; i < word.length(); i++) {
+            char previous = word.charAt(i - 1);
+            char current = word.charAt(i);
+            boolean nextIsLower = i + 1 < word.length() && Character.isLowerCase(word.charAt(i + 1));
+            boolean boundary = (Character.isUpperCase(current) && !Character.isUpperCase(previous)
+                                    && Character.isLetterOrDigit(previous))
+                    || (Character.isUpperCase(current) && Character.isUpperCase(previous) && nextIsLower)
+                    || (Character.isDigit(current) != Character.isDigit(previous));
+            if (boundary) {
+                parts.add(word.substring(start, i));
+                start = i;
+            }
+        }
+        parts.add(word.substring(start));
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes the tokens of every file as one line of JSON (JSON Lines), e.g.
+ * {"file":"lampion/A.java","tokens":["package","lampion",";", ...]}
+ */
+public class JsonlTokenSink implements TokenSink {
+
+    private final Writer writer;
+
+    /**
+     * @param file the file to write, replaced if it exists. Parent directories are created.
+     * @throws IOException if the file cannot be created
+     */
+    public JsonlTokenSink(Path file) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(TokenSinks.createFile(file), StandardCharsets.UTF_8),
+                TokenSinks.BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(String relativePath, List<String> tokens) throws IOException {
+        writer.write("{\"file\":");
+        writeString(relativePath);
+        writer.write(",\"tokens\":[");
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeString(tokens.get(i));
+        }
+        writer.write("]}\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Writes the value as JSON string, escaping quotes, backslashes and control characters.
+     */
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': writer.write("\\\""); break;
+                case '\\': writer.write("\\\\"); break;
+                case '\n': writer.write("\\n"); break;
+                case '\r': writer.write("\\r"); break;
+                case '\t': writer.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import spoon.compiler.Environment;
+import spoon.reflect.visitor.DefaultTokenWriter;
+import spoon.reflect.visitor.PrinterHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the tokens a pretty-printer writes, instead of (only) the printed text.
+ *
+ * Set as the token writer of a DefaultJavaPrettyPrinter, it sees every keyword, identifier, literal, operator and
+ * separator in the order they are printed - so the tokens are the ones of the printed file, without
+ * parsing it again. Identifiers are split with the IdentifierSplitter, literals are kept whole.
+ * Comments and whitespace are no tokens. Uncompiled code snippets are split at their whitespace.
+ *
+ * The text is still printed into the printer helper, as the printer relies on it for its layout.
+ */
+public class TokenCollector extends DefaultTokenWriter {
+
+    private final IdentifierSplitter splitter;
+    private final List<String> tokens = new ArrayList<>();
+
+    /**
+     * @param splitter the splitter for the identifiers
+     * @throws UnsupportedOperationException if the splitter is null
+     */
+    public TokenCollector(IdentifierSplitter splitter) {
+        this(splitter, new PrinterHelper());
+    }
+
+    /**
+     * Prints the text like the token writer a DefaultJavaPrettyPrinter creates for the environment,
+     * so the printer's result is the same with and without the collector, e.g. to write both.
+     * @param splitter the splitter for the identifiers
+     * @param environment the environment of the printer
+     * @throws UnsupportedOperationException if the splitter is null
+     */
+    public TokenCollector(IdentifierSplitter splitter, Environment environment) {
+        this(splitter, new PrinterHelper(environment));
+    }
+
+    private TokenCollector(IdentifierSplitter splitter, PrinterHelper printerHelper) {
+        super(printerHelper);
+        if (splitter == null) {
+            throw new UnsupportedOperationException("Splitter of a TokenCollector cannot be null");
+        }
+        this.splitter = splitter;
+    }
+
+    /**
+     * @return the tokens collected since the last reset, in printing order
+     */
+    public List<String> getTokens() {
+        return Collections.unmodifiableList(tokens);
+    }
+
+    @Override
+    public DefaultTokenWriter writeOperator(String token) {
+        tokens.add(token);
+        return super.writeOperator(token);
+    }
+
+    @Override
+    public DefaultTokenWriter writeSeparator(String token) {
+        tokens.add(token);
+        return super.writeSeparator(token);
+    }
+
+    @Override
+    public DefaultTokenWriter writeLiteral(String token) {
+        tokens.add(token);
+        return super.writeLiteral(token);
+    }
+
+    @Override
+    public DefaultTokenWriter writeKeyword(String token) {
+        tokens.add(token);
+        return super.writeKeyword(token);
+    }
+
+    @Override
+    public DefaultTokenWriter writeIdentifier(String token) {
+        tokens.addAll(splitter.split(token));
+        return super.writeIdentifier(token);
+    }
+
+    @Override
+    public DefaultTokenWriter writeCodeSnippet(String token) {
+        for (String part : token.trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                tokens.add(part);
+            }
+        }
+        return super.writeCodeSnippet(token);
+    }
+
+    @Override
+    public void reset() {
+        tokens.clear();
+        super.reset();
+    }
+}
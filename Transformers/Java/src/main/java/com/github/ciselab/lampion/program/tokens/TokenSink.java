@@ -0,0 +1,21 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A TokenSink receives the token sequences of the printed (transformed) files, one file after another.
+ * Like the OutputSinks, it is written in a deterministic order and has to be closed after the last file.
+ */
+public interface TokenSink extends Closeable {
+
+    /**
+     * Writes the tokens of a single file.
+     *
+     * @param relativePath the path of the file relative to the output root, e.g. "lampion/A.java"
+     * @param tokens the tokens of the file in order
+     * @throws IOException if the tokens cannot be written
+     */
+    void write(String relativePath, List<String> tokens) throws IOException;
+}
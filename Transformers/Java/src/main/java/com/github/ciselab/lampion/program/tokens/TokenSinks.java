@@ -0,0 +1,46 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Factory of the TokenSinks, the format is decided by the name of the file:
+ * - *.jsonl gives a JsonlTokenSink, one JSON object per file - easy to read e.g. with pandas
+ * - *.tok gives a BinaryTokenSink, with a dictionary of the tokens - much smaller for large corpora
+ */
+public abstract class TokenSinks {
+
+    // The buffer of the files, large enough to not write every small token sequence on its own
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Creates the sink matching the name of the file.
+     * @param file the file to write the tokens to, replaced if it exists
+     * @return a new sink writing to the file, has to be closed after the last file
+     * @throws IOException if the file cannot be created
+     * @throws UnsupportedOperationException if the file has an unknown ending
+     */
+    public static TokenSink forOutput(Path file) throws IOException {
+        if (file == null) {
+            throw new UnsupportedOperationException("Token output cannot be null");
+        }
+        String lower = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".jsonl")) {
+            return new JsonlTokenSink(file);
+        }
+        if (lower.endsWith(".tok")) {
+            return new BinaryTokenSink(file);
+        }
+        throw new UnsupportedOperationException("Token output " + file + " must end with .jsonl or .tok");
+    }
+
+    static OutputStream createFile(Path file) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        return Files.newOutputStream(file);
+    }
+}
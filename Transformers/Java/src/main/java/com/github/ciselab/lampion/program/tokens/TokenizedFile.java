@@ -0,0 +1,33 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import java.util.List;
+
+/**
+ * The tokens of a single file, as read from a token output.
+ */
+public class TokenizedFile {
+
+    private final String file;
+    private final List<String> tokens;
+
+    /**
+     * @param file the path of the file relative to the output root
+     * @param tokens the tokens of the file in order
+     * @throws UnsupportedOperationException if any value is null
+     */
+    public TokenizedFile(String file, List<String> tokens) {
+        if (file == null || tokens == null) {
+            throw new UnsupportedOperationException("Tokenized files cannot have null values");
+        }
+        this.file = file;
+        this.tokens = List.copyOf(tokens);
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.ciselab.lampion.support;
+
+/**
+ * Formats values for the CSV files Lampion writes, e.g. the applicability analysis and the manifest export.
+ * The files use "," as separator and follow RFC 4180 for quoting.
+ */
+public abstract class CsvFormat {
+
+    /**
+     * Quotes a value for CSV if it contains separators, quotes or line breaks.
+     * Quotes inside the value are doubled.
+     * @param value the value to quote
+     * @return the value as it can be written into a CSV cell
+     */
+    public static String quote(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
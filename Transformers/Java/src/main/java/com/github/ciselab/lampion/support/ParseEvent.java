@@ -0,0 +1,24 @@
+package com.github.ciselab.lampion.support;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for reading a batch of files into a Spoon model.
+ */
+@Name("com.github.ciselab.lampion.Parse")
+@Label("Parse")
+@Category({"Lampion", "IO"})
+@Description("Reading a batch of input files into a model")
+public class ParseEvent extends Event {
+
+    @Label("Input")
+    public String input;
+
+    @Label("Types")
+    @Description("The number of read toplevel types")
+    public int types;
+}
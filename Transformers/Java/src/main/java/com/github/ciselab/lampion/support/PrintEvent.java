@@ -0,0 +1,28 @@
+package com.github.ciselab.lampion.support;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for printing a batch of transformed types, as files, diffs or tokens.
+ */
+@Name("com.github.ciselab.lampion.Print")
+@Label("Print")
+@Category({"Lampion", "IO"})
+@Description("Printing a batch of transformed types")
+public class PrintEvent extends Event {
+
+    @Label("Output")
+    public String output;
+
+    @Label("Mode")
+    @Description("How the types are printed: default, sniper, diff or tokens")
+    public String mode;
+
+    @Label("Types")
+    @Description("The number of printed toplevel types")
+    public int types;
+}
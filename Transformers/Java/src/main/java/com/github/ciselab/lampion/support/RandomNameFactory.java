@@ -3,8 +3,6 @@ package com.github.ciselab.lampion.support;
 import com.github.ciselab.lampion.program.App;
 
 import java.util.Random;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * This class provides a set of methods to create random strings of various length.
@@ -13,6 +11,9 @@ import java.util.stream.IntStream;
  * To be better testable, the Factory methods receive the random supplier from the transformers.
  * As every transformer needs a random supplier anyway, this way round there is less need for seeding
  * and the unit tests are more stable/decoupled.
+ *
+ * The strings are built in plain loops, as they are created for every transformation.
+ * For names that must not collide with existing ones, see UniqueNameGenerator.
  */
 public abstract class RandomNameFactory {
 
@@ -33,9 +34,14 @@ public abstract class RandomNameFactory {
      */
     public static String getRandomComment(int words,Random random){
         // To look a bit more human, there will be spaces added between random strings
-        return IntStream.range(0,words)
-                .mapToObj( t -> getRandomString(random))
-                .collect(Collectors.joining(" "));
+        StringBuilder comment = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                comment.append(' ');
+            }
+            comment.append(getRandomString(random));
+        }
+        return comment.toString();
     }
 
     /**
@@ -45,9 +51,14 @@ public abstract class RandomNameFactory {
      */
     public static String getAnimalComment(int words,Random random){
         // To look a bit more human, there will be spaces added between random strings
-        return IntStream.range(0,words)
-                .mapToObj( t -> getCamelcasedAnimalString(random))
-                .collect(Collectors.joining(" "));
+        StringBuilder comment = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                comment.append(' ');
+            }
+            comment.append(getCamelcasedAnimalString(random));
+        }
+        return comment.toString();
     }
 
 
@@ -70,13 +81,15 @@ public abstract class RandomNameFactory {
         int rightLimit = 122; // letter 'z'
         int targetStringLength = length;
 
-        String generatedString = random.ints(leftLimit, rightLimit + 1)
-                .filter(i -> (i <= 57 || i >= 65) && (i <= 90 || i >= 97))
-                .limit(targetStringLength)
-                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
-                .toString();
-
-        return generatedString;
+        StringBuilder generatedString = new StringBuilder(Math.max(targetStringLength, 0));
+        while (generatedString.length() < targetStringLength) {
+            int i = nextInt(random, leftLimit, rightLimit + 1);
+            // Skip the signs between the numerals and the letters
+            if ((i <= 57 || i >= 65) && (i <= 90 || i >= 97)) {
+                generatedString.append((char) i);
+            }
+        }
+        return generatedString.toString();
     }
     /**
      * Shamelessly copied from https://www.baeldung.com/java-random-string
@@ -88,13 +101,29 @@ public abstract class RandomNameFactory {
         int rightLimit = 122; // letter 'z'
         int targetStringLength = random.nextInt(7)+3;
 
-        String generatedString = random.ints(leftLimit, rightLimit + 1)
-                .filter(i -> (i <= 57 || i >= 65) && (i <= 90 || i >= 97))
-                .limit(targetStringLength)
-                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
-                .toString();
+        StringBuilder generatedString = new StringBuilder(targetStringLength);
+        for (int i = 0; i < targetStringLength; i++) {
+            generatedString.append((char) nextInt(random, leftLimit, rightLimit + 1));
+        }
+        return generatedString.toString();
+    }
 
-        return generatedString;
+    /**
+     * Draws a number between origin (inclusive) and bound (exclusive),
+     * exactly as random.ints(origin,bound) does for every element, so the strings are the same as they were
+     * when they were built from that stream (which differs from random.nextInt(bound - origin) + origin).
+     */
+    private static int nextInt(Random random, int origin, int bound) {
+        int n = bound - origin;
+        int m = n - 1;
+        int r = random.nextInt();
+        if ((n & m) == 0) {
+            return (r & m) + origin;
+        }
+        for (int u = r >>> 1; u + m - (r = u % n) < 0; u = random.nextInt() >>> 1) {
+            // Rejects the few numbers that would make the lower results more likely
+        }
+        return r + origin;
     }
 
     /**
@@ -176,7 +205,7 @@ public abstract class RandomNameFactory {
     /**
      * These keywords are commonly found as prefixes of methods
      */
-    private static final String[] keywords = new String[]{
+    static final String[] keywords = new String[]{
             "from",
             "is",
             "to",
@@ -201,7 +230,7 @@ public abstract class RandomNameFactory {
             "throw"
     };
 
-    private static final String[] adjectives = new String[]{
+    static final String[] adjectives = new String[]{
             "aged",
             "biased",
             "complex",
@@ -230,7 +259,7 @@ public abstract class RandomNameFactory {
             "zoomed"
     };
 
-    private static final String[] animals = new String[]{
+    static final String[] animals = new String[]{
             "alpaca",
             "beaver",
             "cockroach",
@@ -259,7 +288,7 @@ public abstract class RandomNameFactory {
             "zebra"
     };
 
-    private static final String[] jobs = new String[]{
+    static final String[] jobs = new String[]{
             "attorney",
             "builder",
             "curator",
@@ -0,0 +1,84 @@
+package com.github.ciselab.lampion.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * This class derives seeds for single random decisions from a base seed and a number of keys,
+ * e.g. (seed, file, index of the method in the file, transformer).
+ *
+ * Unlike drawing all numbers from one shared Random, the derived seed only depends on the keys,
+ * not on how many numbers have been drawn before.
+ * Hence, the same decision gets the same random numbers no matter in which order (or in which thread, or in which
+ * shard) the decisions are made, which keeps runs reproducible when they are parallelized or resumed.
+ *
+ * The mixing is the finalizer of SplitMix64, which is also used by java.util.SplittableRandom.
+ * It is not cryptographically secure, but spreads similar keys (such as index 1 and 2) well.
+ */
+public abstract class SeedDerivation {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Derives a seed for a single decision from the base seed and the keys identifying the decision.
+     * The same seed and keys always produce the same derived seed, also across JVMs.
+     *
+     * Numbers (e.g. indices) are used by value, every other key by its String-representation.
+     * The order of keys matters, (seed,a,b) and (seed,b,a) produce different seeds.
+     *
+     * @param seed the base seed, usually the seed of the whole run
+     * @param keys the keys identifying the decision, must not be null
+     * @return a derived seed
+     * @throws UnsupportedOperationException if any key is null
+     */
+    public static long derive(long seed, Object... keys) {
+        long derived = mix(seed + GOLDEN_GAMMA);
+        for (Object key : keys) {
+            if (key == null) {
+                throw new UnsupportedOperationException("Keys to derive a seed cannot be null");
+            }
+            derived = mix(derived + GOLDEN_GAMMA + hashKey(key));
+        }
+        return derived;
+    }
+
+    /**
+     * Creates a new random number provider for a single decision, see "derive".
+     *
+     * @param seed the base seed, usually the seed of the whole run
+     * @param keys the keys identifying the decision, must not be null
+     * @return a new Random seeded with the derived seed
+     * @throws UnsupportedOperationException if any key is null
+     */
+    public static Random random(long seed, Object... keys) {
+        return new Random(derive(seed, keys));
+    }
+
+    /**
+     * The 64bit finalizer of SplitMix64.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Hashes a key stable across JVMs - String.hashCode would be stable too, but has only 32 bit.
+     * Strings are hashed with 64bit FNV-1a over their UTF-8 bytes.
+     */
+    private static long hashKey(Object key) {
+        if (key instanceof Number) {
+            return mix(((Number) key).longValue());
+        }
+        long hash = FNV_OFFSET;
+        for (byte b : key.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
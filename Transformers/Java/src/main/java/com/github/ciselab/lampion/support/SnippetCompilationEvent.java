@@ -0,0 +1,28 @@
+package com.github.ciselab.lampion.support;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for compiling the snippets of a class after it was transformed,
+ * which is where most of the time of Spoon (and JDT) goes in a run.
+ */
+@Name("com.github.ciselab.lampion.SnippetCompilation")
+@Label("Snippet Compilation")
+@Category({"Lampion", "Transformation"})
+@Description("Compiling the snippets of a transformed class to restore its AST")
+public class SnippetCompilationEvent extends Event {
+
+    @Label("Class")
+    public String className;
+
+    @Label("Transformer")
+    @Description("The transformer that requested the compilation")
+    public String transformer;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
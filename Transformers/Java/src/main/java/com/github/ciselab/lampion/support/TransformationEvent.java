@@ -0,0 +1,48 @@
+package com.github.ciselab.lampion.support;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a single attempt to apply a transformer to an element,
+ * i.e. one entry of the TransformationPlan, which can request several transformations.
+ *
+ * The duration is the time of applying the transformer, without the restores deferred to the end of a batch
+ * (which are recorded as SnippetCompilationEvents). Like all events, it costs next to nothing if JFR is not recording.
+ */
+@Name("com.github.ciselab.lampion.Transformation")
+@Label("Transformation")
+@Category({"Lampion", "Transformation"})
+@Description("An attempt to apply a transformer to an element of a file")
+public class TransformationEvent extends Event {
+
+    // The possible outcomes of an attempt
+    public static final String APPLIED = "applied";
+    public static final String EMPTY = "empty";
+    public static final String NOT_APPLICABLE = "notApplicable";
+    public static final String FAILED = "failed";
+
+    @Label("Transformer")
+    public String transformer;
+
+    @Label("File")
+    @Description("The path of the file relative to the input, or the toplevel type if the file is unknown")
+    public String file;
+
+    @Label("Outcome")
+    @Description("applied, empty (no transformation was possible), notApplicable or failed (Spoon-errors)")
+    public String outcome;
+
+    @Label("Requested Transformations")
+    public int requested;
+
+    @Label("Applied Transformations")
+    public int applied;
+
+    @Label("Candidates")
+    @Description("The number of elements the transformer could alter, -1 if it is unknown")
+    public long candidates = -1;
+}
@@ -0,0 +1,197 @@
+package com.github.ciselab.lampion.support;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * This class creates camel cased animal names (see RandomNameFactory) that are unique within a scope,
+ * e.g. the methods of a class or the variables of a method.
+ *
+ * Every combination of (keyword,) adjective, animal and job is a number, and the numbers are drawn from a
+ * permutation of all of them that is shuffled lazily (a Fisher-Yates shuffle that only does the swaps it needs).
+ * Names that already exist in the scope are taken out of the permutation up front, so a drawn name never
+ * collides and never has to be drawn again - and when all names are taken, hasNext() says so before drawing.
+ * The permutation only remembers the positions that were swapped, so it stays small for the usual few names.
+ *
+ * A generator is meant for one scope, it is not thread-safe.
+ */
+public class UniqueNameGenerator implements Iterator<String> {
+
+    private final String[] keywords;
+    private final Random random;
+    private final int size;
+
+    // The lazy permutation: only swapped positions are stored, every other position holds its own number
+    private final Map<Integer, Integer> numberAt = new HashMap<>();
+    private final Map<Integer, Integer> positionOf = new HashMap<>();
+    // The numbers at the positions below this are drawn or taken out
+    private int used = 0;
+
+    // Re-used for every name, to not create intermediate strings for the parts
+    private final StringBuilder buffer = new StringBuilder(64);
+
+    /**
+     * @param withKeyWord whether the names start with one of the keywords such as "get","set","compare"...
+     * @param random the random number provider, usually the one of the transformer
+     * @throws UnsupportedOperationException if random is null
+     */
+    public UniqueNameGenerator(boolean withKeyWord, Random random) {
+        if (random == null) {
+            throw new UnsupportedOperationException("Random of a UniqueNameGenerator cannot be null");
+        }
+        this.keywords = withKeyWord ? RandomNameFactory.keywords : new String[]{""};
+        this.random = random;
+        this.size = keywords.length * RandomNameFactory.adjectives.length
+                * RandomNameFactory.animals.length * RandomNameFactory.jobs.length;
+    }
+
+    /**
+     * Takes the names out that already exist in the scope, so they are not created.
+     * Names are compared ignoring their case, names that the generator cannot create are ignored.
+     * The order of the names does not matter, the same names lead to the same created names.
+     *
+     * @param takenNames the names that exist in the scope, e.g. the names of all methods of a class
+     * @return this generator
+     * @throws UnsupportedOperationException if takenNames is null
+     */
+    public UniqueNameGenerator exclude(Collection<String> takenNames) {
+        if (takenNames == null) {
+            throw new UnsupportedOperationException("Taken names cannot be null");
+        }
+        // The numbers are taken out in their order, so the permutation does not depend on the order of a set
+        int[] numbers = new int[takenNames.size()];
+        int count = 0;
+        for (String name : takenNames) {
+            int number = numberOf(name);
+            if (number >= 0) {
+                numbers[count++] = number;
+            }
+        }
+        Arrays.sort(numbers, 0, count);
+        for (int i = 0; i < count; i++) {
+            int number = numbers[i];
+            if (positionOf(number) >= used) {
+                swap(used, positionOf(number));
+                used++;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of names that can still be created
+     */
+    public int remaining() {
+        return size - used;
+    }
+
+    /**
+     * @return true if there is a name left that does not exist in the scope yet
+     */
+    @Override
+    public boolean hasNext() {
+        return used < size;
+    }
+
+    /**
+     * @return a name that neither was created by this generator before nor was excluded
+     * @throws NoSuchElementException if all names are taken, see hasNext()
+     */
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("All " + size + " names of the scope are taken");
+        }
+        int position = used + random.nextInt(size - used);
+        int number = numberAt(position);
+        swap(used, position);
+        used++;
+        return nameOf(number);
+    }
+
+    /**
+     * Builds the name of a number, which is read as the digits (keyword, adjective, animal, job).
+     */
+    private String nameOf(int number) {
+        int job = number % RandomNameFactory.jobs.length;
+        number /= RandomNameFactory.jobs.length;
+        int animal = number % RandomNameFactory.animals.length;
+        number /= RandomNameFactory.animals.length;
+        int adjective = number % RandomNameFactory.adjectives.length;
+        int keyword = number / RandomNameFactory.adjectives.length;
+
+        buffer.setLength(0);
+        buffer.append(keywords[keyword]);
+        appendWord(RandomNameFactory.adjectives[adjective], !keywords[keyword].isEmpty());
+        appendWord(RandomNameFactory.animals[animal], true);
+        appendWord(RandomNameFactory.jobs[job], true);
+        return buffer.toString();
+    }
+
+    private void appendWord(String word, boolean uppercased) {
+        buffer.append(uppercased ? Character.toUpperCase(word.charAt(0)) : word.charAt(0));
+        buffer.append(word, 1, word.length());
+    }
+
+    /**
+     * Reads a name back into its number, the inverse of nameOf.
+     * @return the number of the name, -1 if the name cannot be created by this generator
+     */
+    private int numberOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        String lowercased = name.toLowerCase(Locale.ROOT);
+        for (int keyword = 0; keyword < keywords.length; keyword++) {
+            if (!lowercased.startsWith(keywords[keyword])) {
+                continue;
+            }
+            int start = keywords[keyword].length();
+            for (int adjective = 0; adjective < RandomNameFactory.adjectives.length; adjective++) {
+                if (!lowercased.startsWith(RandomNameFactory.adjectives[adjective], start)) {
+                    continue;
+                }
+                int afterAdjective = start + RandomNameFactory.adjectives[adjective].length();
+                for (int animal = 0; animal < RandomNameFactory.animals.length; animal++) {
+                    if (!lowercased.startsWith(RandomNameFactory.animals[animal], afterAdjective)) {
+                        continue;
+                    }
+                    String rest = lowercased.substring(afterAdjective + RandomNameFactory.animals[animal].length());
+                    for (int job = 0; job < RandomNameFactory.jobs.length; job++) {
+                        if (rest.equals(RandomNameFactory.jobs[job])) {
+                            return ((keyword * RandomNameFactory.adjectives.length + adjective)
+                                    * RandomNameFactory.animals.length + animal) * RandomNameFactory.jobs.length + job;
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int numberAt(int position) {
+        return numberAt.getOrDefault(position, position);
+    }
+
+    private int positionOf(int number) {
+        return positionOf.getOrDefault(number, number);
+    }
+
+    private void swap(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        int numberA = numberAt(a);
+        int numberB = numberAt(b);
+        numberAt.put(a, numberB);
+        positionOf.put(numberB, a);
+        numberAt.put(b, numberA);
+        positionOf.put(numberA, b);
+    }
+}
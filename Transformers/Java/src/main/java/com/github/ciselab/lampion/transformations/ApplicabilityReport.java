@@ -0,0 +1,45 @@
+package com.github.ciselab.lampion.transformations;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * The result of an ApplicabilityScanner for one AST.
+ * It holds for every checked transformer whether it can be applied,
+ * and for transformers declaring a CandidateQuery the number of candidates they could transform.
+ */
+public class ApplicabilityReport {
+
+    private final Map<Transformer, Boolean> applicability;
+    private final Map<Transformer, Long> candidateCounts;
+
+    public ApplicabilityReport(Map<Transformer, Boolean> applicability, Map<Transformer, Long> candidateCounts) {
+        this.applicability = applicability;
+        this.candidateCounts = candidateCounts;
+    }
+
+    /**
+     * @param transformer the transformer to look up
+     * @return true if the transformer was checked and can be applied, false otherwise
+     */
+    public boolean isApplicable(Transformer transformer) {
+        return applicability.getOrDefault(transformer, false);
+    }
+
+    /**
+     * @param transformer the transformer to look up
+     * @return the number of candidates, empty if the transformer was not checked or declares no CandidateQuery
+     */
+    public OptionalLong getCandidateCount(Transformer transformer) {
+        Long count = candidateCounts.get(transformer);
+        return count == null ? OptionalLong.empty() : OptionalLong.of(count);
+    }
+
+    /**
+     * @return the candidate counts of all transformers declaring a CandidateQuery, in order of the registry
+     */
+    public Map<Transformer, Long> getCandidateCounts() {
+        return Collections.unmodifiableMap(candidateCounts);
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.ciselab.lampion.transformations;
+
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.visitor.CtScanner;
+
+import java.util.*;
+
+/**
+ * This scanner decides for all transformers of a registry whether they are applicable to an AST,
+ * and how many candidates they have in it, while visiting the AST only once.
+ *
+ * For this, the transformers need to declare their requirements as a CandidateQuery (see Transformer).
+ * Transformers without a query are still supported, but their requirements are checked the old way,
+ * that is every predicate of "getRequirements()" does its own scan and there are no candidate counts.
+ *
+ * The scanner can be re-used for multiple ASTs, but it is not thread-safe.
+ */
+public class ApplicabilityScanner extends CtScanner {
+
+    private final List<Transformer> transformers;
+    // The transformers with a query, index-aligned with the queries
+    private final List<Transformer> queryingTransformers = new ArrayList<>();
+    private final List<CandidateQuery> queries = new ArrayList<>();
+    // Which queries are relevant for a runtime-class of element, filled lazily to only check the kinds once per class
+    private final Map<Class<?>, int[]> relevantQueriesByType = new HashMap<>();
+
+    // The counts of the current scan, index-aligned with the queries
+    private long[] counts;
+
+    /**
+     * @param registry the registry holding all transformers to check
+     * @throws UnsupportedOperationException if the registry is null
+     */
+    public ApplicabilityScanner(TransformerRegistry registry) {
+        if (registry == null) {
+            throw new UnsupportedOperationException("Registry cannot be null");
+        }
+        this.transformers = new ArrayList<>(registry.getRegisteredTransformers());
+        for (Transformer t : transformers) {
+            t.getCandidateQuery().ifPresent(q -> {
+                queryingTransformers.add(t);
+                queries.add(q);
+            });
+        }
+    }
+
+    /**
+     * Visits the given ast once and checks every registered transformer on it.
+     * The ast is not altered.
+     *
+     * @param ast the element to analyze, usually a class
+     * @return a report holding applicability and candidate counts for every transformer of the registry
+     */
+    public ApplicabilityReport analyze(CtElement ast) {
+        counts = new long[queries.size()];
+        scan(ast);
+
+        Map<Transformer, Long> candidateCounts = new LinkedHashMap<>();
+        Map<Transformer, Boolean> applicability = new LinkedHashMap<>();
+        for (Transformer t : transformers) {
+            int queryIndex = queryingTransformers.indexOf(t);
+            if (queryIndex >= 0) {
+                candidateCounts.put(t, counts[queryIndex]);
+                applicability.put(t, counts[queryIndex] > 0);
+            } else {
+                // No query declared, fall back to the (full-scanning) predicates
+                applicability.put(t, t.getRequirements().stream().allMatch(r -> r.test(ast)));
+            }
+        }
+        return new ApplicabilityReport(applicability, candidateCounts);
+    }
+
+    @Override
+    public void scan(CtElement element) {
+        if (element == null) {
+            return;
+        }
+        int[] relevantQueries = relevantQueriesByType.computeIfAbsent(element.getClass(), this::findRelevantQueries);
+        for (int i : relevantQueries) {
+            if (queries.get(i).matches(element)) {
+                counts[i]++;
+            }
+        }
+        super.scan(element);
+    }
+
+    private int[] findRelevantQueries(Class<?> type) {
+        List<Integer> relevant = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            if (queries.get(i).isRelevantFor(type)) {
+                relevant.add(i);
+            }
+        }
+        return relevant.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,295 @@
+package com.github.ciselab.lampion.transformations;
+
+import spoon.reflect.code.CtBinaryOperator;
+import spoon.reflect.code.CtCase;
+import spoon.reflect.code.CtComment;
+import spoon.reflect.code.CtJavaDocTag;
+import spoon.reflect.code.CtLiteral;
+import spoon.reflect.code.CtLocalVariable;
+import spoon.reflect.code.CtOperatorAssignment;
+import spoon.reflect.code.CtStatement;
+import spoon.reflect.code.CtUnaryOperator;
+import spoon.reflect.declaration.CtCompilationUnit;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtImport;
+import spoon.reflect.declaration.CtModifiable;
+import spoon.reflect.declaration.CtNamedElement;
+import spoon.reflect.declaration.CtParameter;
+import spoon.reflect.declaration.CtVariable;
+import spoon.reflect.declaration.ModifierKind;
+import spoon.reflect.path.CtRole;
+import spoon.reflect.reference.CtExecutableReference;
+import spoon.reflect.reference.CtReference;
+import spoon.reflect.reference.CtVariableReference;
+import spoon.reflect.reference.CtWildcardReference;
+import spoon.reflect.visitor.CtScanner;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A 128 bit hash of the structure of an AST, computed in a single pass over the elements.
+ *
+ * Two ASTs with the same kinds of elements in the same roles and with the same names, literals, operators,
+ * modifiers and comments get the same fingerprint, so instead of a deep CtElement.equals (or printing both elements)
+ * two fingerprints can be compared in constant time, e.g. to find identical transformed methods across variants.
+ * The source positions and the parents of the given element are not part of the fingerprint.
+ *
+ * With "ignoreIdentifiers", the names of variables, parameters and methods (and the references to them) are skipped,
+ * so e.g. two methods that only differ in a renamed parameter get the same fingerprint. Type and package names are kept.
+ *
+ * The hash is not cryptographically secure, but with 128 bit an accidental collision is practically impossible.
+ * It only depends on the AST (and the version of Spoon), not on the JVM, so it can also be stored:
+ * every record of the manifest holds the fingerprint of its transformed element (see ManifestRecord),
+ * so the results of several runs or variants can be deduplicated from the manifest without parsing the code again.
+ */
+public final class AstFingerprint {
+
+    /**
+     * The fingerprint of no element, e.g. of an EmptyTransformationResult.
+     */
+    public static final AstFingerprint EMPTY = new AstFingerprint(0, 0);
+
+    private final long high;
+    private final long low;
+
+    private AstFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param high the upper 64 bit of a stored fingerprint, see "getHigh"
+     * @param low the lower 64 bit of a stored fingerprint, see "getLow"
+     * @return the fingerprint with these bits, e.g. one read from a manifest
+     */
+    public static AstFingerprint valueOf(long high, long low) {
+        return high == 0 && low == 0 ? EMPTY : new AstFingerprint(high, low);
+    }
+
+    /**
+     * @param element the root of the AST to fingerprint, e.g. a method or a compilation unit
+     * @return the fingerprint of the element and all its children
+     * @throws UnsupportedOperationException if the element is null
+     */
+    public static AstFingerprint of(CtElement element) {
+        return of(element, false);
+    }
+
+    /**
+     * @param element the root of the AST to fingerprint, e.g. a method or a compilation unit
+     * @param ignoreIdentifiers whether the names of variables, parameters and methods are left out
+     * @return the fingerprint of the element and all its children
+     * @throws UnsupportedOperationException if the element is null
+     */
+    public static AstFingerprint of(CtElement element, boolean ignoreIdentifiers) {
+        if (element == null) {
+            throw new UnsupportedOperationException("Cannot fingerprint null");
+        }
+        FingerprintScanner scanner = new FingerprintScanner(ignoreIdentifiers);
+        scanner.scan(element);
+        return scanner.finish();
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AstFingerprint)) return false;
+        AstFingerprint other = (AstFingerprint) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        // Both halves are already well mixed, so any 32 bit of them do
+        return (int) low;
+    }
+
+    /**
+     * @return the fingerprint as 32 hex digits
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /**
+     * Feeds every visited element into two independent 64 bit hashes.
+     * Every element contributes its kind, its role in the parent and its own attributes when it is entered,
+     * and a marker when it is left, so that the nesting of the elements is part of the hash too.
+     */
+    private static class FingerprintScanner extends CtScanner {
+
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+        private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+        private static final long LOW_MULTIPLIER = 0x87c37b91114253d5L;
+
+        private static final long EXIT = -1;
+        private static final long ABSENT = -2;
+
+        // The kinds of the elements by runtime-class, hashed from the class name to be the same in every JVM
+        private static final Map<Class<?>, Long> KINDS = new ConcurrentHashMap<>();
+
+        private final boolean ignoreIdentifiers;
+
+        private long high = FNV_OFFSET;
+        private long low = GOLDEN_GAMMA;
+        private long count = 0;
+        // The role of the element that is about to be entered, null for the root
+        private CtRole role = null;
+
+        FingerprintScanner(boolean ignoreIdentifiers) {
+            this.ignoreIdentifiers = ignoreIdentifiers;
+        }
+
+        @Override
+        public void scan(CtRole role, CtElement element) {
+            this.role = role;
+            super.scan(role, element);
+        }
+
+        @Override
+        public void visitCtCompilationUnit(CtCompilationUnit compilationUnit) {
+            super.visitCtCompilationUnit(compilationUnit);
+            // The scanner only visits the references to the declared types, but the types make up the unit
+            scan(CtRole.DECLARED_TYPE, compilationUnit.getDeclaredTypes());
+        }
+
+        @Override
+        protected void enter(CtElement element) {
+            add(KINDS.computeIfAbsent(element.getClass(), c -> hash(c.getName())));
+            add(role == null ? 0 : role.ordinal() + 1);
+            add(element.isImplicit() ? 1 : 0);
+            addAttributes(element);
+        }
+
+        @Override
+        protected void exit(CtElement element) {
+            add(EXIT);
+        }
+
+        private void addAttributes(CtElement element) {
+            if (element instanceof CtNamedElement || element instanceof CtReference) {
+                if (ignoreIdentifiers && isIdentifier(element)) {
+                    add(ABSENT);
+                } else {
+                    add(element instanceof CtNamedElement ?
+                            ((CtNamedElement) element).getSimpleName() : ((CtReference) element).getSimpleName());
+                }
+            }
+            if (element instanceof CtModifiable) {
+                long modifiers = 0;
+                for (ModifierKind modifier : ((CtModifiable) element).getModifiers()) {
+                    modifiers |= 1L << modifier.ordinal();
+                }
+                add(modifiers);
+            }
+            if (element instanceof CtStatement) {
+                add(((CtStatement) element).getLabel());
+            }
+            if (element instanceof CtLiteral) {
+                Object value = ((CtLiteral<?>) element).getValue();
+                if (value == null) {
+                    add(ABSENT);
+                } else {
+                    // The class distinguishes e.g. 1 from 1L and '1'
+                    add(value.getClass().getName());
+                    add(value.toString());
+                }
+            } else if (element instanceof CtBinaryOperator) {
+                add(((CtBinaryOperator<?>) element).getKind().ordinal());
+            } else if (element instanceof CtUnaryOperator) {
+                add(((CtUnaryOperator<?>) element).getKind().ordinal());
+            } else if (element instanceof CtOperatorAssignment) {
+                add(((CtOperatorAssignment<?, ?>) element).getKind().ordinal());
+            } else if (element instanceof CtComment) {
+                add(((CtComment) element).getCommentType().ordinal());
+                add(((CtComment) element).getContent());
+            } else if (element instanceof CtJavaDocTag) {
+                CtJavaDocTag tag = (CtJavaDocTag) element;
+                add(tag.getRealName());
+                add(tag.getParam());
+                add(tag.getContent());
+            } else if (element instanceof CtLocalVariable) {
+                add(((CtLocalVariable<?>) element).isInferred() ? 1 : 0);
+            } else if (element instanceof CtParameter) {
+                add(((CtParameter<?>) element).isVarArgs() ? 1 : 0);
+            } else if (element instanceof CtCase && ((CtCase<?>) element).getCaseKind() != null) {
+                add(((CtCase<?>) element).getCaseKind().ordinal());
+            } else if (element instanceof CtWildcardReference) {
+                add(((CtWildcardReference) element).isUpper() ? 1 : 0);
+            } else if (element instanceof CtImport) {
+                add(((CtImport) element).getImportKind().ordinal());
+            }
+        }
+
+        /**
+         * @return true for the elements named by the programmer rather than by the type system
+         */
+        private static boolean isIdentifier(CtElement element) {
+            return element instanceof CtVariable || element instanceof CtExecutable
+                    || element instanceof CtVariableReference || element instanceof CtExecutableReference;
+        }
+
+        private void add(String value) {
+            if (value == null) {
+                add(ABSENT);
+                return;
+            }
+            add(value.length());
+            // Four chars at a time, which is much cheaper than feeding every char on its own
+            long block = 0;
+            for (int i = 0; i < value.length(); i++) {
+                block = (block << 16) | value.charAt(i);
+                if ((i & 3) == 3) {
+                    add(block);
+                    block = 0;
+                }
+            }
+            if ((value.length() & 3) != 0) {
+                add(block);
+            }
+        }
+
+        private void add(long value) {
+            count++;
+            high = mix(high ^ value) + GOLDEN_GAMMA;
+            low = Long.rotateLeft(low ^ (value * LOW_MULTIPLIER), 31) * 5 + 0x52dce729;
+        }
+
+        AstFingerprint finish() {
+            return new AstFingerprint(mix(high ^ count), mix(low + count * GOLDEN_GAMMA));
+        }
+
+        /**
+         * The 64bit finalizer of SplitMix64, see SeedDerivation.
+         */
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        /**
+         * 64bit FNV-1a over the chars of the text.
+         */
+        private static long hash(String text) {
+            long hash = FNV_OFFSET;
+            for (int i = 0; i < text.length(); i++) {
+                hash ^= text.charAt(i);
+                hash *= FNV_PRIME;
+            }
+            return hash;
+        }
+    }
+}
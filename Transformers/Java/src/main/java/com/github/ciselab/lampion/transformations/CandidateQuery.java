@@ -0,0 +1,112 @@
+package com.github.ciselab.lampion.transformations;
+
+import spoon.reflect.declaration.CtElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A CandidateQuery describes which single elements of an AST a Transformer can be applied to.
+ * It consists of one or more node-kinds (e.g. CtMethod or CtLiteral), each with an optional condition on that node.
+ *
+ * Unlike the opaque Predicates of "Transformer.getRequirements()", which each scan a whole AST,
+ * a query only ever looks at one element at a time.
+ * This enables to check the queries of many transformers while visiting an AST only once,
+ * see the ApplicabilityScanner.
+ *
+ * Conditions should be cheap and must not alter the element, as they are called for every element of the kind.
+ */
+public class CandidateQuery {
+
+    // The kinds and conditions of this query, an element matches if it matches any of them
+    private final List<Class<? extends CtElement>> kinds;
+    private final List<Predicate<CtElement>> conditions;
+
+    private CandidateQuery(List<Class<? extends CtElement>> kinds, List<Predicate<CtElement>> conditions) {
+        this.kinds = kinds;
+        this.conditions = conditions;
+    }
+
+    /**
+     * Creates a query matching every element of the given kind.
+     *
+     * @param kind the type of elements to match, e.g. CtMethod.class
+     * @return a query matching all elements of the kind
+     * @throws UnsupportedOperationException if the kind is null
+     */
+    public static CandidateQuery forKind(Class<? extends CtElement> kind) {
+        return forKind(kind, e -> true);
+    }
+
+    /**
+     * Creates a query matching every element of the given kind that fulfills the condition.
+     * The condition is only called for elements of the kind.
+     *
+     * @param kind the type of elements to match, e.g. CtMethod.class
+     * @param condition an additional check on the element, e.g. that a method has parameters
+     * @param <T> the type of the elements to match
+     * @return a query matching all elements of the kind fulfilling the condition
+     * @throws UnsupportedOperationException if the kind or condition is null
+     */
+    public static <T extends CtElement> CandidateQuery forKind(Class<T> kind, Predicate<? super T> condition) {
+        if (kind == null || condition == null) {
+            throw new UnsupportedOperationException("Kind and Condition of a CandidateQuery cannot be null");
+        }
+        List<Class<? extends CtElement>> kinds = new ArrayList<>();
+        kinds.add(kind);
+        List<Predicate<CtElement>> conditions = new ArrayList<>();
+        conditions.add(element -> condition.test(kind.cast(element)));
+        return new CandidateQuery(kinds, conditions);
+    }
+
+    /**
+     * Combines two queries, the resulting query matches an element if any of the two matches it.
+     * Neither of the two queries is altered.
+     *
+     * @param other the query to combine with
+     * @return a new query matching the elements of both queries
+     */
+    public CandidateQuery or(CandidateQuery other) {
+        List<Class<? extends CtElement>> combinedKinds = new ArrayList<>(kinds);
+        combinedKinds.addAll(other.kinds);
+        List<Predicate<CtElement>> combinedConditions = new ArrayList<>(conditions);
+        combinedConditions.addAll(other.conditions);
+        return new CandidateQuery(combinedKinds, combinedConditions);
+    }
+
+    /**
+     * @param element the element to check, can be null
+     * @return true if the element is of one of the kinds and fulfills the corresponding condition, false otherwise
+     */
+    public boolean matches(CtElement element) {
+        if (element == null) {
+            return false;
+        }
+        for (int i = 0; i < kinds.size(); i++) {
+            if (kinds.get(i).isInstance(element) && conditions.get(i).test(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an element of the given type could match this query at all, without checking any conditions.
+     * Used to skip queries for element types that can never be candidates.
+     *
+     * @param type the runtime-class of an element
+     * @return true if one of the kinds of this query is a supertype of the given type
+     */
+    public boolean isRelevantFor(Class<?> type) {
+        return kinds.stream().anyMatch(k -> k.isAssignableFrom(type));
+    }
+
+    /**
+     * @return the node-kinds this query looks at, unmodifiable
+     */
+    public List<Class<? extends CtElement>> getKinds() {
+        return Collections.unmodifiableList(kinds);
+    }
+}
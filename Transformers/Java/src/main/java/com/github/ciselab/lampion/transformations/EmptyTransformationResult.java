@@ -25,6 +25,11 @@ public class EmptyTransformationResult implements TransformationResult{
         return new HashSet<>();
     }
 
+    @Override
+    public AstFingerprint getFingerprint() {
+        return AstFingerprint.EMPTY;
+    }
+
     @Override
     public boolean equals(Object o){
         // All Empty Results are the same
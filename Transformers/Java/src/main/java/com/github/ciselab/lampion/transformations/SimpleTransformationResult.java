@@ -13,6 +13,8 @@ import java.util.Set;
  *
  * For the equality, the optional attributes are ignored purposefully.
  * These are only determined by debug-degree and should not be used for logical attributes.
+ * The elements are compared by their AstFingerprint, which is computed once instead of comparing (or printing)
+ * the whole element every time.
  */
 public class SimpleTransformationResult implements TransformationResult {
 
@@ -22,8 +24,9 @@ public class SimpleTransformationResult implements TransformationResult {
     private Optional<String> beforeAfter;
     private Optional<CtElement> initialScope;
 
-    // Lazily initalized hashCode
+    // Lazily initalized hashCode and fingerprint
     private int hashCode = 0;
+    private AstFingerprint fingerprint = null;
 
     public SimpleTransformationResult(String name, CtElement element, Set<TransformationCategory> categories){
         transformationName = name;
@@ -113,6 +116,20 @@ public class SimpleTransformationResult implements TransformationResult {
         return initialScope;
     }
 
+    /**
+     * The fingerprint is computed on first use and then kept,
+     * hence the element should not be altered afterwards (see the class description).
+     *
+     * @return the structural fingerprint of the transformed element
+     */
+    @Override
+    public AstFingerprint getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = AstFingerprint.of(element);
+        }
+        return fingerprint;
+    }
+
     @Override
     public boolean equals(Object o){
         if (!(o instanceof SimpleTransformationResult)){
@@ -120,7 +137,7 @@ public class SimpleTransformationResult implements TransformationResult {
         }
         SimpleTransformationResult otherCasted = (SimpleTransformationResult) o;
         return this.transformationName.equals(otherCasted.getTransformationName())
-                && this.element.equals(otherCasted.getTransformedElement())
+                && this.getFingerprint().equals(otherCasted.getFingerprint())
                 && this.categories.equals(otherCasted.getCategories());
     }
 
@@ -129,8 +146,8 @@ public class SimpleTransformationResult implements TransformationResult {
         if (this.hashCode == 0) {
            int result = transformationName.hashCode();
            result = result * 31 + categories.hashCode();
-           // There was an issue with element.hashCode() being equal for completely distinct items, so use the toString() first
-           result = result * 31 + element.toString().hashCode();
+           // There was an issue with element.hashCode() being equal for completely distinct items, so use the fingerprint
+           result = result * 31 + getFingerprint().hashCode();
            this.hashCode = result;
         }
 
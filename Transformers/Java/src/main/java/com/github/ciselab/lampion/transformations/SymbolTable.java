@@ -0,0 +1,129 @@
+package com.github.ciselab.lampion.transformations;
+
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.CtVariable;
+import spoon.reflect.reference.CtVariableReference;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A SymbolTable holds the names used in a scope, so transformers can check in constant time whether a new name
+ * collides with an existing one: the variables of a method (see variablesOf) or the methods of a type (see methodsOf).
+ *
+ * The table is built on first use and cached in the metadata of its element, so further transformations of the
+ * same scope do not scan the element again. For this, every transformer that adds or renames a variable or method
+ * has to add the new name to the table of its scope.
+ * Renamed names stay in the table, as other elements of the scope can still use them - for collision checks
+ * a few names too many do no harm, a missing one does.
+ *
+ * Clones (and copies of a model) do not share the table of their original, they build their own on first use.
+ */
+public class SymbolTable implements Serializable {
+
+    // One key per kind of table, so a type can have a table of its methods and one of its variables
+    private static final String VARIABLES_KEY = "lampion.symbols.variables";
+    private static final String METHODS_KEY = "lampion.symbols.methods";
+
+    // The element the table was built for, a clone with the copied metadata gets its own table
+    private final transient CtElement owner;
+    private final Set<String> names = new HashSet<>();
+    private final Set<String> lowercasedNames = new HashSet<>();
+
+    private SymbolTable(CtElement owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * @param method the method to get the variables of
+     * @return the (cached) table of all variables declared or referenced in the method, including its parameters
+     * @throws UnsupportedOperationException if the method is null
+     */
+    public static SymbolTable variablesOf(CtMethod<?> method) {
+        if (method == null) {
+            throw new UnsupportedOperationException("Cannot get the variables of null");
+        }
+        SymbolTable table = cached(method, VARIABLES_KEY);
+        if (table == null) {
+            table = new SymbolTable(method);
+            SymbolTable filled = table;
+            method.filterChildren(e -> e instanceof CtVariable || e instanceof CtVariableReference)
+                    .forEach((CtElement e) -> filled.add(e instanceof CtVariable ?
+                            ((CtVariable<?>) e).getSimpleName() : ((CtVariableReference<?>) e).getSimpleName()));
+            method.putMetadata(VARIABLES_KEY, table);
+        }
+        return table;
+    }
+
+    /**
+     * @param type the type to get the methods of
+     * @return the (cached) table of the names of all methods declared in the type
+     * @throws UnsupportedOperationException if the type is null
+     */
+    public static SymbolTable methodsOf(CtType<?> type) {
+        if (type == null) {
+            throw new UnsupportedOperationException("Cannot get the methods of null");
+        }
+        SymbolTable table = cached(type, METHODS_KEY);
+        if (table == null) {
+            table = new SymbolTable(type);
+            for (CtMethod<?> method : type.getMethods()) {
+                table.add(method.getSimpleName());
+            }
+            type.putMetadata(METHODS_KEY, table);
+        }
+        return table;
+    }
+
+    /**
+     * @return the table cached for the element, null if there is none or it was copied from another element
+     */
+    private static SymbolTable cached(CtElement element, String key) {
+        Object table = element.getMetadata(key);
+        if (table instanceof SymbolTable && ((SymbolTable) table).owner == element) {
+            return (SymbolTable) table;
+        }
+        return null;
+    }
+
+    /**
+     * @param name the name to look up
+     * @return true if the name is used in the scope
+     */
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * @param name the name to look up
+     * @return true if the name is used in the scope in any case, e.g. "getA" for "geta"
+     */
+    public boolean containsIgnoringCase(String name) {
+        return name != null && lowercasedNames.contains(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Adds a name that a transformer introduced into the scope.
+     * @param name the new name, e.g. of an added variable or a renamed parameter
+     * @throws UnsupportedOperationException if the name is null
+     */
+    public void add(String name) {
+        if (name == null) {
+            throw new UnsupportedOperationException("Cannot add null to a SymbolTable");
+        }
+        names.add(name);
+        lowercasedNames.add(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return all names of the scope
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(names);
+    }
+}
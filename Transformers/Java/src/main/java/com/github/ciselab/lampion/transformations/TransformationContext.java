@@ -0,0 +1,118 @@
+package com.github.ciselab.lampion.transformations;
+
+import spoon.reflect.declaration.CtClass;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The TransformationContext holds the state that transformers collect during a run,
+ * e.g. which parameters have already been renamed or which methods have been created by a transformer.
+ *
+ * Keeping this state out of the transformers makes the transformers themselves (nearly) stateless,
+ * so that a run can start with a fresh context and parallel runs can each use their own context.
+ * The Engine creates a new context for every run and hands it to all transformers of its registry.
+ *
+ * Besides the state, the context can collect the restores (compiling and resolving imports) of altered classes,
+ * so that several transformations restore a class only once, see "beginDeferringRestores".
+ *
+ * A context is meant to be used by one worker (thread) at a time and is not thread-safe.
+ */
+public class TransformationContext {
+
+    // The state per owner, usually the owner is the transformer instance
+    private final Map<Object, Object> states = new HashMap<>();
+
+    // The classes to restore, with the restore of the first transformer that altered them
+    // Null if restores are currently not deferred
+    private Map<CtClass, Consumer<CtClass>> deferredRestores = null;
+
+    /**
+     * Returns the state stored for the given owner, creating it if there is none yet.
+     * The returned state is the stored object, so altering it alters the state of the context.
+     *
+     * @param owner the owner of the state, usually the transformer itself
+     * @param initial supplier for the state if there is none stored yet
+     * @param <T> the type of the state, must be the same for every call of the same owner
+     * @return the (possibly newly created) state of the owner
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getState(Object owner, Supplier<T> initial) {
+        return (T) states.computeIfAbsent(owner, o -> initial.get());
+    }
+
+    /**
+     * Removes all stored state, e.g. to start a new run with this context.
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * Starts collecting restores instead of running them, until "endDeferringRestores" is called.
+     * Every class is restored only once, no matter how often it was altered in between.
+     *
+     * Only defer restores for transformations that do not rely on each others snippets being compiled,
+     * e.g. transformations of the same transformer.
+     *
+     * @throws UnsupportedOperationException if restores are already deferred
+     */
+    public void beginDeferringRestores() {
+        if (isDeferringRestores()) {
+            throw new UnsupportedOperationException("Restores are already deferred");
+        }
+        deferredRestores = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return true if restores are currently collected instead of run, false otherwise
+     */
+    public boolean isDeferringRestores() {
+        return deferredRestores != null;
+    }
+
+    /**
+     * Collects the restore of the given class, to be run by "restoreDeferred" or "endDeferringRestores".
+     * If the class is already collected, the earlier restore is kept.
+     *
+     * @param containingClass the altered class to restore later
+     * @param restore the restore to run for the class
+     * @throws UnsupportedOperationException if restores are not deferred currently
+     */
+    public void deferRestore(CtClass containingClass, Consumer<CtClass> restore) {
+        if (!isDeferringRestores()) {
+            throw new UnsupportedOperationException("Restores are not deferred currently");
+        }
+        deferredRestores.putIfAbsent(containingClass, restore);
+    }
+
+    /**
+     * Runs all collected restores once, and continues deferring.
+     * If a restore fails, the remaining restores are dropped and the exception is passed on.
+     */
+    public void restoreDeferred() {
+        if (!isDeferringRestores()) {
+            return;
+        }
+        Map<CtClass, Consumer<CtClass>> toRestore = deferredRestores;
+        deferredRestores = new LinkedHashMap<>();
+        for (var entry : toRestore.entrySet()) {
+            entry.getValue().accept(entry.getKey());
+        }
+    }
+
+    /**
+     * Runs all collected restores once, and stops deferring.
+     * Deferring is stopped even if a restore fails, the exception is passed on.
+     */
+    public void endDeferringRestores() {
+        try {
+            restoreDeferred();
+        } finally {
+            deferredRestores = null;
+        }
+    }
+}
@@ -36,6 +36,15 @@ public interface TransformationResult {
      */
     Set<TransformationCategory> getCategories();
 
+    /**
+     * The structural fingerprint of the transformed element, see AstFingerprint.
+     * Results with the same name, categories and fingerprint are equal, which is much cheaper than comparing the elements.
+     * @return the fingerprint of the transformed element
+     */
+    default AstFingerprint getFingerprint(){
+        return AstFingerprint.of(getTransformedElement());
+    }
+
     /**
      * Stores the before and after state of the transformed element, used for debugging and maybe tests.
      * In a production environment, this should usually be only optional empties.
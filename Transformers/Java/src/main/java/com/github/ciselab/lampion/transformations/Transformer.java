@@ -2,7 +2,10 @@ package com.github.ciselab.lampion.transformations;
 
 import spoon.reflect.declaration.CtElement;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
 
@@ -57,6 +60,64 @@ public interface Transformer {
      */
     TransformationResult applyAtRandom(CtElement ast);
 
+    /**
+     * This method applies the class-specific Transformation n times to random, valid elements of the given AST.
+     * It is the batch-version of "applyAtRandom(CtElement)" and behaves the same per element,
+     * but implementations are free to share work between the applications,
+     * e.g. looking up the candidates only once and compiling the AST only once at the end.
+     *
+     * The default implementation simply calls "applyAtRandom(CtElement)" n times.
+     * Failing Transformations are represented as EmptyTransformationResults, so the returned list always has n items.
+     *
+     * The AST is altered in the process.
+     *
+     * @param ast The toplevel AST from which to pick qualified children to transform.
+     * @param n the number of transformations to apply, must not be negative
+     * @return The TransformationResults in order of application, one per requested transformation
+     * @throws UnsupportedOperationException for negative number of transformations
+     */
+    default List<TransformationResult> applyAtRandom(CtElement ast, int n) {
+        if (n < 0) {
+            throw new UnsupportedOperationException("Number of transformations cannot be negative");
+        }
+        List<TransformationResult> results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            results.add(applyAtRandom(ast));
+        }
+        return results;
+    }
+
+    /**
+     * Batch-version of "applyAtRandom" for callers that already checked the AST with an ApplicabilityScanner.
+     * The verdict of the report replaces the requirements, so they do not scan the AST once more.
+     * The report must have been taken for exactly this AST.
+     *
+     * The default implementation returns only EmptyTransformationResults if the report says the Transformation is
+     * not applicable, and calls "applyAtRandom(CtElement, int)" otherwise.
+     *
+     * @param ast The toplevel AST from which to pick qualified children to transform.
+     * @param n the number of transformations to apply, must not be negative
+     * @param report the applicability of all Transformers in the ast, see ApplicabilityScanner
+     * @return The TransformationResults in order of application, one per requested transformation
+     * @throws UnsupportedOperationException for negative number of transformations or a null report
+     */
+    default List<TransformationResult> applyAtRandom(CtElement ast, int n, ApplicabilityReport report) {
+        if (n < 0) {
+            throw new UnsupportedOperationException("Number of transformations cannot be negative");
+        }
+        if (report == null) {
+            throw new UnsupportedOperationException("ApplicabilityReport cannot be null");
+        }
+        if (!report.isApplicable(this)) {
+            List<TransformationResult> results = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                results.add(new EmptyTransformationResult());
+            }
+            return results;
+        }
+        return applyAtRandom(ast, n);
+    }
+
     /**
      * To enable a more correct approach in randomly picking next transformations,
      * there must be some kind of extra-information.
@@ -75,6 +136,20 @@ public interface Transformer {
      */
     Set<Predicate<CtElement>> getRequirements();
 
+    /**
+     * Declares which single elements of an AST this Transformation can be applied to.
+     * If present, the query must be equivalent to the requirements,
+     * that is the Transformation is applicable exactly if at least one element of the AST matches the query.
+     *
+     * Unlike the requirements, the queries of many Transformations can be checked in a single scan of the AST,
+     * see ApplicabilityScanner. The default is empty, in which case only the requirements are used.
+     *
+     * @return the query describing the candidates of this Transformation, empty if there is none declared
+     */
+    default Optional<CandidateQuery> getCandidateQuery() {
+        return Optional.empty();
+    }
+
     /**
      * This method gives information on what kind of categories a transformation fits in.
      * It is used for later visualisation and storing the records apropiatly.
@@ -92,4 +167,24 @@ public interface Transformer {
      * @param seed used for setting the random machine.
      */
     void setSeed(long seed);
+
+    /**
+     * Creates a new, independent instance of this Transformer with the same settings,
+     * but with its own random machine (seeded with the given seed) and its own fresh context.
+     * This makes the transformer usable as prototype, e.g. to create one instance per worker thread,
+     * which is done for every run with variants, the pipeline and the in-memory API.
+     * Stateless Transformers without a random machine can return themselves.
+     *
+     * @param seed used for setting the random machine of the new instance.
+     * @return a new Transformer, sharing no mutable state with this one
+     */
+    Transformer newInstance(long seed);
+
+    /**
+     * Sets the context in which the Transformer stores all state it collects while transforming.
+     * For Transformers without such state, this can be defaulted to doing nothing.
+     *
+     * @param context the context to store state in, usually one per run and worker
+     */
+    default void setContext(TransformationContext context) { }
 }
@@ -51,6 +51,25 @@ public class TransformerRegistry {
         return registeredTransformers;
     }
 
+    /**
+     * Creates a new registry holding a new instance of every registered Transformer,
+     * see "Transformer.newInstance".
+     * The registered Transformers are treated as prototypes, the new ones share no mutable state with them.
+     * This is intended to give every worker (thread) its own, independent transformers.
+     *
+     * The new registry has the same name and the transformers are in the same order.
+     *
+     * @param seed used for setting the random machine of every new Transformer.
+     * @return a new registry with independent copies of the registered transformers
+     */
+    public TransformerRegistry createWorkerRegistry(long seed) {
+        TransformerRegistry workerRegistry = new TransformerRegistry(this.name);
+        for (Transformer prototype : registeredTransformers) {
+            workerRegistry.registerTransformer(prototype.newInstance(seed));
+        }
+        return workerRegistry;
+    }
+
     /**
      * Searches the registered Transformers for any that have the requested category.
      *
@@ -12,8 +12,6 @@ import spoon.reflect.reference.CtTypeReference;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * This Transformer takes Literals or variables (with supported types), and adds the corresponding neutral element.
@@ -57,28 +55,7 @@ public class AddNeutralElementTransformer extends BaseTransformer {
 
     public AddNeutralElementTransformer() {
         super();
-
-        Predicate<CtElement> hasLiterals = ct -> {
-            return ! ct.filterChildren(c ->
-                        c instanceof CtLiteral
-                        && isSupportedType(((CtLiteral<?>) c).getType())
-                    )
-                    .list()
-                    .isEmpty();
-        };
-
-        Predicate<CtElement> hasVariables = ct -> {
-            return ! ct.filterChildren(c ->
-                    c instanceof CtVariableRead
-                            && isSupportedType(((CtVariableRead<?>) c).getType())
-                    )
-                    .list()
-                    .isEmpty();
-        };
-
-        Predicate<CtElement> hasAnyValidElements = hasLiterals.or(hasVariables);
-
-        constraints.add(hasAnyValidElements);
+        setConstraints();
     }
 
     /**
@@ -86,28 +63,7 @@ public class AddNeutralElementTransformer extends BaseTransformer {
      */
     public AddNeutralElementTransformer(long seed) {
         super(seed);
-
-        Predicate<CtElement> hasLiterals = ct -> {
-            return ! ct.filterChildren(c ->
-                    c instanceof CtLiteral
-                            && isSupportedType(((CtLiteral<?>) c).getType())
-                    )
-                    .list()
-                    .isEmpty();
-        };
-
-        Predicate<CtElement> hasVariables = ct -> {
-            return ! ct.filterChildren(c ->
-                    c instanceof CtVariableRead
-                            && isSupportedType(((CtVariableRead<?>) c).getType())
-                    )
-                    .list()
-                    .isEmpty();
-        };
-
-        Predicate<CtElement> hasAnyValidElements = hasLiterals.or(hasVariables);
-
-        constraints.add(hasAnyValidElements);
+        setConstraints();
     }
 
     /**
@@ -130,6 +86,20 @@ public class AddNeutralElementTransformer extends BaseTransformer {
         }
 
         CtTypedElement toAlter = pickRandomValidElement(ast);
+
+        return applyToCandidate(toAlter,ast);
+    }
+
+    /**
+     * Applies the transformation to the given candidate literal or variable, see BaseTransformer.
+     *
+     * @param candidate the literal or variable-read to transform, must be one of "findCandidates(ast)"
+     * @param ast the toplevel ast the candidate was picked from, used for debug information
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    @Override
+    protected TransformationResult applyToCandidate(CtElement candidate, CtElement ast) {
+        CtTypedElement toAlter = (CtTypedElement) candidate;
         // As the altered method is altered forever and in all instances, safe a clone for the transformation result.
         CtElement savedElement = toAlter.clone();
         savedElement.setParent(toAlter.getParent());
@@ -214,17 +184,28 @@ public class AddNeutralElementTransformer extends BaseTransformer {
      */
     private CtTypedElement pickRandomValidElement(CtElement ast) {
         // Check for all Literals that are supported
-        List<CtTypedElement> validElements = ast
-                .filterChildren(c -> c instanceof CtLiteral || c instanceof CtVariableRead)
-                .list()
-                .stream()
-                .map(p -> (CtTypedElement)p)
-                .filter(u -> isSupportedType(u.getType()))
-                .collect(Collectors.toList());
+        List<CtElement> validElements = findCandidates(ast);
         // Pick a number between 0 and count(literals)
         int randomValidIndex = random.nextInt(validElements.size());
         // return the method at the position
-        return validElements.get(randomValidIndex);
+        return (CtTypedElement) validElements.get(randomValidIndex);
+    }
+
+    /**
+     * Declares the candidates of this transformer, that are all literals and variable-reads with a supported type.
+     */
+    private void setConstraints() {
+        CandidateQuery supportedLiterals =
+                CandidateQuery.forKind(CtLiteral.class, l -> isSupportedType(l.getType()));
+        CandidateQuery supportedVariables =
+                CandidateQuery.forKind(CtVariableRead.class, v -> isSupportedType(v.getType()));
+
+        setCandidateQuery(supportedLiterals.or(supportedVariables));
+    }
+
+    @Override
+    protected BaseTransformer createInstance(long seed) {
+        return new AddNeutralElementTransformer(seed);
     }
 
     /**
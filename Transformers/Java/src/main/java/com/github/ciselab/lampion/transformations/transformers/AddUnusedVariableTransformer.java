@@ -1,6 +1,6 @@
 package com.github.ciselab.lampion.transformations.transformers;
 
-import com.github.ciselab.lampion.support.RandomNameFactory;
+import com.github.ciselab.lampion.support.UniqueNameGenerator;
 import com.github.ciselab.lampion.transformations.*;
 import spoon.reflect.code.CtBlock;
 import spoon.reflect.code.CtLiteral;
@@ -9,13 +9,11 @@ import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.factory.Factory;
 import spoon.reflect.reference.CtTypeReference;
-import spoon.reflect.reference.CtVariableReference;
 
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -85,20 +83,12 @@ public class AddUnusedVariableTransformer extends BaseTransformer {
 
     public AddUnusedVariableTransformer(){
         super();
-
-        Predicate<CtElement> hasMethods = (CtElement elem ) -> {
-            return !elem.filterChildren(u -> u instanceof CtMethod).list().isEmpty();
-        };
-        constraints.add(hasMethods);
+        setConstraints();
     }
 
     public AddUnusedVariableTransformer(long seed){
         super(seed);
-
-        Predicate<CtElement> hasMethods = (CtElement elem ) -> {
-            return !elem.filterChildren(u -> u instanceof CtMethod).list().isEmpty();
-        };
-        constraints.add(hasMethods);
+        setConstraints();
     }
 
     /**
@@ -121,12 +111,32 @@ public class AddUnusedVariableTransformer extends BaseTransformer {
         }
 
         CtMethod toAlter = pickRandomMethod(ast);
+
+        return applyToCandidate(toAlter,ast);
+    }
+
+    /**
+     * Applies the transformation to the given candidate method, see BaseTransformer.
+     *
+     * @param candidate the method to transform, must be one of "findCandidates(ast)"
+     * @param ast the toplevel ast the candidate was picked from, used for debug information
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    @Override
+    protected TransformationResult applyToCandidate(CtElement candidate, CtElement ast) {
+        CtMethod toAlter = (CtMethod) candidate;
+        // Step 0: Check up front whether there is a variable name left that the method does not use yet
+        UniqueNameGenerator names = new UniqueNameGenerator(false, random)
+                .exclude(SymbolTable.variablesOf(toAlter).getNames());
+        if (!names.hasNext()) {
+            return new EmptyTransformationResult();
+        }
         // As the altered method is altered forever and in all instances, safe a clone for the transformation result.
         CtMethod savedElement = toAlter.clone();
         savedElement.setParent(toAlter.getParent());
         savedElement.getParent().updateAllParentsBelow();
 
-        applyAddUnusedVariableTransformer(toAlter);
+        applyAddUnusedVariableTransformer(toAlter, names.next());
 
         // If debug information is wished for, create a bigger Transformationresult
         // Else, just return a minimal Transformationresult
@@ -137,20 +147,9 @@ public class AddUnusedVariableTransformer extends BaseTransformer {
         }
     }
 
-    private void applyAddUnusedVariableTransformer(CtMethod toAlter) {
+    private void applyAddUnusedVariableTransformer(CtMethod toAlter, String nameOfVarToAdd) {
         Factory factory = toAlter.getFactory();
-        // Step 1: Pick a type, variable name and random value
-        String nameOfVarToAdd = RandomNameFactory.getCamelcasedAnimalString(random);
-        // Step 1.1: Check, if variable name is already taken, if so, redo Step 1
-        List<String> existingNames = toAlter
-                .filterChildren(u -> u instanceof CtVariableReference).list()
-                .stream()
-                .map(m -> (CtVariableReference)m)
-                .map(v -> v.getSimpleName())
-                .collect(Collectors.toList());
-        while(existingNames.contains(nameOfVarToAdd)){
-            nameOfVarToAdd = RandomNameFactory.getCamelcasedAnimalString(random);
-        }
+        // Step 1: Pick a type and random value, the name is picked among the unused ones already
         CtTypeReference typeofVarToAdd = pickRandomSupportedType(factory);
         var valueOfVarToAdd = TransformerUtils.pickRandomElementForType(typeofVarToAdd,fullRandomStrings,random);
 
@@ -166,6 +165,7 @@ public class AddUnusedVariableTransformer extends BaseTransformer {
         CtLocalVariable newlyCreatedVariable =
                 factory.createLocalVariable(typeofVarToAdd,nameOfVarToAdd,valueOfVarToAdd);
         blockToAddTo.getStatements().add(newlyCreatedVariable);
+        SymbolTable.variablesOf(toAlter).add(nameOfVarToAdd);
     }
 
     private CtTypeReference pickRandomSupportedType(Factory factory){
@@ -194,16 +194,25 @@ public class AddUnusedVariableTransformer extends BaseTransformer {
      */
     private CtMethod pickRandomMethod(CtElement ast) {
         // Check for all methods
-        List<CtMethod> allMethods = ast
-                .filterChildren(c -> c instanceof CtMethod)
-                .list()
-                .stream()
-                .map(o -> (CtMethod) o)
-                .collect(Collectors.toList());
+        List<CtElement> allMethods = findCandidates(ast);
         // Pick a number between 0 and count(methods)
         int randomValidIndex = random.nextInt(allMethods.size());
         // return the method at the position
-        return allMethods.get(randomValidIndex);
+        return (CtMethod) allMethods.get(randomValidIndex);
+    }
+
+    /**
+     * Declares the candidates of this transformer, that are all methods with a body.
+     */
+    private void setConstraints() {
+        setCandidateQuery(CandidateQuery.forKind(CtMethod.class, m -> m.getBody() != null));
+    }
+
+    @Override
+    protected BaseTransformer createInstance(long seed) {
+        AddUnusedVariableTransformer instance = new AddUnusedVariableTransformer(seed);
+        instance.setFullRandomStrings(fullRandomStrings);
+        return instance;
     }
 
     /**
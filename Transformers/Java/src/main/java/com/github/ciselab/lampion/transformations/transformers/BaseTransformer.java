@@ -1,13 +1,20 @@
 package com.github.ciselab.lampion.transformations.transformers;
 
 import com.github.ciselab.lampion.program.App;
+import com.github.ciselab.lampion.support.SnippetCompilationEvent;
+import com.github.ciselab.lampion.transformations.ApplicabilityReport;
+import com.github.ciselab.lampion.transformations.CandidateQuery;
+import com.github.ciselab.lampion.transformations.EmptyTransformationResult;
+import com.github.ciselab.lampion.transformations.TransformationContext;
+import com.github.ciselab.lampion.transformations.TransformationResult;
 import com.github.ciselab.lampion.transformations.Transformer;
+import spoon.compiler.Environment;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtElement;
+import spoon.support.modelobs.ChangeCollector;
+import spoon.support.reflect.CtExtendedModifier;
 
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
+import java.util.*;
 import java.util.function.Predicate;
 
 /**
@@ -20,8 +27,14 @@ public abstract class BaseTransformer implements Transformer {
     protected boolean triesToCompile = true;          // Whether after applying the change, the snippets try to be compiled
     protected boolean setsAutoImports = true;         // Whether foreign references will be resolved to their fully qualified name
 
+    // The context to store the state collected while transforming, see "setContext"
+    protected TransformationContext context = new TransformationContext();
+
     Set<Predicate<CtElement>> constraints = new HashSet<Predicate<CtElement>>();
 
+    // The query describing single candidates of this transformer, see "setCandidateQuery"
+    private CandidateQuery candidateQuery = null;
+
     public BaseTransformer() {
         this.random = new Random(App.globalRandomSeed);
     }
@@ -54,10 +67,75 @@ public abstract class BaseTransformer implements Transformer {
         return constraints;
     }
 
+    /**
+     * Declares the candidates of this transformer as a node-kind query.
+     * This also adds the matching constraint, that is the transformer requires at least one candidate in the ast.
+     * The constraint is only checked by callers without an ApplicabilityReport, the others use the report instead.
+     * Should be called once in the constructor of every transformer.
+     *
+     * @param query the query describing which elements can be transformed
+     */
+    protected void setCandidateQuery(CandidateQuery query) {
+        this.candidateQuery = query;
+        // The first() stops the scan at the first candidate found
+        constraints.add(ast -> ast.filterChildren(query::matches).first() != null);
+    }
+
+    /**
+     * @return the query describing the candidates of this transformer, empty if none was set
+     */
+    @Override
+    public Optional<CandidateQuery> getCandidateQuery() {
+        return Optional.ofNullable(candidateQuery);
+    }
+
     public void setSeed(long seed){
         this.random = new Random(seed);
     }
 
+    /**
+     * Sets the context in which this transformer keeps the state it collects while transforming,
+     * such as already altered elements.
+     * Transformers sharing a context do not share their state, as the state is stored per transformer.
+     *
+     * @param context the context to use from now on
+     * @throws UnsupportedOperationException if the context is null
+     */
+    @Override
+    public void setContext(TransformationContext context) {
+        if (context == null) {
+            throw new UnsupportedOperationException("Context cannot be null");
+        }
+        this.context = context;
+    }
+
+    /**
+     * Creates a new instance of this transformer, with the same settings for debug, compiling and auto-imports.
+     * The new instance has its own random machine and its own, fresh context.
+     * Constraints that were added manually to this transformer are not copied.
+     *
+     * @param seed used for setting the random machine of the new instance.
+     * @return a new transformer of the same class, sharing no mutable state with this one
+     */
+    @Override
+    public Transformer newInstance(long seed) {
+        BaseTransformer instance = createInstance(seed);
+        instance.debug = this.debug;
+        instance.triesToCompile = this.triesToCompile;
+        instance.setsAutoImports = this.setsAutoImports;
+        return instance;
+    }
+
+    /**
+     * Creates a new transformer of the implementing class with the given seed.
+     * Settings that are specific to the implementing class (e.g. full random strings) should be copied here,
+     * the shared settings are copied by "newInstance".
+     *
+     * @param seed used for setting the random machine of the new instance.
+     * @return a new transformer of the implementing class
+     */
+    protected abstract BaseTransformer createInstance(long seed);
+
     /**
      * This method decides whether the Transformer will try to compile the code, restoring the AST after
      * working with snippets, and verifying that the resulting code after transformation is still valid java.
@@ -101,6 +179,14 @@ public abstract class BaseTransformer implements Transformer {
      * @param containingClass the element that can be compiled after change, usually the class containing the changed method/element
      */
     protected void restoreAstAndImports(CtClass containingClass){
+        if(isDeferringRestores()) {
+            context.deferRestore(containingClass, this::restoreAstAndImportsNow);
+            return;
+        }
+        restoreAstAndImportsNow(containingClass);
+    }
+
+    private void restoreAstAndImportsNow(CtClass containingClass){
         if(!setsAutoImports) {
             // Sanity Check for compilation as well as restoring items
             containingClass.getFactory().getEnvironment().setAutoImports(setsAutoImports);
@@ -108,7 +194,167 @@ public abstract class BaseTransformer implements Transformer {
             containingClass.getFactory().getEnvironment().setNoClasspath(setsAutoImports);
         }
         if(triesToCompile) {
-            containingClass.compileAndReplaceSnippets();
+            // Compiling removes the class from its package for a moment and sets its modifiers anew (without their
+            // positions). Neither is a change of the code, and the snippets were already recorded as changes when they
+            // were inserted - so the original modifiers are put back, else the sniper printing (see
+            // Engine.setSniperPrinting) re-prints the head of the class and loses the comments in front of it.
+            Set<CtExtendedModifier> modifiers = new HashSet<>(containingClass.getExtendedModifiers());
+            Runnable compile = () -> {
+                containingClass.compileAndReplaceSnippets();
+                containingClass.setExtendedModifiers(modifiers);
+            };
+            SnippetCompilationEvent event = new SnippetCompilationEvent();
+            event.begin();
+            try {
+                // runWithoutChangeListener does not run anything if no ChangeCollector is attached
+                Environment environment = containingClass.getFactory().getEnvironment();
+                if (ChangeCollector.getChangeCollector(environment) != null) {
+                    ChangeCollector.runWithoutChangeListener(environment, compile);
+                } else {
+                    compile.run();
+                }
+                event.succeeded = true;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.className = containingClass.getQualifiedName();
+                    event.transformer = getClass().getSimpleName();
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the transformer is currently applying a batch (or the context defers restores for other reasons),
+     * and delays the restoring of the ast to the end of it.
+     * Transformers that compile in between their steps should skip these compilations while this is true.
+     * @return true if restores are collected in the context, false otherwise
+     */
+    protected boolean isDeferringRestores() {
+        return context.isDeferringRestores();
+    }
+
+    /**
+     * Collects all elements of the given ast this transformer can currently be applied to,
+     * in a stable order (the order of the ast).
+     * This is the shared candidate-lookup used by single and batch applications.
+     * The elements are references, altering them will alter the toplevel ast.
+     *
+     * The default implementation returns all elements matching the candidate query.
+     *
+     * @param ast the toplevel element in which to look for candidates
+     * @return all valid candidates, can be empty
+     * @throws UnsupportedOperationException if no candidate query was set and the method is not overwritten
+     */
+    protected List<CtElement> findCandidates(CtElement ast) {
+        if (candidateQuery == null) {
+            throw new UnsupportedOperationException("Transformer " + getClass().getSimpleName() + " has no CandidateQuery");
+        }
+        return ast.filterChildren(candidateQuery::matches).list();
+    }
+
+    /**
+     * Applies the class-specific Transformation to exactly the given candidate,
+     * which must have been found by "findCandidates" on the given ast.
+     * Constraints are not checked again here, this is done by the callers.
+     *
+     * @param candidate the element to transform, must be one of "findCandidates(ast)"
+     * @param ast the toplevel ast the candidate was picked from, used for debug information
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    protected abstract TransformationResult applyToCandidate(CtElement candidate, CtElement ast);
+
+    /**
+     * Batch-version of "applyAtRandom".
+     * The constraints are checked once and the candidates are looked up once,
+     * after which they are picked without replacement.
+     * Only if all candidates have been used (and more transformations are requested) the candidates are looked up again.
+     * Restoring the ast (compiling and resolving imports) is done once at the end for every touched class.
+     * If the context already defers restores, they are left to whoever started deferring.
+     *
+     * If there are no (more) candidates, the remaining transformations are EmptyTransformationResults.
+     *
+     * @param ast The toplevel AST from which to pick qualified children to transform.
+     * @param n the number of transformations to apply, must not be negative
+     * @return The TransformationResults in order of application, one per requested transformation
+     * @throws UnsupportedOperationException for negative number of transformations
+     */
+    @Override
+    public List<TransformationResult> applyAtRandom(CtElement ast, int n) {
+        if (n < 0) {
+            throw new UnsupportedOperationException("Number of transformations cannot be negative");
+        }
+        // Sanity check, if there are blockers in the constraints return only empty TransformationResults
+        if (n == 0 || !getRequirements().stream().allMatch(r -> r.test(ast))) {
+            return withEmptyResults(new ArrayList<>(n), n);
+        }
+        return applyBatch(ast, n, 0);
+    }
+
+    /**
+     * Batch-version of "applyAtRandom" that takes the applicability from the report instead of the constraints,
+     * so the ast is only walked once more to collect the candidates.
+     * If the report knows no candidates, the ast is not walked at all.
+     * Otherwise, this behaves like "applyAtRandom(ast, n)".
+     *
+     * @param ast The toplevel AST from which to pick qualified children to transform.
+     * @param n the number of transformations to apply, must not be negative
+     * @param report the applicability of all Transformers in the ast, see ApplicabilityScanner
+     * @return The TransformationResults in order of application, one per requested transformation
+     * @throws UnsupportedOperationException for negative number of transformations or a null report
+     */
+    @Override
+    public List<TransformationResult> applyAtRandom(CtElement ast, int n, ApplicabilityReport report) {
+        if (n < 0) {
+            throw new UnsupportedOperationException("Number of transformations cannot be negative");
+        }
+        if (report == null) {
+            throw new UnsupportedOperationException("ApplicabilityReport cannot be null");
+        }
+        long candidateCount = report.getCandidateCount(this).orElse(0);
+        if (n == 0 || !report.isApplicable(this)) {
+            return withEmptyResults(new ArrayList<>(n), n);
+        }
+        return applyBatch(ast, n, (int) Math.min(candidateCount, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Applies the batch after its applicability was decided, see "applyAtRandom(ast, n)".
+     * @param expectedCandidates the number of candidates if already known, used to size the candidate list
+     */
+    private List<TransformationResult> applyBatch(CtElement ast, int n, int expectedCandidates) {
+        List<TransformationResult> results = new ArrayList<>(n);
+        boolean ownsDeferral = !context.isDeferringRestores();
+        if (ownsDeferral) {
+            context.beginDeferringRestores();
+        }
+        try {
+            List<CtElement> candidates = new ArrayList<>(expectedCandidates);
+            candidates.addAll(findCandidates(ast));
+            while (results.size() < n) {
+                if (candidates.isEmpty()) {
+                    // All candidates are used up, look again as the transformations might have produced new ones
+                    candidates = new ArrayList<>(findCandidates(ast));
+                    if (candidates.isEmpty()) {
+                        break;
+                    }
+                }
+                CtElement candidate = candidates.remove(random.nextInt(candidates.size()));
+                results.add(applyToCandidate(candidate, ast));
+            }
+        } finally {
+            if (ownsDeferral) {
+                context.endDeferringRestores();
+            }
+        }
+        return withEmptyResults(results, n);
+    }
+
+    private static List<TransformationResult> withEmptyResults(List<TransformationResult> results, int n) {
+        while (results.size() < n) {
+            results.add(new EmptyTransformationResult());
         }
+        return results;
     }
 }
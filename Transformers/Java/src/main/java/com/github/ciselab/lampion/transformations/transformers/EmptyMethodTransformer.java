@@ -1,6 +1,7 @@
 package com.github.ciselab.lampion.transformations.transformers;
 
 import com.github.ciselab.lampion.support.RandomNameFactory;
+import com.github.ciselab.lampion.support.UniqueNameGenerator;
 import com.github.ciselab.lampion.transformations.*;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtElement;
@@ -8,9 +9,6 @@ import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.declaration.ModifierKind;
 
 import java.util.*;
-import java.util.function.Predicate;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 /**
  * This transformer adds a random method into a class, and invokes it at a random place in a method.
@@ -21,9 +19,6 @@ import java.util.stream.Collectors;
 public class EmptyMethodTransformer extends BaseTransformer {
     public final String name = "EmptyMethod";
 
-    // This List holds all by this Transformer created methods, and is used to not pick (artificial) methods created by this
-    private List<CtMethod> createdMethods = new ArrayList<>();
-
     // Whether this Transformer will produce pseudo-random names or full character-soup
     private boolean fullRandomStrings = false;
 
@@ -61,12 +56,31 @@ public class EmptyMethodTransformer extends BaseTransformer {
             return new EmptyTransformationResult();
         }
         CtMethod toAlter = oToAlter.get();
+
+        return applyToCandidate(toAlter,ast);
+    }
+
+    /**
+     * Applies the transformation to the given candidate method, see BaseTransformer.
+     *
+     * @param candidate the method to transform, must be one of "findCandidates(ast)"
+     * @param ast the toplevel ast the candidate was picked from, used for debug information
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    @Override
+    protected TransformationResult applyToCandidate(CtElement candidate, CtElement ast) {
+        CtMethod toAlter = (CtMethod) candidate;
+        String methodName = pickUnusedMethodName(toAlter.getParent(p -> p instanceof CtClass));
+        if (methodName == null) {
+            // Every name is already a method of the class
+            return new EmptyTransformationResult();
+        }
         // As the altered method is altered forever and in all instances, safe a clone for the transformation result.
         CtMethod savedElement = toAlter.clone();
         savedElement.setParent(toAlter.getParent());
         savedElement.getParent().updateAllParentsBelow();
 
-        applyEmptyMethodTransformer(toAlter);
+        applyEmptyMethodTransformer(toAlter, methodName);
 
         // If debug information is wished for, create a bigger Transformationresult
         // Else, just return a minimal Transformationresult
@@ -82,24 +96,11 @@ public class EmptyMethodTransformer extends BaseTransformer {
      * adds it to the class
      * adds a method invocation somewhere in the original method to alter
      * @param methodToAlter
+     * @param methodName the name of the new method, not yet used by any method of the class
      */
-    private void applyEmptyMethodTransformer(CtMethod methodToAlter){
+    private void applyEmptyMethodTransformer(CtMethod methodToAlter, String methodName){
         CtClass containingClass = methodToAlter.getParent(p -> p instanceof CtClass);
 
-        Supplier<String> stringSupplier =
-                fullRandomStrings ?
-                () -> RandomNameFactory.getRandomString(random) :  () -> RandomNameFactory.getCamelcasedAnimalString(true,random);
-        String methodName = stringSupplier.get();
-        //Short check, redo if there is already such a method
-        String finalMethodName = methodName;
-        while(containingClass.getMethods().stream()
-                .filter(c -> c instanceof CtMethod)
-                .map(c -> (CtMethod) c)
-                .anyMatch(m -> ((CtMethod<?>) m).getSimpleName().equalsIgnoreCase(finalMethodName)))
-        {
-            methodName = stringSupplier.get();
-        }
-
         CtMethod emptyMethod = containingClass.getFactory().createMethod();
         emptyMethod.setSimpleName(methodName);
         emptyMethod.setParent(containingClass);
@@ -114,8 +115,10 @@ public class EmptyMethodTransformer extends BaseTransformer {
 
 
         containingClass.addMethod(emptyMethod);
+        getCreatedMethods().add(emptyMethod);
+        SymbolTable.methodsOf(containingClass).add(methodName);
 
-        if(triesToCompile) {
+        if(triesToCompile && !isDeferringRestores()) {
             containingClass.compileAndReplaceSnippets();
         }
         int statementsInInitialMethod = methodToAlter.getBody().getStatements().size();
@@ -127,6 +130,27 @@ public class EmptyMethodTransformer extends BaseTransformer {
         restoreAstAndImports(containingClass);
     }
 
+    /**
+     * Picks a name for the new method that no method of the class has yet, ignoring the case.
+     * The animal names are drawn from the names that are left (see UniqueNameGenerator), so they never collide.
+     * The full random strings have far too many combinations for that, they are drawn again in the unlikely case
+     * of a collision.
+     * @param containingClass the class the new method is added to
+     * @return the name of the new method, null if the class already has a method of every name
+     */
+    private String pickUnusedMethodName(CtClass<?> containingClass){
+        SymbolTable takenNames = SymbolTable.methodsOf(containingClass);
+        if (fullRandomStrings) {
+            String methodName = RandomNameFactory.getRandomString(random);
+            while (takenNames.containsIgnoringCase(methodName)) {
+                methodName = RandomNameFactory.getRandomString(random);
+            }
+            return methodName;
+        }
+        UniqueNameGenerator names = new UniqueNameGenerator(true, random).exclude(takenNames.getNames());
+        return names.hasNext() ? names.next() : null;
+    }
+
     /**
      * To enable a more correct approach in randomly picking next transformations,
      * there must be some kind of extra-information.
@@ -168,14 +192,7 @@ public class EmptyMethodTransformer extends BaseTransformer {
      */
     private Optional<CtMethod> pickRandomMethod(CtElement ast) {
         // Check for all methods that are not created by this transformer
-        List<CtMethod> allMethods = ast
-                .filterChildren(c -> c instanceof CtMethod)
-                .list()
-                .stream()
-                .map(c -> (CtMethod) c)
-                .filter(c -> ! createdMethods.contains(c))
-                .filter(c -> ! c.getBody().getStatements().isEmpty())
-                .collect(Collectors.toList());
+        List<CtElement> allMethods = findCandidates(ast);
 
         if(allMethods.isEmpty()){
             return Optional.empty();
@@ -184,7 +201,7 @@ public class EmptyMethodTransformer extends BaseTransformer {
         // Pick a number between 0 and count(methods)
         int randomValidIndex = random.nextInt(allMethods.size());
         // return the method at the position
-        return Optional.of(allMethods.get(randomValidIndex));
+        return Optional.of((CtMethod) allMethods.get(randomValidIndex));
     }
 
     /**
@@ -201,16 +218,32 @@ public class EmptyMethodTransformer extends BaseTransformer {
         return fullRandomStrings;
     }
 
+    /**
+     * Returns all methods created by this transformer in the current context,
+     * used to not pick (artificial) methods created by this transformer.
+     * The methods are compared by identity, as structurally equal methods can exist in the original code.
+     * @return the (alterable) set of created methods, stored in the context
+     */
+    private Set<CtMethod> getCreatedMethods() {
+        return context.getState(this, () -> Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    @Override
+    protected BaseTransformer createInstance(long seed) {
+        EmptyMethodTransformer instance = new EmptyMethodTransformer(seed);
+        instance.setFullRandomStrings(fullRandomStrings);
+        return instance;
+    }
+
+    /**
+     * Declares the candidates of this transformer,
+     * that are all non-empty methods that were not created by this transformer.
+     */
     private void setConstraints(){
-        Predicate<CtElement> hasMethods = c -> {
-            return !c.filterChildren(ch -> ch instanceof CtMethod).list().isEmpty();
-        };
-        Predicate<CtElement> hasNonArtificalMethods = c -> {
-            return pickRandomMethod(c) != null;
-        };
-
-        constraints.add(hasMethods);
-        constraints.add(hasNonArtificalMethods);
+        setCandidateQuery(CandidateQuery.forKind(CtMethod.class,
+                m -> ! getCreatedMethods().contains(m)
+                        && m.getBody() != null
+                        && ! m.getBody().getStatements().isEmpty()));
     }
 
 
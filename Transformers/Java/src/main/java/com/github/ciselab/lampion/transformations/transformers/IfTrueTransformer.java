@@ -14,8 +14,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * This Transformer wraps the block of a (random) Method into an "if(true){...}"
@@ -29,12 +27,7 @@ public class IfTrueTransformer extends BaseTransformer {
 
     public IfTrueTransformer() {
         super();
-
-        Predicate<CtElement> hasMethods = ct -> {
-            return ! ct.filterChildren(c -> c instanceof CtMethod).list().isEmpty();
-        };
-
-        constraints.add(hasMethods);
+        setConstraints();
     }
 
     /**
@@ -42,12 +35,7 @@ public class IfTrueTransformer extends BaseTransformer {
      */
     public IfTrueTransformer(long seed) {
         super(seed);
-
-        Predicate<CtElement> hasMethods = ct -> {
-            return ! ct.filterChildren(c -> c instanceof CtMethod).list().isEmpty();
-        };
-
-        constraints.add(hasMethods);
+        setConstraints();
     }
 
     /**
@@ -68,6 +56,20 @@ public class IfTrueTransformer extends BaseTransformer {
         }
 
         CtMethod toAlter = pickRandomMethod(ast);
+
+        return applyToCandidate(toAlter,ast);
+    }
+
+    /**
+     * Applies the transformation to the given candidate method, see BaseTransformer.
+     *
+     * @param candidate the method to transform, must be one of "findCandidates(ast)"
+     * @param ast the toplevel ast the candidate was picked from, used for debug information
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    @Override
+    protected TransformationResult applyToCandidate(CtElement candidate, CtElement ast) {
+        CtMethod toAlter = (CtMethod) candidate;
         // As the altered method is altered forever and in all instances, safe a clone for the transformation result.
         CtMethod savedElement = toAlter.clone();
         savedElement.setParent(toAlter.getParent());
@@ -126,17 +128,24 @@ public class IfTrueTransformer extends BaseTransformer {
      */
     private CtMethod pickRandomMethod(CtElement ast) {
         // Check for all methods
-        List<CtMethod> allMethods = ast
-                .filterChildren(c -> c instanceof CtMethod)
-                .list()
-                .stream()
-                .map(o -> (CtMethod) o)
-                .filter(c -> ! c.getBody().getStatements().isEmpty())
-                .collect(Collectors.toList());
+        List<CtElement> allMethods = findCandidates(ast);
         // Pick a number between 0 and count(methods)
         int randomValidIndex = random.nextInt(allMethods.size());
         // return the method at the position
-        return allMethods.get(randomValidIndex);
+        return (CtMethod) allMethods.get(randomValidIndex);
+    }
+
+    /**
+     * Declares the candidates of this transformer, that are all non-empty methods.
+     */
+    private void setConstraints() {
+        setCandidateQuery(CandidateQuery.forKind(CtMethod.class,
+                m -> m.getBody() != null && ! m.getBody().getStatements().isEmpty()));
+    }
+
+    @Override
+    protected BaseTransformer createInstance(long seed) {
+        return new IfTrueTransformer(seed);
     }
 
     /**
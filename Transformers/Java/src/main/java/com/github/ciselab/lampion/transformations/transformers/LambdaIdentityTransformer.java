@@ -8,7 +8,6 @@ import spoon.reflect.factory.Factory;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.function.Predicate;
 
 /**
  * This Transformer wraps a literal into an identity lambda.
@@ -68,6 +67,20 @@ public class LambdaIdentityTransformer extends BaseTransformer {
         }
 
         CtLiteral toAlter = TransformerUtils.pickRandomLiteral(ast,random);
+
+        return applyToCandidate(toAlter,ast);
+    }
+
+    /**
+     * Applies the transformation to the given candidate literal, see BaseTransformer.
+     *
+     * @param candidate the literal to wrap, must be one of "findCandidates(ast)"
+     * @param ast the toplevel ast the candidate was picked from, used for debug information
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    @Override
+    protected TransformationResult applyToCandidate(CtElement candidate, CtElement ast) {
+        CtLiteral toAlter = (CtLiteral) candidate;
         // As the altered method is altered forever and in all instances, safe a clone for the transformation result.
         CtLiteral savedElement = toAlter.clone();
         savedElement.setParent(toAlter.getParent());
@@ -118,6 +131,11 @@ public class LambdaIdentityTransformer extends BaseTransformer {
         restoreAstAndImports(containingclass);
     }
 
+    @Override
+    protected BaseTransformer createInstance(long seed) {
+        return new LambdaIdentityTransformer(seed);
+    }
+
     /**
      * To enable a more correct approach in randomly picking next transformations,
      * there must be some kind of extra-information.
@@ -147,12 +165,11 @@ public class LambdaIdentityTransformer extends BaseTransformer {
         return categories;
     }
 
+    /**
+     * Declares the candidates of this transformer, that are all literals.
+     */
     private void setConstraints(){
-        Predicate<CtElement> hasLiterals = c -> {
-            return !c.filterChildren(ch -> ch instanceof CtLiteral).list().isEmpty();
-        };
-
-        constraints.add(hasLiterals);
+        setCandidateQuery(CandidateQuery.forKind(CtLiteral.class));
     }
 
 }
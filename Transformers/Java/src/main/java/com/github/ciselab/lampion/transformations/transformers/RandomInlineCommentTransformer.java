@@ -12,7 +12,6 @@ import spoon.reflect.declaration.CtVariable;
 import spoon.reflect.factory.Factory;
 
 import java.util.*;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -57,6 +56,20 @@ public class RandomInlineCommentTransformer extends BaseTransformer {
         // Check for emptyness is done earlier as constraint, so I can just get it here.
         CtMethod toAlter = oToAlter.get();
 
+        return applyToCandidate(toAlter,ast);
+    }
+
+    /**
+     * Applies the transformation to the given candidate method, see BaseTransformer.
+     *
+     * @param candidate the method to transform, must be one of "findCandidates(ast)"
+     * @param ast the toplevel ast the candidate was picked from, used for debug information
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    @Override
+    protected TransformationResult applyToCandidate(CtElement candidate, CtElement ast) {
+        CtMethod toAlter = (CtMethod) candidate;
+
         // As the altered method is altered forever and in all instances, safe a clone for the transformation result.
         CtMethod savedElement = toAlter.clone();
         savedElement.setParent(toAlter.getParent());
@@ -107,17 +120,21 @@ public class RandomInlineCommentTransformer extends BaseTransformer {
      * @return a random method. Empty if there are none. Reference is passed, so altering this element will alter the toplevel ast
      */
     private Optional<CtMethod> pickRandomMethod(CtElement ast) {
-        // Get all Methods with Parameters
-        List<CtMethod> allMethods = ast.filterChildren(
-                c -> c instanceof CtMethod // the child is a method
-        ).list();
+        List<CtElement> allMethods = findCandidates(ast);
 
         // The check for empty-ness is done as constraint beforehand.
 
         // Pick a number between 0 and count(methods)
         int randomValidIndex = random.nextInt(allMethods.size());
         // return the method at the position
-        return Optional.of(allMethods.get(randomValidIndex));
+        return Optional.of((CtMethod) allMethods.get(randomValidIndex));
+    }
+
+    @Override
+    protected BaseTransformer createInstance(long seed) {
+        RandomInlineCommentTransformer instance = new RandomInlineCommentTransformer(seed);
+        instance.setFullRandomStrings(fullRandomStrings);
+        return instance;
     }
 
     /**
@@ -166,12 +183,9 @@ public class RandomInlineCommentTransformer extends BaseTransformer {
     /**
      * Adds the required base-line constraints for this class to the constraints.
      * For this Transformer, the constraints are:
-     * 1. there are methods in the Ast
+     * 1. there are methods (with a body) in the Ast
      */
     private void setConstraints() {
-        Predicate<CtElement> hasMethods = ct -> {
-            return ! ct.filterChildren(c -> c instanceof CtMethod).list().isEmpty();
-        };
-        constraints.add(hasMethods);
+        setCandidateQuery(CandidateQuery.forKind(CtMethod.class, m -> m.getBody() != null));
     }
 }
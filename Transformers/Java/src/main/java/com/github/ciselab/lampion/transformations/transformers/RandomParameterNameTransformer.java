@@ -1,6 +1,7 @@
 package com.github.ciselab.lampion.transformations.transformers;
 
 import com.github.ciselab.lampion.support.RandomNameFactory;
+import com.github.ciselab.lampion.support.UniqueNameGenerator;
 import com.github.ciselab.lampion.transformations.*;
 import spoon.refactoring.CtRenameGenericVariableRefactoring;
 import spoon.reflect.declaration.CtClass;
@@ -9,7 +10,6 @@ import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.declaration.CtVariable;
 
 import java.util.*;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -23,9 +23,6 @@ public class RandomParameterNameTransformer extends BaseTransformer {
     // Whether this Transformer will produce pseudo-random names or full character-soup
     private boolean fullRandomStrings = false;
 
-    // This Map holds all changed Parameternames to not randomize ParameterNames twice.
-    private Map<CtMethod,List<CtVariable>> alreadyAlteredParameterNames = new HashMap<>();
-
     public RandomParameterNameTransformer(){
         super();
         setConstraints();
@@ -57,13 +54,32 @@ public class RandomParameterNameTransformer extends BaseTransformer {
         // Check for existance of methods is done beforehand per constraints, so I just get the result right away
         CtMethod toAlter = oToAlter.get();
 
+        return applyToCandidate(toAlter,ast);
+    }
+
+    /**
+     * Applies the transformation to a random free parameter of the given candidate method, see BaseTransformer.
+     *
+     * @param candidate the method to transform, must be one of "findCandidates(ast)"
+     * @param ast the toplevel ast the candidate was picked from, used for debug information
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    @Override
+    protected TransformationResult applyToCandidate(CtElement candidate, CtElement ast) {
+        CtMethod toAlter = (CtMethod) candidate;
+
         Optional<CtVariable> oVarToAlter = pickRandomParameter(toAlter);
+        String newName = pickUnusedName(toAlter);
+        if (newName == null) {
+            // Every name is already a variable of the method
+            return new EmptyTransformationResult();
+        }
         // oVarToAlter always exists, as both check for params and check for non-changed params are done by constraints.
         // As the altered method is altered forever and in all instances, safe a clone for the transformation result.
         CtMethod savedElement = toAlter.clone();
         savedElement.setParent(toAlter.getParent());
         savedElement.getParent().updateAllParentsBelow();
-        applyRandomParameterNameTransformation(toAlter, oVarToAlter.get());
+        applyRandomParameterNameTransformation(toAlter, oVarToAlter.get(), newName);
 
         // If debug information is wished for, create a bigger Transformationresult
         // Else, just return a minimal Transformationresult
@@ -81,14 +97,15 @@ public class RandomParameterNameTransformer extends BaseTransformer {
      * if there is a return statement in the block, there is a trivial return null in the else block.
      * @param toAlter the CTMethod to wrap in an if(true){...}
      */
-    private void applyRandomParameterNameTransformation(CtMethod toAlter, CtVariable varToAlter) {
+    private void applyRandomParameterNameTransformation(CtMethod toAlter, CtVariable varToAlter, String name) {
         CtRenameGenericVariableRefactoring refac = new CtRenameGenericVariableRefactoring();
         refac.setTarget(varToAlter);
-        String name = fullRandomStrings ? RandomNameFactory.getRandomString(random) : RandomNameFactory.getCamelcasedAnimalString(false,random);
         refac.setNewName(name);
         refac.refactor();
+        SymbolTable.variablesOf(toAlter).add(name);
 
         // Add the altered variable to the toplevel map to keep track that it was altered in constraints
+        Map<CtMethod,List<CtVariable>> alreadyAlteredParameterNames = getAlreadyAlteredParameterNames();
         if(alreadyAlteredParameterNames.containsKey(toAlter)){
             alreadyAlteredParameterNames.get(toAlter).add(varToAlter);
         } else {
@@ -102,6 +119,25 @@ public class RandomParameterNameTransformer extends BaseTransformer {
         restoreAstAndImports(containingclass);
     }
 
+    /**
+     * Picks a new name that no variable of the method uses yet, as the renaming would fail or change the code.
+     * The animal names are drawn from the names that are left (see UniqueNameGenerator), so they never collide.
+     * @param method the method whose parameter is renamed
+     * @return the new name, null if the method already uses every name
+     */
+    private String pickUnusedName(CtMethod<?> method) {
+        SymbolTable takenNames = SymbolTable.variablesOf(method);
+        if (fullRandomStrings) {
+            String newName = RandomNameFactory.getRandomString(random);
+            while (takenNames.contains(newName)) {
+                newName = RandomNameFactory.getRandomString(random);
+            }
+            return newName;
+        }
+        UniqueNameGenerator names = new UniqueNameGenerator(false, random).exclude(takenNames.getNames());
+        return names.hasNext() ? names.next() : null;
+    }
+
     /**
      * Returns a random method of the ast.
      * Check whether ast is empty is done earlier using constraints.
@@ -115,17 +151,13 @@ public class RandomParameterNameTransformer extends BaseTransformer {
      */
     private Optional<CtMethod> pickRandomMethod(CtElement ast) {
         // Get all Methods with Parameters
-        List<CtMethod> allMethods = ast.filterChildren(
-                c -> c instanceof CtMethod                                  // the child is a method
-                        && !((CtMethod) c).getParameters().isEmpty()        // the method has parameters
-                        && pickRandomParameter((CtMethod) c ).isPresent()   // there are free parameters left
-        ).list();
+        List<CtElement> allMethods = findCandidates(ast);
         // Check for non-empty Methods is done beforehand per constraints
 
         // Pick a number between 0 and count(methods)
         int randomValidIndex = random.nextInt(allMethods.size());
         // return the method at the position
-        return Optional.of(allMethods.get(randomValidIndex));
+        return Optional.of((CtMethod) allMethods.get(randomValidIndex));
     }
 
     /**
@@ -137,6 +169,22 @@ public class RandomParameterNameTransformer extends BaseTransformer {
      * @return a CtVariable that has not been randomized by this transformer, empty if there are none available
      */
     private Optional<CtVariable> pickRandomParameter(CtMethod method) {
+        List<CtVariable> paramsToPickFrom = getFreeParameters(method);
+
+        if(paramsToPickFrom.size()==0){
+            return Optional.empty();
+        } else {
+            // Pick a number between 0 and count(parans)
+            int randomValidIndex = random.nextInt(paramsToPickFrom.size());
+            // return the method at the position
+            return Optional.of(paramsToPickFrom.get(randomValidIndex));
+        }
+    }
+
+    /**
+     * @return all parameters of the method that have not been randomized by this transformer, can be empty
+     */
+    private List<CtVariable> getFreeParameters(CtMethod method) {
         /**
          * There was an issue with "disappearing" parameters, this was due to the "removeIf" on
          * method.getParameters()
@@ -154,22 +202,14 @@ public class RandomParameterNameTransformer extends BaseTransformer {
 
         // If there are already altered parameternames for this method,
         // remove all altered parameters from the pool of possible chosen element
+        Map<CtMethod,List<CtVariable>> alreadyAlteredParameterNames = getAlreadyAlteredParameterNames();
         if(alreadyAlteredParameterNames.containsKey(method)){
             List<String> alteredParameters = alreadyAlteredParameterNames.get(method).stream()
                     .map(p -> p.toString()).collect(Collectors.toList());
 
             allParams.removeIf(p -> alteredParameters.contains(p.toString()));
         }
-        List<CtVariable> paramsToPickFrom = allParams;
-
-        if(allParams.size()==0){
-            return Optional.empty();
-        } else {
-            // Pick a number between 0 and count(parans)
-            int randomValidIndex = random.nextInt(paramsToPickFrom.size());
-            // return the method at the position
-            return Optional.of(paramsToPickFrom.get(randomValidIndex));
-        }
+        return allParams;
     }
 
     /**
@@ -186,6 +226,23 @@ public class RandomParameterNameTransformer extends BaseTransformer {
         return fullRandomStrings;
     }
 
+    /**
+     * Returns the Map holding all changed Parameternames to not randomize ParameterNames twice.
+     * The map is stored in the context, so a new context starts with no altered parameters.
+     * The methods are compared by identity, as their hash changes with every renamed parameter.
+     * @return the (alterable) map of altered parameters per method
+     */
+    private Map<CtMethod,List<CtVariable>> getAlreadyAlteredParameterNames() {
+        return context.getState(this, IdentityHashMap::new);
+    }
+
+    @Override
+    protected BaseTransformer createInstance(long seed) {
+        RandomParameterNameTransformer instance = new RandomParameterNameTransformer(seed);
+        instance.setFullRandomStrings(fullRandomStrings);
+        return instance;
+    }
+
     /**
      * To enable a more correct approach in randomly picking next transformations,
      * there must be some kind of extra-information.
@@ -217,43 +274,14 @@ public class RandomParameterNameTransformer extends BaseTransformer {
     }
 
     /**
-     * Adds the required base-line constraints for this class to the constraints.
-     * For this Transformer, the constraints are:
-     * 1. there are methods in the Ast
-     * 2. the methods have parameters
-     * 3. there are methods that have not-randomized / not altered names (altering them twice would be useless)
+     * Declares the candidates of this transformer. For this Transformer, the candidates are methods that
+     * 1. have parameters
+     * 2. have parameters that have not-randomized / not altered names (altering them twice would be useless)
      */
     private void setConstraints() {
-        /*
-        These Constraints are self-inclusive to some extend,
-        but they are kept as 3 to make them more expressive.
-        Shrink them once there are performance issues
-         */
-
-        Predicate<CtElement> hasMethods = ct -> {
-            return ! ct.filterChildren(c -> c instanceof CtMethod).list().isEmpty();
-        };
-
-        Predicate<CtElement> methodsHaveParameters = ct -> {
-            return  ct.filterChildren(c -> c instanceof CtMethod)
-                    .list()
-                    .stream()
-                    .map(c -> (CtMethod) c)
-                    .anyMatch( m -> !m.getParameters().isEmpty());
-        };
-
-        // Whether there are any parameters un-altered left available
-        Predicate<CtElement> methodsHaveFreeParameters = ct -> {
-            return  ct.filterChildren(c -> c instanceof CtMethod)
-                    .list()
-                    .stream()
-                    .map(c -> (CtMethod) c)
-                    .filter(m -> !m.getParameters().isEmpty())
-                    .anyMatch( m -> pickRandomParameter(m).isPresent());
-        };
-
-        constraints.add(hasMethods);
-        constraints.add(methodsHaveParameters);
-        constraints.add(methodsHaveFreeParameters);
+        setCandidateQuery(CandidateQuery.forKind(CtMethod.class,
+                m -> !m.getParameters().isEmpty()           // the method has parameters
+                        && !getFreeParameters(m).isEmpty()  // there are free parameters left
+        ));
     }
 }
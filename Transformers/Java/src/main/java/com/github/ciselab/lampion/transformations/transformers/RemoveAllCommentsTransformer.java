@@ -5,9 +5,10 @@ import spoon.reflect.code.CtComment;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtElement;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.function.Predicate;
 
 /**
  * This Transformer removes all comments (inline, block, javadoc, etc.) of a given element and all it's children.
@@ -21,12 +22,8 @@ public class RemoveAllCommentsTransformer extends BaseTransformer {
 
     public RemoveAllCommentsTransformer() {
         super();
-
-        Predicate<CtElement> hasComments = ct -> {
-            return ! ct.filterChildren(c -> c instanceof CtComment).list().isEmpty();
-        };
-
-        constraints.add(hasComments);
+        // The transformer is applicable if there are any comments, but it always transforms the whole ast
+        setCandidateQuery(CandidateQuery.forKind(CtComment.class));
     }
 
     /**
@@ -34,12 +31,8 @@ public class RemoveAllCommentsTransformer extends BaseTransformer {
      */
     public RemoveAllCommentsTransformer(long seed) {
         super(seed);
-
-        Predicate<CtElement> hasComments = ct -> {
-            return ! ct.filterChildren(c -> c instanceof CtComment).list().isEmpty();
-        };
-
-        constraints.add(hasComments);
+        // The transformer is applicable if there are any comments, but it always transforms the whole ast
+        setCandidateQuery(CandidateQuery.forKind(CtComment.class));
     }
 
     /**
@@ -62,6 +55,31 @@ public class RemoveAllCommentsTransformer extends BaseTransformer {
             return new EmptyTransformationResult();
         }
 
+        return applyToCandidate(ast,ast);
+    }
+
+    /**
+     * The RemoveAllComments Transformer has only one candidate, that is the given ast itself.
+     *
+     * @param ast the element of which all comments will be removed
+     * @return a list containing only the ast
+     */
+    @Override
+    protected List<CtElement> findCandidates(CtElement ast) {
+        List<CtElement> candidates = new ArrayList<>();
+        candidates.add(ast);
+        return candidates;
+    }
+
+    /**
+     * Removes all comments of the candidate, which is always the ast itself, see "findCandidates".
+     *
+     * @param candidate the element of which all comments will be removed
+     * @param ast the toplevel ast, same as the candidate
+     * @return The TransformationResult, containing all relevant information of the transformation
+     */
+    @Override
+    protected TransformationResult applyToCandidate(CtElement candidate, CtElement ast) {
         // As the altered method is altered forever and in all instances, safe a clone for the transformation result.
         CtElement savedElement = ast.clone();
         savedElement.setParent(ast.getParent());
@@ -87,6 +105,11 @@ public class RemoveAllCommentsTransformer extends BaseTransformer {
     }
 
 
+    @Override
+    protected BaseTransformer createInstance(long seed) {
+        return new RemoveAllCommentsTransformer(seed);
+    }
+
     /**
      * To enable a more correct approach in randomly picking next transformations,
      * there must be some kind of extra-information.
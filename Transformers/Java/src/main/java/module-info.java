@@ -2,14 +2,26 @@ open module com.github.ciselab.lampion {
     // Export the App to run
     // Export the engine to be able to extend it
     exports com.github.ciselab.lampion.program;
+    // Export the manifest to read the applied transformations elsewhere
+    exports com.github.ciselab.lampion.program.manifest;
+    // Export the output sinks to be able to write the results elsewhere
+    exports com.github.ciselab.lampion.program.output;
+    // Export the token output to read the tokens elsewhere
+    exports com.github.ciselab.lampion.program.tokens;
     // Export the transformations so one has the interfaces to build new transformers
     exports com.github.ciselab.lampion.transformations;
 
     requires spoon.core;
+    // The compiler of Spoon, to index the symbols of pipelined runs
+    requires org.eclipse.jdt.core;
 
     requires org.slf4j;
 
     requires org.apache.logging.log4j;
     requires java.base;
     requires java.sql;
+    // The zip-filesystem is used to read input directly from zip/jar archives
+    requires jdk.zipfs;
+    // The flight recorder events of the transformations, compilations, parsing and printing
+    requires jdk.jfr;
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package com.github.ciselab.lampion.program;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.util.Properties;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class AppTest {
@@ -31,4 +33,32 @@ public class AppTest {
         assertFalse(App.globalRegistry.getRegisteredTransformers().isEmpty());
     }
 
+    @Test
+    void testConfigurationFingerprint_ShouldIgnoreSeedAndOrder(){
+        Properties first = new Properties();
+        first.setProperty("IfTrueTransformer", "true");
+        first.setProperty("transformations", "5");
+        first.setProperty("seed", "1");
+        Properties second = new Properties();
+        second.setProperty("transformations", "5");
+        second.setProperty("IfTrueTransformer", "true");
+        second.setProperty("seed", "2");
+
+        assertEquals(App.createConfigurationFingerprint(first), App.createConfigurationFingerprint(second));
+        second.setProperty("transformations", "6");
+        assertNotEquals(App.createConfigurationFingerprint(first), App.createConfigurationFingerprint(second));
+    }
+
+    @Test
+    void testReadShard_ShouldReadIndexAndCount(){
+        Properties properties = new Properties();
+        assertEquals(Shard.ALL, App.readShard(properties));
+
+        properties.setProperty("shardCount", "4");
+        assertThrows(UnsupportedOperationException.class, () -> App.readShard(properties));
+
+        properties.setProperty("shardIndex", "3");
+        assertEquals(new Shard(3, 4), App.readShard(properties));
+    }
+
 }
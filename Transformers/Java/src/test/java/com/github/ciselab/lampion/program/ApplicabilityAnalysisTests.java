@@ -0,0 +1,104 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.TransformerRegistry;
+import com.github.ciselab.lampion.transformations.transformers.AddNeutralElementTransformer;
+import com.github.ciselab.lampion.transformations.transformers.IfTrueTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomParameterNameTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RemoveAllCommentsTransformer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApplicabilityAnalysisTests {
+
+    private static final String perMethodEachFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+
+    @Test
+    void testConstructor_nullRegistry_ThrowsException(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> new ApplicabilityAnalysis(perMethodEachFolder, "./out", null));
+    }
+
+    @Test
+    void testConstructor_emptyCodeDirectory_ThrowsException(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> new ApplicabilityAnalysis(" ", "./out", new TransformerRegistry("Test")));
+    }
+
+    @Tag("File")
+    @Test
+    void testRun_shouldCountCandidatesOfAllFiles(@TempDir Path tempDir) throws IOException {
+        IfTrueTransformer ifTrue = new IfTrueTransformer();
+        RandomParameterNameTransformer parameterName = new RandomParameterNameTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(ifTrue);
+        registry.registerTransformer(parameterName);
+
+        ApplicabilityAnalysis testObject = new ApplicabilityAnalysis(perMethodEachFolder, tempDir.toString(), registry);
+        testObject.run();
+
+        assertEquals(2, testObject.getAnalyzedFiles().size());
+        // Two files with two non-empty methods each, every method has two parameters
+        assertEquals(4, testObject.getTotalCandidates(ifTrue).getAsLong());
+        assertEquals(4, testObject.getTotalCandidates(parameterName).getAsLong());
+    }
+
+    @Tag("File")
+    @Test
+    void testRun_Shard_ShouldCountCandidatesUsingOtherShards(@TempDir Path tempDir) throws IOException {
+        // Child is the only file of the shard, its only candidate is the field count inherited from Base
+        AddNeutralElementTransformer neutralElement = new AddNeutralElementTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(neutralElement);
+
+        ApplicabilityAnalysis testObject = new ApplicabilityAnalysis("./src/test/resources/javafiles/javafiles_crossfile",
+                tempDir.toString(), registry);
+        testObject.setShard(new Shard(1, 2));
+        testObject.run();
+
+        assertEquals(Set.of("Child.java"), testObject.getAnalyzedFiles());
+        assertEquals(1, testObject.getTotalCandidates(neutralElement).getAsLong());
+    }
+
+    @Tag("File")
+    @Test
+    void testRun_shouldWriteBothCsvFiles(@TempDir Path tempDir) throws IOException {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        registry.registerTransformer(new RemoveAllCommentsTransformer());
+
+        new ApplicabilityAnalysis(perMethodEachFolder, tempDir.toString(), registry).run();
+
+        List<String> perFile = Files.readAllLines(tempDir.resolve(ApplicabilityAnalysis.PER_FILE_CSV));
+        List<String> perTransformer = Files.readAllLines(tempDir.resolve(ApplicabilityAnalysis.PER_TRANSFORMER_CSV));
+
+        // Header + 2 files * 2 transformers
+        assertEquals(5, perFile.size());
+        // Header + 2 transformers
+        assertEquals(3, perTransformer.size());
+        assertEquals("0,IfTrueTransformer,2,2,4", perTransformer.get(1));
+    }
+
+    @Tag("File")
+    @Test
+    void testRun_shouldNotAlterCode(@TempDir Path tempDir) throws IOException {
+        Path example = Path.of(perMethodEachFolder, "example.java");
+        String before = Files.readString(example);
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+
+        new ApplicabilityAnalysis(perMethodEachFolder, tempDir.toString(), registry).run();
+
+        assertEquals(before, Files.readString(example));
+        // Only the two CSV files are written
+        assertEquals(2, Files.list(tempDir).count());
+    }
+}
@@ -1,22 +1,45 @@
 package com.github.ciselab.lampion.program;
 
+import com.github.ciselab.lampion.program.manifest.ManifestReader;
+import com.github.ciselab.lampion.program.manifest.ManifestRecord;
+import com.github.ciselab.lampion.program.output.DeduplicatingOutputSink;
+import com.github.ciselab.lampion.program.output.PatchApplier;
+import com.github.ciselab.lampion.program.tokens.BinaryTokenReader;
+import com.github.ciselab.lampion.program.tokens.IdentifierSplitter;
+import com.github.ciselab.lampion.program.tokens.TokenizedFile;
+import com.github.ciselab.lampion.transformations.AstFingerprint;
+import com.github.ciselab.lampion.transformations.TransformationCategory;
 import com.github.ciselab.lampion.transformations.TransformationResult;
 import com.github.ciselab.lampion.transformations.Transformer;
 import com.github.ciselab.lampion.transformations.TransformerRegistry;
 import com.github.ciselab.lampion.transformations.transformers.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import spoon.Launcher;
+import spoon.SpoonException;
+import spoon.reflect.CtModel;
 import spoon.reflect.declaration.CtClass;
 import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -296,6 +319,937 @@ public class EngineTests {
     }
 
 
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testPerMethodEachScope_sameSeed_TwoRuns_ShouldProduceSameResults(){
+        String pathToTestFileFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+
+        List<String> firstRun = runPerMethodEachAndGetAlteredElements(pathToTestFileFolder);
+        List<String> secondRun = runPerMethodEachAndGetAlteredElements(pathToTestFileFolder);
+
+        assertFalse(firstRun.isEmpty());
+        assertEquals(firstRun, secondRun);
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testPerMethodEachScope_PlanShouldCoverAllTransformations(){
+        String pathToTestFileFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfFalseElseTransformer());
+        registry.registerTransformer(new LambdaIdentityTransformer());
+
+        Engine testObject = new Engine(pathToTestFileFolder,outputTestFolder,registry);
+        testObject.setWriteJavaOutput(false);
+        testObject.setNumberOfTransformationsPerScope(3, Engine.TransformationScope.perMethodEach);
+
+        testObject.run();
+
+        TransformationPlan plan = testObject.getLastPlan();
+        assertNotNull(plan);
+        assertEquals(Engine.TransformationScope.perMethodEach, plan.getScope());
+        // The folder has two classes with 2 methods each
+        assertEquals(12, plan.getTotalTransformations());
+        assertTrue(plan.getEntries().stream().allMatch(e -> e.getTargetKind() == TransformationPlan.TargetKind.METHOD));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testPerMethodEachScope_TransformerApplicableAfterEarlierTransformer_ShouldBeApplied(@TempDir Path tempDir) throws IOException {
+        // The method has no literals, so LambdaIdentity only applies to the variable AddUnusedVariable adds
+        Files.writeString(tempDir.resolve("NoLiteralExample.java"),
+                "package lampion.test;\n\nclass NoLiteralExample {\n    void m(int b) {\n        System.out.println(b);\n    }\n}\n");
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new AddUnusedVariableTransformer());
+        registry.registerTransformer(new LambdaIdentityTransformer());
+
+        Engine testObject = new Engine(tempDir.toString(),outputTestFolder,registry);
+        testObject.setWriteJavaOutput(false);
+        testObject.setNumberOfTransformationsPerScope(10, Engine.TransformationScope.perMethodEach);
+
+        testObject.run();
+
+        assertEquals(2, testObject.getLastPlan().getEntries().size());
+        assertTrue(testObject.getFinishedResults().stream()
+                .anyMatch(r -> r.getTransformationName().equals("LambdaIdentity")));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testPerMethodEachScope_RestoreFails_ShouldNotKeepResults(@TempDir Path tempDir) throws IOException {
+        String pathToTestFileFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+        Transformer failingRestore = new IfTrueTransformer() {
+            @Override
+            protected void restoreAstAndImports(CtClass containingClass) {
+                context.deferRestore(containingClass, c -> {
+                    throw new SpoonException("Snippets do not compile");
+                });
+            }
+        };
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(failingRestore);
+
+        Path manifest = tempDir.resolve("manifest.bin");
+
+        Engine testObject = new Engine(pathToTestFileFolder,outputTestFolder,registry);
+        testObject.setWriteJavaOutput(false);
+        testObject.setManifestFile(manifest.toString());
+        testObject.setNumberOfTransformationsPerScope(2, Engine.TransformationScope.perMethodEach);
+
+        testObject.run();
+
+        assertTrue(testObject.getFinishedResults().isEmpty());
+        assertTrue(!Files.exists(manifest) || ManifestReader.readAll(manifest).isEmpty());
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testExportAndReplayPlan_ShouldProduceSameResults() throws IOException {
+        String pathToTestFileFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+        Path planFile = Files.createTempFile("lampion_plan", ".tsv");
+        try {
+            TransformerRegistry registry = new TransformerRegistry("Test");
+            registry.registerTransformer(new IfFalseElseTransformer());
+            registry.registerTransformer(new RandomParameterNameTransformer());
+
+            Engine exporting = new Engine(pathToTestFileFolder,outputTestFolder,registry);
+            exporting.setWriteJavaOutput(false);
+            exporting.setRandomSeed(10);
+            exporting.setNumberOfTransformationsPerScope(2, Engine.TransformationScope.perMethodEach);
+            exporting.setPlanExportFile(planFile.toString());
+            exporting.run();
+
+            Engine replaying = new Engine(pathToTestFileFolder,outputTestFolder,registry);
+            replaying.setWriteJavaOutput(false);
+            // A different seed should not matter, as the plan holds all seeds
+            replaying.setRandomSeed(99);
+            replaying.setPlanToReplay(TransformationPlan.readFrom(planFile));
+            replaying.run();
+
+            assertEquals(exporting.getLastPlan().getEntries(), replaying.getLastPlan().getEntries());
+            assertEquals(
+                    exporting.getFinishedResults().stream().map(r -> r.getTransformedElement().getParent(CtClass.class).toString()).collect(Collectors.toList()),
+                    replaying.getFinishedResults().stream().map(r -> r.getTransformedElement().getParent(CtClass.class).toString()).collect(Collectors.toList()));
+        } finally {
+            Files.deleteIfExists(planFile);
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testReplayPlan_UnknownTransformer_ShouldSkipEntry(){
+        String pathToTestFileFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfFalseElseTransformer());
+
+        TransformationPlan plan = new TransformationPlan(Engine.TransformationScope.global);
+        plan.addEntry(new TransformationPlan.Entry("lampion.test.examples.Example", TransformationPlan.TargetKind.CLASS,
+                0, 0, "NotExistingTransformer", 1, 5));
+
+        Engine testObject = new Engine(pathToTestFileFolder,outputTestFolder,registry);
+        testObject.setWriteJavaOutput(false);
+        testObject.setPlanToReplay(plan);
+
+        testObject.run();
+
+        assertTrue(testObject.getFinishedResults().isEmpty());
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_ZipOutput_ShouldWriteOneEntryPerClass() throws IOException {
+        String pathToTestFileFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+        Path archive = Files.createTempFile("lampion_output", ".zip");
+        try {
+            TransformerRegistry registry = new TransformerRegistry("Test");
+            registry.registerTransformer(new IfTrueTransformer());
+
+            Engine testObject = new Engine(pathToTestFileFolder,archive.toString(),registry);
+            testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perClassEach);
+
+            testObject.run();
+
+            List<String> entries = new ArrayList<>();
+            try (var zip = new ZipInputStream(Files.newInputStream(archive))) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    entries.add(entry.getName());
+                    assertTrue(new String(zip.readAllBytes()).contains("if (true)"));
+                }
+            }
+            assertEquals(List.of("lampion/test/examples/Example.java","lampion/test/examples/Example2.java"), entries);
+        } finally {
+            Files.deleteIfExists(archive);
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testTransformInMemory_ShouldKeepOutputSettings(@TempDir Path tempDir) {
+        String pathToTestFileFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+        Path manifest = tempDir.resolve("manifest.lman");
+        Path output = tempDir.resolve("out");
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine testObject = new Engine(pathToTestFileFolder,output.toString(),registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        testObject.setManifestFile(manifest.toString());
+        Launcher launcher = new Launcher();
+        launcher.addInputResource(pathToTestFileFolder);
+
+        testObject.transformInMemory(launcher.buildModel());
+
+        assertFalse(testObject.getFinishedResults().isEmpty());
+        assertFalse(Files.exists(manifest));
+        assertFalse(Files.exists(output));
+
+        testObject.run();
+
+        assertTrue(Files.exists(manifest));
+        assertTrue(Files.exists(output));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testTransformInMemory_SomeTypes_ShouldOnlyTransformThem(@TempDir Path tempDir) {
+        Engine testObject = createCrossFileEngine(Path.of("./src/test/resources/javafiles/javafiles_crossfile"), tempDir);
+        Launcher launcher = new Launcher();
+        launcher.addInputResource("./src/test/resources/javafiles/javafiles_crossfile");
+        CtModel model = launcher.buildModel();
+        CtType<?> child = model.getAllTypes().stream()
+                .filter(t -> t.getSimpleName().equals("Child")).findFirst().orElseThrow();
+
+        testObject.transformInMemory(List.of(child));
+
+        assertFalse(testObject.getFinishedResults().isEmpty());
+        for (TransformationResult result : testObject.getFinishedResults()) {
+            assertSame(child, result.getTransformedElement().getParent(CtType.class).getTopLevelType());
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_WithManifest_ShouldAppendEveryResult(@TempDir Path tempDir) throws IOException {
+        String pathToTestFileFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+        Path manifest = tempDir.resolve("manifest.lman");
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+
+        Engine testObject = new Engine(pathToTestFileFolder,tempDir.resolve("out").toString(),registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        testObject.setManifestFile(manifest.toString());
+
+        testObject.run();
+        testObject.run();
+
+        List<ManifestRecord> records = ManifestReader.readAll(manifest);
+        assertEquals(2 * testObject.getFinishedResults().size(), records.size());
+        for (ManifestRecord record : records) {
+            assertEquals("IfTrue", record.getTransformerName());
+            assertTrue(Set.of("example.java","example2.java").contains(record.getFile()));
+            assertTrue(record.getCategories().contains(TransformationCategory.STRUCTURE));
+            assertTrue(record.getBeginLine() > 0);
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_WithManifest_ShouldRecordFingerprintOfEveryResult(@TempDir Path tempDir) throws IOException {
+        Path manifest = tempDir.resolve("manifest.lman");
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine testObject = new Engine("./src/test/resources/javafiles/javafiles_perMethodEach",
+                tempDir.resolve("out").toString(), registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        testObject.setManifestFile(manifest.toString());
+
+        testObject.run();
+        List<AstFingerprint> fingerprints = testObject.getFinishedResults().stream()
+                .map(TransformationResult::getFingerprint).collect(Collectors.toList());
+        testObject.run();
+
+        // The second run transforms the same way, so its records can be deduplicated by their fingerprints
+        List<ManifestRecord> records = ManifestReader.readAll(manifest);
+        assertEquals(2 * fingerprints.size(), records.size());
+        for (int i = 0; i < fingerprints.size(); i++) {
+            assertNotEquals(AstFingerprint.EMPTY, records.get(i).getFingerprint());
+            assertEquals(fingerprints.get(i), records.get(i).getFingerprint());
+            assertEquals(records.get(i).getFingerprint(), records.get(fingerprints.size() + i).getFingerprint());
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_VariantsWithManifest_ShouldRecordVariantOfEveryResult(@TempDir Path tempDir) throws IOException {
+        Path manifest = tempDir.resolve("manifest.lman");
+        Engine testObject = createVariantEngine(tempDir.resolve("out").toString(), 2);
+        testObject.setManifestFile(manifest.toString());
+
+        testObject.run();
+
+        List<ManifestRecord> records = ManifestReader.readAll(manifest);
+        assertEquals(testObject.getFinishedResults().size(), records.size());
+        Set<Integer> variants = records.stream().map(ManifestRecord::getVariant).collect(Collectors.toSet());
+        assertEquals(Set.of(1, 2), variants);
+        // The records of every variant come after the ones of the earlier variants
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i - 1).getVariant() <= records.get(i).getVariant());
+        }
+    }
+
+    private static Engine createIncrementalEngine(Path input, Path output, Engine.TransformationScope scope) {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine engine = new Engine(input.toString(),output.toString(),registry);
+        engine.setNumberOfTransformationsPerScope(1, scope);
+        engine.setIncremental(true);
+        return engine;
+    }
+
+    private static Path copyPerMethodEachFiles(Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input");
+        Files.createDirectories(input);
+        for (String file : List.of("example.java","example2.java")) {
+            Files.copy(Paths.get("./src/test/resources/javafiles/javafiles_perMethodEach", file), input.resolve(file));
+        }
+        return input;
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Incremental_Unchanged_ShouldTransformNothing(@TempDir Path tempDir) throws IOException {
+        Path input = copyPerMethodEachFiles(tempDir);
+        Path output = tempDir.resolve("output");
+        Path printedExample = output.resolve("lampion/test/examples/Example.java");
+
+        createIncrementalEngine(input, output, Engine.TransformationScope.perMethodEach).run();
+        String firstOutput = Files.readString(printedExample);
+        Engine secondRun = createIncrementalEngine(input, output, Engine.TransformationScope.perMethodEach);
+        secondRun.run();
+
+        assertTrue(Files.exists(IncrementalState.stateFileFor(output.toString())));
+        assertTrue(secondRun.getFinishedResults().isEmpty());
+        assertEquals(firstOutput, Files.readString(printedExample));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Incremental_ChangedFile_ShouldOnlyTransformChangedFile(@TempDir Path tempDir) throws IOException {
+        Path input = copyPerMethodEachFiles(tempDir);
+        Path output = tempDir.resolve("output");
+        Path printedExample = output.resolve("lampion/test/examples/Example.java");
+        Path printedExample2 = output.resolve("lampion/test/examples/Example2.java");
+
+        Engine fullRun = createIncrementalEngine(input, output, Engine.TransformationScope.perMethodEach);
+        fullRun.run();
+        String firstOutput = Files.readString(printedExample);
+        Files.writeString(input.resolve("example2.java"), Files.readString(input.resolve("example2.java")) + "\n");
+        Engine secondRun = createIncrementalEngine(input, output, Engine.TransformationScope.perMethodEach);
+        secondRun.run();
+
+        assertFalse(secondRun.getFinishedResults().isEmpty());
+        assertTrue(secondRun.getFinishedResults().size() < fullRun.getFinishedResults().size());
+        assertEquals(firstOutput, Files.readString(printedExample));
+        assertTrue(Files.readString(printedExample2).contains("if (true)"));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Incremental_ChangedSeed_ShouldTransformAllFiles(@TempDir Path tempDir) throws IOException {
+        Path input = copyPerMethodEachFiles(tempDir);
+        Path output = tempDir.resolve("output");
+
+        Engine fullRun = createIncrementalEngine(input, output, Engine.TransformationScope.perMethodEach);
+        fullRun.run();
+        Engine secondRun = createIncrementalEngine(input, output, Engine.TransformationScope.perMethodEach);
+        secondRun.setRandomSeed(5);
+        secondRun.run();
+
+        assertEquals(fullRun.getFinishedResults().size(), secondRun.getFinishedResults().size());
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Incremental_RemovedFile_ShouldRemoveItsOutput(@TempDir Path tempDir) throws IOException {
+        Path input = copyPerMethodEachFiles(tempDir);
+        Path output = tempDir.resolve("output");
+
+        createIncrementalEngine(input, output, Engine.TransformationScope.perMethodEach).run();
+        assertTrue(Files.exists(output.resolve("lampion/test/examples/Example2.java")));
+        Files.delete(input.resolve("example2.java"));
+        createIncrementalEngine(input, output, Engine.TransformationScope.perMethodEach).run();
+
+        assertFalse(Files.exists(output.resolve("lampion/test/examples/Example2.java")));
+        assertTrue(Files.exists(output.resolve("lampion/test/examples/Example.java")));
+        assertEquals(Set.of("example.java"),
+                IncrementalState.readFrom(IncrementalState.stateFileFor(output.toString())).getFiles());
+    }
+
+    private static Engine createCrossFileEngine(Path input, Path output) {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new AddNeutralElementTransformer());
+        Engine engine = new Engine(input.toString(),output.toString(),registry);
+        engine.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        return engine;
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Incremental_ChangedFileUsingUnchangedFile_ShouldEqualFullRun(@TempDir Path tempDir) throws IOException {
+        // Child only reads the field count it inherits from Base, which only resolves if Base is read as well
+        Path input = tempDir.resolve("input");
+        Files.createDirectories(input);
+        for (String file : List.of("Base.java","Child.java")) {
+            Files.copy(Paths.get("./src/test/resources/javafiles/javafiles_crossfile", file), input.resolve(file));
+        }
+        Path incrementalOutput = tempDir.resolve("incremental");
+        Path fullOutput = tempDir.resolve("full");
+        Path printedChild = Path.of("lampion/test/crossfile/Child.java");
+
+        Engine firstRun = createCrossFileEngine(input, incrementalOutput);
+        firstRun.setIncremental(true);
+        firstRun.run();
+        Files.writeString(input.resolve("Child.java"), Files.readString(input.resolve("Child.java")) + "\n");
+        Engine secondRun = createCrossFileEngine(input, incrementalOutput);
+        secondRun.setIncremental(true);
+        secondRun.run();
+        createCrossFileEngine(input, fullOutput).run();
+
+        assertEquals(1, secondRun.getFinishedResults().size());
+        assertEquals(Files.readString(fullOutput.resolve(printedChild)),
+                Files.readString(incrementalOutput.resolve(printedChild)));
+        assertEquals(Files.readString(fullOutput.resolve("lampion/test/crossfile/Base.java")),
+                Files.readString(incrementalOutput.resolve("lampion/test/crossfile/Base.java")));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Incremental_ChangedDependency_ShouldTransformDependentFile(@TempDir Path tempDir) throws IOException {
+        // Child uses the field count of Base, so a change of Base can change the transformations of Child
+        Path input = tempDir.resolve("input");
+        Files.createDirectories(input);
+        for (String file : List.of("Base.java","Child.java")) {
+            Files.copy(Paths.get("./src/test/resources/javafiles/javafiles_crossfile", file), input.resolve(file));
+        }
+        Path incrementalOutput = tempDir.resolve("incremental");
+        Path fullOutput = tempDir.resolve("full");
+        Path printedChild = Path.of("lampion/test/crossfile/Child.java");
+
+        Engine firstRun = createCrossFileEngine(input, incrementalOutput);
+        firstRun.setIncremental(true);
+        firstRun.run();
+        Files.writeString(input.resolve("Base.java"), Files.readString(input.resolve("Base.java")) + "\n");
+        Engine secondRun = createCrossFileEngine(input, incrementalOutput);
+        secondRun.setIncremental(true);
+        secondRun.run();
+        createCrossFileEngine(input, fullOutput).run();
+
+        assertEquals(Set.of("Base.java"), IncrementalState.readFrom(IncrementalState.stateFileFor(incrementalOutput.toString()))
+                .get("Child.java").getDependencies().keySet());
+        assertTrue(secondRun.getFinishedResults().stream()
+                .anyMatch(r -> ((CtClass)r.getTransformedElement().getParent(p -> p instanceof CtClass)).getSimpleName().equals("Child")));
+        assertEquals(Files.readString(fullOutput.resolve(printedChild)),
+                Files.readString(incrementalOutput.resolve(printedChild)));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Incremental_GlobalScope_ShouldTransformAllFiles(@TempDir Path tempDir) throws IOException {
+        Path input = copyPerMethodEachFiles(tempDir);
+        Path output = tempDir.resolve("output");
+
+        createIncrementalEngine(input, output, Engine.TransformationScope.global).run();
+        Engine secondRun = createIncrementalEngine(input, output, Engine.TransformationScope.global);
+        secondRun.run();
+
+        assertFalse(secondRun.getFinishedResults().isEmpty());
+        assertFalse(Files.exists(IncrementalState.stateFileFor(output.toString())));
+    }
+
+    private static Engine createVariantEngine(String output, int variants) {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        registry.registerTransformer(new RandomParameterNameTransformer());
+        Engine engine = new Engine("./src/test/resources/javafiles/javafiles_perMethodEach",output,registry);
+        engine.setNumberOfTransformationsPerScope(2, Engine.TransformationScope.perMethodEach);
+        engine.setVariants(variants);
+        return engine;
+    }
+
+    @Test
+    void testSetVariants_LessThanOne_ShouldThrowException(){
+        Engine testObject = createVariantEngine("./output", 1);
+
+        assertThrows(UnsupportedOperationException.class, () -> testObject.setVariants(0));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Variants_ShouldWriteEveryVariant(@TempDir Path tempDir) throws IOException {
+        Engine testObject = createVariantEngine(tempDir.toString(), 3);
+
+        testObject.run();
+
+        for (int k = 1; k <= 3; k++) {
+            Path variant = tempDir.resolve("variant-" + k + "/lampion/test/examples");
+            assertTrue(Files.exists(variant.resolve("Example.java")));
+            assertTrue(Files.exists(variant.resolve("Example2.java")));
+        }
+        assertFalse(Files.exists(tempDir.resolve("lampion")));
+        assertFalse(testObject.getFinishedResults().isEmpty());
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Variants_ShouldDifferButBeReproducible(@TempDir Path tempDir) throws IOException {
+        createVariantEngine(tempDir.resolve("first").toString(), 3).run();
+        createVariantEngine(tempDir.resolve("second").toString(), 3).run();
+
+        Set<String> distinctVariants = new HashSet<>();
+        for (int k = 1; k <= 3; k++) {
+            String file = "variant-" + k + "/lampion/test/examples/Example.java";
+            String first = Files.readString(tempDir.resolve("first").resolve(file));
+            assertEquals(first, Files.readString(tempDir.resolve("second").resolve(file)));
+            distinctVariants.add(first);
+        }
+        assertTrue(distinctVariants.size() > 1);
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_DeduplicatedVariants_ShouldOnlyWriteDistinctFiles(@TempDir Path tempDir) throws IOException {
+        // Without transformations, every variant equals the first one
+        Engine testObject = createVariantEngine(tempDir.toString(), 3);
+        testObject.setNumberOfTransformationsPerScope(0, Engine.TransformationScope.perMethodEach);
+        testObject.setDeduplicateVariants(true);
+
+        testObject.run();
+
+        assertTrue(Files.exists(tempDir.resolve("variant-1/lampion/test/examples/Example.java")));
+        assertFalse(Files.exists(tempDir.resolve("variant-2")));
+        assertFalse(Files.exists(tempDir.resolve("variant-3")));
+        List<String> index = Files.readAllLines(tempDir.resolve(DeduplicatingOutputSink.INDEX_FILE));
+        assertEquals(5, index.size());
+        assertTrue(index.contains("variant-3/lampion/test/examples/Example2.java\t"
+                + "variant-1/lampion/test/examples/Example2.java"));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_DeduplicatedVariants_ShouldEqualVariantsWithoutDeduplication(@TempDir Path tempDir) throws IOException {
+        createVariantEngine(tempDir.resolve("all").toString(), 3).run();
+        Engine deduplicated = createVariantEngine(tempDir.resolve("distinct").toString(), 3);
+        deduplicated.setDeduplicateVariants(true);
+        deduplicated.run();
+
+        Path index = tempDir.resolve("distinct").resolve(DeduplicatingOutputSink.INDEX_FILE);
+        Map<String,String> duplicates = new HashMap<>();
+        if (Files.exists(index)) {
+            Files.readAllLines(index).stream().skip(1)
+                    .forEach(line -> duplicates.put(line.split("\t")[0], line.split("\t")[1]));
+        }
+        for (int k = 1; k <= 3; k++) {
+            for (String name : List.of("Example.java", "Example2.java")) {
+                String file = "variant-" + k + "/lampion/test/examples/" + name;
+                String written = duplicates.getOrDefault(file, file);
+                assertEquals(Files.readString(tempDir.resolve("all").resolve(file)),
+                        Files.readString(tempDir.resolve("distinct").resolve(written)));
+            }
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_VariantsToZip_ShouldPrefixEntries(@TempDir Path tempDir) throws IOException {
+        Path archive = tempDir.resolve("variants.zip");
+        createVariantEngine(archive.toString(), 2).run();
+
+        List<String> entries = new ArrayList<>();
+        try (var zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        }
+        assertEquals(List.of("variant-1/lampion/test/examples/Example.java","variant-1/lampion/test/examples/Example2.java",
+                "variant-2/lampion/test/examples/Example.java","variant-2/lampion/test/examples/Example2.java"), entries);
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_SniperPrinting_ShouldKeepUntouchedFormatting(@TempDir Path tempDir) throws IOException {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine testObject = new Engine("./src/test/resources/javafiles/javafiles_formatted",tempDir.toString(),registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        testObject.setSniperPrinting(true);
+
+        testObject.run();
+
+        String printed = Files.readString(tempDir.resolve("lampion/test/examples/Formatted.java"));
+        assertTrue(printed.contains("/*   A header comment   with    odd spacing */"));
+        assertTrue(printed.contains("private int    spaced   =   1;"));
+        assertTrue(printed.contains("if (true)"));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_DefaultPrinting_ShouldReformatEverything(@TempDir Path tempDir) throws IOException {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine testObject = new Engine("./src/test/resources/javafiles/javafiles_formatted",tempDir.toString(),registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+
+        testObject.run();
+
+        String printed = Files.readString(tempDir.resolve("lampion/test/examples/Formatted.java"));
+        assertFalse(printed.contains("private int    spaced   =   1;"));
+        assertTrue(printed.contains("if (true)"));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_SniperPrintingVariants_ShouldKeepUntouchedFormatting(@TempDir Path tempDir) throws IOException {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine testObject = new Engine("./src/test/resources/javafiles/javafiles_formatted",tempDir.toString(),registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        testObject.setSniperPrinting(true);
+        testObject.setVariants(2);
+
+        testObject.run();
+
+        for (int k = 1; k <= 2; k++) {
+            String printed = Files.readString(tempDir.resolve("variant-" + k + "/lampion/test/examples/Formatted.java"));
+            assertTrue(printed.contains("private int    spaced   =   1;"));
+            assertTrue(printed.contains("if (true)"));
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_DiffOutputToPatch_AppliedShouldEqualFullOutput(@TempDir Path tempDir) throws IOException {
+        Path patch = tempDir.resolve("output.patch");
+        createVariantEngine(tempDir.resolve("full").toString(), 1).run();
+        createVariantEngine(patch.toString(), 1).run();
+
+        int applied = PatchApplier.apply(patch, "./src/test/resources/javafiles/javafiles_perMethodEach",
+                tempDir.resolve("applied").toString());
+
+        assertEquals(2, applied);
+        for (String file : List.of("lampion/test/examples/Example.java", "lampion/test/examples/Example2.java")) {
+            assertEquals(Files.readString(tempDir.resolve("full").resolve(file)),
+                    Files.readString(tempDir.resolve("applied").resolve(file)));
+        }
+        String content = Files.readString(patch);
+        assertTrue(content.contains("--- a/example.java\n+++ b/lampion/test/examples/Example.java\n"));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_DiffOutputWithSniperPrinting_ShouldOnlyHoldChanges(@TempDir Path tempDir) throws IOException {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine testObject = new Engine("./src/test/resources/javafiles/javafiles_formatted",tempDir.toString(),registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        testObject.setSniperPrinting(true);
+        testObject.setDiffOutput(true);
+
+        testObject.run();
+
+        Path diff = tempDir.resolve("lampion/test/examples/Formatted.java.diff");
+        assertFalse(Files.exists(tempDir.resolve("lampion/test/examples/Formatted.java")));
+        String content = Files.readString(diff);
+        assertTrue(content.contains("+        if (true) {"));
+        // The untouched field is at most context, and the header comment too far away to be context
+        assertFalse(content.contains("-    private int"));
+        assertFalse(content.contains("A header comment"));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_DiffOutputNothingTransformed_ShouldWriteNoDiffs(@TempDir Path tempDir) throws IOException {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine testObject = new Engine("./src/test/resources/javafiles/javafiles_formatted",tempDir.toString(),registry);
+        testObject.setNumberOfTransformationsPerScope(0, Engine.TransformationScope.perMethodEach);
+        testObject.setSniperPrinting(true);
+        testObject.setDiffOutput(true);
+
+        testObject.run();
+
+        assertFalse(Files.exists(tempDir.resolve("lampion/test/examples/Formatted.java.diff")));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_TokenOutput_ShouldWriteSplitTokensPerFile(@TempDir Path tempDir) throws IOException {
+        Engine testObject = createVariantEngine(tempDir.resolve("output").toString(), 1);
+        testObject.setTokenOutput(tempDir.resolve("tokens.jsonl"));
+        testObject.setIdentifierSplitter(new IdentifierSplitter(IdentifierSplitter.Splitting.camelCase, true));
+
+        testObject.run();
+
+        List<String> lines = Files.readAllLines(tempDir.resolve("tokens.jsonl"));
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"file\":\"lampion/test/examples/Example.java\",\"tokens\":[\"package\""));
+        assertTrue(lines.get(1).contains("\"example\",\"2\""));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_TokenOutput_ShouldCollectTokensWhilePrinting(@TempDir Path tempDir) throws IOException {
+        Engine testObject = createVariantEngine(tempDir.resolve("output").toString(), 1);
+        testObject.setTokenOutput(tempDir.resolve("tokens.jsonl"));
+        Path recordingFile = tempDir.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.ciselab.lampion.Print").withoutThreshold();
+            recording.start();
+            testObject.run();
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> prints = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(e -> e.getEventType().getName().equals("com.github.ciselab.lampion.Print"))
+                .collect(Collectors.toList());
+        assertEquals(1, prints.size());
+        assertEquals("default", prints.get(0).getString("mode"));
+        assertTrue(Files.exists(tempDir.resolve("output/lampion/test/examples/Example.java")));
+        assertEquals(2, Files.readAllLines(tempDir.resolve("tokens.jsonl")).size());
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_TokenOutputOfVariants_ShouldHoldAllVariants(@TempDir Path tempDir) throws IOException {
+        Engine testObject = createVariantEngine(tempDir.resolve("output").toString(), 2);
+        testObject.setTokenOutput(tempDir.resolve("tokens.tok"));
+
+        testObject.run();
+
+        List<String> files = BinaryTokenReader.readAll(tempDir.resolve("tokens.tok")).stream()
+                .map(TokenizedFile::getFile).collect(Collectors.toList());
+        assertEquals(List.of("variant-1/lampion/test/examples/Example.java","variant-1/lampion/test/examples/Example2.java",
+                "variant-2/lampion/test/examples/Example.java","variant-2/lampion/test/examples/Example2.java"), files);
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Shards_MergedShouldEqualSingleRun(@TempDir Path tempDir) throws IOException {
+        // Base and Child are in different shards, and Child reads the field count it inherits from Base
+        Path input = Path.of("./src/test/resources/javafiles/javafiles_crossfile");
+        Engine single = createCrossFileEngine(input, tempDir.resolve("single"));
+        single.setManifestFile(tempDir.resolve("single.lman").toString());
+        single.run();
+
+        int shardCount = 2;
+        List<String> shardOutputs = new ArrayList<>();
+        List<Path> shardManifests = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard(i, shardCount);
+            Engine sharded = createCrossFileEngine(input, Path.of(shard.pathFor(tempDir.resolve("sharded").toString())));
+            sharded.setShard(shard);
+            sharded.setManifestFile(shard.pathFor(tempDir.resolve("sharded.lman").toString()));
+            sharded.run();
+            shardOutputs.add(shard.pathFor(tempDir.resolve("sharded").toString()));
+            shardManifests.add(Path.of(shard.pathFor(tempDir.resolve("sharded.lman").toString())));
+            assertFalse(sharded.getFinishedResults().isEmpty());
+        }
+        for (Path manifest : shardManifests) {
+            assertTrue(Files.exists(manifest));
+        }
+        ShardMerger.mergeOutputs(shardOutputs, tempDir.resolve("merged").toString());
+        long mergedRecords = ShardMerger.mergeManifests(shardManifests, tempDir.resolve("merged.lman"));
+
+        for (String file : List.of("lampion/test/crossfile/Base.java", "lampion/test/crossfile/Child.java")) {
+            assertEquals(Files.readString(tempDir.resolve("single").resolve(file)),
+                    Files.readString(tempDir.resolve("merged").resolve(file)));
+        }
+        assertEquals(ManifestReader.readAll(tempDir.resolve("single.lman")).size(), mergedRecords);
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Shard_ShouldOnlyWriteFilesOfShard(@TempDir Path tempDir) throws IOException {
+        Shard shard = new Shard(0, 2);
+        Engine testObject = createCrossFileEngine(Path.of("./src/test/resources/javafiles/javafiles_crossfile"), tempDir);
+        testObject.setShard(shard);
+
+        testObject.run();
+
+        assertEquals(shard.contains("Base.java"), Files.exists(tempDir.resolve("lampion/test/crossfile/Base.java")));
+        assertEquals(shard.contains("Child.java"), Files.exists(tempDir.resolve("lampion/test/crossfile/Child.java")));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_ShardedVariants_ShouldOnlyWriteFilesOfShardInEveryVariant(@TempDir Path tempDir) throws IOException {
+        Shard shard = new Shard(1, 2);
+        Engine testObject = createCrossFileEngine(Path.of("./src/test/resources/javafiles/javafiles_crossfile"), tempDir);
+        testObject.setShard(shard);
+        testObject.setVariants(2);
+
+        testObject.run();
+
+        for (int k = 1; k <= 2; k++) {
+            Path variant = tempDir.resolve("variant-" + k + "/lampion/test/crossfile");
+            assertEquals(shard.contains("Base.java"), Files.exists(variant.resolve("Base.java")));
+            assertEquals(shard.contains("Child.java"), Files.exists(variant.resolve("Child.java")));
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_ShardedVariantsToZip_ShouldOnlyHoldFilesOfShard(@TempDir Path tempDir) throws IOException {
+        Shard shard = new Shard(1, 2);
+        Path archive = tempDir.resolve("variants.zip");
+        Engine testObject = createCrossFileEngine(Path.of("./src/test/resources/javafiles/javafiles_crossfile"), archive);
+        testObject.setShard(shard);
+        testObject.setVariants(2);
+
+        testObject.run();
+
+        List<String> entries = new ArrayList<>();
+        try (var zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        }
+        String file = shard.contains("Child.java") ? "Child.java" : "Base.java";
+        assertEquals(List.of("variant-1/lampion/test/crossfile/" + file, "variant-2/lampion/test/crossfile/" + file),
+                entries);
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_FastParseProfile_ShouldEqualFullProfile(@TempDir Path tempDir) throws IOException {
+        for (ParseProfile profile : List.of(ParseProfile.fast, ParseProfile.full)) {
+            TransformerRegistry registry = new TransformerRegistry("Test");
+            registry.registerTransformer(new IfTrueTransformer());
+            Engine testObject = new Engine("./src/test/resources/javafiles/javafiles_simple",
+                    tempDir.resolve(profile.name()).toString(), registry);
+            testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+            testObject.setRemoveAllComments(true);
+            testObject.setParseProfile(profile);
+            testObject.run();
+        }
+
+        assertEquals(Files.readString(tempDir.resolve("full/lampion/test/examples/Example.java")),
+                Files.readString(tempDir.resolve("fast/lampion/test/examples/Example.java")));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_FastParseProfile_WithComments_ShouldWriteFilesWithoutComments(@TempDir Path tempDir) throws IOException {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        Engine testObject = new Engine("./src/test/resources/javafiles/javafiles_with_comments",
+                tempDir.toString(), registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        testObject.setRemoveAllComments(true);
+        testObject.setParseProfile(ParseProfile.fast);
+
+        testObject.run();
+
+        for (String file : List.of("BlocksExample.java", "InlineExample.java", "DocExample.java")) {
+            String written = Files.readString(tempDir.resolve("lampion/test/examples").resolve(file));
+            assertTrue(written.contains("if (true)"), file);
+            assertFalse(written.contains("//") || written.contains("/*"), file);
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_FlightRecording_ShouldRecordLampionEvents(@TempDir Path tempDir) throws IOException {
+        Engine testObject = createVariantEngine(tempDir.resolve("output").toString(), 1);
+        Path recordingFile = tempDir.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            for (String event : List.of("Transformation", "SnippetCompilation", "Parse", "Print")) {
+                recording.enable("com.github.ciselab.lampion." + event).withoutThreshold();
+            }
+            recording.start();
+            testObject.run();
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        Map<String,List<RecordedEvent>> perType = events.stream()
+                .collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+        assertEquals(1, perType.get("com.github.ciselab.lampion.Parse").size());
+        assertEquals(2, perType.get("com.github.ciselab.lampion.Print").get(0).getInt("types"));
+        assertFalse(perType.get("com.github.ciselab.lampion.SnippetCompilation").isEmpty());
+        List<RecordedEvent> transformations = perType.get("com.github.ciselab.lampion.Transformation");
+        assertFalse(transformations.isEmpty());
+        for (RecordedEvent transformation : transformations) {
+            assertTrue(Set.of("IfTrueTransformer", "RandomParameterNameTransformer")
+                    .contains(transformation.getString("transformer")));
+            assertTrue(transformation.getString("file").endsWith(".java"));
+            assertNotNull(transformation.getString("outcome"));
+        }
+    }
+
+    private List<String> runPerMethodEachAndGetAlteredElements(String pathToTestFileFolder){
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfFalseElseTransformer());
+        registry.registerTransformer(new RandomParameterNameTransformer());
+        registry.registerTransformer(new LambdaIdentityTransformer());
+
+        Engine testObject = new Engine(pathToTestFileFolder,outputTestFolder,registry);
+        testObject.setWriteJavaOutput(false);
+        testObject.setRandomSeed(2022);
+        testObject.setNumberOfTransformationsPerScope(3, Engine.TransformationScope.perMethodEach);
+
+        testObject.run();
+
+        return testObject.getFinishedResults().stream()
+                .map(r -> r.getTransformationName() + ":" + r.getTransformedElement().getParent(CtClass.class).toString())
+                .collect(Collectors.toList());
+    }
+
     @Tag("System")
     @Tag("File")
     @RepeatedTest(3)
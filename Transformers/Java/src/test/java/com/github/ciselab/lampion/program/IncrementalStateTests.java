@@ -0,0 +1,104 @@
+package com.github.ciselab.lampion.program;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalStateTests {
+
+    @Test
+    void testEntry_NullValues_ShouldThrowException(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> new IncrementalState.Entry(null, "a", "b", 1, Map.of(), List.of()));
+        assertThrows(UnsupportedOperationException.class,
+                () -> new IncrementalState.Entry("A.java", "a", "b", 1, null, List.of()));
+        assertThrows(UnsupportedOperationException.class,
+                () -> new IncrementalState.Entry("A.java", "a", "b", 1, Map.of(), null));
+    }
+
+    @Test
+    void testIsUnchanged_ShouldCompareContentConfigAndSeed(){
+        var entry = new IncrementalState.Entry("A.java", "content", "config", 5, Map.of(), List.of("A.java"));
+
+        assertTrue(entry.isUnchanged("content", "config", 5, Map.of()));
+        assertFalse(entry.isUnchanged("other", "config", 5, Map.of()));
+        assertFalse(entry.isUnchanged("content", "other", 5, Map.of()));
+        assertFalse(entry.isUnchanged("content", "config", 6, Map.of()));
+    }
+
+    @Test
+    void testIsUnchanged_ShouldCompareDependencies(){
+        var entry = new IncrementalState.Entry("A.java", "content", "config", 5, Map.of("B.java", "b"), List.of("A.java"));
+
+        assertTrue(entry.isUnchanged("content", "config", 5, Map.of("A.java", "content", "B.java", "b", "C.java", "c")));
+        assertFalse(entry.isUnchanged("content", "config", 5, Map.of("A.java", "content", "B.java", "other")));
+        assertFalse(entry.isUnchanged("content", "config", 5, Map.of("A.java", "content")));
+    }
+
+    @Test
+    void testHash_ShouldBeSha256(){
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                IncrementalState.hash(new byte[0]));
+        assertEquals(IncrementalState.hash("class A {}".getBytes(StandardCharsets.UTF_8)),
+                IncrementalState.hash("class A {}".getBytes(StandardCharsets.UTF_8)));
+        assertNotEquals(IncrementalState.hash("class A {}".getBytes(StandardCharsets.UTF_8)),
+                IncrementalState.hash("class B {}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testStateFileFor_ShouldBeNextToOutput(){
+        Path stateFile = IncrementalState.stateFileFor("./some/obfuscator_output/");
+
+        assertEquals("obfuscator_output" + IncrementalState.STATE_FILE_SUFFIX, stateFile.getFileName().toString());
+        assertEquals("some", stateFile.getParent().getFileName().toString());
+    }
+
+    @Tag("File")
+    @Test
+    void testWriteAndRead_ShouldReturnSameState(@TempDir Path tempDir) throws IOException {
+        IncrementalState state = new IncrementalState();
+        var first = new IncrementalState.Entry("b/B.java", "h1", "c", 1, Map.of("A.java", "h2", "b/C.java", "h3"),
+                List.of("lampion/B.java", "lampion/C.java"));
+        var second = new IncrementalState.Entry("A.java", "h2", "c", -3, Map.of(), List.of());
+        state.put(first);
+        state.put(second);
+        Path file = tempDir.resolve("out" + IncrementalState.STATE_FILE_SUFFIX);
+
+        state.writeTo(file);
+        IncrementalState read = IncrementalState.readFrom(file);
+
+        assertEquals(List.of("A.java", "b/B.java"), List.copyOf(read.getFiles()));
+        assertEquals(first, read.get("b/B.java"));
+        assertEquals(second, read.get("A.java"));
+    }
+
+    @Test
+    void testRemove_ShouldReturnEntry(){
+        IncrementalState state = new IncrementalState();
+        var entry = new IncrementalState.Entry("A.java", "h", "c", 1, Map.of(), List.of());
+        state.put(entry);
+
+        assertEquals(entry, state.remove("A.java"));
+        assertNull(state.remove("A.java"));
+        assertEquals(Set.of(), state.getFiles());
+    }
+
+    @Tag("File")
+    @Test
+    void testReadFrom_UnknownHeader_ShouldThrowException(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("state");
+        Files.writeString(file, "something else\n");
+
+        assertThrows(UnsupportedOperationException.class, () -> IncrementalState.readFrom(file));
+    }
+}
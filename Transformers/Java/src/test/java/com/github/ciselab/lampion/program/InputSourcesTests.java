@@ -0,0 +1,128 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.TransformerRegistry;
+import com.github.ciselab.lampion.transformations.transformers.IfTrueTransformer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InputSourcesTests {
+
+    private static final String perMethodEachFolder = "./src/test/resources/javafiles/javafiles_perMethodEach";
+
+    @Test
+    void testIsArchive_shouldOnlyAcceptZipAndJar(){
+        assertTrue(InputSources.isArchive("./corpus.zip"));
+        assertTrue(InputSources.isArchive("./corpus.JAR"));
+        assertFalse(InputSources.isArchive("./corpus"));
+        assertFalse(InputSources.isArchive("./corpus.tar.gz"));
+    }
+
+    @Tag("File")
+    @Test
+    void testAddTo_zipArchive_shouldReadAllJavaFiles(@TempDir Path tempDir) throws IOException {
+        Path archive = createExampleArchive(tempDir);
+
+        Launcher launcher = new Launcher();
+        int added = InputSources.addTo(launcher, archive.toString(), null);
+        CtModel model = launcher.buildModel();
+
+        assertEquals(2, added);
+        assertEquals(List.of("lampion.test.examples.Example", "lampion.test.examples.Example2"), typeNames(model));
+    }
+
+    @Tag("File")
+    @Test
+    void testAddTo_zipArchiveWithFilter_shouldOnlyReadMatchingFiles(@TempDir Path tempDir) throws IOException {
+        Path archive = createExampleArchive(tempDir);
+
+        Launcher launcher = new Launcher();
+        int added = InputSources.addTo(launcher, archive.toString(), "src/**");
+        CtModel model = launcher.buildModel();
+
+        assertEquals(1, added);
+        assertEquals(List.of("lampion.test.examples.Example2"), typeNames(model));
+    }
+
+    @Tag("File")
+    @Test
+    void testAddTo_directoryWithFilter_shouldOnlyReadMatchingFiles() throws IOException {
+        Launcher launcher = new Launcher();
+        int added = InputSources.addTo(launcher, perMethodEachFolder, "example2.java");
+        CtModel model = launcher.buildModel();
+
+        assertEquals(1, added);
+        assertEquals(List.of("lampion.test.examples.Example2"), typeNames(model));
+    }
+
+    @Tag("File")
+    @Test
+    void testAddTo_missingArchive_ThrowsIOException(@TempDir Path tempDir) {
+        assertThrows(IOException.class,
+                () -> InputSources.addTo(new Launcher(), tempDir.resolve("missing.zip").toString(), null));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testEngine_zipInput_ShouldTransformAndPrint(@TempDir Path tempDir) throws IOException {
+        Path archive = createExampleArchive(tempDir);
+        Path output = tempDir.resolve("output");
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+
+        Engine testObject = new Engine(archive.toString(), output.toString(), registry);
+        testObject.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perClassEach);
+        testObject.run();
+
+        assertEquals(2, testObject.getFinishedResults().size());
+        assertTrue(Files.readString(output.resolve("lampion/test/examples/Example2.java")).contains("if (true)"));
+    }
+
+    @Tag("File")
+    @Test
+    void testAnalysis_zipInput_ShouldUsePathsWithinArchive(@TempDir Path tempDir) throws IOException {
+        Path archive = createExampleArchive(tempDir);
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+
+        ApplicabilityAnalysis analysis = new ApplicabilityAnalysis(archive.toString(), tempDir.resolve("analysis").toString(), registry);
+        analysis.run();
+
+        assertTrue(analysis.getAnalyzedFiles().contains("src/example2.java"));
+        assertTrue(analysis.getAnalyzedFiles().contains("example.java"));
+    }
+
+    private static Path createExampleArchive(Path directory) throws IOException {
+        Path archive = directory.resolve("corpus.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("example.java"));
+            zip.write(Files.readAllBytes(Path.of(perMethodEachFolder, "example.java")));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("src/example2.java"));
+            zip.write(Files.readAllBytes(Path.of(perMethodEachFolder, "example2.java")));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("README.md"));
+            zip.write("not java".getBytes());
+            zip.closeEntry();
+        }
+        return archive;
+    }
+
+    private static List<String> typeNames(CtModel model) {
+        return model.getAllTypes().stream().map(CtType::getQualifiedName).sorted().collect(Collectors.toList());
+    }
+}
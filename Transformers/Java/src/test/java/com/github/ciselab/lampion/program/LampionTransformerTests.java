@@ -0,0 +1,135 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.AstFingerprint;
+import com.github.ciselab.lampion.transformations.TransformationResult;
+import com.github.ciselab.lampion.transformations.TransformerRegistry;
+import com.github.ciselab.lampion.transformations.transformers.IfTrueTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomInlineCommentTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomParameterNameTransformer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LampionTransformerTests {
+
+    private static final String EXAMPLE = "package lampion.test;\n"
+            + "public class Example {\n"
+            + "    public int sum(int a, int b) {\n"
+            + "        return a + b;\n"
+            + "    }\n"
+            + "    public int twice(int a) {\n"
+            + "        return sum(a, a);\n"
+            + "    }\n"
+            + "}\n";
+
+    private static TransformConfig createConfig() {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        registry.registerTransformer(new RandomInlineCommentTransformer());
+        registry.registerTransformer(new RandomParameterNameTransformer());
+        TransformConfig config = new TransformConfig(registry);
+        config.setNumberOfTransformationsPerScope(2, Engine.TransformationScope.perMethodEach);
+        return config;
+    }
+
+    @Test
+    void testTransform_ShouldAlterSource() {
+        TransformedSource result = LampionTransformer.transform(EXAMPLE, createConfig(), 2022);
+
+        assertEquals(SourceUnit.DEFAULT_NAME, result.getName());
+        assertFalse(result.getResults().isEmpty());
+        assertNotEquals(EXAMPLE, result.getSource());
+        assertTrue(result.getSource().contains("class Example"));
+    }
+
+    @Test
+    void testTransform_SameSeed_ShouldBeReproducible() {
+        TransformConfig config = createConfig();
+
+        String first = LampionTransformer.transform(EXAMPLE, config, 2022).getSource();
+        String second = LampionTransformer.transform(EXAMPLE, config, 2022).getSource();
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    void testTransform_Fingerprint_ShouldOnlyMatchForSameOutput() {
+        TransformConfig config = createConfig();
+
+        TransformedSource first = LampionTransformer.transform(EXAMPLE, config, 2022);
+        TransformedSource second = LampionTransformer.transform(EXAMPLE, config, 2022);
+        TransformedSource other = LampionTransformer.transform(EXAMPLE, config, 2023);
+
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertNotEquals(first.getSource(), other.getSource());
+        assertNotEquals(first.getFingerprint(), other.getFingerprint());
+    }
+
+    @Test
+    void testTransform_NoTypes_ShouldReturnSource() {
+        String source = "// Nothing to see here\n";
+
+        TransformedSource result = LampionTransformer.transform(source, createConfig(), 2022);
+
+        assertEquals(source, result.getSource());
+        assertTrue(result.getResults().isEmpty());
+        assertEquals(AstFingerprint.EMPTY, result.getFingerprint());
+    }
+
+    @Test
+    void testTransform_Null_ShouldThrowException() {
+        assertThrows(UnsupportedOperationException.class,
+                () -> LampionTransformer.transform((String) null, createConfig(), 2022));
+        assertThrows(UnsupportedOperationException.class,
+                () -> LampionTransformer.transform(EXAMPLE, null, 2022));
+        assertThrows(UnsupportedOperationException.class, () -> new SourceUnit(" ", EXAMPLE));
+    }
+
+    @Test
+    void testTransformAll_Parallel_ShouldEqualSequential() {
+        TransformConfig config = createConfig();
+        List<SourceUnit> units = IntStream.range(0, 8)
+                .mapToObj(i -> new SourceUnit("Example" + i + ".java", EXAMPLE.replace("Example", "Example" + i)))
+                .collect(Collectors.toList());
+
+        List<String> sequential = LampionTransformer.transformAll(units.stream(), config, 2022)
+                .map(TransformedSource::getSource).collect(Collectors.toList());
+        List<String> parallel = LampionTransformer.transformAll(units.parallelStream(), config, 2022)
+                .map(TransformedSource::getSource).collect(Collectors.toList());
+
+        assertEquals(sequential, parallel);
+        assertEquals(8, parallel.size());
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testTransform_EachScope_ShouldEqualEngineRun(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input/lampion/test/Example.java");
+        Files.createDirectories(input.getParent());
+        Files.writeString(input, EXAMPLE);
+        TransformConfig config = createConfig();
+        Engine engine = config.createEngine(2022);
+        engine.codeDirectory = tempDir.resolve("input").toString();
+        engine.outputDirectory = tempDir.resolve("output").toString();
+
+        engine.run();
+        TransformedSource result = LampionTransformer.transform(EXAMPLE, config, 2022);
+
+        assertEquals(names(engine.getFinishedResults()), names(result.getResults()));
+        assertEquals(Files.readString(tempDir.resolve("output/lampion/test/Example.java")), result.getSource());
+    }
+
+    private static List<String> names(List<TransformationResult> results) {
+        return results.stream().map(TransformationResult::getTransformationName).collect(Collectors.toList());
+    }
+}
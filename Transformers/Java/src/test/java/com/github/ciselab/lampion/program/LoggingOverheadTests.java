@@ -0,0 +1,149 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.SimpleTransformationResult;
+import com.github.ciselab.lampion.transformations.TransformationCategory;
+import com.github.ciselab.lampion.transformations.TransformationResult;
+import com.github.ciselab.lampion.transformations.TransformerRegistry;
+import com.github.ciselab.lampion.transformations.transformers.IfTrueTransformer;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtMethod;
+import spoon.support.compiler.VirtualFile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the logging of every result in the loop of the engine against building the message eagerly,
+ * as it was done before, and measures the overhead of the logging configuration shipped in log4j2.xml
+ * on applying a plan. Run with "mvn test -Pbenchmark".
+ */
+@Tag("Slow")
+public class LoggingOverheadTests {
+    private static Logger logger = LogManager.getLogger(LoggingOverheadTests.class);
+
+    private static final int ROUNDS = 20;
+    // The overhead the shipped logging configuration may add to applying a plan, against no transformation logging.
+    // It should only check the level once per attempt, so the bound is mostly the noise of shared machines
+    private static final double MAX_SHIPPED_OVERHEAD = 0.15;
+
+    @Test
+    void benchmarkLoggingOfResults_DebugDisabled_ShouldBeCheaperThanEager(){
+        List<TransformationResult> results = createResults(200);
+        Engine engine = new Engine("./input", "./output", new TransformerRegistry("Benchmark"));
+        Logger eagerLogger = LogManager.getLogger(Engine.class);
+        Level before = eagerLogger.getLevel();
+        Configurator.setLevel(Engine.class.getName(), Level.INFO);
+        try {
+            // Warm up both, so the JIT does not count into the first measurement
+            long eager = measure(() -> logEagerly(eagerLogger, results));
+            long lazy = measure(() -> results.forEach(engine::countAndLogResult));
+            eager = measure(() -> logEagerly(eagerLogger, results));
+            lazy = measure(() -> results.forEach(engine::countAndLogResult));
+
+            logger.info("Logging {} results: eager {}ms, lazy {}ms",
+                    ROUNDS * results.size(), eager / 1_000_000, lazy / 1_000_000);
+            // Only a loose bound, the timings of shared machines vary too much for a factor
+            assertTrue(lazy < eager, "lazy logging took " + lazy + "ns, eager logging " + eager + "ns");
+        } finally {
+            Configurator.setLevel(Engine.class.getName(), before);
+        }
+    }
+
+    @Test
+    void benchmarkExecutePlan_ShippedConfiguration_ShouldHaveLowOverhead(){
+        Logger transformationLogger = LogManager.getLogger(Engine.TRANSFORMATION_LOGGER);
+        Level shipped = transformationLogger.getLevel();
+        List<Level> levels = List.of(shipped, Level.OFF, Level.DEBUG);
+        Map<Level,Long> fastest = new HashMap<>();
+        try {
+            // The levels take turns, so that warming up and the state of the machine affect all of them alike.
+            // The first rounds only warm up the JIT
+            for (int round = 0; round < ROUNDS; round++) {
+                for (Level level : levels) {
+                    long time = measureExecutePlan(level);
+                    if (round >= ROUNDS / 4) {
+                        fastest.merge(level, time, Math::min);
+                    }
+                }
+            }
+        } finally {
+            Configurator.setLevel(Engine.TRANSFORMATION_LOGGER, shipped);
+        }
+        long withShipped = fastest.get(shipped);
+        long withoutLogging = fastest.get(Level.OFF);
+
+        double overhead = (double) (withShipped - withoutLogging) / withoutLogging;
+        logger.info("Applying a plan: without transformation logging {}ms, shipped ({}) {}ms, debug {}ms",
+                withoutLogging / 1_000_000, shipped, withShipped / 1_000_000, fastest.get(Level.DEBUG) / 1_000_000);
+        assertTrue(overhead < MAX_SHIPPED_OVERHEAD,
+                "the shipped logging configuration added " + Math.round(overhead * 100) + "% to applying a plan");
+    }
+
+    /**
+     * Applies a plan to a freshly read model, with the transformation logger set to the given level.
+     * @return the time of applying the plan in nanoseconds, reading the model is not measured
+     */
+    private static long measureExecutePlan(Level level) {
+        TransformerRegistry registry = new TransformerRegistry("Benchmark");
+        IfTrueTransformer transformer = new IfTrueTransformer();
+        // Compiling the snippets takes far longer than the loop around it, which would hide its overhead
+        transformer.setTryingToCompile(false);
+        registry.registerTransformer(transformer);
+        Launcher launcher = new Launcher();
+        launcher.addInputResource(new VirtualFile(createCode(200)));
+        CtModel model = launcher.buildModel();
+        Engine engine = new Engine("./input", "./output", registry);
+        engine.setNumberOfTransformationsPerScope(2, Engine.TransformationScope.perMethodEach);
+        Configurator.setLevel(Engine.TRANSFORMATION_LOGGER, level);
+
+        long start = System.nanoTime();
+        engine.transformInMemory(model);
+        return System.nanoTime() - start;
+    }
+
+    private static void logEagerly(Logger logger, List<TransformationResult> results) {
+        for (TransformationResult result : results) {
+            logger.debug("Successfully applied " + result.getTransformationName() +
+                    " to Element(Hash):" + result.getTransformedElement().toString().hashCode());
+        }
+    }
+
+    private static long measure(Runnable loop) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            loop.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String createCode(int methods) {
+        StringBuilder code = new StringBuilder("class Benchmark {");
+        for (int i = 0; i < methods; i++) {
+            code.append("int method").append(i).append("(int a, int b) { int c = a + b * ").append(i)
+                    .append("; if (c > a) { return c - b; } else { return a + ").append(i).append("; } }");
+        }
+        return code.append("}").toString();
+    }
+
+    private static List<TransformationResult> createResults(int methods) {
+        CtClass<?> benchmark = Launcher.parseClass(createCode(methods));
+        List<TransformationResult> results = new ArrayList<>();
+        for (CtMethod<?> method : benchmark.getMethods()) {
+            results.add(new SimpleTransformationResult("Benchmark", method, Set.of(TransformationCategory.SMELL)));
+        }
+        return results;
+    }
+}
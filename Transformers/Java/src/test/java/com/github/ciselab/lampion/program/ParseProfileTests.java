@@ -0,0 +1,51 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.Transformer;
+import com.github.ciselab.lampion.transformations.transformers.IfTrueTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomInlineCommentTransformer;
+import org.junit.jupiter.api.Test;
+import spoon.Launcher;
+import spoon.compiler.Environment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParseProfileTests {
+
+    private static final List<Transformer> NO_COMMENT_TRANSFORMERS = List.of(new IfTrueTransformer());
+
+    @Test
+    void testConfigure_Full_ShouldKeepComments() {
+        Environment environment = new Launcher().getEnvironment();
+
+        assertTrue(ParseProfile.full.configure(environment, NO_COMMENT_TRANSFORMERS, true));
+        assertTrue(environment.isCommentsEnabled());
+    }
+
+    @Test
+    void testConfigure_FastAndRemovingComments_ShouldNotParseComments() {
+        Environment environment = new Launcher().getEnvironment();
+
+        assertFalse(ParseProfile.fast.configure(environment, NO_COMMENT_TRANSFORMERS, true));
+        assertFalse(environment.isCommentsEnabled());
+        assertTrue(environment.getNoClasspath());
+    }
+
+    @Test
+    void testConfigure_FastWithCommentTransformer_ShouldParseComments() {
+        Environment environment = new Launcher().getEnvironment();
+
+        assertTrue(ParseProfile.fast.configure(environment,
+                List.of(new IfTrueTransformer(), new RandomInlineCommentTransformer()), true));
+        assertTrue(environment.isCommentsEnabled());
+    }
+
+    @Test
+    void testConfigure_FastKeepingComments_ShouldParseComments() {
+        Environment environment = new Launcher().getEnvironment();
+
+        assertTrue(ParseProfile.fast.configure(environment, NO_COMMENT_TRANSFORMERS, false));
+        assertTrue(environment.isCommentsEnabled());
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.ciselab.lampion.program;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardMergerTests {
+
+    @Tag("File")
+    @Test
+    void testMergeOutputs_ShouldCombineAllFiles(@TempDir Path tempDir) throws IOException {
+        Files.createDirectories(tempDir.resolve("first/a"));
+        Files.createDirectories(tempDir.resolve("second/b"));
+        Files.writeString(tempDir.resolve("first/a/A.java"), "class A {}");
+        Files.writeString(tempDir.resolve("second/b/B.java"), "class B {}");
+
+        int merged = ShardMerger.mergeOutputs(
+                List.of(tempDir.resolve("first").toString(), tempDir.resolve("second").toString()),
+                tempDir.resolve("merged").toString());
+
+        assertEquals(2, merged);
+        assertEquals("class A {}", Files.readString(tempDir.resolve("merged/a/A.java")));
+        assertEquals("class B {}", Files.readString(tempDir.resolve("merged/b/B.java")));
+    }
+
+    @Tag("File")
+    @Test
+    void testMergeOutputs_OverlappingShards_ThrowsException(@TempDir Path tempDir) throws IOException {
+        for (String shard : List.of("first", "second")) {
+            Files.createDirectories(tempDir.resolve(shard));
+            Files.writeString(tempDir.resolve(shard).resolve("A.java"), "class A {}");
+        }
+
+        assertThrows(UnsupportedOperationException.class, () -> ShardMerger.mergeOutputs(
+                List.of(tempDir.resolve("first").toString(), tempDir.resolve("second").toString()),
+                tempDir.resolve("merged").toString()));
+    }
+
+    @Tag("File")
+    @Test
+    void testMergeApplicability_ShouldSortFilesAndSumTransformers(@TempDir Path tempDir) throws IOException {
+        writeApplicability(tempDir.resolve("first"), List.of("b/B.java,0,IfTrueTransformer,true,2"), "0,IfTrueTransformer,1,1,2");
+        writeApplicability(tempDir.resolve("second"), List.of("\"a,1.java\",0,IfTrueTransformer,false,0"), "0,IfTrueTransformer,1,0,0");
+
+        ShardMerger.mergeApplicability(List.of(tempDir.resolve("first"), tempDir.resolve("second")), tempDir.resolve("merged"));
+
+        assertEquals(List.of("file,transformerIndex,transformer,applicable,candidates",
+                "\"a,1.java\",0,IfTrueTransformer,false,0", "b/B.java,0,IfTrueTransformer,true,2"),
+                Files.readAllLines(tempDir.resolve("merged").resolve(ApplicabilityAnalysis.PER_FILE_CSV)));
+        assertEquals(List.of("transformerIndex,transformer,files,applicableFiles,candidates", "0,IfTrueTransformer,2,1,2"),
+                Files.readAllLines(tempDir.resolve("merged").resolve(ApplicabilityAnalysis.PER_TRANSFORMER_CSV)));
+    }
+
+    @Tag("File")
+    @Test
+    void testMergeApplicability_OtherTransformers_ThrowsException(@TempDir Path tempDir) throws IOException {
+        writeApplicability(tempDir.resolve("first"), List.of(), "0,IfTrueTransformer,1,1,2");
+        writeApplicability(tempDir.resolve("second"), List.of(), "0,LambdaIdentityTransformer,1,0,0");
+
+        assertThrows(UnsupportedOperationException.class, () -> ShardMerger.mergeApplicability(
+                List.of(tempDir.resolve("first"), tempDir.resolve("second")), tempDir.resolve("merged")));
+    }
+
+    @Tag("File")
+    @Test
+    void testMergeTokens_DifferentFormats_ThrowsException(@TempDir Path tempDir) {
+        assertThrows(UnsupportedOperationException.class, () -> ShardMerger.mergeTokens(
+                List.of(tempDir.resolve("tokens_shard-0-of-2.tok")), tempDir.resolve("tokens.jsonl")));
+    }
+
+    private static void writeApplicability(Path directory, List<String> perFile, String perTransformer) throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(ApplicabilityAnalysis.PER_FILE_CSV),
+                concat("file,transformerIndex,transformer,applicable,candidates", perFile), StandardCharsets.UTF_8);
+        Files.write(directory.resolve(ApplicabilityAnalysis.PER_TRANSFORMER_CSV),
+                concat("transformerIndex,transformer,files,applicableFiles,candidates", List.of(perTransformer)),
+                StandardCharsets.UTF_8);
+    }
+
+    private static List<String> concat(String header, List<String> lines) {
+        List<String> all = new ArrayList<>(List.of(header));
+        all.addAll(lines);
+        return all;
+    }
+}
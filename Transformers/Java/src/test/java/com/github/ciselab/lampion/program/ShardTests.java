@@ -0,0 +1,61 @@
+package com.github.ciselab.lampion.program;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardTests {
+
+    @Test
+    void testConstructor_InvalidValues_ThrowsException(){
+        assertThrows(UnsupportedOperationException.class, () -> new Shard(0, 0));
+        assertThrows(UnsupportedOperationException.class, () -> new Shard(-1, 2));
+        assertThrows(UnsupportedOperationException.class, () -> new Shard(2, 2));
+    }
+
+    @Test
+    void testContains_EveryFileIsInExactlyOneShard(){
+        int count = 4;
+        int[] filesPerShard = new int[count];
+        for (int f = 0; f < 200; f++) {
+            String file = "lampion/test/File" + f + ".java";
+            int containing = 0;
+            for (int i = 0; i < count; i++) {
+                if (new Shard(i, count).contains(file)) {
+                    containing++;
+                    filesPerShard[i]++;
+                }
+            }
+            assertEquals(1, containing);
+        }
+        // Not a strict test of the distribution, but none of the shards should be (almost) empty
+        for (int files : filesPerShard) {
+            assertTrue(files > 20);
+        }
+    }
+
+    @Test
+    void testContains_SeparatorsDoNotMatter(){
+        for (int i = 0; i < 3; i++) {
+            Shard shard = new Shard(i, 3);
+            assertEquals(shard.contains("a/b/C.java"), shard.contains("a\\b\\C.java"));
+        }
+    }
+
+    @Test
+    void testContains_All_ContainsEverything(){
+        assertTrue(Shard.ALL.contains("a/b/C.java"));
+        assertTrue(Shard.ALL.isAll());
+    }
+
+    @Test
+    void testPathFor_ShouldPutSuffixBeforeExtension(){
+        Shard shard = new Shard(1, 4);
+
+        assertEquals("./output_shard-1-of-4", shard.pathFor("./output"));
+        assertEquals("./output_shard-1-of-4.zip", shard.pathFor("./output.zip"));
+        assertEquals("./output_shard-1-of-4.tar.gz", shard.pathFor("./output.tar.gz"));
+        assertEquals("./out.d/manifest_shard-1-of-4.lman", shard.pathFor("./out.d/manifest.lman"));
+        assertEquals("./output", Shard.ALL.pathFor("./output"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.TransformerRegistry;
+import com.github.ciselab.lampion.transformations.transformers.AddNeutralElementTransformer;
+import com.github.ciselab.lampion.transformations.transformers.IfTrueTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomInlineCommentTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomParameterNameTransformer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StagedPipelineTests {
+
+    private static final String INPUT = "./src/test/resources/javafiles/javafiles_perMethodEach";
+    private static final String EXAMPLE = "lampion/test/examples/Example.java";
+    private static final String EXAMPLE2 = "lampion/test/examples/Example2.java";
+    private static final String CROSSFILE_INPUT = "./src/test/resources/javafiles/javafiles_crossfile";
+
+    private static Engine createEngine(String output, Engine.TransformationScope scope) {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        registry.registerTransformer(new RandomInlineCommentTransformer());
+        registry.registerTransformer(new RandomParameterNameTransformer());
+        Engine engine = new Engine(INPUT, output, registry);
+        engine.setNumberOfTransformationsPerScope(2, scope);
+        engine.setRandomSeed(2022);
+        return engine;
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_Pipelined_ShouldEqualRunInPhases(@TempDir Path tempDir) throws IOException {
+        createEngine(tempDir.resolve("phases").toString(), Engine.TransformationScope.perMethodEach).run();
+        Engine pipelined = createEngine(tempDir.resolve("pipelined").toString(), Engine.TransformationScope.perMethodEach);
+        pipelined.setPipelineDepth(2);
+
+        pipelined.run();
+
+        for (String file : new String[]{EXAMPLE, EXAMPLE2}) {
+            assertEquals(Files.readString(tempDir.resolve("phases").resolve(file)),
+                    Files.readString(tempDir.resolve("pipelined").resolve(file)));
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_PipelinedCrossFile_ShouldEqualRunInPhases(@TempDir Path tempDir) throws IOException {
+        // Child only reads the field count it inherits from Base, which only resolves if Base is read as well
+        for (String output : new String[]{"phases", "pipelined"}) {
+            TransformerRegistry registry = new TransformerRegistry("Test");
+            registry.registerTransformer(new AddNeutralElementTransformer());
+            Engine engine = new Engine(CROSSFILE_INPUT, tempDir.resolve(output).toString(), registry);
+            engine.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+            engine.setRandomSeed(7);
+            if (output.equals("pipelined")) {
+                engine.setPipelineDepth(4);
+            }
+            engine.run();
+        }
+
+        for (String file : new String[]{"lampion/test/crossfile/Base.java", "lampion/test/crossfile/Child.java"}) {
+            assertEquals(Files.readString(tempDir.resolve("phases").resolve(file)),
+                    Files.readString(tempDir.resolve("pipelined").resolve(file)));
+        }
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_PipelinedToZip_ShouldEqualRunInPhases(@TempDir Path tempDir) throws IOException {
+        createEngine(tempDir.resolve("phases.zip").toString(), Engine.TransformationScope.perMethodEach).run();
+        Engine pipelined = createEngine(tempDir.resolve("pipelined.zip").toString(), Engine.TransformationScope.perMethodEach);
+        pipelined.setPipelineDepth(4);
+
+        pipelined.run();
+
+        assertArrayEquals(Files.readAllBytes(tempDir.resolve("phases.zip")),
+                Files.readAllBytes(tempDir.resolve("pipelined.zip")));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_ShouldReportEveryStage(@TempDir Path tempDir) {
+        Engine engine = createEngine(tempDir.toString(), Engine.TransformationScope.perClassEach);
+        StagedPipeline testObject = new StagedPipeline(engine, null, Shard.ALL, true, 1);
+
+        testObject.run();
+
+        assertEquals(4, testObject.getStages().size());
+        for (StagedPipeline.Stage stage : testObject.getStages()) {
+            assertEquals(2, stage.getFiles(), stage.getName());
+            assertTrue(stage.getMaxQueued() <= 1, stage.getName());
+        }
+        // Neither the index nor the read stage have a queue in front
+        assertEquals(-1, testObject.getStages().get(0).getMaxQueued());
+        assertEquals(-1, testObject.getStages().get(1).getMaxQueued());
+        assertTrue(testObject.getTransformations() > 0);
+        assertNotNull(testObject.getBottleneck());
+        assertNotEquals("index", testObject.getBottleneck().getName());
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_FilteredAndSharded_ShouldOnlyWriteMatchingFiles(@TempDir Path tempDir) {
+        Engine engine = createEngine(tempDir.toString(), Engine.TransformationScope.perClassEach);
+        StagedPipeline testObject = new StagedPipeline(engine, "example2.java", Shard.ALL, true, 4);
+
+        testObject.run();
+
+        assertTrue(Files.exists(tempDir.resolve(EXAMPLE2)));
+        assertFalse(Files.exists(tempDir.resolve(EXAMPLE)));
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_FailingWrites_ShouldAbortWithoutHanging(@TempDir Path tempDir) throws IOException {
+        // The package directories cannot be created, as a file is in the way
+        Files.writeString(tempDir.resolve("lampion"), "not a directory");
+        Engine engine = createEngine(tempDir.toString(), Engine.TransformationScope.perClassEach);
+        StagedPipeline testObject = new StagedPipeline(engine, null, Shard.ALL, true, 1);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(60), testObject::run);
+
+        assertEquals(0, testObject.getStages().get(3).getFiles());
+    }
+
+    @Tag("System")
+    @Tag("File")
+    @Test
+    void testRun_PipelineWithGlobalScope_ShouldRunInPhases(@TempDir Path tempDir) {
+        Engine engine = createEngine(tempDir.toString(), Engine.TransformationScope.global);
+        engine.setPipelineDepth(2);
+
+        engine.run();
+
+        // Only runs in phases keep their results
+        assertFalse(engine.getFinishedResults().isEmpty());
+        assertTrue(Files.exists(tempDir.resolve(EXAMPLE)));
+    }
+
+    @Test
+    void testSetPipelineDepth_Negative_ShouldThrowException() {
+        Engine engine = createEngine("./output", Engine.TransformationScope.perClassEach);
+
+        assertThrows(UnsupportedOperationException.class, () -> engine.setPipelineDepth(-1));
+    }
+}
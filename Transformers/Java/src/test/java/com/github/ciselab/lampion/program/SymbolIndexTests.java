@@ -0,0 +1,96 @@
+package com.github.ciselab.lampion.program;
+
+import org.junit.jupiter.api.Test;
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.code.CtFieldRead;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
+import spoon.support.compiler.VirtualFile;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymbolIndexTests {
+
+    private static final String BASE = "package lampion.test.crossfile;\n"
+            + "public class Base {\n"
+            + "    protected int count;\n"
+            + "    static { System.out.println(\"loaded\"); }\n"
+            + "    public int increment(int step) {\n"
+            + "        count = count + step;\n"
+            + "        return count;\n"
+            + "    }\n"
+            + "    public abstract static class Inner { abstract void run(); void stop() { run(); } }\n"
+            + "}\n";
+    private static final String CHILD = "package lampion.test.crossfile;\n"
+            + "public class Child extends Base {\n"
+            + "    public int current() {\n"
+            + "        return count;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static SymbolIndex createIndex() {
+        SymbolIndex index = new SymbolIndex(new Launcher().getEnvironment().getComplianceLevel());
+        index.add(new SourceUnit("lampion/test/crossfile/Base.java", BASE));
+        index.add(new SourceUnit("lampion/test/crossfile/Child.java", CHILD));
+        return index;
+    }
+
+    private static CtModel parseChild(SymbolIndex index) {
+        Launcher launcher = index.createLauncher();
+        launcher.getEnvironment().setNoClasspath(true);
+        launcher.addInputResource(new VirtualFile(CHILD, "lampion/test/crossfile/Child.java"));
+        return launcher.buildModel();
+    }
+
+    @Test
+    void testAdd_ShouldIndexToplevelTypes(){
+        assertEquals(2, createIndex().size());
+    }
+
+    @Test
+    void testAdd_EmptyFile_ShouldIndexNothing(){
+        SymbolIndex testObject = new SymbolIndex(8);
+
+        testObject.add(new SourceUnit("package-info.java", "package lampion.test;\n"));
+
+        assertEquals(0, testObject.size());
+    }
+
+    @Test
+    void testCreateLauncher_ShouldResolveSymbolsOfIndexedFiles(){
+        CtModel model = parseChild(createIndex());
+
+        List<CtFieldRead<?>> reads = model.getElements(e -> e instanceof CtFieldRead);
+        assertEquals(1, reads.size());
+        assertEquals("int", reads.get(0).getType().getSimpleName());
+        assertEquals("lampion.test.crossfile.Base", reads.get(0).getVariable().getDeclaringType().getQualifiedName());
+    }
+
+    @Test
+    void testCreateLauncher_ShouldOnlyAddDeclarationsOfOtherFiles(){
+        CtModel model = parseChild(createIndex());
+
+        CtType<?> base = model.getAllTypes().stream()
+                .filter(t -> t.getSimpleName().equals("Base")).findFirst().orElseThrow();
+        // The stub of Base is not named like its file, so it is never mistaken for it
+        assertNotEquals("lampion/test/crossfile/Base.java", InputSources.relativePathOf(base.getPosition().getFile(), "."));
+        for (CtMethod<?> method : base.getElements((CtMethod<?> m) -> m.getBody() != null)) {
+            assertTrue(method.getBody().getStatements().isEmpty(), method.getSimpleName());
+        }
+        assertNotNull(base.getNestedType("Inner"));
+    }
+
+    @Test
+    void testCreateLauncher_WithoutIndexedTypes_ShouldParseLikeLauncher(){
+        SymbolIndex testObject = new SymbolIndex(8);
+
+        CtModel model = parseChild(testObject);
+
+        // Without Base, the field is only guessed from its use
+        assertEquals(1, model.getAllTypes().size());
+        assertEquals("Child", model.getAllTypes().iterator().next().getSimpleName());
+    }
+}
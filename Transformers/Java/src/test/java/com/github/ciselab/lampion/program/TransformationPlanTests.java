@@ -0,0 +1,85 @@
+package com.github.ciselab.lampion.program;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransformationPlanTests {
+
+    @Test
+    void testConstructor_nullScope_ThrowsException(){
+        assertThrows(UnsupportedOperationException.class, () -> new TransformationPlan(null));
+    }
+
+    @Test
+    void testEntry_negativeCount_ThrowsException(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> new TransformationPlan.Entry("lampion.A", TransformationPlan.TargetKind.CLASS, 0, 0, "IfTrueTransformer", -1, 5));
+    }
+
+    @Test
+    void testEntry_nullSourceKey_ThrowsException(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> new TransformationPlan.Entry(null, TransformationPlan.TargetKind.CLASS, 0, 0, "IfTrueTransformer", 1, 5));
+    }
+
+    @Test
+    void testGetEntriesPerSource_shouldBeSortedBySourceAndKeepOrderWithin(){
+        TransformationPlan plan = new TransformationPlan(Engine.TransformationScope.global);
+        var b1 = new TransformationPlan.Entry("lampion.B", TransformationPlan.TargetKind.CLASS, 0, 1, "IfTrueTransformer", 1, 1);
+        var a1 = new TransformationPlan.Entry("lampion.A", TransformationPlan.TargetKind.CLASS, 0, 0, "IfTrueTransformer", 1, 2);
+        var b2 = new TransformationPlan.Entry("lampion.B", TransformationPlan.TargetKind.CLASS, 0, 0, "IfTrueTransformer", 1, 3);
+        plan.addEntry(b1);
+        plan.addEntry(a1);
+        plan.addEntry(b2);
+
+        var perSource = plan.getEntriesPerSource();
+
+        assertEquals(List.of("lampion.A","lampion.B"), new ArrayList<>(perSource.keySet()));
+        assertEquals(List.of(b1,b2), perSource.get("lampion.B"));
+        assertEquals(3, plan.getTotalTransformations());
+    }
+
+    @Tag("File")
+    @Test
+    void testWriteAndRead_shouldProduceEqualPlan(@TempDir Path tempDir) throws IOException {
+        TransformationPlan plan = new TransformationPlan(Engine.TransformationScope.perMethodEach);
+        plan.addEntry(new TransformationPlan.Entry("lampion.A", TransformationPlan.TargetKind.METHOD, 2, 0, "IfTrueTransformer", 3, -12345L));
+        plan.addEntry(new TransformationPlan.Entry("lampion.B", TransformationPlan.TargetKind.METHOD, 0, 1, "LambdaIdentityTransformer", 1, Long.MAX_VALUE));
+
+        Path file = tempDir.resolve("plan.tsv");
+        plan.writeTo(file);
+        TransformationPlan read = TransformationPlan.readFrom(file);
+
+        assertEquals(Engine.TransformationScope.perMethodEach, read.getScope());
+        assertEquals(plan.getEntries(), read.getEntries());
+    }
+
+    @Tag("File")
+    @Test
+    void testRead_malformedLine_ThrowsException(@TempDir Path tempDir) throws IOException {
+        TransformationPlan plan = new TransformationPlan(Engine.TransformationScope.global);
+        Path file = tempDir.resolve("plan.tsv");
+        plan.writeTo(file);
+        Files.writeString(file, Files.readString(file) + "lampion.A\tCLASS\tnotANumber\t0\tIfTrueTransformer\t1\t5\n");
+
+        assertThrows(UnsupportedOperationException.class, () -> TransformationPlan.readFrom(file));
+    }
+
+    @Tag("File")
+    @Test
+    void testRead_missingScope_ThrowsException(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("plan.tsv");
+        Files.writeString(file, "not a plan\n");
+
+        assertThrows(UnsupportedOperationException.class, () -> TransformationPlan.readFrom(file));
+    }
+}
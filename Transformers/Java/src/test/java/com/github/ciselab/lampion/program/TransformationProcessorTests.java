@@ -0,0 +1,141 @@
+package com.github.ciselab.lampion.program;
+
+import com.github.ciselab.lampion.transformations.TransformerRegistry;
+import com.github.ciselab.lampion.transformations.transformers.IfTrueTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomParameterNameTransformer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransformationProcessorTests {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    private static TransformConfig createConfig() {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        registry.registerTransformer(new RandomParameterNameTransformer());
+        TransformConfig config = new TransformConfig(registry);
+        config.setNumberOfTransformationsPerScope(1, Engine.TransformationScope.perMethodEach);
+        return config;
+    }
+
+    private static List<SourceUnit> createUnits(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new SourceUnit("Example" + i + ".java",
+                        "class Example" + i + " { int id(int a) { return a + " + i + "; } }"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testSubmitAll_ShouldPublishInOrderOfUnits() throws Exception {
+        TransformConfig config = createConfig();
+        List<SourceUnit> units = createUnits(12);
+        TransformationProcessor testObject = new TransformationProcessor(config, 2022, executor, 3);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = testObject.consume(t -> received.add(t.getSource()));
+
+        testObject.submitAll(units.stream());
+        done.get(60, TimeUnit.SECONDS);
+
+        List<String> expected = units.stream()
+                .map(u -> LampionTransformer.transform(u, config, 2022).getSource())
+                .collect(Collectors.toList());
+        assertEquals(expected, received);
+    }
+
+    @Test
+    void testOnNext_SlowSubscriber_ShouldBoundRequestedUnits() throws Exception {
+        TransformationProcessor testObject = new TransformationProcessor(createConfig(), 2022, executor, 2);
+        CountingPublisher upstream = new CountingPublisher(createUnits(50));
+        // The subscriber takes one source, and then no more
+        List<TransformedSource> received = Collections.synchronizedList(new ArrayList<>());
+        testObject.subscribe(new Flow.Subscriber<>() {
+            public void onSubscribe(Flow.Subscription subscription) { subscription.request(1); }
+            public void onNext(TransformedSource item) { received.add(item); }
+            public void onError(Throwable throwable) { }
+            public void onComplete() { }
+        });
+
+        upstream.subscribe(testObject);
+        Thread.sleep(2000);
+
+        assertEquals(1, received.size());
+        // The first 2 units, and one more for each published source: the received one and the 2 in the buffer
+        assertTrue(upstream.requested.get() <= 2 + 1 + 2, "requested " + upstream.requested.get());
+        assertTrue(testObject.getPending() <= 2);
+    }
+
+    @Test
+    void testOnNext_RejectingExecutor_ShouldCloseExceptionally() {
+        TransformationProcessor testObject = new TransformationProcessor(createConfig(), 2022,
+                command -> { throw new RejectedExecutionException("Shut down"); }, 1);
+        CompletableFuture<Void> done = testObject.consume(t -> { });
+
+        testObject.submitAll(createUnits(3).stream());
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> done.get(60, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    void testConstructor_InvalidArguments_ShouldThrowException() {
+        assertThrows(UnsupportedOperationException.class,
+                () -> new TransformationProcessor(null, 2022, executor, 1));
+        assertThrows(UnsupportedOperationException.class,
+                () -> new TransformationProcessor(createConfig(), 2022, null, 1));
+        assertThrows(UnsupportedOperationException.class,
+                () -> new TransformationProcessor(createConfig(), 2022, executor, 0));
+    }
+
+    /**
+     * Publishes the units on request, and counts how many units were requested in total.
+     */
+    private static class CountingPublisher implements Flow.Publisher<SourceUnit> {
+        private final List<SourceUnit> units;
+        private final AtomicLong requested = new AtomicLong();
+        private int next = 0;
+
+        CountingPublisher(List<SourceUnit> units) {
+            this.units = units;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super SourceUnit> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                    synchronized (CountingPublisher.this) {
+                        for (long i = 0; i < n && next < units.size(); i++) {
+                            subscriber.onNext(units.get(next++));
+                        }
+                    }
+                }
+
+                @Override
+                public void cancel() { }
+            });
+        }
+    }
+}
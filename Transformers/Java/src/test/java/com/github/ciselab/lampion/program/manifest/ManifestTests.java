@@ -0,0 +1,288 @@
+package com.github.ciselab.lampion.program.manifest;
+
+import com.github.ciselab.lampion.transformations.AstFingerprint;
+import com.github.ciselab.lampion.transformations.TransformationCategory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManifestTests {
+
+    private static ManifestRecord record(String transformer, String file, int line) {
+        return new ManifestRecord(transformer, file,
+                Set.of(TransformationCategory.NAMING, TransformationCategory.NLP),
+                line, 5, line + 2, 1, line * 100, line * 100 + 50);
+    }
+
+    @Test
+    void testConstructor_NullValues_ShouldThrowException(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> new ManifestRecord(null, "A.java", Set.of(), 1, 1, 1, 1, 1, 1));
+        assertThrows(UnsupportedOperationException.class,
+                () -> new ManifestRecord("T", null, Set.of(), 1, 1, 1, 1, 1, 1));
+        assertThrows(UnsupportedOperationException.class,
+                () -> new ManifestRecord("T", "A.java", null, 1, 1, 1, 1, 1, 1));
+    }
+
+    @Test
+    void testConstructor_NegativePosition_ShouldThrowException(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> new ManifestRecord("T", "A.java", Set.of(), -2, 1, 1, 1, 1, 1));
+    }
+
+    @Test
+    void testConstructor_NegativeVariant_ShouldThrowException(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> new ManifestRecord("T", "A.java", Set.of(), 1, 1, 1, 1, 1, 1, -1, AstFingerprint.EMPTY));
+    }
+
+    @Tag("File")
+    @Test
+    void testWriteAndRead_Variants_ShouldKeepVariantOfEveryRecord(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        // The same transformation of the same file in two variants
+        List<ManifestRecord> records = List.of(
+                new ManifestRecord("IfTrueTransformer", "A.java", Set.of(), 3, 5, 5, 1, 300, 350, 1, AstFingerprint.EMPTY),
+                new ManifestRecord("IfTrueTransformer", "A.java", Set.of(), 3, 5, 5, 1, 300, 350, 2, AstFingerprint.EMPTY));
+
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            for (ManifestRecord r : records) {
+                writer.append(r);
+            }
+        }
+        Path csv = tempDir.resolve("manifest.csv");
+        ManifestCsvExporter.export(file, csv);
+
+        assertEquals(records, ManifestReader.readAll(file));
+        assertNotEquals(records.get(0), records.get(1));
+        List<String> lines = Files.readAllLines(csv);
+        assertTrue(lines.get(1).endsWith(",1," + AstFingerprint.EMPTY));
+        assertTrue(lines.get(2).endsWith(",2," + AstFingerprint.EMPTY));
+    }
+
+    @Tag("File")
+    @Test
+    void testWriteAndRead_Fingerprints_ShouldKeepFingerprintOfEveryRecord(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        AstFingerprint fingerprint = AstFingerprint.valueOf(0x0123456789abcdefL, -1L);
+        List<ManifestRecord> records = List.of(
+                new ManifestRecord("IfTrueTransformer", "A.java", Set.of(), 3, 5, 5, 1, 300, 350, 1, fingerprint),
+                new ManifestRecord("IfTrueTransformer", "A.java", Set.of(), 3, 5, 5, 1, 300, 350, 1, AstFingerprint.EMPTY));
+
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            for (ManifestRecord r : records) {
+                writer.append(r);
+            }
+        }
+        Path csv = tempDir.resolve("manifest.csv");
+        ManifestCsvExporter.export(file, csv);
+
+        assertEquals(records, ManifestReader.readAll(file));
+        assertNotEquals(records.get(0), records.get(1));
+        assertTrue(Files.readAllLines(csv).get(1).endsWith(",0123456789abcdefffffffffffffffff"));
+    }
+
+    @Tag("File")
+    @Test
+    void testRead_Version1_ShouldReadRecordsWithoutVariant(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        // A manifest of version 1 with transformer T, file A.java and a record of both without categories
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(ManifestWriter.MAGIC);
+        bytes.write(new byte[]{1, ManifestWriter.TAG_TRANSFORMER, 1, 'T', ManifestWriter.TAG_FILE, 6});
+        bytes.write("A.java".getBytes(StandardCharsets.UTF_8));
+        bytes.write(new byte[]{ManifestWriter.TAG_RECORD, 0, 0, 0, 2, 3, 4, 5, 6, 7});
+        Files.write(file, bytes.toByteArray());
+
+        assertEquals(List.of(new ManifestRecord("T", "A.java", Set.of(), 1, 2, 3, 4, 5, 6)),
+                ManifestReader.readAll(file));
+        assertThrows(UnsupportedOperationException.class, () -> new ManifestWriter(file));
+    }
+
+    @Tag("File")
+    @Test
+    void testWriteAndRead_ShouldReturnSameRecords(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        List<ManifestRecord> records = List.of(
+                record("IfTrueTransformer", "lampion/A.java", 3),
+                record("RandomParameterNameTransformer", "lampion/A.java", 10),
+                new ManifestRecord("IfTrueTransformer", "", Set.of(), -1, -1, -1, -1, -1, -1),
+                record("IfTrueTransformer", "lampion/B.java", 7));
+
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            for (ManifestRecord r : records) {
+                writer.append(r);
+            }
+            assertEquals(4, writer.getWrittenRecords());
+        }
+
+        assertEquals(records, ManifestReader.readAll(file));
+    }
+
+    @Tag("File")
+    @Test
+    void testRead_ShouldEncodeEveryNameOnlyOnce(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            for (int i = 1; i <= 1000; i++) {
+                writer.append(record("RandomParameterNameTransformer", "lampion/test/examples/Example.java", i));
+            }
+        }
+
+        try (ManifestReader reader = new ManifestReader(file)) {
+            reader.forEachRemaining(r -> {});
+            assertEquals(List.of("RandomParameterNameTransformer"), reader.getTransformerNames());
+            assertEquals(List.of("lampion/test/examples/Example.java"), reader.getFiles());
+        }
+        // Well below the 1000 times the names would take
+        assertTrue(Files.size(file) < 40 * 1000);
+    }
+
+    @Tag("File")
+    @Test
+    void testWriter_ExistingManifest_ShouldAppend(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            writer.append(record("IfTrueTransformer", "A.java", 1));
+        }
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            writer.append(record("IfTrueTransformer", "B.java", 2));
+            writer.append(record("EmptyMethodTransformer", "A.java", 3));
+        }
+
+        try (ManifestReader reader = new ManifestReader(file)) {
+            List<ManifestRecord> read = new ArrayList<>();
+            reader.forEachRemaining(read::add);
+            assertEquals(List.of(record("IfTrueTransformer", "A.java", 1), record("IfTrueTransformer", "B.java", 2),
+                    record("EmptyMethodTransformer", "A.java", 3)), read);
+            // The names of the first run are re-used
+            assertEquals(List.of("IfTrueTransformer", "EmptyMethodTransformer"), reader.getTransformerNames());
+            assertEquals(List.of("A.java", "B.java"), reader.getFiles());
+        }
+    }
+
+    @Tag("File")
+    @Test
+    void testReader_TornLastRecord_ShouldReadCompleteRecords(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            writer.append(record("IfTrueTransformer", "A.java", 1));
+            writer.append(record("IfTrueTransformer", "A.java", 2));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (ManifestReader reader = new ManifestReader(file)) {
+            List<ManifestRecord> read = new ArrayList<>();
+            reader.forEachRemaining(read::add);
+            assertEquals(List.of(record("IfTrueTransformer", "A.java", 1)), read);
+            assertTrue(reader.isTruncated());
+        }
+    }
+
+    @Tag("File")
+    @Test
+    void testReader_NegativeLength_ShouldThrowException(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            writer.append(record("IfTrueTransformer", "A.java", 1));
+        }
+        // A transformer name whose length is a ten byte varint with the sign bit set
+        byte[] block = new byte[]{ManifestWriter.TAG_TRANSFORMER,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+        Files.write(file, block, StandardOpenOption.APPEND);
+
+        try (ManifestReader reader = new ManifestReader(file)) {
+            assertEquals(record("IfTrueTransformer", "A.java", 1), reader.next());
+            assertThrows(UnsupportedOperationException.class, reader::hasNext);
+        }
+    }
+
+    @Tag("File")
+    @Test
+    void testWriter_TornManifest_ShouldCutOffAndContinue(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            writer.append(record("IfTrueTransformer", "A.java", 1));
+            writer.append(record("IfTrueTransformer", "A.java", 2));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            writer.append(record("IfTrueTransformer", "A.java", 3));
+        }
+
+        assertEquals(List.of(record("IfTrueTransformer", "A.java", 1), record("IfTrueTransformer", "A.java", 3)),
+                ManifestReader.readAll(file));
+    }
+
+    @Tag("File")
+    @Test
+    void testWriteAndRead_ManyRecords_ShouldCrossBuffers(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        String longName = "A".repeat(ManifestWriter.BUFFER_SIZE + 10) + ".java";
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            for (int i = 0; i < 20000; i++) {
+                writer.append(record("T" + (i % 7), i % 1000 == 0 ? longName : "F" + (i % 100) + ".java", i));
+            }
+        }
+
+        try (ManifestReader reader = new ManifestReader(file)) {
+            int count = 0;
+            while (reader.hasNext()) {
+                ManifestRecord r = reader.next();
+                assertEquals(count, r.getBeginLine());
+                assertEquals("T" + (count % 7), r.getTransformerName());
+                count++;
+            }
+            assertEquals(20000, count);
+            assertFalse(reader.isTruncated());
+        }
+    }
+
+    @Tag("File")
+    @Test
+    void testReader_NotAManifest_ShouldThrowException(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("other.txt");
+        Files.writeString(file, "class A {}");
+        assertThrows(UnsupportedOperationException.class, () -> new ManifestReader(file));
+        assertThrows(UnsupportedOperationException.class, () -> new ManifestWriter(file));
+    }
+
+    @Tag("File")
+    @Test
+    void testExport_ShouldWriteOneLinePerRecord(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("manifest.lman");
+        try (ManifestWriter writer = new ManifestWriter(file)) {
+            writer.append(record("IfTrueTransformer", "lampion/A.java", 3));
+            writer.append(record("EmptyMethodTransformer", "lampion/with,comma.java", 4));
+        }
+        Path csv = tempDir.resolve("manifest.csv");
+
+        assertEquals(2, ManifestCsvExporter.export(file, csv));
+
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith("fileId,file,transformerId,transformer,NLP,CONTROLFLOW"));
+        assertTrue(lines.get(0).endsWith("beginLine,beginColumn,endLine,endColumn,sourceStart,sourceEnd,variant,fingerprint"));
+        assertTrue(lines.get(1).startsWith("0,lampion/A.java,0,IfTrueTransformer,true,false,false,false,true,"));
+        assertTrue(lines.get(1).endsWith(",3,5,5,1,300,350,0," + AstFingerprint.EMPTY));
+        assertTrue(lines.get(2).startsWith("1,\"lampion/with,comma.java\",1,EmptyMethodTransformer,"));
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.ciselab.lampion.program.output;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutputSinkTests {
+
+    @Test
+    void testIsArchive_archiveEndings_shouldBeArchives(){
+        assertTrue(OutputSinks.isArchive("./out.zip"));
+        assertTrue(OutputSinks.isArchive("./out.JAR"));
+        assertTrue(OutputSinks.isArchive("./out.tar"));
+        assertTrue(OutputSinks.isArchive("./out.tar.gz"));
+        assertTrue(OutputSinks.isArchive("./out.tgz"));
+        assertTrue(OutputSinks.isArchive("./out.patch"));
+        assertFalse(OutputSinks.isArchive("./obfuscator_output"));
+    }
+
+    @Tag("File")
+    @Test
+    void testForOutput_shouldPickSinkByName(@TempDir Path tempDir) throws IOException {
+        try (OutputSink zip = OutputSinks.forOutput(tempDir.resolve("a.zip").toString());
+             OutputSink tar = OutputSinks.forOutput(tempDir.resolve("a.tgz").toString());
+             OutputSink patch = OutputSinks.forOutput(tempDir.resolve("a.diff").toString());
+             OutputSink directory = OutputSinks.forOutput(tempDir.resolve("a").toString())) {
+            assertTrue(zip instanceof ZipOutputSink);
+            assertTrue(patch instanceof PatchOutputSink);
+            assertTrue(tar instanceof TarOutputSink);
+            assertTrue(directory instanceof DirectoryOutputSink);
+        }
+    }
+
+    @Tag("File")
+    @Test
+    void testDirectorySink_shouldCreatePackageDirectories(@TempDir Path tempDir) throws IOException {
+        try (OutputSink sink = new DirectoryOutputSink(tempDir)) {
+            sink.write("lampion/test/A.java", "class A {}");
+        }
+        assertEquals("class A {}", Files.readString(tempDir.resolve("lampion/test/A.java")));
+    }
+
+    @Tag("File")
+    @Test
+    void testZipSink_shouldContainAllEntriesInOrder(@TempDir Path tempDir) throws IOException {
+        Path archive = tempDir.resolve("out.zip");
+        try (OutputSink sink = new ZipOutputSink(archive)) {
+            sink.write("lampion/A.java", "class A {}");
+            sink.write("lampion/B.java", "class B {}");
+        }
+
+        List<String> names = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                contents.add(new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(List.of("lampion/A.java", "lampion/B.java"), names);
+        assertEquals(List.of("class A {}", "class B {}"), contents);
+    }
+
+    @Tag("File")
+    @Test
+    void testZipSink_sameInput_shouldProduceSameBytes(@TempDir Path tempDir) throws IOException {
+        Path first = tempDir.resolve("first.zip");
+        Path second = tempDir.resolve("second.zip");
+        for (Path archive : new Path[]{first, second}) {
+            try (OutputSink sink = new ZipOutputSink(archive)) {
+                sink.write("lampion/A.java", "class A {}");
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+    }
+
+    @Tag("File")
+    @Test
+    void testTarSink_shouldBeReadableUstar(@TempDir Path tempDir) throws IOException {
+        Path archive = tempDir.resolve("out.tar.gz");
+        try (OutputSink sink = new TarOutputSink(archive, true)) {
+            sink.write("lampion/A.java", "class A {}");
+        }
+
+        byte[] tar;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+            tar = in.readAllBytes();
+        }
+        // header + one content block + two end blocks
+        assertEquals(4 * 512, tar.length);
+        assertEquals("lampion/A.java", readString(tar, 0, 100));
+        assertEquals("ustar", readString(tar, 257, 6));
+        assertEquals(10, Long.parseLong(readString(tar, 124, 12), 8));
+        assertEquals("class A {}", readString(tar, 512, 512));
+        assertEquals(Long.parseLong(readString(tar, 148, 7), 8), checksumOf(Arrays.copyOf(tar, 512)));
+    }
+
+    @Test
+    void testTarHeader_longPath_shouldUsePrefix(){
+        String directory = "lampion/" + "a".repeat(90) + "/";
+        String path = directory + "VeryLongClassName.java";
+
+        byte[] header = TarOutputSink.createHeader(path, 0);
+
+        assertEquals("VeryLongClassName.java", readString(header, 0, 100));
+        assertEquals(directory.substring(0, directory.length() - 1), readString(header, 345, 155));
+    }
+
+    @Tag("File")
+    @Test
+    void testWrite_absolutePath_ThrowsException(@TempDir Path tempDir) throws IOException {
+        try (OutputSink sink = new ZipOutputSink(tempDir.resolve("out.zip"))) {
+            assertThrows(UnsupportedOperationException.class, () -> sink.write("/etc/A.java", "class A {}"));
+        }
+    }
+
+    @Tag("File")
+    @Test
+    void testDeduplicatingSink_equalContent_shouldBeWrittenOnceAndIndexed(@TempDir Path tempDir) throws IOException {
+        try (OutputSink sink = new DeduplicatingOutputSink(new DirectoryOutputSink(tempDir))) {
+            sink.write("variant-1/A.java", "class A {}");
+            sink.write("variant-1/B.java", "class B {}");
+            sink.write("variant-2/A.java", "class A {}");
+            sink.write("variant-2/B.java", "class B { int b; }");
+        }
+
+        assertTrue(Files.exists(tempDir.resolve("variant-1/A.java")));
+        assertTrue(Files.exists(tempDir.resolve("variant-2/B.java")));
+        assertFalse(Files.exists(tempDir.resolve("variant-2/A.java")));
+        assertEquals("duplicate\toriginal\nvariant-2/A.java\tvariant-1/A.java\n",
+                Files.readString(tempDir.resolve(DeduplicatingOutputSink.INDEX_FILE)));
+    }
+
+    @Tag("File")
+    @Test
+    void testDeduplicatingSink_noDuplicates_shouldWriteNoIndex(@TempDir Path tempDir) throws IOException {
+        try (OutputSink sink = new DeduplicatingOutputSink(new DirectoryOutputSink(tempDir))) {
+            sink.write("A.java", "class A {}");
+            sink.write("B.java", "class B {}");
+        }
+
+        assertFalse(Files.exists(tempDir.resolve(DeduplicatingOutputSink.INDEX_FILE)));
+    }
+
+    @Test
+    void testDeduplicatingSink_nullDelegate_ThrowsException(){
+        assertThrows(UnsupportedOperationException.class, () -> new DeduplicatingOutputSink(null));
+    }
+
+    private static String readString(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, offset, end - offset, StandardCharsets.US_ASCII).trim();
+    }
+
+    private static long checksumOf(byte[] header) {
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        return sum;
+    }
+}
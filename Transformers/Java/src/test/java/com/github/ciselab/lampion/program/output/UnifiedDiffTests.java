@@ -0,0 +1,155 @@
+package com.github.ciselab.lampion.program.output;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnifiedDiffTests {
+
+    private static final String ORIGINAL = "package a;\n\nclass A {\n    int a = 1;\n    int b = 2;\n}\n";
+
+    @Test
+    void testDiff_sameContent_shouldBeEmpty(){
+        assertEquals("", UnifiedDiff.diff("A.java", ORIGINAL, "A.java", ORIGINAL));
+    }
+
+    @Test
+    void testDiff_changedLine_shouldMatchDiffFormat(){
+        String revised = ORIGINAL.replace("int b = 2;", "int b = 3;");
+
+        String diff = UnifiedDiff.diff("a/A.java", ORIGINAL, "a/A.java", revised);
+
+        assertEquals("--- a/a/A.java\n+++ b/a/A.java\n"
+                + "@@ -2,5 +2,5 @@\n \n class A {\n     int a = 1;\n-    int b = 2;\n+    int b = 3;\n }\n", diff);
+    }
+
+    @Test
+    void testDiff_changesFarApart_shouldGiveTwoHunks(){
+        StringBuilder original = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            original.append("line ").append(i).append('\n');
+        }
+        String revised = original.toString().replace("line 2\n", "changed 2\n").replace("line 25\n", "changed 25\n");
+
+        String diff = UnifiedDiff.diff("A", original.toString(), "A", revised);
+
+        assertTrue(diff.contains("@@ -1,6 +1,6 @@"));
+        assertTrue(diff.contains("@@ -23,7 +23,7 @@"));
+    }
+
+    @Test
+    void testDiff_missingNewlineAtEnd_shouldBeMarked(){
+        String diff = UnifiedDiff.diff("A", "a\nb\n", "A", "a\nb");
+
+        assertTrue(diff.contains("-b\n+b\n\\ No newline at end of file\n"));
+    }
+
+    @Test
+    void testDiff_newFile_shouldUseNoFile(){
+        String diff = UnifiedDiff.diff(UnifiedDiff.NO_FILE, "", "A.java", "class A {}\n");
+
+        assertTrue(diff.startsWith("--- /dev/null\n+++ b/A.java\n@@ -0,0 +1 @@\n+class A {}\n"));
+    }
+
+    @Test
+    void testApply_ownDiff_shouldGiveRevised(){
+        String revised = "package a;\n\n// added\nclass A {\n    int b = 2;\n    int c = 3;\n}";
+        String diff = UnifiedDiff.diff("A.java", ORIGINAL, "A.java", revised);
+
+        List<UnifiedDiff.FilePatch> patches = UnifiedDiff.parse(diff);
+
+        assertEquals(1, patches.size());
+        assertEquals("A.java", patches.get(0).getOriginalPath());
+        assertEquals(revised, patches.get(0).applyTo(ORIGINAL));
+    }
+
+    @Test
+    void testApply_randomEdits_shouldAlwaysGiveRevised(){
+        Random random = new Random(2022);
+        for (int round = 0; round < 200; round++) {
+            String original = randomText(random);
+            String revised = randomText(random);
+            String diff = UnifiedDiff.diff("A", original, "A", revised);
+            String applied = diff.isEmpty() ? original : UnifiedDiff.parse(diff).get(0).applyTo(original);
+            assertEquals(revised, applied, "Round " + round);
+        }
+    }
+
+    @Test
+    void testApply_manyChanges_shouldFallBackToCorrectDiff(){
+        StringBuilder original = new StringBuilder();
+        StringBuilder revised = new StringBuilder();
+        for (int i = 0; i < UnifiedDiff.MAX_EDITS + 10; i++) {
+            original.append("a").append(i).append('\n');
+            revised.append("b").append(i).append('\n');
+        }
+        String diff = UnifiedDiff.diff("A", original.toString(), "A", revised.toString());
+
+        assertEquals(revised.toString(), UnifiedDiff.parse(diff).get(0).applyTo(original.toString()));
+    }
+
+    @Test
+    void testApply_wrongOriginal_ThrowsException(){
+        String diff = UnifiedDiff.diff("A.java", ORIGINAL, "A.java", ORIGINAL.replace("int a", "long a"));
+        UnifiedDiff.FilePatch patch = UnifiedDiff.parse(diff).get(0);
+
+        assertThrows(UnsupportedOperationException.class, () -> patch.applyTo(ORIGINAL.replace("int a", "short a")));
+    }
+
+    @Test
+    void testParse_truncatedHunk_ThrowsException(){
+        String diff = UnifiedDiff.diff("A.java", ORIGINAL, "A.java", ORIGINAL.replace("int a", "long a"));
+
+        assertThrows(UnsupportedOperationException.class, () -> UnifiedDiff.parse(diff.substring(0, diff.length() - 10)));
+    }
+
+    @Tag("File")
+    @Test
+    void testPatchApplier_patchFile_shouldReconstructFiles(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input");
+        Files.createDirectories(input.resolve("a"));
+        Files.writeString(input.resolve("a/A.java"), ORIGINAL);
+        String revised = ORIGINAL.replace("int a = 1;", "int a = 1 + 0;");
+        Path patch = tempDir.resolve("out.patch");
+        try (OutputSink sink = OutputSinks.forOutput(patch.toString())) {
+            sink.write("a/A.java.diff", UnifiedDiff.diff("a/A.java", ORIGINAL, "a/A.java", revised));
+            sink.write("a/B.java.diff", UnifiedDiff.diff(UnifiedDiff.NO_FILE, "", "a/B.java", "class B {}\n"));
+        }
+
+        int written = PatchApplier.apply(patch, input.toString(), tempDir.resolve("applied").toString());
+
+        assertEquals(2, written);
+        assertEquals(revised, Files.readString(tempDir.resolve("applied/a/A.java")));
+        assertEquals("class B {}\n", Files.readString(tempDir.resolve("applied/a/B.java")));
+    }
+
+    @Tag("File")
+    @Test
+    void testPatchApplier_intoPatchFile_ThrowsException(@TempDir Path tempDir) {
+        assertThrows(UnsupportedOperationException.class,
+                () -> PatchApplier.apply(tempDir, tempDir.toString(), tempDir.resolve("x.patch").toString()));
+    }
+
+    /**
+     * Creates a few lines from a small alphabet, so that random texts share some lines.
+     */
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int lines = random.nextInt(12);
+        for (int i = 0; i < lines; i++) {
+            text.append((char) ('a' + random.nextInt(4)));
+            if (i < lines - 1 || random.nextBoolean()) {
+                text.append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
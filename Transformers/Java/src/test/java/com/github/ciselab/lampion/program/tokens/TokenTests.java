@@ -0,0 +1,128 @@
+package com.github.ciselab.lampion.program.tokens;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import spoon.Launcher;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.visitor.DefaultJavaPrettyPrinter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenTests {
+
+    @Test
+    void testSplit_none_shouldKeepIdentifier(){
+        IdentifierSplitter splitter = new IdentifierSplitter(IdentifierSplitter.Splitting.none, false);
+
+        assertEquals(List.of("honorableKrakenZookeeper"), splitter.split("honorableKrakenZookeeper"));
+    }
+
+    @Test
+    void testSplit_camelCase_shouldSplitWordsAcronymsAndDigits(){
+        IdentifierSplitter splitter = new IdentifierSplitter(IdentifierSplitter.Splitting.camelCase, false);
+
+        assertEquals(List.of("honorable", "Kraken", "Zookeeper"), splitter.split("honorableKrakenZookeeper"));
+        assertEquals(List.of("XML", "Parser"), splitter.split("XMLParser"));
+        assertEquals(List.of("var", "2", "Name"), splitter.split("var2Name"));
+        assertEquals(List.of("MAX_VALUE"), splitter.split("MAX_VALUE"));
+    }
+
+    @Test
+    void testSplit_snakeCase_shouldDropUnderscores(){
+        IdentifierSplitter splitter = new IdentifierSplitter(IdentifierSplitter.Splitting.snakeCase, true);
+
+        assertEquals(List.of("max", "value"), splitter.split("MAX_VALUE"));
+        assertEquals(List.of("_"), splitter.split("_"));
+    }
+
+    @Test
+    void testSplit_both_shouldSplitSnakeThenCamelCase(){
+        IdentifierSplitter splitter = new IdentifierSplitter(IdentifierSplitter.Splitting.both, true);
+
+        assertEquals(List.of("get", "my", "value", "now"), splitter.split("getMy_valueNow"));
+    }
+
+    @Test
+    void testCollector_shouldCollectPrintedTokens(){
+        CtClass<?> testObject = Launcher.parseClass(
+                "class A { /* not a token */ int sumOf(int a) { String s = \"a b\"; return a + 1; } }");
+        TokenCollector collector = new TokenCollector(new IdentifierSplitter(IdentifierSplitter.Splitting.camelCase, true));
+        DefaultJavaPrettyPrinter printer = new DefaultJavaPrettyPrinter(testObject.getFactory().getEnvironment());
+        printer.setPrinterTokenWriter(collector);
+
+        printer.printElement(testObject);
+
+        List<String> tokens = collector.getTokens();
+        assertTrue(tokens.containsAll(List.of("class", "a", "{", "int", "sum", "of", "return", "+", "1", "\"a b\"")));
+        assertFalse(tokens.stream().anyMatch(t -> t.contains("token")));
+    }
+
+    @Test
+    void testCollector_withEnvironment_shouldNotChangePrintedText(){
+        CtClass<?> testObject = Launcher.parseClass(
+                "class A { int sumOf(int a) { if (a > 0) { return a + 1; } return 0; } }");
+        DefaultJavaPrettyPrinter plainPrinter = new DefaultJavaPrettyPrinter(testObject.getFactory().getEnvironment());
+        DefaultJavaPrettyPrinter collectingPrinter = new DefaultJavaPrettyPrinter(testObject.getFactory().getEnvironment());
+        collectingPrinter.setPrinterTokenWriter(new TokenCollector(
+                new IdentifierSplitter(IdentifierSplitter.Splitting.none, false), testObject.getFactory().getEnvironment()));
+
+        plainPrinter.printElement(testObject);
+        collectingPrinter.printElement(testObject);
+
+        assertEquals(plainPrinter.getResult(), collectingPrinter.getResult());
+    }
+
+    @Tag("File")
+    @Test
+    void testJsonlSink_shouldEscapeTokens(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("tokens.jsonl");
+        try (TokenSink sink = TokenSinks.forOutput(file)) {
+            sink.write("a/A.java", List.of("class", "\"a\\b\"", "'\\n'"));
+            sink.write("a/B.java", List.of());
+        }
+
+        assertEquals(List.of("{\"file\":\"a/A.java\",\"tokens\":[\"class\",\"\\\"a\\\\b\\\"\",\"'\\\\n'\"]}",
+                "{\"file\":\"a/B.java\",\"tokens\":[]}"), Files.readAllLines(file));
+    }
+
+    @Tag("File")
+    @Test
+    void testBinarySink_readBack_shouldGiveSameTokens(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("tokens.tok");
+        try (TokenSink sink = TokenSinks.forOutput(file)) {
+            sink.write("a/A.java", List.of("class", "A", "{", "}"));
+            sink.write("a/B.java", List.of("class", "B", "{", "}", "ünïcode"));
+        }
+
+        List<TokenizedFile> files = BinaryTokenReader.readAll(file);
+
+        assertEquals(2, files.size());
+        assertEquals("a/A.java", files.get(0).getFile());
+        assertEquals(List.of("class", "A", "{", "}"), files.get(0).getTokens());
+        assertEquals(List.of("class", "B", "{", "}", "ünïcode"), files.get(1).getTokens());
+    }
+
+    @Tag("File")
+    @Test
+    void testBinaryReader_truncatedFile_ThrowsException(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("tokens.tok");
+        try (TokenSink sink = TokenSinks.forOutput(file)) {
+            sink.write("a/A.java", List.of("class", "A", "{", "}"));
+        }
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(content, content.length - 2));
+
+        assertThrows(UnsupportedOperationException.class, () -> BinaryTokenReader.readAll(file));
+    }
+
+    @Test
+    void testForOutput_unknownEnding_ThrowsException(@TempDir Path tempDir) {
+        assertThrows(UnsupportedOperationException.class, () -> TokenSinks.forOutput(tempDir.resolve("tokens.txt")));
+    }
+}
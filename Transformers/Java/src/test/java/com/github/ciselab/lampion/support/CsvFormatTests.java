@@ -0,0 +1,28 @@
+package com.github.ciselab.lampion.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvFormatTests {
+
+    @Test
+    void testQuote_valueWithComma_shouldBeQuoted(){
+        assertEquals("\"a,b\"", CsvFormat.quote("a,b"));
+    }
+
+    @Test
+    void testQuote_valueWithQuote_shouldDoubleQuote(){
+        assertEquals("\"a\"\"b\"", CsvFormat.quote("a\"b"));
+    }
+
+    @Test
+    void testQuote_valueWithLineBreak_shouldBeQuoted(){
+        assertEquals("\"a\nb\"", CsvFormat.quote("a\nb"));
+    }
+
+    @Test
+    void testQuote_plainValue_shouldBeUnchanged(){
+        assertEquals("ab", CsvFormat.quote("ab"));
+    }
+}
@@ -109,4 +109,34 @@ public class RandomNameFactoryTests {
 
         assertEquals(l,alphanumeric.length());
     }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 2022})
+    void getRandomStrings_shouldEqualStreamBasedStrings(int seed){
+        // The strings were built from random.ints(...) streams before, the same seeds have to give the same strings
+        Random r = new Random(seed);
+        Random streamed = new Random(seed);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(streamed.ints(48, 123)
+                    .filter(c -> (c <= 57 || c >= 65) && (c <= 90 || c >= 97))
+                    .limit(12)
+                    .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
+                    .toString(), RandomNameFactory.getRandomAlphaNumericString(12,r));
+            int length = streamed.nextInt(7) + 3;
+            assertEquals(streamed.ints(97, 123)
+                    .limit(length)
+                    .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
+                    .toString(), RandomNameFactory.getRandomAlphabeticString(length,r));
+        }
+    }
+
+    @Test
+    void getRandomComment_shouldHaveRequestedWords(){
+        Random r = new Random(1);
+
+        String comment = RandomNameFactory.getAnimalComment(4,r);
+
+        assertEquals(4, comment.split(" ").length);
+    }
 }
@@ -0,0 +1,64 @@
+package com.github.ciselab.lampion.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeedDerivationTests {
+
+    @Test
+    void testDerive_sameSeedAndKeys_shouldBeEqual(){
+        assertEquals(SeedDerivation.derive(2022, "lampion.A", 1, 3),
+                SeedDerivation.derive(2022, "lampion.A", 1, 3));
+    }
+
+    @Test
+    void testDerive_differentSeed_shouldDiffer(){
+        assertNotEquals(SeedDerivation.derive(2022, "lampion.A", 1),
+                SeedDerivation.derive(2023, "lampion.A", 1));
+    }
+
+    @Test
+    void testDerive_swappedKeys_shouldDiffer(){
+        assertNotEquals(SeedDerivation.derive(2022, 1, 2),
+                SeedDerivation.derive(2022, 2, 1));
+    }
+
+    @Test
+    void testDerive_additionalKey_shouldDiffer(){
+        assertNotEquals(SeedDerivation.derive(2022, "lampion.A"),
+                SeedDerivation.derive(2022, "lampion.A", 0));
+    }
+
+    @Test
+    void testDerive_neighbouringIndices_shouldAllDiffer(){
+        Set<Long> seeds = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            seeds.add(SeedDerivation.derive(2022, "lampion.A", i));
+        }
+        assertEquals(1000, seeds.size());
+    }
+
+    @Test
+    void testDerive_integerAndLongKey_shouldBeEqual(){
+        assertEquals(SeedDerivation.derive(2022, 5), SeedDerivation.derive(2022, 5L));
+    }
+
+    @Test
+    void testDerive_nullKey_shouldThrowException(){
+        assertThrows(UnsupportedOperationException.class, () -> SeedDerivation.derive(2022, "lampion.A", null));
+    }
+
+    @Test
+    void testRandom_sameKeys_shouldProduceSameNumbers(){
+        var a = SeedDerivation.random(2022, "lampion.A", 3);
+        var b = SeedDerivation.random(2022, "lampion.A", 3);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(a.nextInt(), b.nextInt());
+        }
+    }
+}
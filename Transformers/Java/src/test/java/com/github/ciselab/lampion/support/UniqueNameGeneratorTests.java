@@ -0,0 +1,125 @@
+package com.github.ciselab.lampion.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UniqueNameGeneratorTests {
+
+    @Test
+    void testNext_withoutKeyword_shouldBeCamelCased(){
+        UniqueNameGenerator testObject = new UniqueNameGenerator(false, new Random(1));
+
+        String name = testObject.next();
+
+        assertTrue(Character.isLowerCase(name.charAt(0)));
+        assertEquals(2, name.codePoints().filter(c -> c >= 'A' && c <= 'Z').count());
+    }
+
+    @Test
+    void testNext_withKeyword_shouldHave3UppercasedLetters(){
+        UniqueNameGenerator testObject = new UniqueNameGenerator(true, new Random(1));
+
+        String name = testObject.next();
+
+        assertEquals(3, name.codePoints().filter(c -> c >= 'A' && c <= 'Z').count());
+    }
+
+    @Test
+    void testNext_allNames_shouldBeDistinctUntilExhausted(){
+        UniqueNameGenerator testObject = new UniqueNameGenerator(false, new Random(1));
+        int size = testObject.remaining();
+
+        Set<String> names = new HashSet<>();
+        while (testObject.hasNext()) {
+            names.add(testObject.next());
+        }
+
+        assertEquals(size, names.size());
+        assertEquals(0, testObject.remaining());
+        assertThrows(NoSuchElementException.class, testObject::next);
+    }
+
+    @Test
+    void testNext_allNamesWithKeyword_shouldBeDistinct(){
+        // Different parts could add up to the same name, which would make the names collide
+        UniqueNameGenerator testObject = new UniqueNameGenerator(true, new Random(1));
+        int size = testObject.remaining();
+
+        Set<String> names = new HashSet<>();
+        while (testObject.hasNext()) {
+            names.add(testObject.next().toLowerCase());
+        }
+
+        assertEquals(size, names.size());
+    }
+
+    @Test
+    void testNext_sameSeed_shouldBeReproducible(){
+        UniqueNameGenerator first = new UniqueNameGenerator(true, new Random(5));
+        UniqueNameGenerator second = new UniqueNameGenerator(true, new Random(5));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.next(), second.next());
+        }
+    }
+
+    @Test
+    void testExclude_takenNames_shouldNotBeCreated(){
+        UniqueNameGenerator source = new UniqueNameGenerator(false, new Random(1));
+        List<String> taken = new ArrayList<>();
+        while (source.remaining() > 10) {
+            taken.add(source.next());
+        }
+
+        UniqueNameGenerator testObject = new UniqueNameGenerator(false, new Random(2)).exclude(taken);
+
+        assertEquals(10, testObject.remaining());
+        Set<String> names = new HashSet<>();
+        while (testObject.hasNext()) {
+            names.add(testObject.next());
+        }
+        assertEquals(10, names.size());
+        names.retainAll(taken);
+        assertTrue(names.isEmpty());
+    }
+
+    @Test
+    void testExclude_shouldIgnoreCase(){
+        UniqueNameGenerator testObject = new UniqueNameGenerator(false, new Random(1));
+        int size = testObject.remaining();
+
+        testObject.exclude(List.of("AGEDALPACAATTORNEY", "agedAlpacaAttorney"));
+
+        assertEquals(size - 1, testObject.remaining());
+    }
+
+    @Test
+    void testExclude_unknownNames_shouldBeIgnored(){
+        UniqueNameGenerator testObject = new UniqueNameGenerator(false, new Random(1));
+        int size = testObject.remaining();
+
+        testObject.exclude(List.of("i", "sum", "agedAlpaca", "getAgedAlpacaAttorney"));
+
+        assertEquals(size, testObject.remaining());
+    }
+
+    @Test
+    void testConstructor_nullRandom_shouldThrowException(){
+        assertThrows(UnsupportedOperationException.class, () -> new UniqueNameGenerator(false, null));
+    }
+
+    @Test
+    void testExclude_null_shouldThrowException(){
+        UniqueNameGenerator testObject = new UniqueNameGenerator(false, new Random(1));
+
+        assertThrows(UnsupportedOperationException.class, () -> testObject.exclude(null));
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.ciselab.lampion.transformations;
+
+import com.github.ciselab.lampion.transformations.transformers.*;
+import org.junit.jupiter.api.Test;
+import spoon.Launcher;
+import spoon.reflect.code.CtLiteral;
+import spoon.reflect.code.CtVariableRead;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtMethod;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApplicabilityScannerTests {
+
+    @Test
+    void testAnalyze_methodTransformer_shouldCountNonEmptyMethods(){
+        IfTrueTransformer transformer = new IfTrueTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(transformer);
+
+        ApplicabilityScanner testObject = new ApplicabilityScanner(registry);
+
+        var report = testObject.analyze(twoMethodsExample());
+
+        assertTrue(report.isApplicable(transformer));
+        assertEquals(2,report.getCandidateCount(transformer).getAsLong());
+    }
+
+    @Test
+    void testAnalyze_parameterTransformer_shouldCountMethodsWithParameters(){
+        RandomParameterNameTransformer transformer = new RandomParameterNameTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(transformer);
+
+        ApplicabilityScanner testObject = new ApplicabilityScanner(registry);
+
+        var report = testObject.analyze(twoMethodsExample());
+
+        assertEquals(1,report.getCandidateCount(transformer).getAsLong());
+    }
+
+    @Test
+    void testAnalyze_multipleTransformers_shouldCountAllOfThem(){
+        IfTrueTransformer ifTrue = new IfTrueTransformer();
+        LambdaIdentityTransformer lambda = new LambdaIdentityTransformer();
+        AddNeutralElementTransformer neutral = new AddNeutralElementTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(ifTrue);
+        registry.registerTransformer(lambda);
+        registry.registerTransformer(neutral);
+
+        ApplicabilityScanner testObject = new ApplicabilityScanner(registry);
+
+        var report = testObject.analyze(twoMethodsExample());
+
+        assertEquals(2,report.getCandidateCount(ifTrue).getAsLong());
+        // The literal 1
+        assertEquals(1,report.getCandidateCount(lambda).getAsLong());
+        // The literal 1 and the two reads of a and b
+        assertEquals(3,report.getCandidateCount(neutral).getAsLong());
+        assertEquals(3,report.getCandidateCounts().size());
+    }
+
+    @Test
+    void testAnalyze_emptyClass_shouldNotBeApplicable(){
+        IfTrueTransformer transformer = new IfTrueTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(transformer);
+
+        ApplicabilityScanner testObject = new ApplicabilityScanner(registry);
+
+        var report = testObject.analyze(Launcher.parseClass("class A { }"));
+
+        assertFalse(report.isApplicable(transformer));
+        assertEquals(0,report.getCandidateCount(transformer).getAsLong());
+    }
+
+    @Test
+    void testAnalyze_shouldBeReusable(){
+        IfTrueTransformer transformer = new IfTrueTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(transformer);
+
+        ApplicabilityScanner testObject = new ApplicabilityScanner(registry);
+
+        testObject.analyze(twoMethodsExample());
+        var report = testObject.analyze(Launcher.parseClass("class A { }"));
+
+        assertEquals(0,report.getCandidateCount(transformer).getAsLong());
+    }
+
+    @Test
+    void testAnalyze_shouldMatchRequirementsOfAllTransformers(){
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        registry.registerTransformer(new IfFalseElseTransformer());
+        registry.registerTransformer(new LambdaIdentityTransformer());
+        registry.registerTransformer(new AddNeutralElementTransformer());
+        registry.registerTransformer(new AddUnusedVariableTransformer());
+        registry.registerTransformer(new EmptyMethodTransformer());
+        registry.registerTransformer(new RandomInlineCommentTransformer());
+        registry.registerTransformer(new RandomParameterNameTransformer());
+        registry.registerTransformer(new RemoveAllCommentsTransformer());
+
+        ApplicabilityScanner testObject = new ApplicabilityScanner(registry);
+
+        for (CtElement ast : new CtElement[]{twoMethodsExample(), Launcher.parseClass("class A { }")}) {
+            var report = testObject.analyze(ast);
+            for (Transformer t : registry.getRegisteredTransformers()) {
+                boolean expected = t.getRequirements().stream().allMatch(r -> r.test(ast));
+                assertEquals(expected, report.isApplicable(t), t.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @Test
+    void testAnalyze_transformerWithoutQuery_shouldFallBackToRequirements(){
+        Transformer withoutQuery = new Transformer() {
+            @Override
+            public TransformationResult applyAtRandom(CtElement ast) {
+                return new EmptyTransformationResult();
+            }
+            @Override
+            public Set<Class<Transformer>> isExclusiveWith() {
+                return new HashSet<>();
+            }
+            @Override
+            public Set<Predicate<CtElement>> getRequirements() {
+                Set<Predicate<CtElement>> requirements = new HashSet<>();
+                requirements.add(ast -> !ast.filterChildren(c -> c instanceof CtMethod).list().isEmpty());
+                return requirements;
+            }
+            @Override
+            public Set<TransformationCategory> getCategories() {
+                return new HashSet<>();
+            }
+            @Override
+            public void setSeed(long seed) { }
+            @Override
+            public Transformer newInstance(long seed) {
+                return this;
+            }
+        };
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(withoutQuery);
+
+        ApplicabilityScanner testObject = new ApplicabilityScanner(registry);
+
+        var report = testObject.analyze(twoMethodsExample());
+
+        assertTrue(report.isApplicable(withoutQuery));
+        assertTrue(report.getCandidateCount(withoutQuery).isEmpty());
+    }
+
+    @Test
+    void testCandidateQuery_or_shouldMatchBothKinds(){
+        CandidateQuery query = CandidateQuery.forKind(CtLiteral.class).or(CandidateQuery.forKind(CtVariableRead.class));
+
+        CtClass ast = twoMethodsExample();
+
+        assertEquals(3, ast.filterChildren(query::matches).list().size());
+        assertEquals(2, query.getKinds().size());
+        assertFalse(query.matches(ast));
+        assertFalse(query.matches(null));
+    }
+
+    @Test
+    void testCandidateQuery_withCondition_shouldOnlyMatchFulfillingElements(){
+        CandidateQuery query = CandidateQuery.forKind(CtMethod.class, m -> m.getSimpleName().equals("sum"));
+
+        CtClass ast = twoMethodsExample();
+
+        assertEquals(1, ast.filterChildren(query::matches).list().size());
+    }
+
+    @Test
+    void testCandidateQuery_nullKind_shouldThrowException(){
+        assertThrows(UnsupportedOperationException.class, () -> CandidateQuery.forKind(null));
+    }
+
+    static CtClass twoMethodsExample(){
+        return Launcher.parseClass("package lampion.test.examples; class A { " +
+                "int sum(int a, int b) { return a + b;} " +
+                "int one() { return 1;} " +
+                "}");
+    }
+}
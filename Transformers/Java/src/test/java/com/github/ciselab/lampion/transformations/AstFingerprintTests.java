@@ -0,0 +1,134 @@
+package com.github.ciselab.lampion.transformations;
+
+import org.junit.jupiter.api.Test;
+import spoon.Launcher;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtMethod;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AstFingerprintTests {
+
+    @Test
+    void testOf_SameSourceParsedTwice_ShouldBeEqual(){
+        String source = "class A { int sum(int a, int b) { return a + b;} }";
+
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass(source));
+        AstFingerprint b = AstFingerprint.of(Launcher.parseClass(source));
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    void testValueOf_BitsOfFingerprint_ShouldBeEqual(){
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass("class A { int one() { return 1;} }"));
+
+        AstFingerprint b = AstFingerprint.valueOf(a.getHigh(), a.getLow());
+
+        assertEquals(a, b);
+        assertEquals(a.toString(), b.toString());
+        assertSame(AstFingerprint.EMPTY, AstFingerprint.valueOf(0, 0));
+    }
+
+    @Test
+    void testOf_DifferentLiteral_ShouldDiffer(){
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass("class A { int one() { return 1;} }"));
+        AstFingerprint b = AstFingerprint.of(Launcher.parseClass("class A { int one() { return 2;} }"));
+
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testOf_DifferentLiteralType_ShouldDiffer(){
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass("class A { long one() { return 1;} }"));
+        AstFingerprint b = AstFingerprint.of(Launcher.parseClass("class A { long one() { return 1L;} }"));
+
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testOf_DifferentOperator_ShouldDiffer(){
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass("class A { int f(int a, int b) { return a + b;} }"));
+        AstFingerprint b = AstFingerprint.of(Launcher.parseClass("class A { int f(int a, int b) { return a - b;} }"));
+
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testOf_DifferentNesting_ShouldDiffer(){
+        AstFingerprint a = AstFingerprint.of(
+                Launcher.parseClass("class A { int f(int a, int b, int c) { return (a - b) - c;} }"));
+        AstFingerprint b = AstFingerprint.of(
+                Launcher.parseClass("class A { int f(int a, int b, int c) { return a - (b - c);} }"));
+
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testOf_DifferentComment_ShouldDiffer(){
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass("class A { void f() { /* one */ } }"));
+        AstFingerprint b = AstFingerprint.of(Launcher.parseClass("class A { void f() { /* two */ } }"));
+
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testOf_RenamedParameter_ShouldDiffer(){
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass("class A { int f(int a) { return a;} }"));
+        AstFingerprint b = AstFingerprint.of(Launcher.parseClass("class A { int f(int b) { return b;} }"));
+
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testOf_RenamedParameter_IgnoringIdentifiers_ShouldBeEqual(){
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass("class A { int f(int a) { return a;} }"), true);
+        AstFingerprint b = AstFingerprint.of(Launcher.parseClass("class A { int f(int b) { return b;} }"), true);
+
+        assertEquals(a, b);
+    }
+
+    @Test
+    void testOf_RenamedType_IgnoringIdentifiers_ShouldDiffer(){
+        AstFingerprint a = AstFingerprint.of(Launcher.parseClass("class A { int f(int a) { return a;} }"), true);
+        AstFingerprint b = AstFingerprint.of(Launcher.parseClass("class B { int f(int a) { return a;} }"), true);
+
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testOf_Method_ShouldNotDependOnParent(){
+        CtClass<?> a = Launcher.parseClass("class A { int f(int a) { return a;} }");
+        CtClass<?> b = Launcher.parseClass("class B { int g() { return 0; } int f(int a) { return a;} }");
+
+        CtMethod<?> inA = a.getMethodsByName("f").get(0);
+        CtMethod<?> inB = b.getMethodsByName("f").get(0);
+
+        assertEquals(AstFingerprint.of(inA), AstFingerprint.of(inB));
+        assertNotEquals(AstFingerprint.of(a), AstFingerprint.of(b));
+    }
+
+    @Test
+    void testOf_AsSetMember_ShouldFindEqualElements(){
+        String source = "class A { int sum(int a, int b) { return a + b;} }";
+
+        Set<AstFingerprint> seen = Set.of(AstFingerprint.of(Launcher.parseClass(source)));
+
+        assertTrue(seen.contains(AstFingerprint.of(Launcher.parseClass(source))));
+    }
+
+    @Test
+    void testOf_Null_ShouldThrowException(){
+        assertThrows(UnsupportedOperationException.class, () -> AstFingerprint.of(null));
+    }
+
+    @Test
+    void testToString_ShouldBe32HexDigits(){
+        AstFingerprint fingerprint = AstFingerprint.of(Launcher.parseClass("class A { }"));
+
+        assertTrue(fingerprint.toString().matches("[0-9a-f]{32}"));
+    }
+}
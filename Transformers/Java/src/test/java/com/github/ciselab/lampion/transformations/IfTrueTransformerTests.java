@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import spoon.Launcher;
+import spoon.reflect.code.CtCodeSnippetStatement;
 import spoon.reflect.declaration.*;
 
 import java.util.function.Predicate;
@@ -349,6 +350,101 @@ public class IfTrueTransformerTests {
         assertTrue(testObject.toString().contains("return 0L;"));
     }
 
+    @Test
+    void applyBatch_ShouldGiveOneResultPerTransformation(){
+        CtElement ast = sumExample();
+
+        IfTrueTransformer transformer = new IfTrueTransformer();
+
+        var results = transformer.applyAtRandom(ast,3);
+
+        assertEquals(3,results.size());
+        results.forEach(r -> assertNotEquals(new EmptyTransformationResult(),r));
+        assertTrue(ast.toString().contains("if (true)"));
+    }
+
+    @Test
+    void applyBatch_ShouldBeCompiledAtTheEnd(){
+        CtElement ast = sumExample();
+
+        IfTrueTransformer transformer = new IfTrueTransformer();
+
+        transformer.applyAtRandom(ast,2);
+
+        // The else block is a snippet, which is only replaced by a proper return statement on compilation
+        assertTrue(ast.filterChildren(c -> c instanceof CtCodeSnippetStatement).list().isEmpty());
+    }
+
+    @Test
+    void applyBatch_ZeroTransformations_ShouldGiveNoResults(){
+        CtElement ast = sumExample();
+
+        IfTrueTransformer transformer = new IfTrueTransformer();
+
+        assertTrue(transformer.applyAtRandom(ast,0).isEmpty());
+        assertFalse(ast.toString().contains("if (true)"));
+    }
+
+    @Test
+    void applyBatch_NegativeTransformations_ShouldThrowException(){
+        CtElement ast = sumExample();
+
+        IfTrueTransformer transformer = new IfTrueTransformer();
+
+        assertThrows(UnsupportedOperationException.class, () -> transformer.applyAtRandom(ast,-1));
+    }
+
+    @Test
+    void applyBatch_constraintsAreNotSatisfied_ReturnsEmptyResults(){
+        CtClass emptyClass = Launcher.parseClass("class A { }");
+
+        IfTrueTransformer transformer = new IfTrueTransformer();
+        var results = transformer.applyAtRandom(emptyClass,2);
+
+        assertEquals(2,results.size());
+        results.forEach(r -> assertEquals(new EmptyTransformationResult(), r));
+    }
+
+
+    @Test
+    void applyBatchWithReport_ShouldNotCheckRequirementsAgain(){
+        CtElement ast = sumExample();
+        IfTrueTransformer transformer = new IfTrueTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(transformer);
+        ApplicabilityReport report = new ApplicabilityScanner(registry).analyze(ast);
+        int[] checks = {0};
+        transformer.getRequirements().add(e -> ++checks[0] > 0);
+
+        var results = transformer.applyAtRandom(ast, 2, report);
+
+        assertEquals(0, checks[0]);
+        assertEquals(2, results.size());
+        results.forEach(r -> assertNotEquals(new EmptyTransformationResult(), r));
+    }
+
+    @Test
+    void applyBatchWithReport_NotApplicable_ShouldGiveEmptyResults(){
+        CtElement ast = sumExample();
+        IfTrueTransformer transformer = new IfTrueTransformer();
+        // A report of another registry does not know the transformer, so it is not applicable
+        ApplicabilityReport report = new ApplicabilityScanner(new TransformerRegistry("Other")).analyze(ast);
+
+        var results = transformer.applyAtRandom(ast, 2, report);
+
+        assertEquals(2, results.size());
+        results.forEach(r -> assertEquals(new EmptyTransformationResult(), r));
+        assertFalse(ast.toString().contains("if (true)"));
+    }
+
+    @Test
+    void applyBatchWithReport_NullReport_ShouldThrowException(){
+        CtElement ast = sumExample();
+
+        IfTrueTransformer transformer = new IfTrueTransformer();
+
+        assertThrows(UnsupportedOperationException.class, () -> transformer.applyAtRandom(ast, 2, null));
+    }
 
     static CtElement classWithoutReturnMethod(){
         CtClass testObject = Launcher.parseClass("package lampion.test.examples; class A { void m() { System.out.println(\"yeah\");} }");
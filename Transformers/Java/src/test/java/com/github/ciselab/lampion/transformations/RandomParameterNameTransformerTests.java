@@ -131,6 +131,20 @@ public class RandomParameterNameTransformerTests {
         assertEquals(new EmptyTransformationResult(),result);
     }
 
+    @Test
+    void applyTwiceToMethodWithOneParameter_MethodAlteredInBetween_returnsEmptyTransformationResult(){
+        CtClass ast = (CtClass) addOneExample();
+
+        RandomParameterNameTransformer transformer = new RandomParameterNameTransformer();
+
+        transformer.applyAtRandom(ast);
+        // Changes the hash of the method, it still has to be known as altered
+        ((CtMethod) ast.getMethods().iterator().next()).setSimpleName("addOneRenamed");
+        var result = transformer.applyAtRandom(ast);
+
+        assertEquals(new EmptyTransformationResult(),result);
+    }
+
     @RepeatedTest(3)
     void applyFiveTimesToClassWithTwoMethods_returnsEmptyTransformationResult_AndAltersAllItems(){
         CtClass ast = Launcher.parseClass("package lampion.test; class A { " +
@@ -324,6 +338,35 @@ public class RandomParameterNameTransformerTests {
 
         assertFalse(transformer.isFullRandomStrings());
     }
+    @Test
+    void applyBatch_MoreTransformationsThanParameters_ShouldRenameEveryParameterOnce(){
+        CtElement ast = sumExample();
+
+        RandomParameterNameTransformer transformer = new RandomParameterNameTransformer();
+
+        var results = transformer.applyAtRandom(ast,3);
+
+        assertEquals(3,results.size());
+        // There are only two parameters, so the last transformation cannot be applied
+        assertEquals(2,results.stream().filter(r -> !r.equals(new EmptyTransformationResult())).count());
+        assertFalse(ast.toString().contains("int a,"));
+        assertFalse(ast.toString().contains("int b)"));
+    }
+
+    @Test
+    void applyBatch_NewContext_ShouldForgetAlteredParameters(){
+        CtElement ast = sumExample();
+
+        RandomParameterNameTransformer transformer = new RandomParameterNameTransformer();
+
+        transformer.applyAtRandom(ast,2);
+        // Both parameters are altered, so in the same context there is nothing left to alter
+        assertFalse(transformer.getRequirements().stream().allMatch(r -> r.test(ast)));
+
+        transformer.setContext(new TransformationContext());
+
+        assertTrue(transformer.getRequirements().stream().allMatch(r -> r.test(ast)));
+    }
 
     static CtElement addOneExample(){
         CtClass testObject = Launcher.parseClass("package lampion.test.examples; class A { int addOne(int a) { return a + 1 }");
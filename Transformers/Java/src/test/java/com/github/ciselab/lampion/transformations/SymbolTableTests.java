@@ -0,0 +1,145 @@
+package com.github.ciselab.lampion.transformations;
+
+import com.github.ciselab.lampion.transformations.transformers.AddUnusedVariableTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomParameterNameTransformer;
+import org.junit.jupiter.api.Test;
+import spoon.Launcher;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtMethod;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymbolTableTests {
+
+    @Test
+    void testVariablesOf_ShouldContainParametersLocalsAndFields(){
+        CtClass<?> type = Launcher.parseClass(
+                "class A { int field; int f(int a) { int unused = 1; int b = a; return b + field;} }");
+        CtMethod<?> method = type.getMethodsByName("f").get(0);
+
+        SymbolTable table = SymbolTable.variablesOf(method);
+
+        assertTrue(table.contains("a"));
+        assertTrue(table.contains("b"));
+        assertTrue(table.contains("unused"));
+        // The field is referenced in the method, so it is in its scope too
+        assertTrue(table.contains("field"));
+        assertFalse(table.contains("f"));
+    }
+
+    @Test
+    void testVariablesOf_CalledTwice_ShouldBeCached(){
+        CtClass<?> type = Launcher.parseClass("class A { int f(int a) { return a;} }");
+        CtMethod<?> method = type.getMethodsByName("f").get(0);
+
+        SymbolTable first = SymbolTable.variablesOf(method);
+        SymbolTable second = SymbolTable.variablesOf(method);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void testVariablesOf_OfClone_ShouldNotShareTable(){
+        CtClass<?> type = Launcher.parseClass("class A { int f(int a) { return a;} }");
+        CtMethod<?> method = type.getMethodsByName("f").get(0);
+        SymbolTable original = SymbolTable.variablesOf(method);
+
+        CtMethod<?> clone = method.clone();
+        SymbolTable cloned = SymbolTable.variablesOf(clone);
+        cloned.add("onlyInClone");
+
+        assertNotSame(original, cloned);
+        assertTrue(cloned.contains("a"));
+        assertFalse(original.contains("onlyInClone"));
+    }
+
+    @Test
+    void testVariablesOf_Null_ShouldThrowException(){
+        assertThrows(UnsupportedOperationException.class, () -> SymbolTable.variablesOf(null));
+    }
+
+    @Test
+    void testMethodsOf_ShouldContainAllMethods(){
+        CtClass<?> type = Launcher.parseClass("class A { void f() {} int getA() { return 0;} }");
+
+        SymbolTable table = SymbolTable.methodsOf(type);
+
+        assertEquals(Set.of("f", "getA"), table.getNames());
+    }
+
+    @Test
+    void testMethodsOf_Null_ShouldThrowException(){
+        assertThrows(UnsupportedOperationException.class, () -> SymbolTable.methodsOf(null));
+    }
+
+    @Test
+    void testContainsIgnoringCase_DifferentCase_ShouldBeTrue(){
+        CtClass<?> type = Launcher.parseClass("class A { int getA() { return 0;} }");
+
+        SymbolTable table = SymbolTable.methodsOf(type);
+
+        assertTrue(table.containsIgnoringCase("geta"));
+        assertFalse(table.contains("geta"));
+        assertFalse(table.containsIgnoringCase(null));
+    }
+
+    @Test
+    void testAdd_ShouldBeContained(){
+        CtClass<?> type = Launcher.parseClass("class A { void f() {} }");
+        SymbolTable table = SymbolTable.methodsOf(type);
+
+        table.add("addedMethod");
+
+        assertTrue(table.contains("addedMethod"));
+        assertTrue(SymbolTable.methodsOf(type).contains("addedMethod"));
+    }
+
+    @Test
+    void testAdd_Null_ShouldThrowException(){
+        CtClass<?> type = Launcher.parseClass("class A { void f() {} }");
+        SymbolTable table = SymbolTable.methodsOf(type);
+
+        assertThrows(UnsupportedOperationException.class, () -> table.add(null));
+    }
+
+    @Test
+    void testGetNames_ShouldBeUnmodifiable(){
+        CtClass<?> type = Launcher.parseClass("class A { void f() {} }");
+        SymbolTable table = SymbolTable.methodsOf(type);
+
+        assertThrows(UnsupportedOperationException.class, () -> table.getNames().add("g"));
+    }
+
+    @Test
+    void testAddUnusedVariable_AppliedTwice_ShouldAddNamesToTable(){
+        CtClass<?> type = Launcher.parseClass("class A { int f(int a) { return a;} }");
+        CtMethod<?> method = type.getMethodsByName("f").get(0);
+        Set<String> before = new HashSet<>(SymbolTable.variablesOf(method).getNames());
+
+        AddUnusedVariableTransformer transformer = new AddUnusedVariableTransformer(200);
+        transformer.applyAtRandom(type);
+        transformer.applyAtRandom(type);
+
+        Set<String> after = SymbolTable.variablesOf(method).getNames();
+        assertEquals(before.size() + 2, after.size());
+        assertTrue(after.containsAll(before));
+    }
+
+    @Test
+    void testRandomParameterName_ShouldAddNewNameToTable(){
+        CtClass<?> type = Launcher.parseClass("class A { int f(int a) { return a;} }");
+        CtMethod<?> method = type.getMethodsByName("f").get(0);
+
+        RandomParameterNameTransformer transformer = new RandomParameterNameTransformer(200);
+        transformer.applyAtRandom(type);
+
+        String newName = method.getParameters().get(0).getSimpleName();
+        assertNotEquals("a", newName);
+        assertTrue(SymbolTable.variablesOf(method).contains(newName));
+        // The old name is kept, see the class doc
+        assertTrue(SymbolTable.variablesOf(method).contains("a"));
+    }
+}
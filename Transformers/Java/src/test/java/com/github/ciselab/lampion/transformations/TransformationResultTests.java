@@ -151,6 +151,23 @@ public class TransformationResultTests {
         assertNotEquals(result.hashCode(),other.hashCode());
     }
 
+    @Test
+    void testEquals_SameElementParsedTwice_AreEqual(){
+        TransformationResult result = new SimpleTransformationResult("Test",sumExample(),new HashSet<>());
+
+        TransformationResult other = new SimpleTransformationResult("Test",sumExample(),new HashSet<>());
+
+        assertEquals(result,other);
+        assertEquals(result.getFingerprint(),other.getFingerprint());
+    }
+
+    @Test
+    void testGetFingerprint_EmptyResult_IsEmptyFingerprint(){
+        TransformationResult emptyResult = new EmptyTransformationResult();
+
+        assertEquals(AstFingerprint.EMPTY,emptyResult.getFingerprint());
+    }
+
     @Test
     void testEmptyResult_TestGetters(){
         TransformationResult emptyResult = new EmptyTransformationResult();
@@ -1,7 +1,20 @@
 package com.github.ciselab.lampion.transformations;
 
 import com.github.ciselab.lampion.transformations.transformers.IfTrueTransformer;
+import com.github.ciselab.lampion.transformations.transformers.RandomParameterNameTransformer;
 import org.junit.jupiter.api.Test;
+import spoon.Launcher;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtElement;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -72,4 +85,115 @@ public class TransformerRegistryTests {
 
         assertTrue(results.isEmpty());
     }
+
+    @Test
+    void testCreateWorkerRegistry_shouldHaveNewInstancesInSameOrder(){
+        IfTrueTransformer ifTrue = new IfTrueTransformer();
+        RandomParameterNameTransformer parameterName = new RandomParameterNameTransformer();
+
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(ifTrue);
+        registry.registerTransformer(parameterName);
+
+        TransformerRegistry workerRegistry = registry.createWorkerRegistry(10);
+
+        assertEquals("Test", workerRegistry.name);
+        assertEquals(2, workerRegistry.getRegisteredTransformers().size());
+        assertTrue(workerRegistry.getRegisteredTransformers().get(0) instanceof IfTrueTransformer);
+        assertTrue(workerRegistry.getRegisteredTransformers().get(1) instanceof RandomParameterNameTransformer);
+        assertNotSame(ifTrue, workerRegistry.getRegisteredTransformers().get(0));
+        assertNotSame(parameterName, workerRegistry.getRegisteredTransformers().get(1));
+    }
+
+    @Test
+    void testCreateWorkerRegistry_shouldKeepSettings(){
+        RandomParameterNameTransformer parameterName = new RandomParameterNameTransformer();
+        parameterName.setFullRandomStrings(true);
+
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(parameterName);
+
+        var copy = (RandomParameterNameTransformer) registry.createWorkerRegistry(10).getRegisteredTransformers().get(0);
+
+        assertTrue(copy.isFullRandomStrings());
+    }
+
+    @Test
+    void testCreateWorkerRegistry_shouldNotShareState(){
+        RandomParameterNameTransformer parameterName = new RandomParameterNameTransformer();
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(parameterName);
+
+        CtElement ast = Launcher.parseClass("class A { int sum(int a, int b) { return a + b;} }");
+        // Alter all parameters with the prototype, the prototype cannot alter anything anymore
+        parameterName.applyAtRandom(ast,2);
+
+        var copy = registry.createWorkerRegistry(10).getRegisteredTransformers().get(0);
+
+        assertTrue(copy.getRequirements().stream().allMatch(r -> r.test(ast)));
+    }
+
+    @Test
+    void testCreateWorkerRegistry_parallelWorkersWithSameSeed_shouldProduceSameResults() throws Exception {
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(new IfTrueTransformer());
+        registry.registerTransformer(new RandomParameterNameTransformer());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> outputs = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                TransformerRegistry workerRegistry = registry.createWorkerRegistry(2022);
+                outputs.add(executor.submit(() -> {
+                    CtClass ast = Launcher.parseClass(
+                            "class A { int sum(int a, int b) { return a + b;} int one(int c) { return c; } }");
+                    for (Transformer t : workerRegistry.getRegisteredTransformers()) {
+                        t.applyAtRandom(ast, 2);
+                    }
+                    return ast.toString();
+                }));
+            }
+            String expected = outputs.get(0).get();
+            for (Future<String> output : outputs) {
+                assertEquals(expected, output.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testCreateWorkerRegistry_transformerNotExtendingBaseTransformer_ShouldUseItsNewInstance(){
+        Transformer copy = new IfTrueTransformer();
+        Transformer prototype = new Transformer() {
+            @Override
+            public TransformationResult applyAtRandom(CtElement ast) {
+                return new EmptyTransformationResult();
+            }
+            @Override
+            public Set<Class<Transformer>> isExclusiveWith() {
+                return new HashSet<>();
+            }
+            @Override
+            public Set<Predicate<CtElement>> getRequirements() {
+                return new HashSet<>();
+            }
+            @Override
+            public Set<TransformationCategory> getCategories() {
+                return new HashSet<>();
+            }
+            @Override
+            public void setSeed(long seed) { }
+            @Override
+            public Transformer newInstance(long seed) {
+                return copy;
+            }
+        };
+        TransformerRegistry registry = new TransformerRegistry("Test");
+        registry.registerTransformer(prototype);
+
+        TransformerRegistry workerRegistry = registry.createWorkerRegistry(10);
+
+        assertEquals(List.of(copy), workerRegistry.getRegisteredTransformers());
+    }
 }
@@ -0,0 +1,12 @@
+package lampion.test.crossfile;
+
+public class Base {
+
+    protected int count;
+
+    public int increment(int step) {
+        count = count + step;
+        return count;
+    }
+
+}
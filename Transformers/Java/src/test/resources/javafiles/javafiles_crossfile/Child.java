@@ -0,0 +1,9 @@
+package lampion.test.crossfile;
+
+public class Child extends Base {
+
+    public int current() {
+        return count;
+    }
+
+}
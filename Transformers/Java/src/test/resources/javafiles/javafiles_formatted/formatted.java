@@ -0,0 +1,11 @@
+package lampion.test.examples;
+
+/*   A header comment   with    odd spacing */
+public class Formatted {
+
+    private int    spaced   =   1;
+
+    public int sum(int a, int b) {
+        return a + b;
+    }
+}